@@ -0,0 +1,100 @@
+package edu.mit.puzzle.cube.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Joiner;
+import com.google.common.collect.Maps;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Compares two JMH result files (written with -rf json) benchmark by benchmark, so that the
+ * effect of a change can be read off one table. A difference is only flagged when it is larger
+ * than the two runs' error margins put together; anything smaller is noise.
+ *
+ * Usage: java -cp target/benchmarks.jar edu.mit.puzzle.cube.core.BenchmarkComparison before.json after.json
+ */
+public class BenchmarkComparison {
+
+    private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: BenchmarkComparison <before.json> <after.json>");
+            System.exit(2);
+        }
+        SortedMap<String,JsonNode> before = readResults(new File(args[0]));
+        SortedMap<String,JsonNode> after = readResults(new File(args[1]));
+
+        System.out.println(String.format("%-70s %14s %14s %9s %14s %14s",
+                "Benchmark", "Before", "After", "Change", "Before B/op", "After B/op"));
+        for (Map.Entry<String,JsonNode> entry : after.entrySet()) {
+            JsonNode beforeResult = before.get(entry.getKey());
+            if (beforeResult == null) {
+                System.out.println(String.format("%-70s %14s", entry.getKey(), "(new)"));
+                continue;
+            }
+            JsonNode afterResult = entry.getValue();
+            double beforeScore = beforeResult.path("primaryMetric").path("score").asDouble();
+            double afterScore = afterResult.path("primaryMetric").path("score").asDouble();
+            double error = beforeResult.path("primaryMetric").path("scoreError").asDouble(0)
+                    + afterResult.path("primaryMetric").path("scoreError").asDouble(0);
+            String change = beforeScore == 0 ? "" : String.format("%+.1f%%", 100 * (afterScore - beforeScore) / beforeScore);
+            if (Math.abs(afterScore - beforeScore) <= error) {
+                change = "~";
+            }
+            System.out.println(String.format("%-70s %14s %14s %9s %14s %14s",
+                    entry.getKey(),
+                    formatScore(beforeResult),
+                    formatScore(afterResult),
+                    change,
+                    formatAllocation(beforeResult),
+                    formatAllocation(afterResult)));
+        }
+        for (String key : before.keySet()) {
+            if (!after.containsKey(key)) {
+                System.out.println(String.format("%-70s %14s", key, "(removed)"));
+            }
+        }
+    }
+
+    //Keys results by benchmark name and parameters, since parameterized runs share a name.
+    private static SortedMap<String,JsonNode> readResults(File file) throws IOException {
+        SortedMap<String,JsonNode> results = Maps.newTreeMap();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            String benchmark = result.path("benchmark").asText();
+            benchmark = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+            SortedMap<String,String> params = Maps.newTreeMap();
+            Iterator<Map.Entry<String,JsonNode>> fields = result.path("params").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String,JsonNode> field = fields.next();
+                params.put(field.getKey(), field.getValue().asText());
+            }
+            String key = params.isEmpty()
+                    ? benchmark
+                    : benchmark + "(" + Joiner.on(',').withKeyValueSeparator("=").join(params) + ")";
+            results.put(key + " " + result.path("mode").asText(), result);
+        }
+        return results;
+    }
+
+    private static String formatScore(JsonNode result) {
+        JsonNode primaryMetric = result.path("primaryMetric");
+        return String.format("%.3f %s", primaryMetric.path("score").asDouble(), primaryMetric.path("scoreUnit").asText());
+    }
+
+    private static String formatAllocation(JsonNode result) {
+        Iterator<Map.Entry<String,JsonNode>> metrics = result.path("secondaryMetrics").fields();
+        while (metrics.hasNext()) {
+            Map.Entry<String,JsonNode> metric = metrics.next();
+            if (metric.getKey().endsWith(ALLOCATION_METRIC)) {
+                return String.format("%.0f", metric.getValue().path("score").asDouble());
+            }
+        }
+        return "";
+    }
+}
@@ -0,0 +1,129 @@
+package edu.mit.puzzle.cube.core;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import edu.mit.puzzle.cube.core.db.DatabaseHelper;
+import edu.mit.puzzle.cube.core.db.InMemoryConnectionFactory;
+import edu.mit.puzzle.cube.core.events.CompositeEventProcessor;
+import edu.mit.puzzle.cube.core.events.HuntStartEvent;
+import edu.mit.puzzle.cube.core.model.HuntStatusStore;
+import edu.mit.puzzle.cube.core.model.VisibilityStatusSet;
+import edu.mit.puzzle.cube.huntimpl.linearexample.LinearExampleHuntDefinition;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A started LinearExampleHuntDefinition hunt for benchmarks, in its own in-memory database,
+ * with any number of teams and puzzles. The first seven puzzles are the linear example's
+ * unlock chain; any further puzzles are there to make the tables bigger and have no unlocks.
+ */
+public class BenchmarkHunt implements AutoCloseable {
+
+    private static final AtomicInteger DATABASE_COUNTER = new AtomicInteger(0);
+
+    private final List<String> teamIds;
+    private final List<String> puzzleIds;
+    private final HuntInstance huntInstance;
+
+    public BenchmarkHunt(int teamCount, int puzzleCount) {
+        LinearExampleHuntDefinition linearExample = new LinearExampleHuntDefinition();
+        ImmutableList.Builder<String> teamIdsBuilder = ImmutableList.builder();
+        for (int i = 1; i <= teamCount; ++i) {
+            teamIdsBuilder.add("team" + i);
+        }
+        teamIds = teamIdsBuilder.build();
+        List<String> puzzleIdList = Lists.newArrayList(linearExample.getPuzzleList());
+        for (int i = puzzleIdList.size() + 1; i <= puzzleCount; ++i) {
+            puzzleIdList.add("puzzle" + i);
+        }
+        puzzleIds = ImmutableList.copyOf(puzzleIdList);
+
+        HuntDefinition huntDefinition = new HuntDefinition() {
+            @Override
+            public VisibilityStatusSet getVisibilityStatusSet() {
+                return linearExample.getVisibilityStatusSet();
+            }
+
+            @Override
+            public List<String> getPuzzleList() {
+                return puzzleIds;
+            }
+
+            @Override
+            public void addToEventProcessor(CompositeEventProcessor eventProcessor, HuntStatusStore huntStatusStore) {
+                linearExample.addToEventProcessor(eventProcessor, huntStatusStore);
+            }
+        };
+
+        InMemoryConnectionFactory connectionFactory;
+        try {
+            connectionFactory = new InMemoryConnectionFactory(
+                    huntDefinition.getVisibilityStatusSet(),
+                    teamIds,
+                    puzzleIds,
+                    "benchmark" + DATABASE_COUNTER.incrementAndGet());
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        huntInstance = new HuntInstance("benchmark", huntDefinition, () -> connectionFactory);
+        huntInstance.getEventProcessor().process(HuntStartEvent.builder().build());
+    }
+
+    public HuntInstance getHuntInstance() {
+        return huntInstance;
+    }
+
+    public List<String> getTeamIds() {
+        return teamIds;
+    }
+
+    public List<String> getPuzzleIds() {
+        return puzzleIds;
+    }
+
+    public String randomTeamId() {
+        return teamIds.get(ThreadLocalRandom.current().nextInt(teamIds.size()));
+    }
+
+    public String randomPuzzleId() {
+        return puzzleIds.get(ThreadLocalRandom.current().nextInt(puzzleIds.size()));
+    }
+
+    /**
+     * Sets every team's visibility of the given puzzles directly in the database, without
+     * events or history, so that reads have explicit rows to find.
+     */
+    public void seedVisibilities(List<String> puzzleIds, String status) {
+        List<List<Object>> parameterLists = Lists.newArrayList();
+        for (String teamId : teamIds) {
+            for (String puzzleId : puzzleIds) {
+                parameterLists.add(Lists.<Object>newArrayList(teamId, puzzleId, status));
+            }
+        }
+        DatabaseHelper.insertBatch(
+                huntInstance.getConnectionFactory(),
+                "INSERT OR REPLACE INTO visibilities (teamId, puzzleId, status) VALUES (?,?,?)",
+                parameterLists);
+    }
+
+    /**
+     * @return The id of the most recently added submission, or 0 if there are none
+     */
+    public int getLastSubmissionId() {
+        Object lastSubmissionId = DatabaseHelper.query(
+                huntInstance.getConnectionFactory(),
+                "SELECT MAX(submissionId) AS lastSubmissionId FROM submissions",
+                ImmutableList.of())
+                .get(0, "lastSubmissionId");
+        return lastSubmissionId == null ? 0 : ((Number) lastSubmissionId).intValue();
+    }
+
+    @Override
+    public void close() {
+        huntInstance.close();
+    }
+}
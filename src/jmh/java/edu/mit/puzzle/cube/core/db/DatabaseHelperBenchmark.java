@@ -0,0 +1,215 @@
+package edu.mit.puzzle.cube.core.db;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Table;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of DatabaseHelper over plain JDBC, on an in-memory and a file SQLite
+ * database, for tables of a few sizes and shapes.
+ *
+ * The "narrow" shape is two short columns. The "wide" shape looks like the submissions table,
+ * including a timestamp column, which every read passes through internallyCastTimestamps.
+ *
+ * Writes compare one insert per row (each its own transaction, as most of the stores do today),
+ * one insert per row inside DatabaseHelper.inTransaction, and insertBatch. Reads compare the
+ * Table that DatabaseHelper.query builds (read cell by cell, as the stores do) with mapping
+ * the ResultSet straight into objects.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DatabaseHelperBenchmark {
+
+    @Param({"memory", "file"})
+    public String storage;
+
+    @Param({"10", "100", "1000"})
+    public int rowCount;
+
+    @Param({"narrow", "wide"})
+    public String shape;
+
+    private File databaseFile;
+    //Keeps a shared in-memory database alive between the benchmark's connections.
+    private Connection keepAliveConnection;
+    private ConnectionFactory connectionFactory;
+
+    private String insertSql;
+    private String selectSql;
+    private List<List<Object>> rows;
+    private int nextUpdateRow = 0;
+
+    private static class Row {
+        final int rowId;
+        final String name;
+        final String body;
+        final String status;
+        final Instant timestamp;
+
+        Row(int rowId, String name, String body, String status, Instant timestamp) {
+            this.rowId = rowId;
+            this.name = name;
+            this.body = body;
+            this.status = status;
+            this.timestamp = timestamp;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, IOException {
+        String databaseUrl;
+        if (storage.equals("memory")) {
+            databaseUrl = "jdbc:sqlite:file:databaseHelperBenchmark?mode=memory&cache=shared";
+        } else {
+            databaseFile = File.createTempFile("cube-benchmark", ".db");
+            databaseUrl = "jdbc:sqlite:" + databaseFile.getAbsolutePath();
+        }
+        keepAliveConnection = DriverManager.getConnection(databaseUrl);
+        connectionFactory = () -> DriverManager.getConnection(databaseUrl);
+
+        if (shape.equals("narrow")) {
+            DatabaseHelper.update(connectionFactory,
+                    "CREATE TABLE reads (rowId INTEGER PRIMARY KEY, name VARCHAR(40))", ImmutableList.of());
+            DatabaseHelper.update(connectionFactory,
+                    "CREATE TABLE writes (rowId INTEGER PRIMARY KEY, name VARCHAR(40))", ImmutableList.of());
+            insertSql = "INSERT INTO %s (name) VALUES (?)";
+            selectSql = "SELECT rowId, name FROM reads";
+        } else {
+            String columns = "(rowId INTEGER PRIMARY KEY, name VARCHAR(40), body TEXT, " +
+                    "status VARCHAR(10), timestamp DATETIME)";
+            DatabaseHelper.update(connectionFactory, "CREATE TABLE reads " + columns, ImmutableList.of());
+            DatabaseHelper.update(connectionFactory, "CREATE TABLE writes " + columns, ImmutableList.of());
+            insertSql = "INSERT INTO %s (name, body, status, timestamp) VALUES (?,?,?,?)";
+            selectSql = "SELECT rowId, name, body, status, timestamp FROM reads";
+        }
+
+        rows = Lists.newArrayList();
+        Instant start = Instant.parse("2017-01-13T12:00:00.000Z");
+        for (int i = 0; i < rowCount; ++i) {
+            if (shape.equals("narrow")) {
+                rows.add(Lists.<Object>newArrayList("puzzle" + i));
+            } else {
+                rows.add(Lists.<Object>newArrayList(
+                        "puzzle" + i,
+                        "ANSWER NUMBER " + i,
+                        i % 3 == 0 ? "CORRECT" : "INCORRECT",
+                        DatabaseHelper.DATE_TIME_FORMATTER.format(start.plusSeconds(i).atZone(ZoneId.of("UTC")))));
+            }
+        }
+        DatabaseHelper.insertBatch(connectionFactory, String.format(insertSql, "reads"), rows);
+    }
+
+    @Setup(Level.Iteration)
+    public void clearWrites() {
+        DatabaseHelper.update(connectionFactory, "DELETE FROM writes", ImmutableList.of());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        keepAliveConnection.close();
+        if (databaseFile != null) {
+            databaseFile.delete();
+        }
+    }
+
+    @Benchmark
+    public void insertEachRow(Blackhole blackhole) {
+        String sql = String.format(insertSql, "writes");
+        for (List<Object> row : rows) {
+            blackhole.consume(DatabaseHelper.insert(connectionFactory, sql, row));
+        }
+    }
+
+    @Benchmark
+    public void insertEachRowInTransaction(Blackhole blackhole) {
+        String sql = String.format(insertSql, "writes");
+        DatabaseHelper.inTransaction(() -> {
+            for (List<Object> row : rows) {
+                blackhole.consume(DatabaseHelper.insert(connectionFactory, sql, row));
+            }
+            return null;
+        });
+    }
+
+    @Benchmark
+    public void insertBatch() {
+        DatabaseHelper.insertBatch(connectionFactory, String.format(insertSql, "writes"), rows);
+    }
+
+    @Benchmark
+    public Integer updateOneRow() {
+        nextUpdateRow = (nextUpdateRow + 1) % rowCount;
+        return DatabaseHelper.update(
+                connectionFactory,
+                "UPDATE reads SET name = ? WHERE rowId = ?",
+                ImmutableList.<Object>of("updated" + nextUpdateRow, nextUpdateRow + 1));
+    }
+
+    @Benchmark
+    public void queryTable(Blackhole blackhole) {
+        Table<Integer,String,Object> table = DatabaseHelper.query(connectionFactory, selectSql, ImmutableList.of());
+        //Reading the cells is what runs internallyCastTimestamps, which is a lazy view.
+        for (Table.Cell<Integer,String,Object> cell : table.cellSet()) {
+            blackhole.consume(cell.getValue());
+        }
+    }
+
+    @Benchmark
+    public void queryTableByKeyField(Blackhole blackhole) {
+        Table<Integer,String,Object> table = DatabaseHelper.query(
+                connectionFactory, selectSql, ImmutableList.of(), "rowId");
+        for (Table.Cell<Integer,String,Object> cell : table.cellSet()) {
+            blackhole.consume(cell.getValue());
+        }
+    }
+
+    @Benchmark
+    public void queryMapped(Blackhole blackhole) throws SQLException {
+        try (Connection connection = connectionFactory.getConnection();
+             PreparedStatement statement = connection.prepareStatement(selectSql);
+             ResultSet rs = statement.executeQuery()) {
+            boolean wide = shape.equals("wide");
+            while (rs.next()) {
+                blackhole.consume(new Row(
+                        rs.getInt(1),
+                        rs.getString(2),
+                        wide ? rs.getString(3) : null,
+                        wide ? rs.getString(4) : null,
+                        wide ? LocalDateTime.parse(rs.getString(5), DatabaseHelper.DATE_TIME_FORMATTER)
+                                .atZone(ZoneId.of("UTC")).toInstant() : null));
+            }
+        }
+    }
+}
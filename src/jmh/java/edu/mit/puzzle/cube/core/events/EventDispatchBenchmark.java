@@ -0,0 +1,101 @@
+package edu.mit.puzzle.cube.core.events;
+
+import com.google.common.collect.ImmutableList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what CompositeEventProcessor itself costs to dispatch an event, with handlers that do
+ * nothing but store the event: how that grows with the number of handlers for the event, with
+ * the number of other event types that have handlers, and with where in the event's class
+ * hierarchy the handlers are registered.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventDispatchBenchmark {
+
+    private static abstract class MiddleEvent extends Event {
+    }
+
+    private static class LeafEvent extends MiddleEvent {
+    }
+
+    private static final List<Class<? extends Event>> OTHER_EVENT_TYPES = ImmutableList.of(
+            FullReleaseEvent.class,
+            HuntStartEvent.class,
+            PeriodicTimerEvent.class,
+            SetVisibilityEvent.class,
+            SubmissionCompleteEvent.class,
+            TeamPropertyChangeEvent.class,
+            VisibilityChangeEvent.class);
+
+    @Param({"1", "10", "100"})
+    public int handlers;
+
+    @Param({"0", "7"})
+    public int otherEventTypes;
+
+    /**
+     * Which class the handlers are registered for: the event's own class ("leaf"), its
+     * superclass ("middle"), or Event ("root"); "spread" splits them across all three.
+     */
+    @Param({"leaf", "middle", "root", "spread"})
+    public String registeredOn;
+
+    private CompositeEventProcessor eventProcessor;
+    private final Event event = new LeafEvent();
+    private Event lastEvent;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        //No slow event warnings, which would only add noise.
+        eventProcessor = new CompositeEventProcessor(Duration.ofDays(1));
+        for (int i = 0; i < otherEventTypes; ++i) {
+            eventProcessor.addEventProcessor(OTHER_EVENT_TYPES.get(i), e -> lastEvent = e);
+        }
+        List<Class<? extends Event>> hierarchy = ImmutableList.of(LeafEvent.class, MiddleEvent.class, Event.class);
+        for (int i = 0; i < handlers; ++i) {
+            Class<? extends Event> clazz;
+            switch (registeredOn) {
+                case "leaf":    clazz = LeafEvent.class; break;
+                case "middle":  clazz = MiddleEvent.class; break;
+                case "root":    clazz = Event.class; break;
+                default:        clazz = hierarchy.get(i % hierarchy.size()); break;
+            }
+            eventProcessor.addEventProcessor(clazz, e -> lastEvent = e);
+        }
+    }
+
+    @Benchmark
+    public Event process() {
+        eventProcessor.process(event);
+        return lastEvent;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Event processConcurrently() {
+        eventProcessor.process(event);
+        return lastEvent;
+    }
+}
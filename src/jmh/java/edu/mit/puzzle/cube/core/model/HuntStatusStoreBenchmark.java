@@ -0,0 +1,129 @@
+package edu.mit.puzzle.cube.core.model;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.mit.puzzle.cube.core.BenchmarkHunt;
+import edu.mit.puzzle.cube.core.db.DatabaseHelper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmarks the HuntStatusStore calls made on every request and every unlock: reading one
+ * visibility (alone and from several threads), reading all of a team's visibilities, and
+ * setVisibility with its event cascade, for a transition that is accepted and one that is not.
+ *
+ * Half of the puzzles start UNLOCKED for every team and the other half INVISIBLE. Team and
+ * puzzle counts can be changed with -p teamCount=... -p puzzleCount=....
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HuntStatusStoreBenchmark {
+
+    //Each accepted transition uses up a team's invisible puzzle, so that benchmark runs a fixed
+    //number of transitions per iteration rather than for a fixed time, and reports the time
+    //for all of them.
+    private static final int TRANSITIONS_PER_ITERATION = 500;
+
+    @Param({"70"})
+    public int teamCount;
+
+    @Param({"50", "200", "1000"})
+    public int puzzleCount;
+
+    private BenchmarkHunt hunt;
+    private HuntStatusStore huntStatusStore;
+    private List<String> unlockedPuzzleIds;
+    private List<String> invisiblePuzzleIds;
+    private int nextTransition;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        hunt = new BenchmarkHunt(teamCount, puzzleCount);
+        huntStatusStore = hunt.getHuntInstance().getHuntStatusStore();
+        List<String> puzzleIds = hunt.getPuzzleIds();
+        unlockedPuzzleIds = IntStream.range(0, puzzleIds.size())
+                .filter(i -> i % 2 == 0)
+                .mapToObj(puzzleIds::get)
+                .collect(Collectors.toList());
+        invisiblePuzzleIds = IntStream.range(0, puzzleIds.size())
+                .filter(i -> i % 2 == 1)
+                .mapToObj(puzzleIds::get)
+                .collect(Collectors.toList());
+        if (teamCount * invisiblePuzzleIds.size() < TRANSITIONS_PER_ITERATION) {
+            throw new IllegalArgumentException("Not enough teams and puzzles for "
+                    + TRANSITIONS_PER_ITERATION + " transitions per iteration");
+        }
+        hunt.seedVisibilities(unlockedPuzzleIds, "UNLOCKED");
+    }
+
+    @Setup(Level.Iteration)
+    public void resetTransitions() {
+        DatabaseHelper.update(
+                hunt.getHuntInstance().getConnectionFactory(),
+                "DELETE FROM visibilities WHERE status = 'VISIBLE'",
+                ImmutableList.of());
+        nextTransition = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        hunt.close();
+    }
+
+    @Benchmark
+    public String getVisibility() {
+        return huntStatusStore.getVisibility(hunt.randomTeamId(), hunt.randomPuzzleId());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String getVisibilityConcurrently() {
+        return huntStatusStore.getVisibility(hunt.randomTeamId(), hunt.randomPuzzleId());
+    }
+
+    @Benchmark
+    public Map<String,String> getVisibilitiesForTeam() {
+        return huntStatusStore.getVisibilitiesForTeam(hunt.randomTeamId());
+    }
+
+    @Benchmark
+    public boolean setVisibilityRejected() {
+        //INVISIBLE can't go straight to SOLVED, which the store finds out from the database.
+        String puzzleId = invisiblePuzzleIds.get(nextTransition++ % invisiblePuzzleIds.size());
+        return huntStatusStore.setVisibility(hunt.randomTeamId(), puzzleId, "SOLVED", false);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = TRANSITIONS_PER_ITERATION)
+    @Measurement(iterations = 10, batchSize = TRANSITIONS_PER_ITERATION)
+    public boolean setVisibilityAccepted() {
+        int transition = nextTransition++;
+        String teamId = hunt.getTeamIds().get(transition % teamCount);
+        String puzzleId = invisiblePuzzleIds.get(transition / teamCount);
+        return huntStatusStore.setVisibility(teamId, puzzleId, "VISIBLE", false);
+    }
+}
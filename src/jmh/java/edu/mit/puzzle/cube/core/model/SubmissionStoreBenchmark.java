@@ -0,0 +1,116 @@
+package edu.mit.puzzle.cube.core.model;
+
+import edu.mit.puzzle.cube.core.BenchmarkHunt;
+import edu.mit.puzzle.cube.core.events.SubmissionCompleteEvent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Benchmarks the SubmissionStore calls made for every answer: what SubmissionsResource does on a
+ * POST (checking the puzzle is unlocked, then adding the submission), addSubmission on its own,
+ * and judging a submission with setSubmissionStatus, which raises a SubmissionCompleteEvent.
+ *
+ * Submissions are judged INCORRECT so that the hunt doesn't move on. The handlers parameter is
+ * the number of extra SubmissionCompleteEvent handlers registered, to show the cost of fanning
+ * the event out. Team and puzzle counts can be changed with -p teamCount=... -p puzzleCount=....
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SubmissionStoreBenchmark {
+
+    //Each judgement uses up a submission made before the iteration, so that benchmark runs a
+    //fixed number of judgements per iteration, and reports the time for all of them.
+    private static final int JUDGEMENTS_PER_ITERATION = 500;
+
+    @Param({"70"})
+    public int teamCount;
+
+    @Param({"50"})
+    public int puzzleCount;
+
+    @Param({"0", "10"})
+    public int handlers;
+
+    private BenchmarkHunt hunt;
+    private HuntStatusStore huntStatusStore;
+    private SubmissionStore submissionStore;
+    private final LongAdder handledEvents = new LongAdder();
+    private int nextSubmissionId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        hunt = new BenchmarkHunt(teamCount, puzzleCount);
+        huntStatusStore = hunt.getHuntInstance().getHuntStatusStore();
+        submissionStore = hunt.getHuntInstance().getSubmissionStore();
+        hunt.seedVisibilities(hunt.getPuzzleIds(), "UNLOCKED");
+        for (int i = 0; i < handlers; ++i) {
+            hunt.getHuntInstance().getEventProcessor().addEventProcessor(
+                    SubmissionCompleteEvent.class,
+                    "benchmark" + i,
+                    event -> handledEvents.increment());
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void addSubmissionsToJudge() {
+        nextSubmissionId = hunt.getLastSubmissionId() + 1;
+        for (int i = 0; i < JUDGEMENTS_PER_ITERATION; ++i) {
+            submissionStore.addSubmission(randomSubmission());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        hunt.close();
+    }
+
+    private Submission randomSubmission() {
+        return Submission.builder()
+                .setTeamId(hunt.randomTeamId())
+                .setPuzzleId(hunt.randomPuzzleId())
+                .setSubmission("GUESS")
+                .build();
+    }
+
+    @Benchmark
+    public boolean handlePost() {
+        Submission submission = randomSubmission();
+        String visibilityStatus = huntStatusStore.getVisibility(submission.getTeamId(), submission.getPuzzleId());
+        if (!huntStatusStore.getVisibilityStatusSet().allowsSubmissions(visibilityStatus)) {
+            return false;
+        }
+        return submissionStore.addSubmission(submission);
+    }
+
+    @Benchmark
+    public boolean addSubmission() {
+        return submissionStore.addSubmission(randomSubmission());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = JUDGEMENTS_PER_ITERATION)
+    @Measurement(iterations = 10, batchSize = JUDGEMENTS_PER_ITERATION)
+    public boolean setSubmissionStatus() {
+        return submissionStore.setSubmissionStatus(nextSubmissionId++, SubmissionStatus.INCORRECT);
+    }
+}
@@ -0,0 +1,84 @@
+package edu.mit.puzzle.cube.huntimpl.linearexample;
+
+import edu.mit.puzzle.cube.core.BenchmarkHunt;
+import edu.mit.puzzle.cube.core.model.Submission;
+import edu.mit.puzzle.cube.core.model.SubmissionStatus;
+import edu.mit.puzzle.cube.core.model.SubmissionStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks every team solving the whole LinearExampleHuntDefinition hunt: for each of the
+ * seven puzzles in turn, a submission is added and judged CORRECT, which solves the puzzle and,
+ * through the unlock graph, unlocks the next one. Every iteration starts a new hunt. Team and
+ * puzzle counts can be changed with -p teamCount=... -p puzzleCount=...; puzzles beyond the
+ * seventh only make the tables bigger.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LinearExampleSolveBenchmark {
+
+    private static final int LINEAR_PUZZLES = 7;
+
+    @Param({"70"})
+    public int teamCount;
+
+    @Param({"7"})
+    public int puzzleCount;
+
+    private BenchmarkHunt hunt;
+    private SubmissionStore submissionStore;
+    private int lastSubmissionId;
+
+    @Setup(Level.Iteration)
+    public void startHunt() {
+        hunt = new BenchmarkHunt(teamCount, puzzleCount);
+        submissionStore = hunt.getHuntInstance().getSubmissionStore();
+        lastSubmissionId = hunt.getLastSubmissionId();
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeHunt() {
+        hunt.close();
+    }
+
+    @Benchmark
+    public int solveHunt() {
+        List<String> puzzleIds = hunt.getPuzzleIds();
+        int solved = 0;
+        for (String teamId : hunt.getTeamIds()) {
+            for (int i = 0; i < LINEAR_PUZZLES; ++i) {
+                submissionStore.addSubmission(Submission.builder()
+                        .setTeamId(teamId)
+                        .setPuzzleId(puzzleIds.get(i))
+                        .setSubmission("ANSWER")
+                        .build());
+                submissionStore.setSubmissionStatus(++lastSubmissionId, SubmissionStatus.CORRECT);
+            }
+            if (hunt.getHuntInstance().getHuntStatusStore()
+                    .getVisibility(teamId, puzzleIds.get(LINEAR_PUZZLES - 1)).equals("SOLVED")) {
+                solved++;
+            }
+        }
+        return solved;
+    }
+}
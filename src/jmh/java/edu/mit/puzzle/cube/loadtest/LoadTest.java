@@ -0,0 +1,319 @@
+package edu.mit.puzzle.cube.loadtest;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+
+import edu.mit.puzzle.cube.core.CubeApplication;
+import edu.mit.puzzle.cube.core.HuntDefinition;
+import edu.mit.puzzle.cube.core.HuntInstance;
+import edu.mit.puzzle.cube.core.environments.DevelopmentConfiguration;
+import edu.mit.puzzle.cube.core.environments.DevelopmentEnvironment;
+import edu.mit.puzzle.cube.core.events.HuntStartEvent;
+import edu.mit.puzzle.cube.core.model.HuntStatusStore;
+import edu.mit.puzzle.cube.core.server.CubeServer;
+import edu.mit.puzzle.cube.core.server.ServerConfiguration;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.SynchronizedHistogram;
+import org.restlet.Component;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Starts a CubeApplication on an ephemeral port and drives it with a mix of HTTP traffic, then
+ * reports the latency of each route and checks the results against a budget.
+ *
+ * The load is open-loop: requests are scheduled at the configured rate whether or not earlier
+ * ones have completed, and each request's latency is measured from when it was scheduled to
+ * start, not from when a connection became free to send it. A server that stalls therefore
+ * shows up as latency for every request that should have been sent during the stall, rather
+ * than as one slow request (the "coordinated omission" that closed-loop testers suffer from).
+ *
+ * Usage: java -cp target/benchmarks.jar edu.mit.puzzle.cube.loadtest.LoadTest [loadtest.properties]
+ * with any property also settable as -Dloadtest.name=value. The hunt's teams, puzzles and
+ * seeded state come from the cube.development.* properties of DevelopmentConfiguration. Exits
+ * with status 1 if the budget was missed.
+ */
+public class LoadTest {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final LoadTestConfiguration configuration;
+    private final Map<LoadTestRoute, Histogram> latencies = Maps.newEnumMap(LoadTestRoute.class);
+    private final Map<LoadTestRoute, LongAdder> errors = Maps.newEnumMap(LoadTestRoute.class);
+
+    public LoadTest(LoadTestConfiguration configuration) {
+        this.configuration = configuration;
+        for (LoadTestRoute route : LoadTestRoute.values()) {
+            latencies.put(route, new SynchronizedHistogram(HIGHEST_TRACKABLE_MICROS, 3));
+            errors.put(route, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Properties properties = new Properties();
+        if (args.length > 0) {
+            try (InputStream inputStream = new FileInputStream(args[0])) {
+                properties.load(inputStream);
+            }
+        }
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("loadtest.") || name.startsWith("cube.development.")) {
+                properties.setProperty(name, System.getProperty(name));
+            }
+        }
+        LoadTestConfiguration configuration = LoadTestConfiguration.fromProperties(properties);
+
+        //HttpURLConnection keeps only 5 idle connections per server alive by default.
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", Integer.toString(configuration.getConnections()));
+
+        LoadTest loadTest = new LoadTest(configuration);
+        List<String> violations = loadTest.run();
+        if (violations.isEmpty()) {
+            System.out.println("Within budget");
+        } else {
+            System.out.println("Budget missed:");
+            violations.forEach(violation -> System.out.println("  " + violation));
+        }
+        //The application's timers don't stop with the server.
+        System.exit(violations.isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * Runs the load test against a new embedded server.
+     *
+     * @return Every way the results missed the budget
+     */
+    public List<String> run() throws Exception {
+        HuntDefinition huntDefinition = (HuntDefinition) Class.forName(configuration.getHuntDefinitionClass()).newInstance();
+        DevelopmentConfiguration developmentConfiguration = configuration.getDevelopmentConfiguration();
+        List<String> teamIds = developmentConfiguration.getTeamIds();
+
+        ServerConfiguration serverConfiguration = ServerConfiguration.builder().setPort(0).build();
+        CubeApplication application = new CubeApplication(
+                serverConfiguration,
+                huntDefinition,
+                (huntId, definition) -> new DevelopmentEnvironment(
+                        definition, "loadtest-" + huntId, developmentConfiguration));
+        HuntInstance huntInstance = application.getHuntRegistry().get(CubeApplication.DEFAULT_HUNT_ID).get();
+        huntInstance.getEventProcessor().process(HuntStartEvent.builder().build());
+        List<String> submittablePuzzleIds = getSubmittablePuzzleIds(huntInstance, teamIds.get(teamIds.size() - 1));
+
+        Component component = CubeServer.createComponent(serverConfiguration, application);
+        component.start();
+        try {
+            String baseUrl = "http://localhost:" + component.getServers().get(0).getActualPort();
+            System.out.println("Serving " + huntDefinition.getClass().getSimpleName() + " with "
+                    + teamIds.size() + " teams at " + baseUrl);
+            long completed = sendLoad(baseUrl, teamIds, submittablePuzzleIds);
+            report(completed);
+            return checkBudget(completed);
+        } finally {
+            component.stop();
+        }
+    }
+
+    //Teams only submit answers to puzzles they can submit to; judging by the last team, which is
+    //the last to be given seeded state, as the rest start the hunt the same way.
+    private static List<String> getSubmittablePuzzleIds(HuntInstance huntInstance, String teamId) {
+        HuntStatusStore huntStatusStore = huntInstance.getHuntStatusStore();
+        List<String> puzzleIds = huntInstance.getHuntDefinition().getPuzzleList().stream()
+                .filter(puzzleId -> huntStatusStore.getVisibilityStatusSet().allowsSubmissions(
+                        huntStatusStore.getVisibility(teamId, puzzleId)))
+                .collect(Collectors.toList());
+        return puzzleIds.isEmpty() ? huntInstance.getHuntDefinition().getPuzzleList() : puzzleIds;
+    }
+
+    /**
+     * Sends requests at the configured rate until the warmup and measured periods are over,
+     * then waits for the stragglers.
+     *
+     * @return The number of requests completed in the measured period
+     */
+    private long sendLoad(String baseUrl, List<String> teamIds, List<String> puzzleIds) throws InterruptedException {
+        List<LoadTestRoute> weightedRoutes = Lists.newArrayList();
+        configuration.getMix().forEach((route, weight) -> {
+            for (int i = 0; i < weight; ++i) {
+                weightedRoutes.add(route);
+            }
+        });
+        if (weightedRoutes.isEmpty()) {
+            throw new IllegalArgumentException("The mix doesn't send any traffic");
+        }
+
+        //Requests queue here when every connection is busy; their latency still counts from
+        //when they were scheduled.
+        ExecutorService connections = Executors.newFixedThreadPool(configuration.getConnections());
+        LongAdder completed = new LongAdder();
+        Random random = new Random();
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / configuration.getRequestsPerSecond());
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(configuration.getWarmupSeconds());
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(configuration.getDurationSeconds());
+
+        long scheduled = start;
+        while (scheduled < end) {
+            long now;
+            while ((now = System.nanoTime()) < scheduled) {
+                LockSupport.parkNanos(scheduled - now);
+            }
+            LoadTestRoute route = weightedRoutes.get(random.nextInt(weightedRoutes.size()));
+            LoadTestRequest request = route.createRequest(random, teamIds, puzzleIds);
+            long scheduledStart = scheduled;
+            boolean measured = scheduled >= measureFrom;
+            connections.execute(() -> {
+                boolean succeeded = send(baseUrl, request);
+                if (measured) {
+                    long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduledStart);
+                    latencies.get(route).recordValue(Math.min(latencyMicros, HIGHEST_TRACKABLE_MICROS));
+                    if (!succeeded) {
+                        errors.get(route).increment();
+                    }
+                    if (System.nanoTime() <= end) {
+                        completed.increment();
+                    }
+                }
+            });
+            if (configuration.getArrivals() == LoadTestConfiguration.Arrivals.POISSON) {
+                scheduled += (long) (-Math.log(1 - random.nextDouble()) * intervalNanos);
+            } else {
+                scheduled += intervalNanos;
+            }
+        }
+        connections.shutdown();
+        if (!connections.awaitTermination(1, TimeUnit.MINUTES)) {
+            System.out.println("Gave up waiting for requests still in flight a minute after the test");
+            connections.shutdownNow();
+        }
+        return completed.sum();
+    }
+
+    /**
+     * Sends a request and reads the whole response, so that the connection can be reused.
+     *
+     * @return true if the server responded with a 2xx status
+     */
+    private static boolean send(String baseUrl, LoadTestRequest request) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(baseUrl + request.getPath()).openConnection();
+            connection.setRequestMethod(request.getMethod());
+            connection.setRequestProperty("Accept", "application/json");
+            if (request.getBody().isPresent()) {
+                byte[] body = request.getBody().get().getBytes(StandardCharsets.UTF_8);
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                connection.setFixedLengthStreamingMode(body.length);
+                try (OutputStream outputStream = connection.getOutputStream()) {
+                    outputStream.write(body);
+                }
+            }
+            int status = connection.getResponseCode();
+            InputStream responseStream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (responseStream != null) {
+                try (InputStream inputStream = responseStream) {
+                    ByteStreams.copy(inputStream, ByteStreams.nullOutputStream());
+                }
+            }
+            return status >= 200 && status < 300;
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            return false;
+        }
+    }
+
+    private void report(long completed) throws IOException {
+        System.out.println(String.format("%-20s %9s %7s %9s %9s %9s %9s %9s",
+                "Route", "Requests", "Errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "Max ms"));
+        for (LoadTestRoute route : LoadTestRoute.values()) {
+            Histogram histogram = latencies.get(route);
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            System.out.println(String.format("%-20s %9d %7d %9.1f %9.1f %9.1f %9.1f %9.1f",
+                    route.getRouteName(),
+                    histogram.getTotalCount(),
+                    errors.get(route).sum(),
+                    toMillis(histogram.getValueAtPercentile(50)),
+                    toMillis(histogram.getValueAtPercentile(90)),
+                    toMillis(histogram.getValueAtPercentile(99)),
+                    toMillis(histogram.getValueAtPercentile(99.9)),
+                    toMillis(histogram.getMaxValue())));
+        }
+        System.out.println(String.format("Throughput: %.1f requests/s (target %.1f)",
+                completed / (double) configuration.getDurationSeconds(), configuration.getRequestsPerSecond()));
+
+        if (configuration.getReportDirectory().isPresent()) {
+            File reportDirectory = new File(configuration.getReportDirectory().get());
+            reportDirectory.mkdirs();
+            for (LoadTestRoute route : LoadTestRoute.values()) {
+                if (latencies.get(route).getTotalCount() == 0) {
+                    continue;
+                }
+                try (PrintStream printStream = new PrintStream(new File(reportDirectory, route.name() + ".hgrm"), "UTF-8")) {
+                    //Recorded in microseconds; the .hgrm files are in milliseconds.
+                    latencies.get(route).outputPercentileDistribution(printStream, 1000.0);
+                }
+            }
+            System.out.println("Wrote latency distributions to " + reportDirectory);
+        }
+    }
+
+    private List<String> checkBudget(long completed) {
+        ImmutableList.Builder<String> violations = ImmutableList.builder();
+        double throughput = completed / (double) configuration.getDurationSeconds();
+        if (throughput < configuration.getRequestsPerSecond() * configuration.getMinThroughputRatio()) {
+            violations.add(String.format("Throughput was %.1f requests/s, below %.0f%% of the target %.1f",
+                    throughput, 100 * configuration.getMinThroughputRatio(), configuration.getRequestsPerSecond()));
+        }
+        for (LoadTestRoute route : LoadTestRoute.values()) {
+            Histogram histogram = latencies.get(route);
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            double p99 = toMillis(histogram.getValueAtPercentile(99));
+            if (p99 > configuration.getP99BudgetMillis()) {
+                violations.add(String.format("%s p99 was %.1f ms, over %.1f ms",
+                        route.getRouteName(), p99, configuration.getP99BudgetMillis()));
+            }
+            double p999 = toMillis(histogram.getValueAtPercentile(99.9));
+            if (p999 > configuration.getP999BudgetMillis()) {
+                violations.add(String.format("%s p99.9 was %.1f ms, over %.1f ms",
+                        route.getRouteName(), p999, configuration.getP999BudgetMillis()));
+            }
+            double errorRatio = errors.get(route).sum() / (double) histogram.getTotalCount();
+            if (errorRatio > configuration.getMaxErrorRatio()) {
+                violations.add(String.format("%s failed %.2f%% of requests, over %.2f%%",
+                        route.getRouteName(), 100 * errorRatio, 100 * configuration.getMaxErrorRatio()));
+            }
+        }
+        return violations.build();
+    }
+
+    private static double toMillis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,142 @@
+package edu.mit.puzzle.cube.loadtest;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import edu.mit.puzzle.cube.core.environments.DevelopmentConfiguration;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * The settings of a LoadTest run: what to serve, how much traffic to send and in what mix, and
+ * the budget the results must meet.
+ */
+@AutoValue
+public abstract class LoadTestConfiguration {
+
+    private static final String PREFIX = "loadtest.";
+
+    public enum Arrivals {
+        /** Requests start at exactly the configured rate. */
+        UNIFORM,
+        /** Requests start at random times averaging the configured rate, as independent clients would. */
+        POISSON
+    }
+
+    @AutoValue.Builder
+    public static abstract class Builder {
+        public abstract Builder setHuntDefinitionClass(String huntDefinitionClass);
+        public abstract Builder setDevelopmentConfiguration(DevelopmentConfiguration developmentConfiguration);
+        public abstract Builder setRequestsPerSecond(double requestsPerSecond);
+        public abstract Builder setWarmupSeconds(int warmupSeconds);
+        public abstract Builder setDurationSeconds(int durationSeconds);
+        public abstract Builder setConnections(int connections);
+        public abstract Builder setArrivals(Arrivals arrivals);
+        public abstract Builder setMix(Map<LoadTestRoute, Integer> mix);
+        public abstract Builder setP99BudgetMillis(double p99BudgetMillis);
+        public abstract Builder setP999BudgetMillis(double p999BudgetMillis);
+        public abstract Builder setMinThroughputRatio(double minThroughputRatio);
+        public abstract Builder setMaxErrorRatio(double maxErrorRatio);
+        public abstract Builder setReportDirectory(Optional<String> reportDirectory);
+        public abstract LoadTestConfiguration build();
+    }
+
+    public static Builder builder() {
+        ImmutableMap.Builder<LoadTestRoute, Integer> defaultMix = ImmutableMap.builder();
+        for (LoadTestRoute route : LoadTestRoute.values()) {
+            defaultMix.put(route, route.getDefaultWeight());
+        }
+        return new AutoValue_LoadTestConfiguration.Builder()
+                .setHuntDefinitionClass("edu.mit.puzzle.cube.huntimpl.linearexample.LinearExampleHuntDefinition")
+                .setDevelopmentConfiguration(DevelopmentConfiguration.builder().build())
+                .setRequestsPerSecond(200)
+                .setWarmupSeconds(10)
+                .setDurationSeconds(60)
+                .setConnections(32)
+                .setArrivals(Arrivals.POISSON)
+                .setMix(defaultMix.build())
+                .setP99BudgetMillis(250)
+                .setP999BudgetMillis(1000)
+                .setMinThroughputRatio(0.95)
+                .setMaxErrorRatio(0.001)
+                .setReportDirectory(Optional.empty());
+    }
+
+    public abstract String getHuntDefinitionClass();
+    /** The teams, puzzles and seeded state of the hunt under test, from cube.development.* properties. */
+    public abstract DevelopmentConfiguration getDevelopmentConfiguration();
+    public abstract double getRequestsPerSecond();
+    public abstract int getWarmupSeconds();
+    public abstract int getDurationSeconds();
+    /** The most requests in flight at once, each on its own keep-alive connection. */
+    public abstract int getConnections();
+    public abstract Arrivals getArrivals();
+    /** The relative weight of each route in the traffic. */
+    public abstract Map<LoadTestRoute, Integer> getMix();
+    /** No route's 99th percentile latency may exceed this. */
+    public abstract double getP99BudgetMillis();
+    /** No route's 99.9th percentile latency may exceed this. */
+    public abstract double getP999BudgetMillis();
+    /** The share of the configured rate that must complete in the measured period. */
+    public abstract double getMinThroughputRatio();
+    /** The share of requests that may fail, including those rejected with a 503. */
+    public abstract double getMaxErrorRatio();
+    /** Where to write each route's full latency distribution, as HdrHistogram .hgrm files. */
+    public abstract Optional<String> getReportDirectory();
+
+    /**
+     * Reads a configuration from loadtest.* properties, e.g. loadtest.requestsPerSecond, and the
+     * hunt's from cube.development.* properties. The mix
+     * is given as route=weight pairs, e.g. loadtest.mix=VISIBILITIES=80,SUBMIT=20; routes left
+     * out get no traffic.
+     */
+    public static LoadTestConfiguration fromProperties(Properties properties) {
+        LoadTestConfiguration defaults = builder().build();
+        Map<LoadTestRoute, Integer> mix = defaults.getMix();
+        String mixProperty = properties.getProperty(PREFIX + "mix");
+        if (mixProperty != null) {
+            mix = Maps.newEnumMap(LoadTestRoute.class);
+            for (Map.Entry<String, String> entry : Splitter.on(',').trimResults().omitEmptyStrings()
+                    .withKeyValueSeparator('=').split(mixProperty).entrySet()) {
+                mix.put(LoadTestRoute.valueOf(entry.getKey().trim().toUpperCase()), Integer.parseInt(entry.getValue().trim()));
+            }
+        }
+        return builder()
+                .setHuntDefinitionClass(properties.getProperty(
+                        PREFIX + "huntDefinitionClass", defaults.getHuntDefinitionClass()).trim())
+                .setDevelopmentConfiguration(DevelopmentConfiguration.fromProperties(properties))
+                .setRequestsPerSecond(getDouble(properties, "requestsPerSecond", defaults.getRequestsPerSecond()))
+                .setWarmupSeconds(getInt(properties, "warmupSeconds", defaults.getWarmupSeconds()))
+                .setDurationSeconds(getInt(properties, "durationSeconds", defaults.getDurationSeconds()))
+                .setConnections(getInt(properties, "connections", defaults.getConnections()))
+                .setArrivals(Arrivals.valueOf(properties.getProperty(
+                        PREFIX + "arrivals", defaults.getArrivals().name()).trim().toUpperCase()))
+                .setMix(ImmutableMap.copyOf(mix))
+                .setP99BudgetMillis(getDouble(properties, "p99BudgetMillis", defaults.getP99BudgetMillis()))
+                .setP999BudgetMillis(getDouble(properties, "p999BudgetMillis", defaults.getP999BudgetMillis()))
+                .setMinThroughputRatio(getDouble(properties, "minThroughputRatio", defaults.getMinThroughputRatio()))
+                .setMaxErrorRatio(getDouble(properties, "maxErrorRatio", defaults.getMaxErrorRatio()))
+                .setReportDirectory(Optional.ofNullable(properties.getProperty(PREFIX + "reportDirectory")))
+                .build();
+    }
+
+    private static int getInt(Properties properties, String name, int defaultValue) {
+        return (int) getDouble(properties, name, defaultValue);
+    }
+
+    private static double getDouble(Properties properties, String name, double defaultValue) {
+        String value = properties.getProperty(PREFIX + name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(PREFIX + name + " is not a number: " + value);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package edu.mit.puzzle.cube.loadtest;
+
+import java.util.Optional;
+
+/**
+ * One HTTP request for the load test to send, relative to the hunt's base URL.
+ */
+class LoadTestRequest {
+
+    private final String method;
+    private final String path;
+    private final Optional<String> body;
+
+    private LoadTestRequest(String method, String path, Optional<String> body) {
+        this.method = method;
+        this.path = path;
+        this.body = body;
+    }
+
+    static LoadTestRequest get(String path) {
+        return new LoadTestRequest("GET", path, Optional.empty());
+    }
+
+    static LoadTestRequest post(String path, String jsonBody) {
+        return new LoadTestRequest("POST", path, Optional.of(jsonBody));
+    }
+
+    String getMethod() {
+        return method;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    Optional<String> getBody() {
+        return body;
+    }
+}
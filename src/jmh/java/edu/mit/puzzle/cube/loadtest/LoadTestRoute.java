@@ -0,0 +1,69 @@
+package edu.mit.puzzle.cube.loadtest;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The kinds of request the load test makes, each named for the route it exercises, with its
+ * default share of the traffic. The defaults approximate hunt day, where most requests are
+ * teams polling for their puzzles.
+ */
+public enum LoadTestRoute {
+    VISIBILITIES("GET /visibilities", 60) {
+        @Override
+        LoadTestRequest createRequest(Random random, List<String> teamIds, List<String> puzzleIds) {
+            return LoadTestRequest.get("/visibilities?teamId=" + pick(random, teamIds));
+        }
+    },
+    TEAM("GET /teams/{id}", 15) {
+        @Override
+        LoadTestRequest createRequest(Random random, List<String> teamIds, List<String> puzzleIds) {
+            return LoadTestRequest.get("/teams/" + pick(random, teamIds));
+        }
+    },
+    SUBMIT("POST /submissions", 15) {
+        @Override
+        LoadTestRequest createRequest(Random random, List<String> teamIds, List<String> puzzleIds) {
+            return LoadTestRequest.post("/submissions", String.format(
+                    "{\"teamId\":\"%s\",\"puzzleId\":\"%s\",\"submission\":\"GUESS%d\"}",
+                    pick(random, teamIds), pick(random, puzzleIds), random.nextInt(1000000)));
+        }
+    },
+    SUBMISSIONS("GET /submissions", 5) {
+        @Override
+        LoadTestRequest createRequest(Random random, List<String> teamIds, List<String> puzzleIds) {
+            return LoadTestRequest.get("/submissions");
+        }
+    },
+    EVENTS("POST /events", 5) {
+        @Override
+        LoadTestRequest createRequest(Random random, List<String> teamIds, List<String> puzzleIds) {
+            return LoadTestRequest.post("/events", "{\"eventType\":\"PeriodicTimer\"}");
+        }
+    };
+
+    private final String routeName;
+    private final int defaultWeight;
+
+    LoadTestRoute(String routeName, int defaultWeight) {
+        this.routeName = routeName;
+        this.defaultWeight = defaultWeight;
+    }
+
+    public String getRouteName() {
+        return routeName;
+    }
+
+    public int getDefaultWeight() {
+        return defaultWeight;
+    }
+
+    /**
+     * @param puzzleIds The puzzles teams can submit answers to
+     */
+    abstract LoadTestRequest createRequest(Random random, List<String> teamIds, List<String> puzzleIds);
+
+    private static String pick(Random random, List<String> ids) {
+        return ids.get(random.nextInt(ids.size()));
+    }
+}
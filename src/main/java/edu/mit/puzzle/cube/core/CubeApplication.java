@@ -1,67 +1,120 @@
 package edu.mit.puzzle.cube.core;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.AbstractScheduledService;
 import com.google.common.util.concurrent.Service;
 
-import edu.mit.puzzle.cube.core.db.ConnectionFactory;
+import edu.mit.puzzle.cube.core.db.DatabaseHelper;
+import edu.mit.puzzle.cube.core.environments.DevelopmentConfiguration;
 import edu.mit.puzzle.cube.core.environments.DevelopmentEnvironment;
 import edu.mit.puzzle.cube.core.environments.ServiceEnvironment;
-import edu.mit.puzzle.cube.core.events.CompositeEventProcessor;
-import edu.mit.puzzle.cube.core.events.PeriodicTimerEvent;
-import edu.mit.puzzle.cube.core.model.HuntStatusStore;
-import edu.mit.puzzle.cube.core.model.SubmissionStore;
+import edu.mit.puzzle.cube.core.metrics.JvmMetrics;
+import edu.mit.puzzle.cube.core.metrics.MetricsRegistry;
+import edu.mit.puzzle.cube.core.server.AdmissionController;
+import edu.mit.puzzle.cube.core.server.CubeServer;
+import edu.mit.puzzle.cube.core.server.HealthChecker;
+import edu.mit.puzzle.cube.core.server.ServerConfiguration;
+import edu.mit.puzzle.cube.core.server.VirtualThreads;
 import edu.mit.puzzle.cube.core.serverresources.AbstractCubeResource;
-import edu.mit.puzzle.cube.core.serverresources.EventsResource;
-import edu.mit.puzzle.cube.core.serverresources.SubmissionResource;
-import edu.mit.puzzle.cube.core.serverresources.SubmissionsResource;
-import edu.mit.puzzle.cube.core.serverresources.TeamResource;
-import edu.mit.puzzle.cube.core.serverresources.VisibilitiesResource;
-import edu.mit.puzzle.cube.core.serverresources.VisibilityResource;
+import edu.mit.puzzle.cube.core.serverresources.HealthResource;
+import edu.mit.puzzle.cube.core.serverresources.HuntResource;
+import edu.mit.puzzle.cube.core.serverresources.HuntSnapshotResource;
+import edu.mit.puzzle.cube.core.serverresources.HuntsResource;
+import edu.mit.puzzle.cube.core.serverresources.MetricsResource;
 import edu.mit.puzzle.cube.huntimpl.linearexample.LinearExampleHuntDefinition;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.restlet.Application;
 import org.restlet.Component;
 import org.restlet.Restlet;
-import org.restlet.data.Protocol;
 import org.restlet.routing.Router;
+import org.restlet.routing.Template;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 public class CubeApplication extends Application {
 
-    private final SubmissionStore submissionStore;
-    private final HuntStatusStore huntStatusStore;
-    private final CompositeEventProcessor eventProcessor;
+    private static Logger LOGGER = LogManager.getLogger(CubeApplication.class);
+
+    public static final String DEFAULT_HUNT_ID = "default";
+
+    //A scheduled event this far past its fire time means events aren't being processed.
+    private static final Duration MAX_SCHEDULED_EVENT_DELAY = Duration.ofSeconds(30);
+    private static final double MAX_HEAP_USED_RATIO = 0.9;
+    //Caches this many change log poll intervals behind the database are too stale to serve.
+    private static final int MAX_CHANGE_LOG_LAG_INTERVALS = 10;
+
+    private final ServerConfiguration serverConfiguration;
+    private final MetricsRegistry metricsRegistry;
+    private final HuntRegistry huntRegistry;
+    private final Optional<ExecutorService> huntTaskExecutor;
 
     private final Service timingEventService;
+    private final Service scheduledEventService;
+    private final Optional<Service> changeLogService;
+
+    private final HealthChecker livenessChecker;
+    private final HealthChecker readinessChecker;
 
     public CubeApplication() throws SQLException {
-        HuntDefinition huntDefinition = new LinearExampleHuntDefinition();
-        ServiceEnvironment serviceEnvironment = new DevelopmentEnvironment(huntDefinition);
-
-        ConnectionFactory connectionFactory = serviceEnvironment.getConnectionFactory();
-
-        eventProcessor = new CompositeEventProcessor();
-        submissionStore = new SubmissionStore(
-                connectionFactory,
-                eventProcessor
-        );
-        huntStatusStore = new HuntStatusStore(
-                connectionFactory,
-                huntDefinition.getVisibilityStatusSet(),
-                eventProcessor
-        );
-
-        huntDefinition.addToEventProcessor(
-                eventProcessor,
-                huntStatusStore
-        );
+        this(ServerConfiguration.builder().build());
+    }
+
+    public CubeApplication(ServerConfiguration serverConfiguration) throws SQLException {
+        //Each hunt gets its own named in-memory database
+        this(
+                serverConfiguration,
+                new LinearExampleHuntDefinition(),
+                (huntId, huntDefinition) -> new DevelopmentEnvironment(huntDefinition, "hunt-" + huntId));
+    }
+
+    /**
+     * @param defaultHuntDefinition The hunt loaded as the default hunt
+     * @param serviceEnvironmentFactory Creates the environment (and so the database) for a hunt,
+     *                                  given its id and definition
+     */
+    public CubeApplication(
+            ServerConfiguration serverConfiguration,
+            HuntDefinition defaultHuntDefinition,
+            BiFunction<String, HuntDefinition, ServiceEnvironment> serviceEnvironmentFactory
+    ) throws SQLException {
+        this.serverConfiguration = serverConfiguration;
+        huntTaskExecutor = serverConfiguration.getVirtualThreads()
+                ? VirtualThreads.newVirtualThreadPerTaskExecutor()
+                : Optional.empty();
+        if (serverConfiguration.getVirtualThreads() && !huntTaskExecutor.isPresent()) {
+            LOGGER.warn("Virtual threads are not available in this JDK; hunt timers will run on platform threads");
+        }
+
+        metricsRegistry = new MetricsRegistry();
+        JvmMetrics.register(metricsRegistry);
+
+        huntRegistry = new HuntRegistry(
+                serviceEnvironmentFactory,
+                metricsRegistry,
+                new Semaphore(serverConfiguration.getMaxEventStreams()));
+        huntRegistry.load(DEFAULT_HUNT_ID, defaultHuntDefinition);
 
         timingEventService = new AbstractScheduledService() {
             @Override
             protected void runOneIteration() throws Exception {
-                eventProcessor.process(PeriodicTimerEvent.builder().build());
+                forEachHunt("Timer tick", HuntInstance::runTimerTick);
             }
 
             @Override
@@ -70,38 +123,210 @@ public class CubeApplication extends Application {
             }
         };
         timingEventService.startAsync();
+
+        scheduledEventService = new AbstractScheduledService() {
+            @Override
+            protected void runOneIteration() throws Exception {
+                forEachHunt("Processing scheduled events", HuntInstance::processDueEvents);
+            }
+
+            @Override
+            protected Scheduler scheduler() {
+                return Scheduler.newFixedDelaySchedule(0, 1, TimeUnit.SECONDS);
+            }
+        };
+        scheduledEventService.startAsync();
+
+        //Only needed when other processes share the hunts' databases, but cheap when they don't.
+        if (serverConfiguration.getChangePollIntervalMillis() > 0) {
+            Service service = new AbstractScheduledService() {
+                @Override
+                protected void runOneIteration() throws Exception {
+                    forEachHunt("Polling the change log", HuntInstance::pollChangeLog);
+                }
+
+                @Override
+                protected Scheduler scheduler() {
+                    return Scheduler.newFixedDelaySchedule(
+                            0, serverConfiguration.getChangePollIntervalMillis(), TimeUnit.MILLISECONDS);
+                }
+            };
+            service.startAsync();
+            changeLogService = Optional.of(service);
+        } else {
+            changeLogService = Optional.empty();
+        }
+
+        livenessChecker = new HealthChecker();
+        livenessChecker.addCheck("timers", this::checkTimersNotFailed);
+        readinessChecker = new HealthChecker();
+        readinessChecker.addCheck("database", this::checkDatabases);
+        readinessChecker.addCheck("scheduledEvents", this::checkScheduledEvents);
+        readinessChecker.addCheck("timers", this::checkTimersRunning);
+        if (changeLogService.isPresent()) {
+            readinessChecker.addCheck("changeLog", this::checkChangeLogLag);
+        }
+        readinessChecker.addCheck("heap", CubeApplication::checkHeap);
+    }
+
+    private List<Service> getTimerServices() {
+        ImmutableList.Builder<Service> services = ImmutableList.<Service>builder()
+                .add(timingEventService, scheduledEventService);
+        changeLogService.ifPresent(services::add);
+        return services.build();
+    }
+
+    //A timer that has stopped for good won't recover without a restart.
+    private Optional<String> checkTimersNotFailed() {
+        for (Service service : getTimerServices()) {
+            if (service.state() == Service.State.FAILED || service.state() == Service.State.TERMINATED) {
+                return Optional.of("A timer service is " + service.state());
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Optional<String> checkTimersRunning() {
+        for (Service service : getTimerServices()) {
+            if (!service.isRunning()) {
+                return Optional.of("A timer service is " + service.state());
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Optional<String> checkDatabases() {
+        //Read a real table, since SELECT 1 succeeds without touching the database file or its locks.
+        for (HuntInstance huntInstance : huntRegistry.getHunts()) {
+            DatabaseHelper.query(
+                    huntInstance.getConnectionFactory(),
+                    "SELECT MAX(changeId) AS lastChangeId FROM change_log",
+                    ImmutableList.of());
+        }
+        return Optional.empty();
+    }
+
+    private Optional<String> checkScheduledEvents() {
+        Instant overdue = Instant.now().minus(MAX_SCHEDULED_EVENT_DELAY);
+        for (HuntInstance huntInstance : huntRegistry.getHunts()) {
+            Optional<Instant> nextFireTime = huntInstance.getEventScheduler().getNextFireTime();
+            if (nextFireTime.isPresent() && nextFireTime.get().isBefore(overdue)) {
+                return Optional.of("Hunt " + huntInstance.getHuntId() + " has a scheduled event due at "
+                        + nextFireTime.get() + " that hasn't been processed");
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Optional<String> checkChangeLogLag() {
+        double maxLagSeconds = MAX_CHANGE_LOG_LAG_INTERVALS * serverConfiguration.getChangePollIntervalMillis() / 1000.0;
+        for (HuntInstance huntInstance : huntRegistry.getHunts()) {
+            double lagSeconds = huntInstance.getChangeLogPoller().getLagSeconds();
+            if (lagSeconds > maxLagSeconds) {
+                return Optional.of(String.format("Hunt %s's caches are %.1fs behind its change log",
+                        huntInstance.getHuntId(), lagSeconds));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<String> checkHeap() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        if (heap.getMax() > 0 && heap.getUsed() > heap.getMax() * MAX_HEAP_USED_RATIO) {
+            return Optional.of("Heap is " + (100 * heap.getUsed() / heap.getMax()) + "% full");
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Runs a task for every loaded hunt, so that one failing hunt doesn't stop the others. With
+     * virtual threads, each hunt gets its own thread, so that a slow hunt doesn't hold up the
+     * rest; either way this returns once every hunt is done.
+     */
+    private void forEachHunt(String description, Consumer<HuntInstance> task) throws InterruptedException {
+        if (!huntTaskExecutor.isPresent()) {
+            for (HuntInstance huntInstance : huntRegistry.getHunts()) {
+                runForHunt(description, task, huntInstance);
+            }
+            return;
+        }
+        List<Future<?>> futures = StreamSupport.stream(huntRegistry.getHunts().spliterator(), false)
+                .map(huntInstance -> huntTaskExecutor.get().submit(() -> runForHunt(description, task, huntInstance)))
+                .collect(Collectors.toList());
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                LOGGER.error(description + " failed", e.getCause());
+            }
+        }
+    }
+
+    private static void runForHunt(String description, Consumer<HuntInstance> task, HuntInstance huntInstance) {
+        try {
+            task.accept(huntInstance);
+        } catch (RuntimeException e) {
+            LOGGER.error(description + " failed for hunt " + huntInstance.getHuntId(), e);
+        }
+    }
+
+    public HuntRegistry getHuntRegistry() {
+        return huntRegistry;
+    }
+
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
     }
 
     @Override
     public synchronized Restlet createInboundRoot() {
-        // Create a router Restlet that routes each call to a new instance of HelloWorldResource.
         Router router = new Router(getContext());
 
-        //Put dependencies into the router context so that the Resource handlers can access them
-        router.getContext().getAttributes().put(AbstractCubeResource.SUBMISSION_STORE_KEY, submissionStore);
-        router.getContext().getAttributes().put(AbstractCubeResource.HUNT_STATUS_STORE_KEY, huntStatusStore);
-        router.getContext().getAttributes().put(AbstractCubeResource.EVENT_PROCESSOR_KEY, eventProcessor);
+        //Put dependencies into the router context so that the Resource handlers can access them.
+        //Each hunt's own stores live in a child context of this one; see HuntInstance.
+        router.getContext().getAttributes().put(AbstractCubeResource.HUNT_REGISTRY_KEY, huntRegistry);
+        router.getContext().getAttributes().put(AbstractCubeResource.METRICS_REGISTRY_KEY, metricsRegistry);
+        router.getContext().getAttributes().put(AbstractCubeResource.LIVENESS_CHECKER_KEY, livenessChecker);
+        router.getContext().getAttributes().put(AbstractCubeResource.READINESS_CHECKER_KEY, readinessChecker);
 
         //Define routes
-        router.attach("/submissions", SubmissionsResource.class);
-        router.attach("/submissions/{id}", SubmissionResource.class);
-        router.attach("/visibilities", VisibilitiesResource.class);
-        router.attach("/visibilities/{teamId}/{puzzleId}", VisibilityResource.class);
-        router.attach("/events", EventsResource.class);
-        router.attach("/teams/{id}", TeamResource.class);
+        router.attach("/metrics", MetricsResource.class);
+        router.attach("/health/{probe}", HealthResource.class);
+        router.attach("/hunts", HuntsResource.class);
+        router.attach("/hunts/{huntId}", HuntResource.class);
+        router.attach("/hunts/{huntId}/snapshot", HuntSnapshotResource.class);
+        router.attach("/hunts/{huntId}", new HuntDispatcher(getContext(), huntRegistry, null))
+                .setMatchingMode(Template.MODE_STARTS_WITH);
+        //Unprefixed routes address the default hunt
+        router.attach("", new HuntDispatcher(getContext(), huntRegistry, DEFAULT_HUNT_ID))
+                .setMatchingMode(Template.MODE_STARTS_WITH);
 
-        return router;
+        if (!serverConfiguration.getAdmissionControl()) {
+            return router;
+        }
+        AdmissionController admissionController = new AdmissionController(
+                getContext(),
+                serverConfiguration.getMaxConcurrentRequests(),
+                serverConfiguration.getRetryAfterSeconds());
+        admissionController.registerMetrics(metricsRegistry);
+        admissionController.setNext(router);
+        return admissionController;
     }
 
     public static void main (String[] args) throws Exception {
-        // Create a new Component.
-        Component component = new Component();
+        // Load the server settings from cube.properties (or the file named by -Dcube.config).
+        ServerConfiguration serverConfiguration = ServerConfiguration.load();
 
-        // Add a new HTTP server listening on port 8182.
-        component.getServers().add(Protocol.HTTP, 8182);
+        // The development hunts' teams, puzzles and seeded state come from the same file.
+        DevelopmentConfiguration developmentConfiguration = DevelopmentConfiguration.load();
+        CubeApplication application = new CubeApplication(
+                serverConfiguration,
+                new LinearExampleHuntDefinition(),
+                (huntId, huntDefinition) -> new DevelopmentEnvironment(
+                        huntDefinition, "hunt-" + huntId, developmentConfiguration));
 
-        // Attach this application.
-        component.getDefaultHost().attach("", new CubeApplication());
+        // Create a new Component serving this application over HTTP.
+        Component component = CubeServer.createComponent(serverConfiguration, application);
 
         // Start the component.
         component.start();
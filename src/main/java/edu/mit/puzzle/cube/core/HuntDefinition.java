@@ -1,6 +1,7 @@
 package edu.mit.puzzle.cube.core;
 
 import edu.mit.puzzle.cube.core.events.CompositeEventProcessor;
+import edu.mit.puzzle.cube.core.leaderboard.Leaderboard;
 import edu.mit.puzzle.cube.core.model.HuntStatusStore;
 import edu.mit.puzzle.cube.core.model.VisibilityStatusSet;
 
@@ -15,4 +16,12 @@ public interface HuntDefinition {
     void addToEventProcessor(
             CompositeEventProcessor eventProcessor,
             HuntStatusStore huntStatusStore);
+
+    /**
+     * Gets the team property that the leaderboard ranks teams by. It must compare fairly
+     * between teams, whenever each team's value was stored.
+     */
+    default String getLeaderboardRankPropertyKey() {
+        return Leaderboard.DEFAULT_SCORE_PROPERTY_KEY;
+    }
 }
@@ -0,0 +1,43 @@
+package edu.mit.puzzle.cube.core;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Status;
+
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Hands each request to the router of the hunt it addresses: the hunt named by the "huntId"
+ * request attribute if there is one, or otherwise a default hunt, so that the unprefixed routes
+ * keep working for single-hunt deployments.
+ */
+public class HuntDispatcher extends Restlet {
+
+    private final HuntRegistry huntRegistry;
+    private final String defaultHuntId;
+
+    public HuntDispatcher(Context context, HuntRegistry huntRegistry, String defaultHuntId) {
+        super(context);
+        this.huntRegistry = checkNotNull(huntRegistry);
+        this.defaultHuntId = defaultHuntId;
+    }
+
+    @Override
+    public void handle(Request request, Response response) {
+        super.handle(request, response);
+        String huntId = (String) request.getAttributes().get("huntId");
+        if (huntId == null) {
+            huntId = defaultHuntId;
+        }
+        Optional<HuntInstance> huntInstance = huntId == null ? Optional.empty() : huntRegistry.get(huntId);
+        if (!huntInstance.isPresent()) {
+            response.setStatus(Status.CLIENT_ERROR_NOT_FOUND, "Hunt is not loaded");
+            return;
+        }
+        huntInstance.get().getRouter(getContext()).handle(request, response);
+    }
+}
@@ -0,0 +1,355 @@
+package edu.mit.puzzle.cube.core;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import edu.mit.puzzle.cube.core.caching.ChangeLogPoller;
+import edu.mit.puzzle.cube.core.caching.ResponseCache;
+import edu.mit.puzzle.cube.core.db.ConnectionFactory;
+import edu.mit.puzzle.cube.core.db.InMemoryConnectionFactory;
+import edu.mit.puzzle.cube.core.environments.ServiceEnvironment;
+import edu.mit.puzzle.cube.core.events.CompositeEventProcessor;
+import edu.mit.puzzle.cube.core.events.EventBroadcaster;
+import edu.mit.puzzle.cube.core.events.EventMetrics;
+import edu.mit.puzzle.cube.core.events.EventScheduler;
+import edu.mit.puzzle.cube.core.events.PeriodicTimerEvent;
+import edu.mit.puzzle.cube.core.events.SetVisibilityEvent;
+import edu.mit.puzzle.cube.core.leaderboard.Leaderboard;
+import edu.mit.puzzle.cube.core.metrics.MetricsRegistry;
+import edu.mit.puzzle.cube.core.model.HuntStatusStore;
+import edu.mit.puzzle.cube.core.model.IdempotencyStore;
+import edu.mit.puzzle.cube.core.model.SubmissionStore;
+import edu.mit.puzzle.cube.core.serverresources.AbstractCubeResource;
+import edu.mit.puzzle.cube.core.serverresources.ChangesResource;
+import edu.mit.puzzle.cube.core.serverresources.EventMetricsResource;
+import edu.mit.puzzle.cube.core.serverresources.EventStreamResource;
+import edu.mit.puzzle.cube.core.serverresources.EventsResource;
+import edu.mit.puzzle.cube.core.serverresources.LeaderboardEntryResource;
+import edu.mit.puzzle.cube.core.serverresources.LeaderboardResource;
+import edu.mit.puzzle.cube.core.serverresources.ScheduledEventResource;
+import edu.mit.puzzle.cube.core.serverresources.ScheduledEventsResource;
+import edu.mit.puzzle.cube.core.serverresources.SubmissionResource;
+import edu.mit.puzzle.cube.core.serverresources.SubmissionsBatchResource;
+import edu.mit.puzzle.cube.core.serverresources.SubmissionsResource;
+import edu.mit.puzzle.cube.core.serverresources.TeamResource;
+import edu.mit.puzzle.cube.core.serverresources.TeamVisibilitiesResource;
+import edu.mit.puzzle.cube.core.serverresources.VisibilitiesBatchResource;
+import edu.mit.puzzle.cube.core.serverresources.VisibilitiesResource;
+import edu.mit.puzzle.cube.core.serverresources.VisibilityResource;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.restlet.Context;
+import org.restlet.routing.Router;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A HuntInstance is one running hunt: a HuntDefinition wired up to its own database, stores,
+ * event processor and HTTP routes. Several instances can be hosted by one CubeApplication;
+ * they share its HTTP server threads and timer threads, which call runTimerTick() and
+ * processDueEvents() on every loaded instance.
+ */
+public class HuntInstance {
+
+    private static Logger LOGGER = LogManager.getLogger(HuntInstance.class);
+
+    private final String huntId;
+    private final HuntDefinition huntDefinition;
+    private final ConnectionFactory connectionFactory;
+    private final CompositeEventProcessor eventProcessor;
+    private final SubmissionStore submissionStore;
+    private final HuntStatusStore huntStatusStore;
+    private final EventBroadcaster eventBroadcaster;
+    private final EventScheduler eventScheduler;
+    private final IdempotencyStore idempotencyStore;
+    private final Leaderboard leaderboard;
+    private final ChangeLogPoller changeLogPoller;
+    private final ResponseCache responseCache;
+    private final MetricsRegistry metricsRegistry;
+    private final List<MetricsRegistry.Registration> metricsRegistrations = Lists.newArrayList();
+
+    private Router router;
+
+    public HuntInstance(
+            String huntId,
+            HuntDefinition huntDefinition,
+            ServiceEnvironment serviceEnvironment
+    ) {
+        this(huntId, huntDefinition, serviceEnvironment, new MetricsRegistry());
+    }
+
+    /**
+     * @param metricsRegistry Receives this hunt's metrics, labeled with its hunt id
+     */
+    public HuntInstance(
+            String huntId,
+            HuntDefinition huntDefinition,
+            ServiceEnvironment serviceEnvironment,
+            MetricsRegistry metricsRegistry
+    ) {
+        this(huntId, huntDefinition, serviceEnvironment, metricsRegistry, new Semaphore(Integer.MAX_VALUE));
+    }
+
+    /**
+     * @param metricsRegistry Receives this hunt's metrics, labeled with its hunt id
+     * @param eventStreamPermits One is held by each open event stream, and may be shared with
+     *                           other hunts
+     */
+    public HuntInstance(
+            String huntId,
+            HuntDefinition huntDefinition,
+            ServiceEnvironment serviceEnvironment,
+            MetricsRegistry metricsRegistry,
+            Semaphore eventStreamPermits
+    ) {
+        this.huntId = checkNotNull(huntId);
+        this.metricsRegistry = checkNotNull(metricsRegistry);
+        this.huntDefinition = checkNotNull(huntDefinition);
+        this.connectionFactory = serviceEnvironment.getConnectionFactory();
+
+        eventProcessor = new CompositeEventProcessor();
+        submissionStore = new SubmissionStore(
+                connectionFactory,
+                eventProcessor
+        );
+        huntStatusStore = new HuntStatusStore(
+                connectionFactory,
+                huntDefinition.getVisibilityStatusSet(),
+                eventProcessor
+        );
+
+        huntDefinition.addToEventProcessor(
+                eventProcessor,
+                huntStatusStore
+        );
+
+        eventBroadcaster = new EventBroadcaster(
+                EventBroadcaster.DEFAULT_REPLAY_BUFFER_SIZE,
+                EventBroadcaster.DEFAULT_SUBSCRIPTION_QUEUE_SIZE,
+                eventStreamPermits);
+        eventBroadcaster.addToEventProcessor(eventProcessor);
+
+        eventProcessor.addEventProcessor(SetVisibilityEvent.class, "setVisibility", event ->
+                huntStatusStore.setVisibility(event.getTeamId(), event.getPuzzleId(), event.getStatus(), false));
+        eventScheduler = new EventScheduler(connectionFactory, eventProcessor);
+        idempotencyStore = new IdempotencyStore(connectionFactory);
+        //Read before the leaderboard loads, so changes made while it loads are polled again
+        //rather than missed.
+        long lastChangeId = ChangeLogPoller.getLastChangeId(connectionFactory);
+        leaderboard = new Leaderboard(
+                huntStatusStore,
+                huntStatusStore.getClock(),
+                Leaderboard.DEFAULT_SCORE_PROPERTY_KEY,
+                huntDefinition.getLeaderboardRankPropertyKey(),
+                Leaderboard.DEFAULT_SOLVED_STATUS);
+        leaderboard.addToEventProcessor(eventProcessor);
+        changeLogPoller = new ChangeLogPoller(
+                connectionFactory, huntStatusStore, submissionStore, leaderboard, eventProcessor, lastChangeId);
+        responseCache = new ResponseCache();
+        registerMetrics();
+    }
+
+    private void registerMetrics() {
+        Map<String,String> huntLabels = ImmutableMap.of("hunt", huntId);
+        metricsRegistrations.add(metricsRegistry.register(
+                "cube_submissions_total",
+                "Submissions made",
+                MetricsRegistry.Type.COUNTER,
+                writer -> writer.sample(huntLabels, submissionStore.getSubmissionsAddedCount())));
+        metricsRegistrations.add(metricsRegistry.register(
+                "cube_submission_status_transitions_total",
+                "Submission status changes, by the status changed to",
+                MetricsRegistry.Type.COUNTER,
+                writer -> submissionStore.getStatusTransitionCounts().forEach((status, count) ->
+                        writer.sample(ImmutableMap.of("hunt", huntId, "status", status.name()), count))));
+        metricsRegistrations.add(metricsRegistry.register(
+                "cube_submissions",
+                "Submissions currently in each status",
+                MetricsRegistry.Type.GAUGE,
+                writer -> submissionStore.getSubmissionCountsByStatus().forEach((status, count) ->
+                        writer.sample(ImmutableMap.of("hunt", huntId, "status", status.name()), count))));
+        metricsRegistrations.add(metricsRegistry.register(
+                "cube_visibility_reads_total",
+                "Visibility reads",
+                MetricsRegistry.Type.COUNTER,
+                writer -> writer.sample(huntLabels, huntStatusStore.getVisibilityReadCount())));
+        metricsRegistrations.add(metricsRegistry.register(
+                "cube_set_visibility_attempts_total",
+                "Attempts to set a visibility, whether or not they changed it",
+                MetricsRegistry.Type.COUNTER,
+                writer -> writer.sample(huntLabels, huntStatusStore.getSetVisibilityAttemptCount())));
+        metricsRegistrations.add(metricsRegistry.register(
+                "cube_visibility_transitions_total",
+                "Visibility changes",
+                MetricsRegistry.Type.COUNTER,
+                writer -> writer.sample(huntLabels, huntStatusStore.getVisibilityTransitionCount())));
+        metricsRegistrations.add(metricsRegistry.register(
+                "cube_change_log_lag_seconds",
+                "How far behind the database this process's caches may be, as of the last change log poll",
+                MetricsRegistry.Type.GAUGE,
+                writer -> writer.sample(huntLabels, changeLogPoller.getLagSeconds())));
+        metricsRegistrations.add(metricsRegistry.register(
+                "cube_change_log_changes_applied_total",
+                "Changes applied to this process's caches by change log polls",
+                MetricsRegistry.Type.COUNTER,
+                writer -> writer.sample(huntLabels, changeLogPoller.getChangesAppliedCount())));
+        metricsRegistrations.add(metricsRegistry.register(
+                "cube_events_total",
+                "Events processed, by event type",
+                MetricsRegistry.Type.COUNTER,
+                writer -> eventProcessor.getEventTypeMetrics().forEach(metrics ->
+                        writer.sample(getEventLabels(metrics), metrics.getInvocations()))));
+        metricsRegistrations.add(metricsRegistry.register(
+                "cube_event_exceptions_total",
+                "Events whose processing threw, by event type",
+                MetricsRegistry.Type.COUNTER,
+                writer -> eventProcessor.getEventTypeMetrics().forEach(metrics ->
+                        writer.sample(getEventLabels(metrics), metrics.getExceptions()))));
+        metricsRegistrations.add(metricsRegistry.register(
+                "cube_event_processing_seconds",
+                "Time to process an event, including the events it cascaded into, by event type",
+                MetricsRegistry.Type.HISTOGRAM,
+                writer -> eventProcessor.getEventTypeMetrics().forEach(metrics ->
+                        writer.histogram(getEventLabels(metrics), metrics.getLatency()))));
+        metricsRegistrations.add(metricsRegistry.register(
+                "cube_event_cascade_depth",
+                "Length of the longest chain of events that a top-level event cascaded into",
+                MetricsRegistry.Type.HISTOGRAM,
+                writer -> {
+                    long[] counts = eventProcessor.getCascadeDepthCounts();
+                    double[] bounds = new double[counts.length - 1];
+                    for (int i = 0; i < bounds.length; ++i) {
+                        bounds[i] = i + 1;
+                    }
+                    writer.histogram(huntLabels, bounds, counts, eventProcessor.getCascadeDepthTotal());
+                }));
+    }
+
+    private Map<String,String> getEventLabels(EventMetrics metrics) {
+        return ImmutableMap.of("hunt", huntId, "event_type", metrics.getEventType());
+    }
+
+    public String getHuntId() {
+        return huntId;
+    }
+
+    public HuntDefinition getHuntDefinition() {
+        return huntDefinition;
+    }
+
+    public CompositeEventProcessor getEventProcessor() {
+        return eventProcessor;
+    }
+
+    public SubmissionStore getSubmissionStore() {
+        return submissionStore;
+    }
+
+    public HuntStatusStore getHuntStatusStore() {
+        return huntStatusStore;
+    }
+
+    public EventScheduler getEventScheduler() {
+        return eventScheduler;
+    }
+
+    public ConnectionFactory getConnectionFactory() {
+        return connectionFactory;
+    }
+
+    public ChangeLogPoller getChangeLogPoller() {
+        return changeLogPoller;
+    }
+
+    /**
+     * Gets the router for this hunt's resources, creating it the first time in a child of the
+     * given context, so that its resources see this hunt's stores.
+     */
+    public synchronized Router getRouter(Context parentContext) {
+        if (router == null) {
+            Context huntContext = parentContext.createChildContext();
+            putDependencies(huntContext);
+            router = new Router(huntContext);
+            attachRoutes(router);
+        }
+        return router;
+    }
+
+    /**
+     * Puts this hunt's dependencies into a context so that the Resource handlers can access them.
+     */
+    public void putDependencies(Context context) {
+        context.getAttributes().put(AbstractCubeResource.SUBMISSION_STORE_KEY, submissionStore);
+        context.getAttributes().put(AbstractCubeResource.HUNT_STATUS_STORE_KEY, huntStatusStore);
+        context.getAttributes().put(AbstractCubeResource.EVENT_PROCESSOR_KEY, eventProcessor);
+        context.getAttributes().put(AbstractCubeResource.EVENT_BROADCASTER_KEY, eventBroadcaster);
+        context.getAttributes().put(AbstractCubeResource.EVENT_SCHEDULER_KEY, eventScheduler);
+        context.getAttributes().put(AbstractCubeResource.IDEMPOTENCY_STORE_KEY, idempotencyStore);
+        context.getAttributes().put(AbstractCubeResource.LEADERBOARD_KEY, leaderboard);
+        context.getAttributes().put(AbstractCubeResource.RESPONSE_CACHE_KEY, responseCache);
+        context.getAttributes().put(AbstractCubeResource.METRICS_REGISTRY_KEY, metricsRegistry);
+    }
+
+    private static void attachRoutes(Router router) {
+        router.attach("/submissions", SubmissionsResource.class);
+        router.attach("/submissions/batch", SubmissionsBatchResource.class);
+        router.attach("/submissions/{id}", SubmissionResource.class);
+        router.attach("/visibilities", VisibilitiesResource.class);
+        router.attach("/visibilities/batch", VisibilitiesBatchResource.class);
+        router.attach("/visibilities/{teamId}/{puzzleId}", VisibilityResource.class);
+        router.attach("/events", EventsResource.class);
+        router.attach("/events/metrics", EventMetricsResource.class);
+        router.attach("/events/stream", EventStreamResource.class);
+        router.attach("/events/scheduled", ScheduledEventsResource.class);
+        router.attach("/events/scheduled/{id}", ScheduledEventResource.class);
+        router.attach("/teams/{id}", TeamResource.class);
+        router.attach("/teams/{id}/visibilities", TeamVisibilitiesResource.class);
+        router.attach("/changes", ChangesResource.class);
+        router.attach("/leaderboard", LeaderboardResource.class);
+        router.attach("/leaderboard/{teamId}", LeaderboardEntryResource.class);
+    }
+
+    public void runTimerTick() {
+        eventProcessor.process(PeriodicTimerEvent.builder().build());
+    }
+
+    public void processDueEvents() {
+        eventScheduler.processDueEvents();
+    }
+
+    /**
+     * Brings this hunt's caches up to date with changes other processes made to its database.
+     */
+    public void pollChangeLog() {
+        changeLogPoller.poll();
+    }
+
+    /**
+     * Stops serving this hunt: closes its event streams, removes its metrics and, for an
+     * in-memory database, releases the database.
+     */
+    public synchronized void close() {
+        if (router != null) {
+            try {
+                router.stop();
+            } catch (Exception e) {
+                LOGGER.warn("Failed to stop router for hunt " + huntId, e);
+            }
+        }
+        eventBroadcaster.closeAllSubscriptions();
+        for (MetricsRegistry.Registration registration : metricsRegistrations) {
+            registration.close();
+        }
+        if (connectionFactory instanceof InMemoryConnectionFactory) {
+            try {
+                ((InMemoryConnectionFactory) connectionFactory).close();
+            } catch (SQLException e) {
+                LOGGER.warn("Failed to close database for hunt " + huntId, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package edu.mit.puzzle.cube.core;
+
+import com.google.common.collect.ImmutableSortedSet;
+import edu.mit.puzzle.cube.core.environments.ServiceEnvironment;
+import edu.mit.puzzle.cube.core.metrics.MetricsRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiFunction;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The set of hunts currently hosted by a CubeApplication, keyed by hunt id. Hunts can be loaded
+ * and unloaded while the application is serving requests.
+ */
+public class HuntRegistry {
+
+    private static Logger LOGGER = LogManager.getLogger(HuntRegistry.class);
+
+    //Hunt ids appear in URLs and database names, so keep them to characters safe in both.
+    private static final Pattern HUNT_ID_PATTERN = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final BiFunction<String, HuntDefinition, ServiceEnvironment> serviceEnvironmentFactory;
+    private final MetricsRegistry metricsRegistry;
+    private final Semaphore eventStreamPermits;
+    private final ConcurrentMap<String, HuntInstance> hunts = new ConcurrentHashMap<>();
+
+    /**
+     * @param serviceEnvironmentFactory Creates the environment (and so the database) for a hunt,
+     *                                  given its id and definition
+     */
+    public HuntRegistry(BiFunction<String, HuntDefinition, ServiceEnvironment> serviceEnvironmentFactory) {
+        this(serviceEnvironmentFactory, new MetricsRegistry());
+    }
+
+    /**
+     * @param serviceEnvironmentFactory Creates the environment (and so the database) for a hunt,
+     *                                  given its id and definition
+     * @param metricsRegistry Receives the metrics of every loaded hunt
+     */
+    public HuntRegistry(
+            BiFunction<String, HuntDefinition, ServiceEnvironment> serviceEnvironmentFactory,
+            MetricsRegistry metricsRegistry
+    ) {
+        this(serviceEnvironmentFactory, metricsRegistry, new Semaphore(Integer.MAX_VALUE));
+    }
+
+    /**
+     * @param serviceEnvironmentFactory Creates the environment (and so the database) for a hunt,
+     *                                  given its id and definition
+     * @param metricsRegistry Receives the metrics of every loaded hunt
+     * @param eventStreamPermits Shared by every loaded hunt, one for each open event stream
+     */
+    public HuntRegistry(
+            BiFunction<String, HuntDefinition, ServiceEnvironment> serviceEnvironmentFactory,
+            MetricsRegistry metricsRegistry,
+            Semaphore eventStreamPermits
+    ) {
+        this.serviceEnvironmentFactory = checkNotNull(serviceEnvironmentFactory);
+        this.metricsRegistry = checkNotNull(metricsRegistry);
+        this.eventStreamPermits = checkNotNull(eventStreamPermits);
+    }
+
+    public static boolean isValidHuntId(String huntId) {
+        return HUNT_ID_PATTERN.matcher(huntId).matches();
+    }
+
+    /**
+     * Creates and registers a new hunt.
+     *
+     * @throws IllegalArgumentException if the hunt id is invalid or a hunt with this id is
+     *                                  already loaded
+     */
+    public HuntInstance load(String huntId, HuntDefinition huntDefinition) {
+        Optional<HuntInstance> huntInstance = loadIfAbsent(huntId, huntDefinition);
+        checkArgument(huntInstance.isPresent(), "Hunt " + huntId + " is already loaded");
+        return huntInstance.get();
+    }
+
+    /**
+     * Creates and registers a new hunt, unless a hunt with this id is already loaded.
+     *
+     * @return the new hunt, or empty if a hunt with this id was already loaded
+     * @throws IllegalArgumentException if the hunt id is invalid
+     */
+    public Optional<HuntInstance> loadIfAbsent(String huntId, HuntDefinition huntDefinition) {
+        checkArgument(isValidHuntId(huntId), "Invalid hunt id: " + huntId);
+        synchronized (this) {
+            if (hunts.containsKey(huntId)) {
+                return Optional.empty();
+            }
+            HuntInstance huntInstance = new HuntInstance(
+                    huntId,
+                    huntDefinition,
+                    serviceEnvironmentFactory.apply(huntId, huntDefinition),
+                    metricsRegistry,
+                    eventStreamPermits
+            );
+            hunts.put(huntId, huntInstance);
+            LOGGER.info("Loaded hunt " + huntId + " (" + huntDefinition.getClass().getName() + ")");
+            return Optional.of(huntInstance);
+        }
+    }
+
+    /**
+     * Unregisters a hunt and releases its resources. Requests already dispatched to the hunt
+     * may still complete.
+     *
+     * @return false if no hunt with this id was loaded
+     */
+    public boolean unload(String huntId) {
+        HuntInstance huntInstance = hunts.remove(huntId);
+        if (huntInstance == null) {
+            return false;
+        }
+        huntInstance.close();
+        LOGGER.info("Unloaded hunt " + huntId);
+        return true;
+    }
+
+    public Optional<HuntInstance> get(String huntId) {
+        return Optional.ofNullable(hunts.get(huntId));
+    }
+
+    public Set<String> getHuntIds() {
+        return ImmutableSortedSet.copyOf(hunts.keySet());
+    }
+
+    public Iterable<HuntInstance> getHunts() {
+        return hunts.values();
+    }
+}
@@ -0,0 +1,182 @@
+package edu.mit.puzzle.cube.core.caching;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Table;
+
+import edu.mit.puzzle.cube.core.db.ConnectionFactory;
+import edu.mit.puzzle.cube.core.db.DatabaseHelper;
+import edu.mit.puzzle.cube.core.events.Event;
+import edu.mit.puzzle.cube.core.events.EventProcessor;
+import edu.mit.puzzle.cube.core.events.PolledChangeEvent;
+import edu.mit.puzzle.cube.core.leaderboard.Leaderboard;
+import edu.mit.puzzle.cube.core.model.Change;
+import edu.mit.puzzle.cube.core.model.HuntStatusStore;
+import edu.mit.puzzle.cube.core.model.SubmissionStore;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A ChangeLogPoller keeps this process's read models in step with changes that other processes
+ * make to a shared database. Each poll reads the change log from where the last one stopped, and
+ * applies every visibility, submission and team property change to the version counters (so
+ * cached responses and ETags go stale) and to the Leaderboard. Each change is then processed as
+ * a PolledChangeEvent, so that modules can refresh their own per-team state.
+ *
+ * Changes this process made itself have already been applied when they committed, and are
+ * applied again when polled. That is harmless: a version bump only costs a cache miss, the
+ * Leaderboard ignores solves it already has and re-reads team properties, and refreshed state
+ * is only reloaded.
+ *
+ * The change log must be committed in changeId order, as it is with SQLite, which serializes
+ * writers; otherwise a poll could pass over a change that commits late.
+ */
+public class ChangeLogPoller {
+
+    private static final int PAGE_SIZE = 1000;
+
+    private final ConnectionFactory connectionFactory;
+    private final HuntStatusStore huntStatusStore;
+    private final SubmissionStore submissionStore;
+    private final Leaderboard leaderboard;
+    private final EventProcessor<Event> eventProcessor;
+    private final Clock clock;
+
+    private long lastChangeId;
+    private volatile Instant caughtUpAt;
+    private final LongAdder changesApplied = new LongAdder();
+
+    /**
+     * @param afterChangeId The last change already reflected in the read models, usually from
+     *                      getLastChangeId before they were loaded
+     */
+    public ChangeLogPoller(
+            ConnectionFactory connectionFactory,
+            HuntStatusStore huntStatusStore,
+            SubmissionStore submissionStore,
+            Leaderboard leaderboard,
+            EventProcessor<Event> eventProcessor,
+            long afterChangeId
+    ) {
+        this.connectionFactory = checkNotNull(connectionFactory);
+        this.huntStatusStore = checkNotNull(huntStatusStore);
+        this.submissionStore = checkNotNull(submissionStore);
+        this.leaderboard = checkNotNull(leaderboard);
+        this.eventProcessor = checkNotNull(eventProcessor);
+        this.clock = huntStatusStore.getClock();
+        this.lastChangeId = afterChangeId;
+        this.caughtUpAt = clock.instant();
+    }
+
+    /**
+     * @return The id of the newest change in the change log, or 0 if it is empty
+     */
+    public static long getLastChangeId(ConnectionFactory connectionFactory) {
+        Table<Integer, String, Object> resultTable = DatabaseHelper.query(
+                connectionFactory,
+                "SELECT MAX(changeId) AS lastChangeId FROM change_log",
+                ImmutableList.of());
+        Object lastChangeId = resultTable.get(0, "lastChangeId");
+        return lastChangeId == null ? 0 : ((Number) lastChangeId).longValue();
+    }
+
+    /**
+     * Applies every change committed since the last poll.
+     *
+     * @return The number of changes applied
+     */
+    public synchronized int poll() {
+        //Everything committed before this poll started will have been applied once it is done.
+        Instant pollStart = clock.instant();
+        int applied = 0;
+        while (true) {
+            Table<Integer, String, Object> resultTable = DatabaseHelper.query(
+                    connectionFactory,
+                    "SELECT changeId, changeType, teamId, puzzleId, status, submissionId, propertyKey, timestamp " +
+                            "FROM change_log " +
+                            "WHERE changeId > ? ORDER BY changeId ASC LIMIT ?",
+                    Lists.newArrayList(lastChangeId, PAGE_SIZE));
+            for (Map<String, Object> rowMap : resultTable.rowMap().values()) {
+                Change change = toChange(rowMap);
+                apply(change);
+                lastChangeId = change.getChangeId();
+            }
+            applied += resultTable.rowKeySet().size();
+            if (resultTable.rowKeySet().size() < PAGE_SIZE) {
+                break;
+            }
+        }
+        changesApplied.add(applied);
+        caughtUpAt = pollStart;
+        return applied;
+    }
+
+    private Change toChange(Map<String, Object> rowMap) {
+        Object timestamp = rowMap.get("timestamp");
+        return Change.builder()
+                .setChangeId(((Number) rowMap.get("changeId")).longValue())
+                .setChangeType(Change.ChangeType.valueOf((String) rowMap.get("changeType")))
+                .setTeamId((String) rowMap.get("teamId"))
+                .setPuzzleId((String) rowMap.get("puzzleId"))
+                .setStatus((String) rowMap.get("status"))
+                .setSubmissionId((Integer) rowMap.get("submissionId"))
+                .setPropertyKey((String) rowMap.get("propertyKey"))
+                .setTimestamp(timestamp instanceof Instant ? (Instant) timestamp : clock.instant())
+                .build();
+    }
+
+    private void apply(Change change) {
+        String teamId = change.getTeamId();
+        switch (change.getChangeType()) {
+            case VISIBILITY:
+                huntStatusStore.getVisibilityVersions().bump(teamId, change.getPuzzleId());
+                leaderboard.applyVisibilityChange(
+                        teamId, change.getPuzzleId(), change.getStatus(), change.getTimestamp());
+                break;
+            case SUBMISSION:
+                submissionStore.getSubmissionVersions().bump(teamId, change.getPuzzleId());
+                break;
+            case TEAM_PROPERTY:
+                huntStatusStore.getTeamPropertyVersions().bump(teamId, null);
+                //The log only has the key, so this applies the latest value.
+                Object propertyValue = huntStatusStore.getTeamProperties(teamId).get(change.getPropertyKey());
+                if (propertyValue != null) {
+                    leaderboard.applyTeamPropertyChange(teamId, change.getPropertyKey(), propertyValue);
+                }
+                break;
+        }
+        eventProcessor.process(PolledChangeEvent.builder()
+                .setChange(change)
+                .build());
+    }
+
+    /**
+     * @return The id of the last change applied
+     */
+    public synchronized long getLastAppliedChangeId() {
+        return lastChangeId;
+    }
+
+    /**
+     * Gets how far behind the database the read models may be: the time since the start of the
+     * last poll that caught up. Changes committed before then have all been applied. This is
+     * measured on this process's clock alone, so it isn't thrown off by clock skew between
+     * processes.
+     */
+    public double getLagSeconds() {
+        return (clock.millis() - caughtUpAt.toEpochMilli()) / 1000.0;
+    }
+
+    /**
+     * Gets the number of changes applied by polls since this poller was created, including
+     * this process's own.
+     */
+    public long getChangesAppliedCount() {
+        return changesApplied.sum();
+    }
+}
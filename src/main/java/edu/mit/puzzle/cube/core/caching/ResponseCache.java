@@ -0,0 +1,55 @@
+package edu.mit.puzzle.cube.core.caching;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Optional;
+
+/**
+ * A ResponseCache holds serialized response bodies, each tagged with the version of the data it
+ * was built from. A body is only returned while the caller still asks for that version, so
+ * entries never need to be invalidated explicitly; stale ones are replaced on the next read or
+ * evicted once the cache is full.
+ */
+public class ResponseCache {
+
+    private static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+    private static class CachedResponse {
+        private final String version;
+        private final byte[] body;
+
+        private CachedResponse(String version, byte[] body) {
+            this.version = version;
+            this.body = body;
+        }
+    }
+
+    private final Cache<String, CachedResponse> cache;
+
+    public ResponseCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public ResponseCache(long maximumSize) {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    public Optional<byte[]> get(String key, String version) {
+        CachedResponse cachedResponse = cache.getIfPresent(key);
+        if (cachedResponse == null || !cachedResponse.version.equals(version)) {
+            return Optional.empty();
+        }
+        return Optional.of(cachedResponse.body);
+    }
+
+    public void put(String key, String version, byte[] body) {
+        cache.put(key, new CachedResponse(version, body));
+    }
+
+    public long size() {
+        return cache.size();
+    }
+}
@@ -0,0 +1,65 @@
+package edu.mit.puzzle.cube.core.caching;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * VersionCounters count changes to some kind of data globally, per team and per puzzle, so that
+ * a reader can tell whether data it has already seen is still current without reading the
+ * database.
+ *
+ * Versions are opaque strings that start with an epoch chosen when the counters are created,
+ * so a version handed out before a restart never matches one handed out after it. Writers must
+ * bump only after their change is visible in the database: a reader reads the version before
+ * the data, so it may pair an old version with new data (and just re-read next time), but never
+ * a new version with old data.
+ */
+public class VersionCounters {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong globalVersion = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong> teamVersions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> puzzleVersions = new ConcurrentHashMap<>();
+
+    /**
+     * Records a change.
+     *
+     * @param teamId The team whose data changed, or null if no single team's data changed
+     * @param puzzleId The puzzle whose data changed, or null if no single puzzle's data changed
+     */
+    public void bump(String teamId, String puzzleId) {
+        if (teamId != null) {
+            teamVersions.computeIfAbsent(teamId, id -> new AtomicLong()).incrementAndGet();
+        }
+        if (puzzleId != null) {
+            puzzleVersions.computeIfAbsent(puzzleId, id -> new AtomicLong()).incrementAndGet();
+        }
+        globalVersion.incrementAndGet();
+    }
+
+    public String getGlobalVersion() {
+        return epoch + "-" + globalVersion.get();
+    }
+
+    public String getTeamVersion(String teamId) {
+        return epoch + "-t" + get(teamVersions, teamId);
+    }
+
+    public String getPuzzleVersion(String puzzleId) {
+        return epoch + "-p" + get(puzzleVersions, puzzleId);
+    }
+
+    /**
+     * Gets a version that changes whenever the data of this team or this puzzle changes.
+     */
+    public String getVersion(String teamId, String puzzleId) {
+        return epoch + "-t" + get(teamVersions, teamId) + "p" + get(puzzleVersions, puzzleId);
+    }
+
+    //Reading never creates a counter, so requests for unknown ids can't grow the maps.
+    private static long get(ConcurrentMap<String, AtomicLong> versions, String id) {
+        AtomicLong version = versions.get(id);
+        return version == null ? 0 : version.get();
+    }
+}
@@ -3,6 +3,11 @@ package edu.mit.puzzle.cube.core.db;
 import com.google.common.base.Joiner;
 import com.google.common.collect.*;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.*;
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -10,9 +15,16 @@ import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -26,11 +38,219 @@ import java.util.stream.IntStream;
  * uses of the Google Guava interface Table<R,C,V>. This also assumes that retrieved data is
  * small enough to fit within the JVM memory, but this should be true for Mystery Hunts. (If
  * it's not, please reconsider the size/complexity of what you're doing.)
+ *
+ * Shared-cache SQLite fails a statement at once with SQLITE_LOCKED, rather than waiting, when
+ * another connection holds a conflicting table lock. So every statement made through a
+ * ConnectionFactory takes that ConnectionFactory's lock: queries share it, while updates and
+ * whole transactions hold it exclusively. This assumes one ConnectionFactory per database.
  */
 public class DatabaseHelper {
 
     public static DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSX");
 
+    private static Logger LOGGER = LogManager.getLogger(DatabaseHelper.class);
+
+    //The connections, held locks and pending actions of the transaction running on this thread, if any.
+    private static class Transaction {
+        private final Map<ConnectionFactory,Connection> connections = Maps.newIdentityHashMap();
+        private final List<Lock> locks = Lists.newArrayList();
+        private final List<Runnable> afterCommitActions = Lists.newArrayList();
+        private final List<Runnable> afterRollbackActions = Lists.newArrayList();
+    }
+
+    private static final ThreadLocal<Transaction> TRANSACTION = new ThreadLocal<>();
+
+    private static final ConcurrentMap<ConnectionFactory,ReadWriteLock> LOCKS = new MapMaker().weakKeys().makeMap();
+
+    private static ReadWriteLock getLock(ConnectionFactory connectionFactory) {
+        return LOCKS.computeIfAbsent(connectionFactory, factory -> new ReentrantReadWriteLock());
+    }
+
+    /**
+     * Runs work in a database transaction. Every DatabaseHelper call that the work makes on this
+     * thread (including those made by stores and event processors it calls into) shares one
+     * Connection per ConnectionFactory, and the changes are committed together when the work
+     * returns, or rolled back if it throws. If a transaction is already running on this thread,
+     * the work joins it instead.
+     *
+     * Connections from different ConnectionFactories are committed one after another, so only
+     * the changes made through a single ConnectionFactory are atomic.
+     *
+     * From its first statement through a ConnectionFactory until it ends, the transaction holds
+     * that ConnectionFactory's lock exclusively, so every other thread's reads and writes
+     * through it wait. Keep transactions short. Don't wait in one for another thread that uses
+     * the database, or take a lock that such a thread may hold while it calls DatabaseHelper
+     * (including a ConcurrentHashMap's, from inside computeIfAbsent): either can deadlock.
+     *
+     * @param work The work to run in the transaction
+     * @return The value returned by work
+     */
+    public static <T> T inTransaction(Supplier<T> work) {
+        if (TRANSACTION.get() != null) {
+            return work.get();
+        }
+
+        Transaction transaction = new Transaction();
+        TRANSACTION.set(transaction);
+        T result;
+        try {
+            result = work.get();
+            for (Connection connection : transaction.connections.values()) {
+                connection.commit();
+            }
+        } catch (SQLException e) {
+            rollback(transaction);
+            throw new RuntimeException(e);
+        } catch (RuntimeException | Error e) {
+            rollback(transaction);
+            throw e;
+        } finally {
+            TRANSACTION.remove();
+            for (Connection connection : transaction.connections.values()) {
+                try {
+                    connection.setAutoCommit(true);
+                    connection.close();
+                } catch (SQLException e) {
+                    LOGGER.warn("Failed to close transaction connection", e);
+                }
+            }
+            for (Lock lock : transaction.locks) {
+                lock.unlock();
+            }
+        }
+
+        for (Runnable action : transaction.afterCommitActions) {
+            action.run();
+        }
+        return result;
+    }
+
+    /**
+     * Runs an action once the changes made so far on this thread are visible to other
+     * connections: right away if no transaction is running, and otherwise after the transaction
+     * commits. If the transaction is rolled back, the action is dropped. This is meant for
+     * updating in-memory state that mirrors the database, such as version counters.
+     */
+    public static void afterCommit(Runnable action) {
+        Transaction transaction = TRANSACTION.get();
+        if (transaction == null) {
+            action.run();
+        } else {
+            transaction.afterCommitActions.add(action);
+        }
+    }
+
+    /**
+     * Runs an action if the transaction running on this thread is rolled back, before other
+     * threads can see the database again. Outside a transaction, there is nothing to roll back
+     * and the action is dropped. This is meant for discarding in-memory state that was derived
+     * from the transaction's uncommitted changes, such as caches that can be reloaded.
+     */
+    public static void afterRollback(Runnable action) {
+        Transaction transaction = TRANSACTION.get();
+        if (transaction != null) {
+            transaction.afterRollbackActions.add(action);
+        }
+    }
+
+    /**
+     * @return true if this thread is running inside inTransaction
+     */
+    public static boolean isInTransaction() {
+        return TRANSACTION.get() != null;
+    }
+
+    private static void rollback(Transaction transaction) {
+        for (Connection connection : transaction.connections.values()) {
+            try {
+                connection.rollback();
+            } catch (SQLException e) {
+                LOGGER.warn("Failed to roll back transaction", e);
+            }
+        }
+        for (Runnable action : transaction.afterRollbackActions) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Failed to run after-rollback action", e);
+            }
+        }
+    }
+
+    /**
+     * Runs work that uses connectionFactory's Connections directly, for instance to run driver
+     * commands, while holding off DatabaseHelper's writers to the same database.
+     */
+    static <T> T whileReading(ConnectionFactory connectionFactory, Supplier<T> work) {
+        Lock lock = getLock(connectionFactory).readLock();
+        lock.lock();
+        try {
+            return work.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Outside a transaction this is a new Connection that holds connectionFactory's lock (shared
+    //for reads, exclusive for writes) until the caller closes it. Inside one, it is the
+    //transaction's Connection, wrapped so that the caller's close() leaves it open.
+    private static Connection getConnection(ConnectionFactory connectionFactory, boolean write) throws SQLException {
+        Transaction transaction = TRANSACTION.get();
+        if (transaction == null) {
+            Lock lock = write ? getLock(connectionFactory).writeLock() : getLock(connectionFactory).readLock();
+            lock.lock();
+            Connection connection;
+            try {
+                connection = connectionFactory.getConnection();
+            } catch (SQLException | RuntimeException e) {
+                lock.unlock();
+                throw e;
+            }
+            return wrapConnection(connection, () -> {
+                try {
+                    connection.close();
+                } finally {
+                    lock.unlock();
+                }
+            });
+        }
+        Connection connection = transaction.connections.get(connectionFactory);
+        if (connection == null) {
+            Lock lock = getLock(connectionFactory).writeLock();
+            lock.lock();
+            transaction.locks.add(lock);
+            connection = connectionFactory.getConnection();
+            connection.setAutoCommit(false);
+            transaction.connections.put(connectionFactory, connection);
+        }
+        return wrapConnection(connection, () -> {});
+    }
+
+    private interface CloseAction {
+        void close() throws SQLException;
+    }
+
+    //Runs closeAction in place of the Connection's close(), once.
+    private static Connection wrapConnection(Connection connection, CloseAction closeAction) {
+        AtomicBoolean closed = new AtomicBoolean(false);
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        if (closed.compareAndSet(false, true)) {
+                            closeAction.close();
+                        }
+                        return null;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
     /**
      * Queries a database (connected to by a Connection from ConnectionFactory) with the given
      * query and parameters. The resulting table rows are keyed by integers starting from 0 and
@@ -108,7 +328,7 @@ public class DatabaseHelper {
         List<Object> parameters,
         Function<ResultSet,KEY_TYPE> keyFunction
     ) {
-        try (Connection connection = connectionFactory.getConnection();
+        try (Connection connection = getConnection(connectionFactory, false);
              PreparedStatement statement = connection.prepareStatement(preparedQuery)) {
 
             for (int i = 0; i < parameters.size(); ++i) {
@@ -145,7 +365,7 @@ public class DatabaseHelper {
             String preparedUpdate,
             List<List<Object>> parameterLists
     ) {
-        try (Connection connection = connectionFactory.getConnection();
+        try (Connection connection = getConnection(connectionFactory, true);
              PreparedStatement statement = connection.prepareStatement(preparedUpdate)) {
 
             for (List<Object> parameters : parameterLists) {
@@ -155,9 +375,11 @@ public class DatabaseHelper {
                 statement.addBatch();
             }
 
+            //Inside inTransaction the connection is already not auto-committing, and must stay that way.
+            boolean autoCommit = connection.getAutoCommit();
             connection.setAutoCommit(false);
             int[] updatedRowsArray = statement.executeBatch();
-            connection.setAutoCommit(true);
+            connection.setAutoCommit(autoCommit);
 
             return IntStream.of(updatedRowsArray).boxed().collect(Collectors.toList());
 
@@ -171,7 +393,7 @@ public class DatabaseHelper {
             String preparedUpdate,
             List<Object> parameters
     ) {
-        try (Connection connection = connectionFactory.getConnection();
+        try (Connection connection = getConnection(connectionFactory, true);
              PreparedStatement statement = connection.prepareStatement(preparedUpdate)) {
 
             for (int i = 0; i < parameters.size(); ++i) {
@@ -191,7 +413,7 @@ public class DatabaseHelper {
             String preparedInsert,
             List<Object> parameters
     ) {
-        try (Connection connection = connectionFactory.getConnection();
+        try (Connection connection = getConnection(connectionFactory, true);
              PreparedStatement statement = connection.prepareStatement(preparedInsert, Statement.RETURN_GENERATED_KEYS)) {
 
             for (int i = 0; i < parameters.size(); ++i) {
@@ -220,7 +442,7 @@ public class DatabaseHelper {
             String preparedInsert,
             List<List<Object>> parameterLists
     ) {
-        try (Connection connection = connectionFactory.getConnection();
+        try (Connection connection = getConnection(connectionFactory, true);
              PreparedStatement statement = connection.prepareStatement(preparedInsert)) {
 
             for (List<Object> parameters : parameterLists) {
@@ -230,9 +452,10 @@ public class DatabaseHelper {
                 statement.addBatch();
             }
 
+            boolean autoCommit = connection.getAutoCommit();
             connection.setAutoCommit(false);
             statement.executeBatch();
-            connection.setAutoCommit(true);
+            connection.setAutoCommit(autoCommit);
 
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -243,13 +466,23 @@ public class DatabaseHelper {
             Table<ROW_KEY_TYPE,COL_KEY_TYPE,Object> table
     ) {
         return Tables.transformValues(table, (Object o) -> {
+            //Skip the parse attempts (and their exceptions) for values that can't be timestamps.
+            if (!(o instanceof String) || ((String) o).length() < 20 || ((String) o).charAt(10) != 'T') {
+                return o;
+            }
+            String s = (String) o;
             try {
-                String s = (String) o;
                 Instant timestamp = LocalDateTime.parse(s, DATE_TIME_FORMATTER)
                         .atZone(ZoneId.of("UTC")).toInstant();
                 return timestamp;
-            } catch (ClassCastException | DateTimeParseException e) {
-                return o;
+            } catch (DateTimeParseException e) {
+                //Instant.toString() leaves out the fraction on whole seconds and uses more
+                //digits for finer clocks, so also accept anything it produces.
+                try {
+                    return Instant.parse(s);
+                } catch (DateTimeParseException e2) {
+                    return o;
+                }
             }
         });
     }
@@ -0,0 +1,442 @@
+package edu.mit.puzzle.cube.core.db;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Table;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Exports and imports the full state of a hunt's database as a compact binary snapshot: the run
+ * row, teams, team properties, puzzles, visibilities, visibility history and submissions. The
+ * change log, scheduled events and idempotency keys are not part of a snapshot.
+ *
+ * A snapshot starts with the magic bytes "CUBS" and a format version, followed by each table in
+ * turn. Every row is preceded by a 1 byte, and a table ends with a 0 byte. Numbers are unsigned
+ * varints. Team ids, puzzle ids, statuses and property keys are dictionary encoded: the first
+ * time a string appears it is written out in full, and after that only its index is.
+ *
+ * Tables are read and written a page of rows at a time, so neither side ever holds a whole
+ * table in memory.
+ */
+public class HuntSnapshot {
+
+    private static final byte[] MAGIC = "CUBS".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int PAGE_SIZE = 1000;
+
+    private enum ColumnType {
+        /** A string from a small set that repeats across rows, such as a team id or status. */
+        DICTIONARY,
+        /** A non-null integer key. */
+        ID,
+        /** Free text, such as a submitted answer. */
+        TEXT,
+        /** An Instant, or the text of a timestamp that isn't one. */
+        TIMESTAMP,
+        /** Anything a team property can hold. */
+        VALUE
+    }
+
+    private static class Column {
+        private final String name;
+        private final ColumnType type;
+
+        private Column(String name, ColumnType type) {
+            this.name = name;
+            this.type = type;
+        }
+    }
+
+    //The tables, in the order they appear in a snapshot.
+    private enum Section {
+        RUN("run",
+                new Column("startTimestamp", ColumnType.TIMESTAMP)),
+        TEAMS("teams",
+                new Column("teamId", ColumnType.DICTIONARY)),
+        TEAM_PROPERTIES("team_properties",
+                new Column("teamId", ColumnType.DICTIONARY),
+                new Column("propertyKey", ColumnType.DICTIONARY),
+                new Column("propertyValue", ColumnType.VALUE)),
+        PUZZLES("puzzles",
+                new Column("puzzleId", ColumnType.DICTIONARY)),
+        VISIBILITIES("visibilities",
+                new Column("teamId", ColumnType.DICTIONARY),
+                new Column("puzzleId", ColumnType.DICTIONARY),
+                new Column("status", ColumnType.DICTIONARY)),
+        VISIBILITY_HISTORY("visibility_history",
+                new Column("visibilityHistoryId", ColumnType.ID),
+                new Column("teamId", ColumnType.DICTIONARY),
+                new Column("puzzleId", ColumnType.DICTIONARY),
+                new Column("status", ColumnType.DICTIONARY),
+                new Column("timestamp", ColumnType.TIMESTAMP)),
+        SUBMISSIONS("submissions",
+                new Column("submissionId", ColumnType.ID),
+                new Column("puzzleId", ColumnType.DICTIONARY),
+                new Column("teamId", ColumnType.DICTIONARY),
+                new Column("submission", ColumnType.TEXT),
+                new Column("timestamp", ColumnType.TIMESTAMP),
+                new Column("status", ColumnType.DICTIONARY));
+
+        private final String table;
+        private final List<Column> columns;
+
+        Section(String table, Column... columns) {
+            this.table = table;
+            this.columns = ImmutableList.copyOf(columns);
+        }
+
+        private String getColumnList() {
+            return Joiner.on(", ").join(columns.stream().map(column -> column.name).collect(Collectors.toList()));
+        }
+    }
+
+    //Tags for the kinds of TIMESTAMP and VALUE columns.
+    private static final int NULL = 0;
+    private static final int INSTANT = 1;
+    private static final int STRING = 2;
+    private static final int BYTES = 3;
+    private static final int LONG = 4;
+    private static final int DOUBLE = 5;
+
+    private HuntSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of a hunt's database. The database is first copied to a temporary file
+     * with SQLite's online backup, and the snapshot is read from the copy. That keeps the
+     * snapshot consistent while holding up the hunt's writers only for as long as the copy
+     * takes, however slowly the snapshot itself is written.
+     *
+     * @param connectionFactory Connects to the hunt's database, which must be SQLite
+     * @param outputStream Receives the snapshot. It is flushed, but not closed.
+     * @return The number of rows written
+     */
+    public static long write(ConnectionFactory connectionFactory, OutputStream outputStream) throws IOException {
+        File copy = File.createTempFile("hunt", ".db");
+        try {
+            DatabaseHelper.whileReading(connectionFactory, () -> {
+                try (
+                        Connection connection = connectionFactory.getConnection();
+                        Statement statement = connection.createStatement()
+                ) {
+                    //Not SQL, but a command of the SQLite JDBC driver that runs the online backup API.
+                    return statement.executeUpdate("backup to '" + copy.getAbsolutePath() + "'");
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            ConnectionFactory copyConnectionFactory =
+                    () -> DriverManager.getConnection("jdbc:sqlite:" + copy.getAbsolutePath());
+
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+            out.write(MAGIC);
+            writeVarLong(out, VERSION);
+            Map<String,Integer> dictionary = Maps.newHashMap();
+            long rows;
+            try {
+                //Nothing else uses the copy; the transaction just keeps one connection to it open.
+                rows = DatabaseHelper.inTransaction(() -> {
+                    long count = 0;
+                    for (Section section : Section.values()) {
+                        count += writeSection(copyConnectionFactory, section, out, dictionary);
+                    }
+                    return count;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+            return rows;
+        } finally {
+            copy.delete();
+        }
+    }
+
+    /**
+     * Replaces a hunt's state with a snapshot, in one transaction. The database should not be
+     * in use by a HuntInstance yet, as the stores' caches and version counters would not see
+     * the change.
+     *
+     * @param connectionFactory Connects to the hunt's database
+     * @param inputStream Provides the snapshot. It is not closed.
+     * @return The number of rows read
+     */
+    public static long read(ConnectionFactory connectionFactory, InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+        byte[] magic = new byte[MAGIC.length];
+        try {
+            in.readFully(magic);
+        } catch (EOFException e) {
+            throw new IOException("Not a hunt snapshot", e);
+        }
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a hunt snapshot");
+        }
+        long version = readVarLong(in);
+        if (version != VERSION) {
+            throw new IOException("Unsupported hunt snapshot version " + version);
+        }
+        List<String> dictionary = Lists.newArrayList();
+        try {
+            return DatabaseHelper.inTransaction(() -> {
+                List<Section> sections = Lists.newArrayList(Section.values());
+                Collections.reverse(sections);
+                for (Section section : sections) {
+                    DatabaseHelper.update(connectionFactory, "DELETE FROM " + section.table, ImmutableList.of());
+                }
+                long count = 0;
+                for (Section section : Section.values()) {
+                    count += readSection(connectionFactory, section, in, dictionary);
+                }
+                return count;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    //Pages through the table in rowid order, so each query picks up where the last one ended.
+    private static long writeSection(
+            ConnectionFactory connectionFactory,
+            Section section,
+            DataOutputStream out,
+            Map<String,Integer> dictionary
+    ) {
+        String query = "SELECT rowid AS snapshotRowId, " + section.getColumnList() + " FROM " + section.table +
+                " WHERE rowid > ? ORDER BY rowid LIMIT ?";
+        long count = 0;
+        long lastRowId = 0;
+        try {
+            while (true) {
+                Table<Integer,String,Object> page = DatabaseHelper.query(
+                        connectionFactory, query, Lists.newArrayList(lastRowId, PAGE_SIZE));
+                for (Map<String,Object> row : page.rowMap().values()) {
+                    out.writeByte(1);
+                    for (Column column : section.columns) {
+                        writeColumn(out, column.type, row.get(column.name), dictionary);
+                    }
+                    lastRowId = ((Number) row.get("snapshotRowId")).longValue();
+                }
+                count += page.rowKeySet().size();
+                if (page.rowKeySet().size() < PAGE_SIZE) {
+                    break;
+                }
+            }
+            out.writeByte(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return count;
+    }
+
+    private static long readSection(
+            ConnectionFactory connectionFactory,
+            Section section,
+            DataInputStream in,
+            List<String> dictionary
+    ) {
+        String insert = "INSERT INTO " + section.table + " (" + section.getColumnList() + ") VALUES (" +
+                Joiner.on(", ").join(Collections.nCopies(section.columns.size(), "?")) + ")";
+        long count = 0;
+        List<List<Object>> batch = Lists.newArrayList();
+        try {
+            while (in.readByte() != 0) {
+                List<Object> row = Lists.newArrayList();
+                for (Column column : section.columns) {
+                    row.add(readColumn(in, column.type, dictionary));
+                }
+                batch.add(row);
+                if (batch.size() == PAGE_SIZE) {
+                    DatabaseHelper.insertBatch(connectionFactory, insert, batch);
+                    count += batch.size();
+                    batch.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!batch.isEmpty()) {
+            DatabaseHelper.insertBatch(connectionFactory, insert, batch);
+            count += batch.size();
+        }
+        return count;
+    }
+
+    private static void writeColumn(
+            DataOutputStream out,
+            ColumnType type,
+            Object value,
+            Map<String,Integer> dictionary
+    ) throws IOException {
+        switch (type) {
+            case DICTIONARY:
+                //0 is null, 1 is a new string that follows, and n + 2 is the nth string so far.
+                if (value == null) {
+                    writeVarLong(out, 0);
+                    return;
+                }
+                Integer index = dictionary.get(value);
+                if (index != null) {
+                    writeVarLong(out, index + 2);
+                } else {
+                    writeVarLong(out, 1);
+                    writeString(out, (String) value);
+                    dictionary.put((String) value, dictionary.size());
+                }
+                return;
+            case ID:
+                writeVarLong(out, ((Number) value).longValue());
+                return;
+            case TEXT:
+                if (value == null) {
+                    out.writeByte(NULL);
+                } else {
+                    out.writeByte(STRING);
+                    writeString(out, value.toString());
+                }
+                return;
+            case TIMESTAMP:
+            case VALUE:
+                writeValue(out, value);
+                return;
+        }
+    }
+
+    private static Object readColumn(DataInputStream in, ColumnType type, List<String> dictionary) throws IOException {
+        switch (type) {
+            case DICTIONARY:
+                long index = readVarLong(in);
+                if (index == 0) {
+                    return null;
+                } else if (index == 1) {
+                    String value = readString(in);
+                    dictionary.add(value);
+                    return value;
+                } else if (index - 2 < dictionary.size()) {
+                    return dictionary.get((int) (index - 2));
+                }
+                throw new IOException("Hunt snapshot refers to an unknown string " + index);
+            case ID:
+                return readVarLong(in);
+            case TEXT:
+            case TIMESTAMP:
+            case VALUE:
+                return readValue(in);
+        }
+        throw new AssertionError(type);
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Instant) {
+            out.writeByte(INSTANT);
+            writeVarLong(out, ((Instant) value).getEpochSecond());
+            writeVarLong(out, ((Instant) value).getNano());
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            writeVarLong(out, ((byte[]) value).length);
+            out.write((byte[]) value);
+        } else if (value instanceof Integer || value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else {
+            throw new IllegalArgumentException("Can't write a " + value.getClass().getSimpleName() + " to a hunt snapshot");
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        int tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case INSTANT:
+                return Instant.ofEpochSecond(readVarLong(in), readVarLong(in));
+            case STRING:
+                return readString(in);
+            case BYTES:
+                byte[] bytes = new byte[checkLength(readVarLong(in))];
+                in.readFully(bytes);
+                return bytes;
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            default:
+                throw new IOException("Hunt snapshot has an unknown value tag " + tag);
+        }
+    }
+
+    //Unlike DataOutput.writeUTF, this has no 64KB limit.
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[checkLength(readVarLong(in))];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checkLength(long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Hunt snapshot has a value " + length + " bytes long");
+        }
+        return (int) length;
+    }
+
+    //Seven bits at a time, least significant first, with the high bit set on all but the last byte.
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException("Can't write negative number " + value + " to a hunt snapshot");
+        }
+        while (value >= 0x80) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Hunt snapshot has a malformed number");
+    }
+}
@@ -26,11 +26,29 @@ public class InMemoryConnectionFactory implements ConnectionFactory {
     //behavior is a pain.
     protected Connection connection;
 
+    private final String databaseUrl;
+
     public InMemoryConnectionFactory(
             VisibilityStatusSet visibilityStatusSet,
             List<String> teamIdList,
             List<String> puzzleIdList
     ) throws SQLException {
+        this(visibilityStatusSet, teamIdList, puzzleIdList, "");
+    }
+
+    /**
+     * @param databaseName In-memory databases with different names are separate, so several
+     *                     hunts can run in one JVM. The empty name is the default database.
+     */
+    public InMemoryConnectionFactory(
+            VisibilityStatusSet visibilityStatusSet,
+            List<String> teamIdList,
+            List<String> puzzleIdList,
+            String databaseName
+    ) throws SQLException {
+        this.databaseUrl = databaseName.isEmpty()
+                ? "jdbc:sqlite:file::memory:?cache=shared"
+                : "jdbc:sqlite:file:" + databaseName + "?mode=memory&cache=shared";
         //Store the garbage collection preventing connection
         this.connection = createDefaultInMemoryConnection();
         //Boot up the initial state of tables
@@ -49,7 +67,7 @@ public class InMemoryConnectionFactory implements ConnectionFactory {
             //The "?cache=shared" parameter is what allows the in-memory database to be shared
             //across connections. By default, SQLite in-memory databases work with one Connection
             //and are collected when that Connection is closed.
-            Connection connection = DriverManager.getConnection("jdbc:sqlite:file::memory:?cache=shared");
+            Connection connection = DriverManager.getConnection(databaseUrl);
 
             return connection;
         } catch (ClassNotFoundException e) {
@@ -57,6 +75,13 @@ public class InMemoryConnectionFactory implements ConnectionFactory {
         }
     }
 
+    /**
+     * Releases the in-memory database. SQLite frees it once the last connection to it closes.
+     */
+    public void close() throws SQLException {
+        connection.close();
+    }
+
     //The initial configuration takes in a list of team ids and puzzle ids to preload the
     //database. For a production off-box database, this wouldn't be necessary because you'd
     //just load the data there, but for an in-memory database, we need to set it up in code.
@@ -105,33 +130,61 @@ public class InMemoryConnectionFactory implements ConnectionFactory {
                 "PRIMARY KEY(visibilityHistoryId ASC), " +
                 "FOREIGN KEY(teamId) REFERENCES teams(teamId), " +
                 "FOREIGN KEY(puzzleId) REFERENCES puzzles(puzzleId))";
+        //Every visibility change, submission status change and team property change gets a row
+        //here, so the changeId is a sequence number that clients can use to catch up on what
+        //they missed. A team property change only records the key; the value is in team_properties.
+        String createChangeLogTableSql = "CREATE TABLE IF NOT EXISTS change_log " +
+                "(changeId INTEGER PRIMARY KEY AUTOINCREMENT, changeType VARCHAR(20), " +
+                "teamId VARCHAR(20), puzzleId VARCHAR(40), status VARCHAR(10), submissionId INTEGER, " +
+                "propertyKey VARCHAR(40), timestamp DATETIME DEFAULT CURRENT_TIMESTAMP, " +
+                "FOREIGN KEY(teamId) REFERENCES teams(teamId), " +
+                "FOREIGN KEY(puzzleId) REFERENCES puzzles(puzzleId))";
+        //Lets a feed of one change type skip over the other types' changes. SQLite appends the
+        //rowid (the changeId) to every index entry, and only seeks on it when it isn't also
+        //listed as a column.
+        String createChangeLogTypeIndexSql = "CREATE INDEX IF NOT EXISTS change_log_type " +
+                "ON change_log (changeType)";
+        String createScheduledEventsTableSql = "CREATE TABLE IF NOT EXISTS scheduled_events " +
+                "(scheduledEventId INTEGER, fireTimestamp DATETIME, event TEXT, " +
+                "firedTimestamp DATETIME DEFAULT NULL, " +
+                "PRIMARY KEY(scheduledEventId ASC))";
+        String createIdempotencyKeysTableSql = "CREATE TABLE IF NOT EXISTS idempotency_keys " +
+                "(idempotencyKey VARCHAR(100), requestHash VARCHAR(64), result TEXT, createdMillis INTEGER, " +
+                "PRIMARY KEY(idempotencyKey))";
 
         List<String> createTableSqls = Lists.newArrayList(
                 createRunTableSql,
                 createTeamsTableSql, createTeamPropertiesTableSql, createPuzzlesTableSql,
-                createSubmissionsTableSql, createVisibilitiesTableSql, createVisibilityHistoriesTableSql);
-        for (String createTableSql : createTableSqls) {
-            DatabaseHelper.update(
-                    this,
-                    createTableSql,
-                    Lists.newArrayList()
-            );
-        }
-
-        String insertRunSql = "INSERT INTO run (startTimestamp) VALUES (NULL)";
-        DatabaseHelper.insert(this, insertRunSql, Lists.newArrayList());
-
-        String insertTeamSql = "INSERT INTO teams (teamId) VALUES (?)";
-        List<List<Object>> parameterLists = teamIdList.stream()
-                .map(id -> Lists.<Object>newArrayList(id))
-                .collect(Collectors.toList());
-        DatabaseHelper.insertBatch(this, insertTeamSql, parameterLists);
-
-        String insertPuzzleSql = "INSERT INTO puzzles (puzzleId) VALUES (?)";
-        parameterLists = puzzleIdList.stream()
-                .map(id -> Lists.<Object>newArrayList(id))
-                .collect(Collectors.toList());
-        DatabaseHelper.insertBatch(this, insertPuzzleSql, parameterLists);
+                createSubmissionsTableSql, createVisibilitiesTableSql, createVisibilityHistoriesTableSql,
+                createChangeLogTableSql, createChangeLogTypeIndexSql,
+                createScheduledEventsTableSql, createIdempotencyKeysTableSql);
+        //One transaction, so that the whole schema and its rows are written over one connection
+        //with one commit, rather than a connection and a commit per statement.
+        DatabaseHelper.inTransaction(() -> {
+            for (String createTableSql : createTableSqls) {
+                DatabaseHelper.update(
+                        this,
+                        createTableSql,
+                        Lists.newArrayList()
+                );
+            }
+
+            String insertRunSql = "INSERT INTO run (startTimestamp) VALUES (NULL)";
+            DatabaseHelper.insert(this, insertRunSql, Lists.newArrayList());
+
+            String insertTeamSql = "INSERT INTO teams (teamId) VALUES (?)";
+            List<List<Object>> parameterLists = teamIdList.stream()
+                    .map(id -> Lists.<Object>newArrayList(id))
+                    .collect(Collectors.toList());
+            DatabaseHelper.insertBatch(this, insertTeamSql, parameterLists);
+
+            String insertPuzzleSql = "INSERT INTO puzzles (puzzleId) VALUES (?)";
+            parameterLists = puzzleIdList.stream()
+                    .map(id -> Lists.<Object>newArrayList(id))
+                    .collect(Collectors.toList());
+            DatabaseHelper.insertBatch(this, insertPuzzleSql, parameterLists);
+            return null;
+        });
     }
 
 }
@@ -0,0 +1,153 @@
+package edu.mit.puzzle.cube.core.environments;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+
+import edu.mit.puzzle.cube.core.HuntDefinition;
+import edu.mit.puzzle.cube.core.server.ServerConfiguration;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Describes the synthetic hunt that a DevelopmentEnvironment sets up: how many teams and
+ * puzzles there are, and how far into the hunt the teams already are. The defaults give the
+ * usual 70 teams and the hunt definition's own puzzles, with nothing seeded.
+ *
+ * Configuration is read from cube.development.* properties, in the same file as the
+ * ServerConfiguration.
+ */
+@AutoValue
+public abstract class DevelopmentConfiguration {
+
+    private static final String PREFIX = "cube.development.";
+
+    @AutoValue.Builder
+    public static abstract class Builder {
+        public abstract Builder setTeams(int teams);
+        /**
+         * The least number of puzzles. The hunt definition's puzzles always come first, and are
+         * followed by synthetic ones named puzzleN up to this count.
+         */
+        public abstract Builder setPuzzles(int puzzles);
+        /** The share of teams, starting from the first, that begin with seeded visibilities. */
+        public abstract Builder setSeededTeamRatio(double seededTeamRatio);
+        /** How many puzzles, starting from the first, the seeded teams have seeded visibilities for. */
+        public abstract Builder setSeededPuzzles(int seededPuzzles);
+        /** The visibility status the seeded teams have for the seeded puzzles. */
+        public abstract Builder setSeededStatus(String seededStatus);
+        /** How many incorrect submissions to spread across all teams and puzzles. */
+        public abstract Builder setHistoricalSubmissions(int historicalSubmissions);
+        /** Seeds which teams and puzzles the historical submissions go to, so runs are repeatable. */
+        public abstract Builder setRandomSeed(long randomSeed);
+        /**
+         * A HuntSnapshot file to start from. The hunt's state is then all taken from the
+         * snapshot, and the settings above are ignored.
+         */
+        public abstract Builder setSnapshot(Optional<String> snapshot);
+        public abstract DevelopmentConfiguration build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_DevelopmentConfiguration.Builder()
+                .setTeams(70)
+                .setPuzzles(0)
+                .setSeededTeamRatio(0)
+                .setSeededPuzzles(0)
+                .setSeededStatus("SOLVED")
+                .setHistoricalSubmissions(0)
+                .setRandomSeed(0)
+                .setSnapshot(Optional.empty());
+    }
+
+    public abstract int getTeams();
+    public abstract int getPuzzles();
+    public abstract double getSeededTeamRatio();
+    public abstract int getSeededPuzzles();
+    public abstract String getSeededStatus();
+    public abstract int getHistoricalSubmissions();
+    public abstract long getRandomSeed();
+    public abstract Optional<String> getSnapshot();
+
+    /**
+     * @return The team ids: testerteam, then testerteam2 and onwards
+     */
+    public List<String> getTeamIds() {
+        ImmutableList.Builder<String> teamIds = ImmutableList.builder();
+        for (int i = 1; i <= getTeams(); ++i) {
+            teamIds.add(i == 1 ? "testerteam" : "testerteam" + i);
+        }
+        return teamIds.build();
+    }
+
+    /**
+     * @return The hunt definition's puzzle ids, followed by as many synthetic ones as it takes to
+     *         make up the configured number of puzzles
+     */
+    public List<String> getPuzzleIds(HuntDefinition huntDefinition) {
+        List<String> definedPuzzleIds = huntDefinition.getPuzzleList();
+        Set<String> definedPuzzleIdSet = Sets.newHashSet(definedPuzzleIds);
+        ImmutableList.Builder<String> puzzleIds = ImmutableList.<String>builder().addAll(definedPuzzleIds);
+        int count = definedPuzzleIds.size();
+        for (int i = 1; count < getPuzzles(); ++i) {
+            if (!definedPuzzleIdSet.contains("puzzle" + i)) {
+                puzzleIds.add("puzzle" + i);
+                count++;
+            }
+        }
+        return puzzleIds.build();
+    }
+
+    /**
+     * Reads a configuration from cube.development.* properties, e.g. cube.development.teams.
+     */
+    public static DevelopmentConfiguration fromProperties(Properties properties) {
+        DevelopmentConfiguration defaults = builder().build();
+        return builder()
+                .setTeams((int) getNumber(properties, "teams", defaults.getTeams()))
+                .setPuzzles((int) getNumber(properties, "puzzles", defaults.getPuzzles()))
+                .setSeededTeamRatio(getNumber(properties, "seededTeamRatio", defaults.getSeededTeamRatio()))
+                .setSeededPuzzles((int) getNumber(properties, "seededPuzzles", defaults.getSeededPuzzles()))
+                .setSeededStatus(properties.getProperty(PREFIX + "seededStatus", defaults.getSeededStatus()).trim())
+                .setHistoricalSubmissions((int) getNumber(properties, "historicalSubmissions", defaults.getHistoricalSubmissions()))
+                .setRandomSeed(getLong(properties, "randomSeed", defaults.getRandomSeed()))
+                .setSnapshot(Optional.ofNullable(properties.getProperty(PREFIX + "snapshot")).map(String::trim))
+                .build();
+    }
+
+    /**
+     * Loads the configuration from the same file as ServerConfiguration.load, then applies
+     * system property overrides.
+     */
+    public static DevelopmentConfiguration load() throws IOException {
+        return fromProperties(ServerConfiguration.loadProperties());
+    }
+
+    private static long getLong(Properties properties, String name, long defaultValue) {
+        String value = properties.getProperty(PREFIX + name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(PREFIX + name + " is not a number: " + value);
+        }
+    }
+
+    private static double getNumber(Properties properties, String name, double defaultValue) {
+        String value = properties.getProperty(PREFIX + name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(PREFIX + name + " is not a number: " + value);
+        }
+    }
+}
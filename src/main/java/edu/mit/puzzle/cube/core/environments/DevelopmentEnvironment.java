@@ -3,12 +3,20 @@ package edu.mit.puzzle.cube.core.environments;
 import com.google.common.collect.Lists;
 import edu.mit.puzzle.cube.core.HuntDefinition;
 import edu.mit.puzzle.cube.core.db.ConnectionFactory;
+import edu.mit.puzzle.cube.core.db.DatabaseHelper;
+import edu.mit.puzzle.cube.core.db.HuntSnapshot;
 import edu.mit.puzzle.cube.core.db.InMemoryConnectionFactory;
+import edu.mit.puzzle.cube.core.model.Change;
+import edu.mit.puzzle.cube.core.model.SubmissionStatus;
 
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.sql.SQLException;
+import java.time.Instant;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.Random;
 
 public class DevelopmentEnvironment implements ServiceEnvironment {
 
@@ -18,24 +26,148 @@ public class DevelopmentEnvironment implements ServiceEnvironment {
     public DevelopmentEnvironment(
             HuntDefinition huntDefinition
     ) {
-        this.huntDefinition = huntDefinition;
+        this(huntDefinition, "");
+    }
 
-        List<String> teamIdList = Lists.newArrayList("testerteam");
-        teamIdList.addAll(IntStream.rangeClosed(2,70).mapToObj(i -> "testerteam" + i).collect(Collectors.toList()));
+    /**
+     * @param databaseName Names the in-memory database, so that several development
+     *                     environments can coexist. The empty name is the default database.
+     */
+    public DevelopmentEnvironment(
+            HuntDefinition huntDefinition,
+            String databaseName
+    ) {
+        this(huntDefinition, databaseName, DevelopmentConfiguration.builder().build());
+    }
 
+    /**
+     * Seeded visibilities are written straight to the database, bypassing the hunt's visibility
+     * transition rules and event processors. So seeded solves don't unlock anything: in the linear
+     * example, teams that have solved the first N puzzles still see puzzle N+1 as INVISIBLE. The
+     * seeded state is meant for load, not for playing through the hunt.
+     *
+     * @param databaseName Names the in-memory database, so that several development
+     *                     environments can coexist. The empty name is the default database.
+     * @param configuration The teams, puzzles and seeded state to start with
+     */
+    public DevelopmentEnvironment(
+            HuntDefinition huntDefinition,
+            String databaseName,
+            DevelopmentConfiguration configuration
+    ) {
+        this.huntDefinition = huntDefinition;
+
+        List<String> teamIdList = configuration.getTeamIds();
+        List<String> puzzleIdList = configuration.getPuzzleIds(huntDefinition);
         try {
             this.inMemoryConnectionFactory = new InMemoryConnectionFactory(
                     huntDefinition.getVisibilityStatusSet(),
                     teamIdList,
-                    huntDefinition.getPuzzleList()
+                    puzzleIdList,
+                    databaseName
             );
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
+
+        if (configuration.getSnapshot().isPresent()) {
+            try (InputStream inputStream = new FileInputStream(configuration.getSnapshot().get())) {
+                HuntSnapshot.read(inMemoryConnectionFactory, inputStream);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+
+        DatabaseHelper.inTransaction(() -> {
+            seedVisibilities(configuration, teamIdList, puzzleIdList);
+            seedSubmissions(configuration, teamIdList, puzzleIdList);
+            return null;
+        });
     }
 
     public ConnectionFactory getConnectionFactory() {
         return inMemoryConnectionFactory;
     }
 
+    //Seeded visibilities are written as though each had been set once, with its history and
+    //change log rows, but without running the hunt's event processors.
+    private void seedVisibilities(
+            DevelopmentConfiguration configuration,
+            List<String> teamIdList,
+            List<String> puzzleIdList
+    ) {
+        int seededTeams = (int) Math.round(configuration.getSeededTeamRatio() * teamIdList.size());
+        int seededPuzzles = Math.min(configuration.getSeededPuzzles(), puzzleIdList.size());
+        if (seededTeams == 0 || seededPuzzles == 0) {
+            return;
+        }
+        String status = configuration.getSeededStatus();
+        if (!huntDefinition.getVisibilityStatusSet().isAllowedStatus(status)) {
+            throw new IllegalArgumentException("Seeded status " + status + " is not a visibility status of this hunt");
+        }
+
+        Instant timestamp = Instant.now();
+        List<List<Object>> visibilities = Lists.newArrayList();
+        List<List<Object>> histories = Lists.newArrayList();
+        List<List<Object>> changes = Lists.newArrayList();
+        for (String teamId : teamIdList.subList(0, seededTeams)) {
+            for (String puzzleId : puzzleIdList.subList(0, seededPuzzles)) {
+                visibilities.add(Lists.<Object>newArrayList(teamId, puzzleId, status));
+                histories.add(Lists.<Object>newArrayList(teamId, puzzleId, status, timestamp));
+                changes.add(Lists.<Object>newArrayList(Change.ChangeType.VISIBILITY, teamId, puzzleId, status, timestamp));
+            }
+        }
+        DatabaseHelper.insertBatch(
+                inMemoryConnectionFactory,
+                "INSERT INTO visibilities (teamId, puzzleId, status) VALUES (?, ?, ?)",
+                visibilities);
+        DatabaseHelper.insertBatch(
+                inMemoryConnectionFactory,
+                "INSERT INTO visibility_history (teamId, puzzleId, status, timestamp) VALUES (?, ?, ?, ?)",
+                histories);
+        DatabaseHelper.insertBatch(
+                inMemoryConnectionFactory,
+                "INSERT INTO change_log (changeType, teamId, puzzleId, status, timestamp) VALUES (?, ?, ?, ?, ?)",
+                changes);
+    }
+
+    //Historical submissions are already judged INCORRECT, one second apart and ending now.
+    private void seedSubmissions(
+            DevelopmentConfiguration configuration,
+            List<String> teamIdList,
+            List<String> puzzleIdList
+    ) {
+        int count = configuration.getHistoricalSubmissions();
+        if (count == 0 || teamIdList.isEmpty() || puzzleIdList.isEmpty()) {
+            return;
+        }
+
+        Random random = new Random(configuration.getRandomSeed());
+        Instant now = Instant.now();
+        List<List<Object>> submissions = Lists.newArrayList();
+        List<List<Object>> changes = Lists.newArrayList();
+        for (int i = 0; i < count; ++i) {
+            //The submissions table starts out empty, so these are its first ids.
+            int submissionId = i + 1;
+            String teamId = teamIdList.get(random.nextInt(teamIdList.size()));
+            String puzzleId = puzzleIdList.get(random.nextInt(puzzleIdList.size()));
+            Instant timestamp = now.minusSeconds(count - i);
+            submissions.add(Lists.<Object>newArrayList(
+                    submissionId, puzzleId, teamId, "GUESS" + i, timestamp, SubmissionStatus.INCORRECT));
+            changes.add(Lists.<Object>newArrayList(
+                    Change.ChangeType.SUBMISSION, teamId, puzzleId, SubmissionStatus.INCORRECT, submissionId, timestamp));
+        }
+        DatabaseHelper.insertBatch(
+                inMemoryConnectionFactory,
+                "INSERT INTO submissions (submissionId, puzzleId, teamId, submission, timestamp, status) " +
+                        "VALUES (?,?,?,?,?,?)",
+                submissions);
+        DatabaseHelper.insertBatch(
+                inMemoryConnectionFactory,
+                "INSERT INTO change_log (changeType, teamId, puzzleId, status, submissionId, timestamp) " +
+                        "VALUES (?,?,?,?,?,?)",
+                changes);
+    }
+
 }
@@ -1,37 +1,283 @@
 package edu.mit.puzzle.cube.core.events;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
-import java.util.Collection;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class CompositeEventProcessor implements EventProcessor<Event> {
 
-    @SuppressWarnings("rawtypes")
-    private Multimap<Class, EventProcessor> eventProcessors = HashMultimap.create();
+    private static Logger LOGGER = LogManager.getLogger(CompositeEventProcessor.class);
+
+    private static final Duration DEFAULT_SLOW_EVENT_THRESHOLD = Duration.ofSeconds(1);
+    private static final int MAX_TRACKED_CASCADE_DEPTH = 8;
+
+    private static class RegisteredEventProcessor {
+        @SuppressWarnings("rawtypes")
+        private final EventProcessor eventProcessor;
+        private final EventMetrics metrics;
+
+        @SuppressWarnings("rawtypes")
+        private RegisteredEventProcessor(EventProcessor eventProcessor, EventMetrics metrics) {
+            this.eventProcessor = eventProcessor;
+            this.metrics = metrics;
+        }
+    }
+
+    //Tracks the events processed on the current thread, so that a handler's cascade fan-out
+    //is the number of events processed between the handler starting and returning.
+    private static class ProcessingState {
+        private int depth = 0;
+        private int maxDepth = 0;
+        private int processedEvents = 0;
+        private String slowestHandlerName = null;
+        private long slowestHandlerNanos = 0;
+    }
+
+    //Event processors are registered at startup (and occasionally later, e.g. by a newly loaded
+    //hunt) while events are processed on many threads. Registering replaces the whole Dispatch,
+    //so that processing an event reads one consistent Dispatch without taking a lock.
+    private static class Dispatch {
+        @SuppressWarnings("rawtypes")
+        private final ImmutableListMultimap<Class, RegisteredEventProcessor> eventProcessors;
+        //The processors of each concrete event class, found by scanning eventProcessors for
+        //classes the event is an instance of (since processors can handle event supertypes).
+        private final ConcurrentMap<Class<?>, List<RegisteredEventProcessor>> processorsByEventClass =
+                new ConcurrentHashMap<>();
+
+        @SuppressWarnings("rawtypes")
+        private Dispatch(ImmutableListMultimap<Class, RegisteredEventProcessor> eventProcessors) {
+            this.eventProcessors = eventProcessors;
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<RegisteredEventProcessor> getProcessors(Class<?> eventClass) {
+            return processorsByEventClass.computeIfAbsent(eventClass, c -> {
+                ImmutableList.Builder<RegisteredEventProcessor> processors = ImmutableList.builder();
+                for (Class<? extends Event> eventKeyClass : eventProcessors.keySet()) {
+                    if (eventKeyClass.isAssignableFrom(c)) {
+                        processors.addAll(eventProcessors.get(eventKeyClass));
+                    }
+                }
+                return processors.build();
+            });
+        }
+    }
+
+    private volatile Dispatch dispatch = new Dispatch(ImmutableListMultimap.of());
+    private final ConcurrentMap<String, EventMetrics> eventTypeMetrics = new ConcurrentHashMap<>();
+    private final ThreadLocal<ProcessingState> processingState = ThreadLocal.withInitial(ProcessingState::new);
+    private final ThreadLocal<List<Event>> deferredEvents = new ThreadLocal<>();
+    private final LongAdder[] cascadeDepths = new LongAdder[MAX_TRACKED_CASCADE_DEPTH + 1];
+    private final LongAdder cascadeDepthTotal = new LongAdder();
+    private final long slowEventThresholdNanos;
 
     public CompositeEventProcessor() {
+        this(DEFAULT_SLOW_EVENT_THRESHOLD);
+    }
 
+    /**
+     * @param slowEventThreshold If processing a top-level event (including every event it
+     *                           cascades into) takes longer than this, a warning is logged.
+     */
+    public CompositeEventProcessor(Duration slowEventThreshold) {
+        this.slowEventThresholdNanos = slowEventThreshold.toNanos();
+        for (int i = 0; i < cascadeDepths.length; ++i) {
+            cascadeDepths[i] = new LongAdder();
+        }
+    }
+
+    public synchronized <T extends Event> void addEventProcessor(
+            Class<T> clazz,
+            EventProcessor<T> eventProcessor
+    ) {
+        addEventProcessor(clazz, clazz.getSimpleName() + "#" + (dispatch.eventProcessors.get(clazz).size() + 1), eventProcessor);
     }
 
-    public <T extends Event> void addEventProcessor(
+    /**
+     * Registers an event processor under a human-readable name, which is used to report its
+     * invocation counts and latencies.
+     */
+    @SuppressWarnings("rawtypes")
+    public synchronized <T extends Event> void addEventProcessor(
             Class<T> clazz,
+            String name,
             EventProcessor<T> eventProcessor
     ) {
-        this.eventProcessors.put(clazz, eventProcessor);
+        EventMetrics metrics = new EventMetrics(clazz.getSimpleName(), Optional.of(name));
+        dispatch = new Dispatch(ImmutableListMultimap.<Class, RegisteredEventProcessor>builder()
+                .putAll(dispatch.eventProcessors)
+                .put(clazz, new RegisteredEventProcessor(eventProcessor, metrics))
+                .build());
+    }
+
+    /**
+     * Runs work with the processing of the events it raises put off until it returns, so that a
+     * batch of changes is followed by one cascade instead of a cascade per change. The deferred
+     * events are then processed in the order they were raised, and the events their handlers
+     * raise are processed right away as usual. If work throws, its events are dropped. A call
+     * made while events are already being deferred on this thread joins the outer call.
+     *
+     * @param work The work whose events to defer
+     * @return The value returned by work
+     */
+    public <T> T processDeferred(Supplier<T> work) {
+        if (deferredEvents.get() != null) {
+            return work.get();
+        }
+        List<Event> events = Lists.newArrayList();
+        deferredEvents.set(events);
+        T result;
+        try {
+            result = work.get();
+        } finally {
+            deferredEvents.remove();
+        }
+        for (Event event : events) {
+            process(event);
+        }
+        return result;
     }
 
     @SuppressWarnings({"rawtypes", "unchecked"})
     public void process(Event event) {
-        //Loops over all entries in case we subclass Event types
-        for (Class<? extends Event> eventKeyClass : eventProcessors.keys()) {
-            if (eventKeyClass.isInstance(event)) {
-                Collection<EventProcessor> eventTypeProcessors = eventProcessors.get(eventKeyClass);
-                for (EventProcessor eventProcessor : eventTypeProcessors) {
-                    eventProcessor.process(event);
-                }
+        List<Event> deferred = deferredEvents.get();
+        if (deferred != null) {
+            deferred.add(event);
+            return;
+        }
+
+        ProcessingState state = processingState.get();
+        boolean topLevel = state.depth == 0;
+        if (topLevel) {
+            state.processedEvents = 0;
+            state.maxDepth = 0;
+            state.slowestHandlerName = null;
+            state.slowestHandlerNanos = 0;
+        }
+        state.depth++;
+        state.maxDepth = Math.max(state.maxDepth, state.depth);
+        state.processedEvents++;
+        int processedEventsBefore = state.processedEvents;
+        long start = System.nanoTime();
+        boolean threwException = true;
+        try {
+            for (RegisteredEventProcessor registered : dispatch.getProcessors(event.getClass())) {
+                processWithMetrics(registered, event, state);
+            }
+            threwException = false;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            int cascaded = state.processedEvents - processedEventsBefore;
+            state.depth--;
+
+            String eventType = getEventTypeName(event);
+            eventTypeMetrics.computeIfAbsent(eventType, type -> new EventMetrics(type, Optional.empty()))
+                    .record(elapsed, cascaded, threwException);
+
+            if (topLevel) {
+                cascadeDepths[Math.min(state.maxDepth, cascadeDepths.length) - 1].increment();
+                cascadeDepthTotal.add(state.maxDepth);
+            }
+            if (topLevel && elapsed > slowEventThresholdNanos) {
+                LOGGER.warn(String.format(
+                        "Processing %s took %d ms and cascaded into %d events; slowest handler was %s (%d ms)",
+                        eventType,
+                        TimeUnit.NANOSECONDS.toMillis(elapsed),
+                        cascaded,
+                        state.slowestHandlerName,
+                        TimeUnit.NANOSECONDS.toMillis(state.slowestHandlerNanos)));
+            }
+        }
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private void processWithMetrics(RegisteredEventProcessor registered, Event event, ProcessingState state) {
+        int processedEventsBefore = state.processedEvents;
+        long start = System.nanoTime();
+        boolean threwException = true;
+        try {
+            registered.eventProcessor.process(event);
+            threwException = false;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            registered.metrics.record(elapsed, state.processedEvents - processedEventsBefore, threwException);
+            if (elapsed > state.slowestHandlerNanos) {
+                state.slowestHandlerNanos = elapsed;
+                state.slowestHandlerName = registered.metrics.getHandlerName().get();
             }
         }
     }
 
+    //AutoValue generates subclasses named AutoValue_*, so report the class the event was declared as.
+    private static String getEventTypeName(Event event) {
+        Class<?> clazz = event.getClass();
+        while (clazz.getSimpleName().startsWith("AutoValue_") && clazz.getSuperclass() != null) {
+            clazz = clazz.getSuperclass();
+        }
+        return clazz.getSimpleName();
+    }
+
+    /**
+     * Gets how deeply top-level events have cascaded: entry i counts the events whose deepest
+     * chain of handlers processing further events was i + 1 events long (so entry 0 counts
+     * events that cascaded into nothing), and the last entry counts every deeper cascade.
+     */
+    public long[] getCascadeDepthCounts() {
+        long[] counts = new long[cascadeDepths.length];
+        for (int i = 0; i < cascadeDepths.length; ++i) {
+            counts[i] = cascadeDepths[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the sum of the cascade depths of every top-level event.
+     */
+    public long getCascadeDepthTotal() {
+        return cascadeDepthTotal.sum();
+    }
+
+    /**
+     * Gets the processing metrics of every event type that has been processed.
+     */
+    public List<EventMetrics> getEventTypeMetrics() {
+        return ImmutableList.copyOf(eventTypeMetrics.values());
+    }
+
+    /**
+     * Gets the processing metrics of every registered event processor.
+     */
+    public List<EventMetrics> getEventProcessorMetrics() {
+        return dispatch.eventProcessors.values().stream()
+                .map(registered -> registered.metrics)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Gets a point-in-time copy of all processing metrics, suitable for serializing to JSON.
+     */
+    public Map<String,Object> getMetricsSnapshot() {
+        return ImmutableMap.of(
+                "eventTypes", getEventTypeMetrics().stream()
+                        .map(EventMetrics::toMap)
+                        .collect(Collectors.toList()),
+                "eventProcessors", getEventProcessorMetrics().stream()
+                        .map(EventMetrics::toMap)
+                        .collect(Collectors.toList()));
+    }
+
 }
@@ -8,7 +8,10 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
     @JsonSubTypes.Type(FullReleaseEvent.class),
     @JsonSubTypes.Type(HuntStartEvent.class),
     @JsonSubTypes.Type(PeriodicTimerEvent.class),
+    @JsonSubTypes.Type(PolledChangeEvent.class),
+    @JsonSubTypes.Type(SetVisibilityEvent.class),
     @JsonSubTypes.Type(SubmissionCompleteEvent.class),
+    @JsonSubTypes.Type(TeamPropertyChangeEvent.class),
     @JsonSubTypes.Type(VisibilityChangeEvent.class),
 })
 public abstract class Event {
@@ -0,0 +1,234 @@
+package edu.mit.puzzle.cube.core.events;
+
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.auto.value.AutoValue;
+import edu.mit.puzzle.cube.core.db.DatabaseHelper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An EventBroadcaster pushes VisibilityChangeEvents and SubmissionCompleteEvents to
+ * subscribed clients (e.g. the /events/stream server-sent events endpoint) so they don't
+ * have to poll the stores to find changes.
+ *
+ * Every broadcast event is assigned an increasing id, and the most recent events are kept
+ * in a bounded replay buffer so a reconnecting client can resume from the last id it saw.
+ * Each subscription has a bounded queue; a subscriber that falls far enough behind to fill
+ * its queue is closed rather than being allowed to hold memory or slow down processing.
+ *
+ * Ids start again from 1 when the process restarts, so a client resuming from an id this
+ * broadcaster hasn't reached yet is told it missed events, just as if they had left the buffer.
+ *
+ * Open subscriptions can be capped with a permit for each; the permits may be shared by the
+ * broadcasters of several hunts to put a limit on the whole process.
+ */
+public class EventBroadcaster {
+
+    private static Logger LOGGER = LogManager.getLogger(EventBroadcaster.class);
+    private static ObjectMapper MAPPER = new ObjectMapper();
+
+    public static final int DEFAULT_REPLAY_BUFFER_SIZE = 1024;
+    public static final int DEFAULT_SUBSCRIPTION_QUEUE_SIZE = 256;
+
+    @AutoValue
+    public static abstract class BroadcastEvent {
+        public abstract long getId();
+        public abstract String getEventType();
+        public abstract Optional<String> getTeamId();
+        public abstract String getJson();
+
+        static BroadcastEvent create(long id, String eventType, Optional<String> teamId, String json) {
+            return new AutoValue_EventBroadcaster_BroadcastEvent(id, eventType, teamId, json);
+        }
+
+        boolean isVisibleTo(Optional<String> teamIdFilter) {
+            return !teamIdFilter.isPresent() || teamIdFilter.equals(getTeamId());
+        }
+    }
+
+    public class Subscription implements AutoCloseable {
+        private final Optional<String> teamIdFilter;
+        private final BlockingQueue<BroadcastEvent> queue;
+        private final boolean missedEvents;
+        private volatile boolean closed = false;
+
+        private Subscription(Optional<String> teamIdFilter, boolean missedEvents) {
+            this.teamIdFilter = teamIdFilter;
+            this.queue = new ArrayBlockingQueue<>(subscriptionQueueSize);
+            this.missedEvents = missedEvents;
+        }
+
+        /**
+         * Returns true if the subscription asked to resume from an event that is no longer
+         * in the replay buffer, in which case the client should re-fetch its full state.
+         */
+        public boolean hasMissedEvents() {
+            return missedEvents;
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * Waits for the next event for this subscription.
+         *
+         * @return The next event, or empty if the timeout elapsed or the subscription was closed
+         */
+        public Optional<BroadcastEvent> poll(long timeout, TimeUnit unit) throws InterruptedException {
+            if (closed) {
+                return Optional.empty();
+            }
+            return Optional.ofNullable(queue.poll(timeout, unit));
+        }
+
+        private void offer(BroadcastEvent event) {
+            if (event.isVisibleTo(teamIdFilter) && !queue.offer(event)) {
+                LOGGER.info("Dropping slow event stream subscriber" +
+                        teamIdFilter.map(teamId -> " for team " + teamId).orElse(""));
+                close();
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            subscriptions.remove(this);
+            queue.clear();
+            subscriptionPermits.release();
+        }
+    }
+
+    private final int replayBufferSize;
+    private final int subscriptionQueueSize;
+    private final Semaphore subscriptionPermits;
+    private final Deque<BroadcastEvent> replayBuffer = new ArrayDeque<>();
+    private final Set<Subscription> subscriptions = new CopyOnWriteArraySet<>();
+    private long lastId = 0;
+
+    public EventBroadcaster() {
+        this(DEFAULT_REPLAY_BUFFER_SIZE, DEFAULT_SUBSCRIPTION_QUEUE_SIZE);
+    }
+
+    public EventBroadcaster(int replayBufferSize, int subscriptionQueueSize) {
+        this(replayBufferSize, subscriptionQueueSize, new Semaphore(Integer.MAX_VALUE));
+    }
+
+    /**
+     * @param subscriptionPermits One permit is held by each open subscription
+     */
+    public EventBroadcaster(int replayBufferSize, int subscriptionQueueSize, Semaphore subscriptionPermits) {
+        this.replayBufferSize = replayBufferSize;
+        this.subscriptionQueueSize = subscriptionQueueSize;
+        this.subscriptionPermits = checkNotNull(subscriptionPermits);
+    }
+
+    /**
+     * Registers processors that broadcast the change events. An event raised inside a database
+     * transaction is only broadcast once the transaction commits, so clients never hear about
+     * changes that were rolled back or that they can't read yet.
+     */
+    public void addToEventProcessor(CompositeEventProcessor eventProcessor) {
+        eventProcessor.addEventProcessor(VisibilityChangeEvent.class, "broadcastVisibilityChange", event ->
+                DatabaseHelper.afterCommit(() ->
+                        broadcast(event, Optional.of(event.getVisibility().getTeamId()))));
+        eventProcessor.addEventProcessor(SubmissionCompleteEvent.class, "broadcastSubmissionComplete", event ->
+                DatabaseHelper.afterCommit(() ->
+                        broadcast(event, Optional.ofNullable(event.getSubmission().getTeamId()))));
+    }
+
+    public void broadcast(Event event, Optional<String> teamId) {
+        String json;
+        try {
+            json = MAPPER.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+
+        synchronized (replayBuffer) {
+            BroadcastEvent broadcastEvent = BroadcastEvent.create(++lastId, getEventTypeName(event), teamId, json);
+            replayBuffer.addLast(broadcastEvent);
+            if (replayBuffer.size() > replayBufferSize) {
+                replayBuffer.removeFirst();
+            }
+            for (Subscription subscription : subscriptions) {
+                subscription.offer(broadcastEvent);
+            }
+        }
+    }
+
+    /**
+     * Subscribes to broadcast events.
+     *
+     * @param teamIdFilter If present, only events about this team are delivered
+     * @param lastEventId If present, buffered events after this id are delivered first
+     * @return A Subscription, which must be closed when the client goes away, or empty if there
+     *         are no subscription permits left
+     */
+    public Optional<Subscription> subscribe(Optional<String> teamIdFilter, Optional<Long> lastEventId) {
+        if (!subscriptionPermits.tryAcquire()) {
+            return Optional.empty();
+        }
+        synchronized (replayBuffer) {
+            //An id past the last one was handed out before a restart.
+            boolean missedEvents = lastEventId.isPresent()
+                    && (lastEventId.get() > lastId
+                            || (lastEventId.get() < lastId
+                                    && (replayBuffer.isEmpty() || replayBuffer.getFirst().getId() > lastEventId.get() + 1)));
+            Subscription subscription = new Subscription(teamIdFilter, missedEvents);
+            if (lastEventId.isPresent()) {
+                for (BroadcastEvent bufferedEvent : replayBuffer) {
+                    if (bufferedEvent.getId() > lastEventId.get()) {
+                        subscription.offer(bufferedEvent);
+                    }
+                }
+            }
+            if (!subscription.isClosed()) {
+                subscriptions.add(subscription);
+            }
+            return Optional.of(subscription);
+        }
+    }
+
+    /**
+     * Closes every subscription, e.g. when the hunt they are watching is unloaded.
+     */
+    public void closeAllSubscriptions() {
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    public int getSubscriptionCount() {
+        return subscriptions.size();
+    }
+
+    private static String getEventTypeName(Event event) {
+        for (Class<?> clazz = event.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+            JsonTypeName typeName = clazz.getAnnotation(JsonTypeName.class);
+            if (typeName != null) {
+                return typeName.value();
+            }
+        }
+        return event.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,95 @@
+package edu.mit.puzzle.cube.core.events;
+
+import com.google.common.collect.ImmutableMap;
+import edu.mit.puzzle.cube.core.metrics.LatencyHistogram;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for the processing of one event type, either by a single registered handler or
+ * (when there is no handler name) by the CompositeEventProcessor as a whole.
+ *
+ * Cascaded events are the events that were processed as a consequence of this one, for
+ * example the VisibilityChangeEvents fired by a handler that calls setVisibility.
+ */
+public class EventMetrics {
+
+    private final String eventType;
+    private final Optional<String> handlerName;
+
+    private final LongAdder exceptions = new LongAdder();
+    private final LongAdder cascadedEvents = new LongAdder();
+    private final LongAccumulator maxCascadedEvents = new LongAccumulator(Math::max, 0);
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public EventMetrics(String eventType, Optional<String> handlerName) {
+        this.eventType = eventType;
+        this.handlerName = handlerName;
+    }
+
+    void record(long nanos, int cascaded, boolean threwException) {
+        latency.record(nanos);
+        cascadedEvents.add(cascaded);
+        maxCascadedEvents.accumulate(cascaded);
+        if (threwException) {
+            exceptions.increment();
+        }
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public Optional<String> getHandlerName() {
+        return handlerName;
+    }
+
+    public long getInvocations() {
+        return latency.getCount();
+    }
+
+    public long getExceptions() {
+        return exceptions.sum();
+    }
+
+    public long getCascadedEvents() {
+        return cascadedEvents.sum();
+    }
+
+    public long getMaxCascadedEvents() {
+        return maxCascadedEvents.get();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Gets a point-in-time copy of these counters, suitable for serializing to JSON.
+     */
+    public Map<String,Object> toMap() {
+        ImmutableMap.Builder<String,Object> builder = ImmutableMap.builder();
+        builder.put("eventType", eventType);
+        if (handlerName.isPresent()) {
+            builder.put("handlerName", handlerName.get());
+        }
+        builder.put("invocations", getInvocations());
+        builder.put("exceptions", getExceptions());
+        builder.put("cascadedEvents", getCascadedEvents());
+        builder.put("maxCascadedEvents", getMaxCascadedEvents());
+        builder.put("totalMillis", toMillis(latency.getTotalNanos()));
+        builder.put("p50Millis", toMillis(latency.getPercentileNanos(50)));
+        builder.put("p90Millis", toMillis(latency.getPercentileNanos(90)));
+        builder.put("p99Millis", toMillis(latency.getPercentileNanos(99)));
+        builder.put("maxMillis", toMillis(latency.getMaxNanos()));
+        return builder.build();
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
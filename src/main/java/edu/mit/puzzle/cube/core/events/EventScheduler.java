@@ -0,0 +1,193 @@
+package edu.mit.puzzle.cube.core.events;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Table;
+import edu.mit.puzzle.cube.core.db.ConnectionFactory;
+import edu.mit.puzzle.cube.core.db.DatabaseHelper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An EventScheduler processes events at a given time, e.g. a FullReleaseEvent at 14:00 or a
+ * SetVisibilityEvent for one team an hour after it solved a puzzle.
+ *
+ * Pending events are kept in a priority queue ordered by fire time, so checking for due
+ * events costs nothing when none are due. Every scheduled event is also stored in the
+ * scheduled_events table, and the queue is reloaded from there on startup, so scheduled
+ * events survive restarts. A row is marked fired before its event is processed, and only
+ * the caller that marks it processes it, so an event fires at most once even if several
+ * service instances share the database.
+ *
+ * At most once also means that an event whose processing throws is not retried: its row
+ * stays marked fired, and the failure is only logged. Retrying would risk repeating whatever
+ * part of the event's cascade had already been applied.
+ *
+ * Nothing here watches the clock; something (CubeApplication's timer, or a test) must call
+ * processDueEvents() regularly.
+ */
+public class EventScheduler {
+
+    private static Logger LOGGER = LogManager.getLogger(EventScheduler.class);
+    private static ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final Ordering<ScheduledEvent> FIRE_ORDER = Ordering.natural()
+            .onResultOf(ScheduledEvent::getFireTime)
+            .compound(Ordering.natural().onResultOf(ScheduledEvent::getScheduledEventId));
+
+    private final ConnectionFactory connectionFactory;
+    private final Clock clock;
+    private final EventProcessor<Event> eventProcessor;
+    private final PriorityQueue<ScheduledEvent> pendingEvents = new PriorityQueue<>(FIRE_ORDER);
+
+    public EventScheduler(
+            ConnectionFactory connectionFactory,
+            EventProcessor<Event> eventProcessor
+    ) {
+        this(connectionFactory, Clock.systemUTC(), eventProcessor);
+    }
+
+    public EventScheduler(
+            ConnectionFactory connectionFactory,
+            Clock clock,
+            EventProcessor<Event> eventProcessor
+    ) {
+        this.connectionFactory = checkNotNull(connectionFactory);
+        this.clock = checkNotNull(clock);
+        this.eventProcessor = checkNotNull(eventProcessor);
+        loadPendingEvents();
+    }
+
+    private void loadPendingEvents() {
+        Table<Integer, String, Object> resultTable = DatabaseHelper.query(
+                connectionFactory,
+                "SELECT scheduledEventId, fireTimestamp, event FROM scheduled_events " +
+                        "WHERE firedTimestamp IS NULL",
+                Lists.newArrayList()
+        );
+
+        synchronized (pendingEvents) {
+            pendingEvents.clear();
+            for (Map<String, Object> rowMap : resultTable.rowMap().values()) {
+                try {
+                    pendingEvents.add(ScheduledEvent.builder()
+                            .setScheduledEventId((Integer) rowMap.get("scheduledEventId"))
+                            .setFireTime((Instant) rowMap.get("fireTimestamp"))
+                            .setEvent(MAPPER.readValue((String) rowMap.get("event"), Event.class))
+                            .build());
+                } catch (IOException e) {
+                    LOGGER.error("Skipping unreadable scheduled event " + rowMap.get("scheduledEventId"), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Schedules an event to be processed at the given time. Events scheduled in the past are
+     * processed the next time processDueEvents() is called.
+     *
+     * @return The scheduled event, with its id filled in
+     */
+    public ScheduledEvent schedule(Event event, Instant fireTime) {
+        String eventJson;
+        try {
+            eventJson = MAPPER.writeValueAsString(event);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Event cannot be serialized", e);
+        }
+
+        Optional<Integer> scheduledEventId = DatabaseHelper.insert(
+                connectionFactory,
+                "INSERT INTO scheduled_events (fireTimestamp, event) VALUES (?, ?)",
+                Lists.newArrayList(fireTime, eventJson)
+        );
+        ScheduledEvent scheduledEvent = ScheduledEvent.builder()
+                .setScheduledEventId(scheduledEventId.get())
+                .setFireTime(fireTime)
+                .setEvent(event)
+                .build();
+        synchronized (pendingEvents) {
+            pendingEvents.add(scheduledEvent);
+        }
+        return scheduledEvent;
+    }
+
+    /**
+     * Cancels a pending scheduled event.
+     *
+     * @return true if the event was pending and is now cancelled
+     */
+    public boolean cancel(int scheduledEventId) {
+        int updates = DatabaseHelper.update(
+                connectionFactory,
+                "DELETE FROM scheduled_events WHERE scheduledEventId = ? AND firedTimestamp IS NULL",
+                Lists.newArrayList(scheduledEventId)
+        );
+        synchronized (pendingEvents) {
+            pendingEvents.removeIf(scheduledEvent -> scheduledEvent.getScheduledEventId() == scheduledEventId);
+        }
+        return updates > 0;
+    }
+
+    public List<ScheduledEvent> getPendingEvents() {
+        synchronized (pendingEvents) {
+            return FIRE_ORDER.immutableSortedCopy(pendingEvents);
+        }
+    }
+
+    public Optional<Instant> getNextFireTime() {
+        synchronized (pendingEvents) {
+            return Optional.ofNullable(pendingEvents.peek()).map(ScheduledEvent::getFireTime);
+        }
+    }
+
+    /**
+     * Processes every scheduled event whose fire time is not after the current time, in fire
+     * time order.
+     *
+     * @return The number of events processed
+     */
+    public int processDueEvents() {
+        int processed = 0;
+        for (ScheduledEvent scheduledEvent : takeDueEvents()) {
+            int updates = DatabaseHelper.update(
+                    connectionFactory,
+                    "UPDATE scheduled_events SET firedTimestamp = ? " +
+                            "WHERE scheduledEventId = ? AND firedTimestamp IS NULL",
+                    Lists.newArrayList(clock.instant(), scheduledEvent.getScheduledEventId())
+            );
+            if (updates > 0) {
+                try {
+                    eventProcessor.process(scheduledEvent.getEvent());
+                } catch (RuntimeException e) {
+                    LOGGER.error("Processing scheduled event " + scheduledEvent.getScheduledEventId() + " failed", e);
+                }
+                processed++;
+            }
+        }
+        return processed;
+    }
+
+    private List<ScheduledEvent> takeDueEvents() {
+        Instant now = clock.instant();
+        ImmutableList.Builder<ScheduledEvent> dueEvents = ImmutableList.builder();
+        synchronized (pendingEvents) {
+            while (!pendingEvents.isEmpty() && !pendingEvents.peek().getFireTime().isAfter(now)) {
+                dueEvents.add(pendingEvents.poll());
+            }
+        }
+        return dueEvents.build();
+    }
+}
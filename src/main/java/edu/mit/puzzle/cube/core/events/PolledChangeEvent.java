@@ -0,0 +1,31 @@
+package edu.mit.puzzle.cube.core.events;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.google.auto.value.AutoValue;
+
+import edu.mit.puzzle.cube.core.model.Change;
+
+/**
+ * Processed by the ChangeLogPoller for each change it reads from the change log, whichever
+ * process made it, so that in-memory state derived from the database can be refreshed. The
+ * change has already been processed (as a VisibilityChangeEvent or the like) by the process
+ * that made it, so handlers should only refresh state, not make further changes.
+ */
+@AutoValue
+@JsonDeserialize(builder = AutoValue_PolledChangeEvent.Builder.class)
+@JsonTypeName("PolledChange")
+public abstract class PolledChangeEvent extends Event {
+    @AutoValue.Builder
+    public static abstract class Builder {
+        @JsonProperty("change") public abstract Builder setChange(Change change);
+        public abstract PolledChangeEvent build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_PolledChangeEvent.Builder();
+    }
+
+    @JsonProperty("change") public abstract Change getChange();
+}
@@ -0,0 +1,50 @@
+package edu.mit.puzzle.cube.core.events;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.FromStringDeserializer;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import com.google.auto.value.AutoValue;
+
+import java.time.Instant;
+import javax.annotation.Nullable;
+
+/**
+ * An Event that the EventScheduler will process at (or shortly after) its fire time. The
+ * fire time is written in JSON as an ISO-8601 instant, e.g. "2017-01-13T14:00:00Z".
+ */
+@AutoValue
+@JsonDeserialize(builder = AutoValue_ScheduledEvent.Builder.class)
+public abstract class ScheduledEvent {
+    @AutoValue.Builder
+    public static abstract class Builder {
+        @Nullable @JsonProperty("scheduledEventId") public abstract Builder setScheduledEventId(Integer scheduledEventId);
+        @JsonProperty("fireTime") @JsonDeserialize(using = InstantDeserializer.class)
+        public abstract Builder setFireTime(Instant fireTime);
+        @JsonProperty("event") public abstract Builder setEvent(Event event);
+        public abstract ScheduledEvent build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_ScheduledEvent.Builder();
+    }
+
+    @Nullable @JsonProperty("scheduledEventId") public abstract Integer getScheduledEventId();
+    @JsonProperty("fireTime") @JsonSerialize(using = ToStringSerializer.class) public abstract Instant getFireTime();
+    @JsonProperty("event") public abstract Event getEvent();
+
+    static class InstantDeserializer extends FromStringDeserializer<Instant> {
+        private static final long serialVersionUID = 1L;
+
+        InstantDeserializer() {
+            super(Instant.class);
+        }
+
+        @Override
+        protected Instant _deserialize(String value, DeserializationContext context) {
+            return Instant.parse(value);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package edu.mit.puzzle.cube.core.events;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.google.auto.value.AutoValue;
+import java.util.List;
+
+@AutoValue
+@JsonDeserialize(builder = AutoValue_ScheduledEvents.Builder.class)
+public abstract class ScheduledEvents {
+    @AutoValue.Builder
+    public static abstract class Builder {
+        @JsonProperty("scheduledEvents") public abstract Builder setScheduledEvents(List<ScheduledEvent> scheduledEvents);
+        public abstract ScheduledEvents build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_ScheduledEvents.Builder();
+    }
+
+    @JsonProperty("scheduledEvents") public abstract List<ScheduledEvent> getScheduledEvents();
+}
@@ -0,0 +1,32 @@
+package edu.mit.puzzle.cube.core.events;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.google.auto.value.AutoValue;
+
+/**
+ * A request to move one team's visibility of one puzzle to a new status, for example a
+ * per-team unlock scheduled through the EventScheduler. Contrast with VisibilityChangeEvent,
+ * which reports a change that has already happened.
+ */
+@AutoValue
+@JsonDeserialize(builder = AutoValue_SetVisibilityEvent.Builder.class)
+@JsonTypeName("SetVisibility")
+public abstract class SetVisibilityEvent extends Event {
+    @AutoValue.Builder
+    public static abstract class Builder {
+        @JsonProperty("teamId") public abstract Builder setTeamId(String teamId);
+        @JsonProperty("puzzleId") public abstract Builder setPuzzleId(String puzzleId);
+        @JsonProperty("status") public abstract Builder setStatus(String status);
+        public abstract SetVisibilityEvent build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_SetVisibilityEvent.Builder();
+    }
+
+    @JsonProperty("teamId") public abstract String getTeamId();
+    @JsonProperty("puzzleId") public abstract String getPuzzleId();
+    @JsonProperty("status") public abstract String getStatus();
+}
@@ -0,0 +1,27 @@
+package edu.mit.puzzle.cube.core.events;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.google.auto.value.AutoValue;
+
+@AutoValue
+@JsonDeserialize(builder = AutoValue_TeamPropertyChangeEvent.Builder.class)
+@JsonTypeName("TeamPropertyChange")
+public abstract class TeamPropertyChangeEvent extends Event {
+    @AutoValue.Builder
+    public static abstract class Builder {
+        @JsonProperty("teamId") public abstract Builder setTeamId(String teamId);
+        @JsonProperty("propertyKey") public abstract Builder setPropertyKey(String propertyKey);
+        @JsonProperty("propertyValue") public abstract Builder setPropertyValue(Object propertyValue);
+        public abstract TeamPropertyChangeEvent build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_TeamPropertyChangeEvent.Builder();
+    }
+
+    @JsonProperty("teamId") public abstract String getTeamId();
+    @JsonProperty("propertyKey") public abstract String getPropertyKey();
+    @JsonProperty("propertyValue") public abstract Object getPropertyValue();
+}
@@ -0,0 +1,285 @@
+package edu.mit.puzzle.cube.core.leaderboard;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.collect.Table;
+import edu.mit.puzzle.cube.core.db.DatabaseHelper;
+import edu.mit.puzzle.cube.core.events.CompositeEventProcessor;
+import edu.mit.puzzle.cube.core.events.TeamPropertyChangeEvent;
+import edu.mit.puzzle.cube.core.events.VisibilityChangeEvent;
+import edu.mit.puzzle.cube.core.model.HuntStatusStore;
+import edu.mit.puzzle.cube.core.model.LeaderboardEntry;
+import edu.mit.puzzle.cube.core.model.LeaderboardPage;
+import edu.mit.puzzle.cube.core.model.Visibility;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A Leaderboard keeps every team ordered by rank score (highest first), then by number of
+ * puzzles solved (most first), then by the time of the last solve (earliest first), so that
+ * ranks and pages can be read without touching the database.
+ *
+ * The rank score is a team property, which is the score property unless the hunt names
+ * another. A score that includes points for elapsed time, stored only now and then, holds the
+ * time points of whenever it was stored, so such a hunt should rank by a property without
+ * them, such as its puzzle points.
+ *
+ * It is loaded from the database once, then kept up to date from TeamPropertyChangeEvents for
+ * the score and rank score properties and VisibilityChangeEvents to the solved status. Every
+ * change bumps the version; pages are cached until the version changes, so repeated reads of
+ * an unchanged leaderboard cost a map lookup.
+ */
+public class Leaderboard {
+
+    private static Logger LOGGER = LogManager.getLogger(Leaderboard.class);
+
+    public static final String DEFAULT_SCORE_PROPERTY_KEY = "score";
+    public static final String DEFAULT_SOLVED_STATUS = "SOLVED";
+
+    private static final int MAX_CACHED_PAGES = 100;
+
+    private static class Standing {
+        private final String teamId;
+        private final int score;
+        private final int rankScore;
+        private final int solveCount;
+        private final Instant lastSolveTime;
+
+        private Standing(String teamId, int score, int rankScore, int solveCount, Instant lastSolveTime) {
+            this.teamId = teamId;
+            this.score = score;
+            this.rankScore = rankScore;
+            this.solveCount = solveCount;
+            this.lastSolveTime = lastSolveTime;
+        }
+    }
+
+    private static final Comparator<Standing> STANDING_ORDER = Comparator
+            .comparingInt((Standing standing) -> -standing.rankScore)
+            .thenComparingInt(standing -> -standing.solveCount)
+            .thenComparing(standing -> standing.lastSolveTime, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(standing -> standing.teamId);
+
+    private final Clock clock;
+    private final String scorePropertyKey;
+    private final String rankPropertyKey;
+    private final String solvedStatus;
+
+    private final RankedSkipList<Standing> index = new RankedSkipList<>(STANDING_ORDER);
+    private final Map<String, Standing> standings = Maps.newHashMap();
+    private final Map<String, Set<String>> solvedPuzzles = Maps.newHashMap();
+    private final Map<List<Integer>, LeaderboardPage> pageCache = Maps.newHashMap();
+    private long version = 0;
+
+    public Leaderboard(HuntStatusStore huntStatusStore, Clock clock) {
+        this(huntStatusStore, clock, DEFAULT_SCORE_PROPERTY_KEY, DEFAULT_SCORE_PROPERTY_KEY, DEFAULT_SOLVED_STATUS);
+    }
+
+    /**
+     * @param scorePropertyKey The team property shown as each team's score
+     * @param rankPropertyKey The team property that teams are ranked by
+     */
+    public Leaderboard(
+            HuntStatusStore huntStatusStore,
+            Clock clock,
+            String scorePropertyKey,
+            String rankPropertyKey,
+            String solvedStatus
+    ) {
+        this.clock = checkNotNull(clock);
+        this.scorePropertyKey = checkNotNull(scorePropertyKey);
+        this.rankPropertyKey = checkNotNull(rankPropertyKey);
+        this.solvedStatus = checkNotNull(solvedStatus);
+        load(checkNotNull(huntStatusStore));
+    }
+
+    private synchronized void load(HuntStatusStore huntStatusStore) {
+        for (String teamId : huntStatusStore.getTeamIds()) {
+            put(new Standing(teamId, 0, 0, 0, null));
+        }
+        for (Map.Entry<String, Object> score : huntStatusStore.getTeamPropertyForAllTeams(scorePropertyKey).entrySet()) {
+            updateScore(score.getKey(), scorePropertyKey, score.getValue());
+        }
+        if (!rankPropertyKey.equals(scorePropertyKey)) {
+            for (Map.Entry<String, Object> rankScore : huntStatusStore.getTeamPropertyForAllTeams(rankPropertyKey).entrySet()) {
+                updateScore(rankScore.getKey(), rankPropertyKey, rankScore.getValue());
+            }
+        }
+        Table<Integer, String, Object> solves = huntStatusStore.getVisibilityHistoryForStatus(solvedStatus);
+        for (Map<String, Object> rowMap : solves.rowMap().values()) {
+            updateSolves((String) rowMap.get("teamId"), (String) rowMap.get("puzzleId"), (Instant) rowMap.get("timestamp"));
+        }
+        version = 0;
+    }
+
+    /**
+     * Keeps the leaderboard up to date with the hunt's events. Events processed inside a
+     * database transaction only change the standings once it commits.
+     */
+    public void addToEventProcessor(CompositeEventProcessor eventProcessor) {
+        eventProcessor.addEventProcessor(TeamPropertyChangeEvent.class, "updateLeaderboardOnTeamPropertyChange", event ->
+                DatabaseHelper.afterCommit(() -> applyTeamPropertyChange(
+                        event.getTeamId(), event.getPropertyKey(), event.getPropertyValue())));
+        eventProcessor.addEventProcessor(VisibilityChangeEvent.class, "updateLeaderboardOnVisibilityChange", event -> {
+            Visibility visibility = event.getVisibility();
+            Instant changeTime = clock.instant();
+            DatabaseHelper.afterCommit(() -> applyVisibilityChange(
+                    visibility.getTeamId(), visibility.getPuzzleId(), visibility.getStatus(), changeTime));
+        });
+    }
+
+    /**
+     * Records a visibility change that happened at the given time, which counts as a solve if
+     * it is to the solved status. A solve the leaderboard already has is ignored, so changes
+     * can safely be applied more than once.
+     */
+    public void applyVisibilityChange(String teamId, String puzzleId, String status, Instant changeTime) {
+        if (status.equals(solvedStatus)) {
+            synchronized (this) {
+                updateSolves(teamId, puzzleId, changeTime);
+            }
+        }
+    }
+
+    /**
+     * Records a team property change, which updates the team's score or rank score if it is to
+     * one of those properties.
+     */
+    public void applyTeamPropertyChange(String teamId, String propertyKey, Object propertyValue) {
+        if (propertyKey.equals(scorePropertyKey) || propertyKey.equals(rankPropertyKey)) {
+            synchronized (this) {
+                updateScore(teamId, propertyKey, propertyValue);
+            }
+        }
+    }
+
+    private Standing getStanding(String teamId) {
+        Standing standing = standings.get(teamId);
+        return standing != null ? standing : new Standing(teamId, 0, 0, 0, null);
+    }
+
+    private void put(Standing standing) {
+        Standing previous = standings.put(standing.teamId, standing);
+        if (previous != null) {
+            index.remove(previous);
+        }
+        index.add(standing);
+        version++;
+        pageCache.clear();
+    }
+
+    private void updateScore(String teamId, String propertyKey, Object scoreValue) {
+        Standing standing = getStanding(teamId);
+        int value = parseScore(teamId, scoreValue);
+        put(new Standing(
+                teamId,
+                propertyKey.equals(scorePropertyKey) ? value : standing.score,
+                propertyKey.equals(rankPropertyKey) ? value : standing.rankScore,
+                standing.solveCount,
+                standing.lastSolveTime));
+    }
+
+    private void updateSolves(String teamId, String puzzleId, Instant solveTime) {
+        if (!solvedPuzzles.computeIfAbsent(teamId, id -> Sets.newHashSet()).add(puzzleId)) {
+            return;
+        }
+        Standing standing = getStanding(teamId);
+        Instant lastSolveTime = standing.lastSolveTime == null || solveTime.isAfter(standing.lastSolveTime)
+                ? solveTime : standing.lastSolveTime;
+        put(new Standing(teamId, standing.score, standing.rankScore, standing.solveCount + 1, lastSolveTime));
+    }
+
+    private static int parseScore(String teamId, Object scoreValue) {
+        if (scoreValue instanceof Number) {
+            return ((Number) scoreValue).intValue();
+        }
+        try {
+            return Integer.parseInt(String.valueOf(scoreValue));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Ignoring non-numeric score " + scoreValue + " for team " + teamId);
+            return 0;
+        }
+    }
+
+    private LeaderboardEntry toEntry(Standing standing, int rank) {
+        return LeaderboardEntry.builder()
+                .setRank(rank)
+                .setTeamId(standing.teamId)
+                .setScore(standing.score)
+                .setSolveCount(standing.solveCount)
+                .setLastSolveTime(standing.lastSolveTime)
+                .build();
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Gets the 1-based rank of a team, or 0 if the team is not on the leaderboard.
+     */
+    public synchronized int rankOf(String teamId) {
+        Standing standing = standings.get(teamId);
+        return standing == null ? 0 : index.rankOf(standing);
+    }
+
+    public synchronized Optional<LeaderboardEntry> getEntry(String teamId) {
+        Standing standing = standings.get(teamId);
+        if (standing == null) {
+            return Optional.empty();
+        }
+        return Optional.of(toEntry(standing, index.rankOf(standing)));
+    }
+
+    public List<LeaderboardEntry> top(int k) {
+        return range(0, k);
+    }
+
+    /**
+     * Gets up to limit entries in rank order, skipping the first offset teams.
+     */
+    public synchronized List<LeaderboardEntry> range(int offset, int limit) {
+        ImmutableList.Builder<LeaderboardEntry> entries = ImmutableList.builder();
+        int rank = offset + 1;
+        for (Standing standing : index.range(offset, limit)) {
+            entries.add(toEntry(standing, rank++));
+        }
+        return entries.build();
+    }
+
+    /**
+     * Gets a page of the leaderboard, tagged with the version it was read at. Pages are
+     * reused until the leaderboard next changes.
+     */
+    public synchronized LeaderboardPage getPage(int offset, int limit) {
+        List<Integer> pageKey = ImmutableList.of(offset, limit);
+        LeaderboardPage page = pageCache.get(pageKey);
+        if (page == null) {
+            page = LeaderboardPage.builder()
+                    .setVersion(version)
+                    .setTotalTeams(index.size())
+                    .setEntries(range(offset, limit))
+                    .build();
+            if (pageCache.size() >= MAX_CACHED_PAGES) {
+                pageCache.clear();
+            }
+            pageCache.put(pageKey, page);
+        }
+        return page;
+    }
+}
@@ -0,0 +1,200 @@
+package edu.mit.puzzle.cube.core.leaderboard;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A sorted list supporting insertion, removal, rank lookup and positional access in expected
+ * O(log n) time. This is an indexable skip list: every forward link also records how many
+ * elements it skips, so ranks can be summed on the way down.
+ *
+ * The comparator must be consistent with equals, since an element is found for removal by
+ * comparing it. Not thread-safe.
+ */
+class RankedSkipList<E> {
+
+    private static final int MAX_LEVEL = 32;
+
+    private static class Node<E> {
+        private final E value;
+        private final Node<E>[] next;
+        //span[i] is the number of positions between this node and next[i] (or the end of the list).
+        private final int[] span;
+
+        private Node(E value, int level) {
+            this.value = value;
+            this.next = newNodeArray(level);
+            this.span = new int[level];
+        }
+    }
+
+    //Generic arrays can't be created directly.
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <E> Node<E>[] newNodeArray(int length) {
+        return (Node<E>[]) new Node[length];
+    }
+
+    private final Comparator<? super E> comparator;
+    private final Random random;
+    private final Node<E> head = new Node<>(null, MAX_LEVEL);
+    private int level = 1;
+    private int size = 0;
+
+    RankedSkipList(Comparator<? super E> comparator) {
+        this(comparator, new Random());
+    }
+
+    RankedSkipList(Comparator<? super E> comparator, Random random) {
+        this.comparator = checkNotNull(comparator);
+        this.random = checkNotNull(random);
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int randomLevel() {
+        int level = 1;
+        while (level < MAX_LEVEL && random.nextInt(4) == 0) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Adds an element. Adding an element equal to one already present adds a second copy.
+     */
+    void add(E value) {
+        Node<E>[] update = newNodeArray(MAX_LEVEL);
+        int[] rank = new int[MAX_LEVEL];
+        Node<E> node = head;
+        for (int i = level - 1; i >= 0; --i) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (node.next[i] != null && comparator.compare(node.next[i].value, value) < 0) {
+                rank[i] += node.span[i];
+                node = node.next[i];
+            }
+            update[i] = node;
+        }
+
+        int newLevel = randomLevel();
+        if (newLevel > level) {
+            for (int i = level; i < newLevel; ++i) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = size;
+            }
+            level = newLevel;
+        }
+
+        Node<E> newNode = new Node<>(value, newLevel);
+        for (int i = 0; i < newLevel; ++i) {
+            newNode.next[i] = update[i].next[i];
+            update[i].next[i] = newNode;
+            newNode.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = (rank[0] - rank[i]) + 1;
+        }
+        for (int i = newLevel; i < level; ++i) {
+            update[i].span[i]++;
+        }
+        size++;
+    }
+
+    /**
+     * Removes an element.
+     *
+     * @return true if the element was present
+     */
+    boolean remove(E value) {
+        Node<E>[] update = newNodeArray(MAX_LEVEL);
+        Node<E> node = head;
+        for (int i = level - 1; i >= 0; --i) {
+            while (node.next[i] != null && comparator.compare(node.next[i].value, value) < 0) {
+                node = node.next[i];
+            }
+            update[i] = node;
+        }
+
+        Node<E> target = node.next[0];
+        if (target == null || comparator.compare(target.value, value) != 0) {
+            return false;
+        }
+        for (int i = 0; i < level; ++i) {
+            if (update[i].next[i] == target) {
+                update[i].span[i] += target.span[i] - 1;
+                update[i].next[i] = target.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Gets the 1-based rank of an element, or 0 if it is not present.
+     */
+    int rankOf(E value) {
+        int rank = 0;
+        Node<E> node = head;
+        for (int i = level - 1; i >= 0; --i) {
+            while (node.next[i] != null && comparator.compare(node.next[i].value, value) <= 0) {
+                rank += node.span[i];
+                node = node.next[i];
+            }
+            if (node != head && comparator.compare(node.value, value) == 0) {
+                return rank;
+            }
+        }
+        return 0;
+    }
+
+    private Node<E> getNode(int rank) {
+        int traversed = 0;
+        Node<E> node = head;
+        for (int i = level - 1; i >= 0; --i) {
+            while (node.next[i] != null && traversed + node.span[i] <= rank) {
+                traversed += node.span[i];
+                node = node.next[i];
+            }
+            if (traversed == rank) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the element with the given 1-based rank.
+     */
+    E get(int rank) {
+        if (rank < 1 || rank > size) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " is out of range for size " + size);
+        }
+        return getNode(rank).value;
+    }
+
+    /**
+     * Gets up to limit elements in order, starting after the first offset elements.
+     */
+    List<E> range(int offset, int limit) {
+        ImmutableList.Builder<E> builder = ImmutableList.builder();
+        if (offset < 0 || offset >= size || limit <= 0) {
+            return builder.build();
+        }
+        Node<E> node = getNode(offset + 1);
+        for (int i = 0; i < limit && node != null; ++i) {
+            builder.add(node.value);
+            node = node.next[0];
+        }
+        return builder.build();
+    }
+}
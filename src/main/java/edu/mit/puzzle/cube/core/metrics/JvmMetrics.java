@@ -0,0 +1,59 @@
+package edu.mit.puzzle.cube.core.metrics;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+
+/**
+ * Registers the JVM's heap, garbage collection and thread metrics, read from the platform
+ * MXBeans on every scrape.
+ */
+public class JvmMetrics {
+
+    private JvmMetrics() {
+    }
+
+    public static void register(MetricsRegistry metricsRegistry) {
+        metricsRegistry.register(
+                "jvm_memory_heap_bytes",
+                "Heap memory, by area (used, committed or max)",
+                MetricsRegistry.Type.GAUGE,
+                writer -> {
+                    MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+                    writer.sample(ImmutableMap.of("area", "used"), heap.getUsed());
+                    writer.sample(ImmutableMap.of("area", "committed"), heap.getCommitted());
+                    if (heap.getMax() >= 0) {
+                        writer.sample(ImmutableMap.of("area", "max"), heap.getMax());
+                    }
+                });
+        metricsRegistry.register(
+                "jvm_gc_collections_total",
+                "Garbage collections, by collector",
+                MetricsRegistry.Type.COUNTER,
+                writer -> {
+                    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                        if (gc.getCollectionCount() >= 0) {
+                            writer.sample(ImmutableMap.of("gc", gc.getName()), gc.getCollectionCount());
+                        }
+                    }
+                });
+        metricsRegistry.register(
+                "jvm_gc_collection_seconds_total",
+                "Time spent in garbage collection, by collector",
+                MetricsRegistry.Type.COUNTER,
+                writer -> {
+                    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                        if (gc.getCollectionTime() >= 0) {
+                            writer.sample(ImmutableMap.of("gc", gc.getName()), gc.getCollectionTime() / 1000.0);
+                        }
+                    }
+                });
+        metricsRegistry.register(
+                "jvm_threads",
+                "Live threads",
+                MetricsRegistry.Type.GAUGE,
+                writer -> writer.sample(ImmutableMap.of(), ManagementFactory.getThreadMXBean().getThreadCount()));
+    }
+}
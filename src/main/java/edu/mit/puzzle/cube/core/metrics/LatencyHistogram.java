@@ -0,0 +1,107 @@
+package edu.mit.puzzle.cube.core.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A LatencyHistogram is a lock-free histogram of durations with exponentially sized buckets.
+ *
+ * Bucket i counts durations up to 2^i microseconds, so percentiles are reported as the upper
+ * bound of the bucket they fall in. That is at most a factor of two off, which is plenty to
+ * tell a 2ms handler from a 2s one, and recording a value is just a couple of striped adds.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKET_COUNT = 32;
+    private static final long[] BUCKET_UPPER_BOUNDS_NANOS;
+    static {
+        BUCKET_UPPER_BOUNDS_NANOS = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            BUCKET_UPPER_BOUNDS_NANOS[i] = TimeUnit.MICROSECONDS.toNanos(1L << i);
+        }
+    }
+
+    private final LongAdder[] buckets;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        buckets = new LongAdder[BUCKET_COUNT + 1];
+        for (int i = 0; i < buckets.length; ++i) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        buckets[bucketIndex(nanos)].increment();
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    private static int bucketIndex(long nanos) {
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            if (nanos <= BUCKET_UPPER_BOUNDS_NANOS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_COUNT;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Gets an upper bound on the given percentile of recorded durations.
+     *
+     * @param percentile A percentile between 0 and 100
+     * @return The upper bound of the bucket containing the percentile, or 0 if nothing was recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long bucketCount : counts) {
+            total += bucketCount;
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) {
+                return i < BUCKET_COUNT ? Math.min(BUCKET_UPPER_BOUNDS_NANOS[i], getMaxNanos()) : getMaxNanos();
+            }
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * Gets the per-bucket (non-cumulative) counts. The last entry counts durations that
+     * exceeded the largest bucket bound.
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; ++i) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    public static long[] getBucketUpperBoundsNanos() {
+        return BUCKET_UPPER_BOUNDS_NANOS.clone();
+    }
+}
@@ -0,0 +1,252 @@
+package edu.mit.puzzle.cube.core.metrics;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A MetricsRegistry collects the metrics of a running CubeApplication and renders them in the
+ * Prometheus text exposition format.
+ *
+ * Metrics are grouped into families by name. A family's samples come either from series the
+ * registry owns (striped LongAdder counters and LatencyHistograms, created on first use) or
+ * from Collectors, which read counters kept elsewhere (by a store, say) when the registry is
+ * scraped. Recording therefore never takes a lock, and reading happens only on a scrape.
+ */
+public class MetricsRegistry {
+
+    private static Logger LOGGER = LogManager.getLogger(MetricsRegistry.class);
+
+    public enum Type {
+        COUNTER,
+        GAUGE,
+        HISTOGRAM;
+
+        private String getPrometheusName() {
+            return name().toLowerCase();
+        }
+    }
+
+    /**
+     * Writes samples for one metric family when the registry is scraped.
+     */
+    @FunctionalInterface
+    public interface Collector {
+        void collect(SampleWriter writer);
+    }
+
+    /**
+     * A registered Collector, which stops contributing samples once closed.
+     */
+    public class Registration implements AutoCloseable {
+        private final Family family;
+        private final Collector collector;
+
+        private Registration(Family family, Collector collector) {
+            this.family = family;
+            this.collector = collector;
+        }
+
+        @Override
+        public void close() {
+            family.collectors.remove(collector);
+        }
+    }
+
+    private static class Family {
+        private final String name;
+        private final String help;
+        private final Type type;
+        private final ConcurrentMap<Map<String,String>,LongAdder> counters = new ConcurrentSkipListMap<>(
+                MetricsRegistry::compareLabels);
+        private final ConcurrentMap<Map<String,String>,LatencyHistogram> histograms = new ConcurrentSkipListMap<>(
+                MetricsRegistry::compareLabels);
+        private final List<Collector> collectors = new CopyOnWriteArrayList<>();
+
+        private Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private final ConcurrentMap<String,Family> families = new ConcurrentSkipListMap<>();
+
+    private Family getFamily(String name, String help, Type type) {
+        checkArgument(name.matches("[a-zA-Z_:][a-zA-Z0-9_:]*"), "Invalid metric name: " + name);
+        Family family = families.computeIfAbsent(name, n -> new Family(n, help, type));
+        checkArgument(family.type == type, "Metric " + name + " is already registered as a " + family.type);
+        return family;
+    }
+
+    /**
+     * Gets the counter with the given name and labels, creating it if necessary. Callers on a
+     * hot path should keep the returned LongAdder rather than looking it up every time.
+     */
+    public LongAdder counter(String name, String help, Map<String,String> labels) {
+        return getFamily(name, help, Type.COUNTER).counters.computeIfAbsent(
+                ImmutableMap.copyOf(labels), l -> new LongAdder());
+    }
+
+    /**
+     * Gets the histogram with the given name and labels, creating it if necessary. It is
+     * exported in seconds, with the LatencyHistogram bucket bounds.
+     */
+    public LatencyHistogram histogram(String name, String help, Map<String,String> labels) {
+        return getFamily(name, help, Type.HISTOGRAM).histograms.computeIfAbsent(
+                ImmutableMap.copyOf(labels), l -> new LatencyHistogram());
+    }
+
+    /**
+     * Registers a Collector that writes samples for the named family on every scrape. Several
+     * Collectors can share a family, e.g. one per hunt, as long as their labels differ.
+     */
+    public Registration register(String name, String help, Type type, Collector collector) {
+        Family family = getFamily(name, help, type);
+        family.collectors.add(checkNotNull(collector));
+        return new Registration(family, collector);
+    }
+
+    /**
+     * Renders every metric in the Prometheus text exposition format (version 0.0.4). A
+     * Collector that throws is logged and skipped, so one broken metric can't hide the rest.
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder();
+        for (Family family : families.values()) {
+            StringBuilder samples = new StringBuilder();
+            SampleWriter writer = new SampleWriter(samples, family.name);
+            for (Map.Entry<Map<String,String>,LongAdder> counter : family.counters.entrySet()) {
+                writer.sample(counter.getKey(), counter.getValue().sum());
+            }
+            for (Map.Entry<Map<String,String>,LatencyHistogram> histogram : family.histograms.entrySet()) {
+                writer.histogram(histogram.getKey(), histogram.getValue());
+            }
+            for (Collector collector : family.collectors) {
+                int length = samples.length();
+                try {
+                    collector.collect(writer);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Failed to collect metric " + family.name, e);
+                    samples.setLength(length);
+                }
+            }
+            if (samples.length() == 0) {
+                continue;
+            }
+            out.append("# HELP ").append(family.name).append(' ')
+                    .append(family.help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ')
+                    .append(family.type.getPrometheusName()).append('\n');
+            out.append(samples);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes the samples of one metric family.
+     */
+    public static class SampleWriter {
+        private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+        private final StringBuilder out;
+        private final String name;
+
+        private SampleWriter(StringBuilder out, String name) {
+            this.out = out;
+            this.name = name;
+        }
+
+        public void sample(Map<String,String> labels, double value) {
+            writeLine(name, labels, null, value);
+        }
+
+        /**
+         * Writes a LatencyHistogram as a histogram in seconds.
+         */
+        public void histogram(Map<String,String> labels, LatencyHistogram histogram) {
+            long[] boundsNanos = LatencyHistogram.getBucketUpperBoundsNanos();
+            double[] bounds = new double[boundsNanos.length];
+            for (int i = 0; i < boundsNanos.length; ++i) {
+                bounds[i] = boundsNanos[i] / NANOS_PER_SECOND;
+            }
+            histogram(labels, bounds, histogram.getBucketCounts(), histogram.getTotalNanos() / NANOS_PER_SECOND);
+        }
+
+        /**
+         * Writes a histogram.
+         *
+         * @param bounds The upper bound of each bucket, in increasing order
+         * @param counts The (non-cumulative) count of each bucket, followed by the count of
+         *               values above the last bound
+         * @param sum The sum of every recorded value
+         */
+        public void histogram(Map<String,String> labels, double[] bounds, long[] counts, double sum) {
+            checkArgument(counts.length == bounds.length + 1, "Expected one more count than bounds");
+            long cumulative = 0;
+            for (int i = 0; i < bounds.length; ++i) {
+                cumulative += counts[i];
+                writeLine(name + "_bucket", labels, formatValue(bounds[i]), cumulative);
+            }
+            cumulative += counts[bounds.length];
+            writeLine(name + "_bucket", labels, "+Inf", cumulative);
+            writeLine(name + "_sum", labels, null, sum);
+            writeLine(name + "_count", labels, null, cumulative);
+        }
+
+        private void writeLine(String sampleName, Map<String,String> labels, String le, double value) {
+            out.append(sampleName);
+            if (!labels.isEmpty() || le != null) {
+                out.append('{');
+                boolean first = true;
+                for (Map.Entry<String,String> label : labels.entrySet()) {
+                    if (!first) {
+                        out.append(',');
+                    }
+                    first = false;
+                    appendLabel(label.getKey(), label.getValue());
+                }
+                if (le != null) {
+                    if (!first) {
+                        out.append(',');
+                    }
+                    appendLabel("le", le);
+                }
+                out.append('}');
+            }
+            out.append(' ').append(formatValue(value)).append('\n');
+        }
+
+        private void appendLabel(String labelName, String labelValue) {
+            out.append(labelName).append("=\"")
+                    .append(labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+    }
+
+    private static String formatValue(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        } else if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static int compareLabels(Map<String,String> a, Map<String,String> b) {
+        return a.toString().compareTo(b.toString());
+    }
+}
@@ -0,0 +1,43 @@
+package edu.mit.puzzle.cube.core.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.google.auto.value.AutoValue;
+import java.time.Instant;
+import javax.annotation.Nullable;
+
+@AutoValue
+@JsonDeserialize(builder = AutoValue_Change.Builder.class)
+public abstract class Change {
+    public enum ChangeType {
+        VISIBILITY,
+        SUBMISSION,
+        TEAM_PROPERTY
+    }
+
+    @AutoValue.Builder
+    public static abstract class Builder {
+        @JsonProperty("changeId") public abstract Builder setChangeId(Long changeId);
+        @JsonProperty("changeType") public abstract Builder setChangeType(ChangeType changeType);
+        @JsonProperty("teamId") public abstract Builder setTeamId(String teamId);
+        @Nullable @JsonProperty("puzzleId") public abstract Builder setPuzzleId(String puzzleId);
+        @Nullable @JsonProperty("status") public abstract Builder setStatus(String status);
+        @Nullable @JsonProperty("propertyKey") public abstract Builder setPropertyKey(String propertyKey);
+        @Nullable @JsonProperty("submissionId") public abstract Builder setSubmissionId(Integer submissionId);
+        @Nullable @JsonProperty("timestamp") public abstract Builder setTimestamp(Instant timestamp);
+        public abstract Change build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_Change.Builder();
+    }
+
+    @JsonProperty("changeId") public abstract Long getChangeId();
+    @JsonProperty("changeType") public abstract ChangeType getChangeType();
+    @JsonProperty("teamId") public abstract String getTeamId();
+    @Nullable @JsonProperty("puzzleId") public abstract String getPuzzleId();
+    @Nullable @JsonProperty("status") public abstract String getStatus();
+    @Nullable @JsonProperty("propertyKey") public abstract String getPropertyKey();
+    @Nullable @JsonProperty("submissionId") public abstract Integer getSubmissionId();
+    @Nullable @JsonProperty("timestamp") public abstract Instant getTimestamp();
+}
@@ -0,0 +1,26 @@
+package edu.mit.puzzle.cube.core.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.google.auto.value.AutoValue;
+import java.util.List;
+
+@AutoValue
+@JsonDeserialize(builder = AutoValue_Changes.Builder.class)
+public abstract class Changes {
+    @AutoValue.Builder
+    public static abstract class Builder {
+        @JsonProperty("changes") public abstract Builder setChanges(List<Change> changes);
+        @JsonProperty("lastChangeId") public abstract Builder setLastChangeId(Long lastChangeId);
+        @JsonProperty("hasMore") public abstract Builder setHasMore(Boolean hasMore);
+        public abstract Changes build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_Changes.Builder();
+    }
+
+    @JsonProperty("changes") public abstract List<Change> getChanges();
+    @JsonProperty("lastChangeId") public abstract Long getLastChangeId();
+    @JsonProperty("hasMore") public abstract Boolean getHasMore();
+}
@@ -0,0 +1,29 @@
+package edu.mit.puzzle.cube.core.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.google.auto.value.AutoValue;
+
+import javax.annotation.Nullable;
+
+@AutoValue
+@JsonDeserialize(builder = AutoValue_HealthCheckResult.Builder.class)
+public abstract class HealthCheckResult {
+    @AutoValue.Builder
+    public static abstract class Builder {
+        @JsonProperty("name") public abstract Builder setName(String name);
+        @JsonProperty("healthy") public abstract Builder setHealthy(boolean healthy);
+        @JsonProperty("latencyMillis") public abstract Builder setLatencyMillis(double latencyMillis);
+        @Nullable @JsonProperty("detail") public abstract Builder setDetail(String detail);
+        public abstract HealthCheckResult build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_HealthCheckResult.Builder();
+    }
+
+    @JsonProperty("name") public abstract String getName();
+    @JsonProperty("healthy") public abstract boolean getHealthy();
+    @JsonProperty("latencyMillis") public abstract double getLatencyMillis();
+    @Nullable @JsonProperty("detail") public abstract String getDetail();
+}
@@ -0,0 +1,28 @@
+package edu.mit.puzzle.cube.core.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.google.auto.value.AutoValue;
+
+import java.time.Instant;
+import java.util.List;
+
+@AutoValue
+@JsonDeserialize(builder = AutoValue_HealthReport.Builder.class)
+public abstract class HealthReport {
+    @AutoValue.Builder
+    public static abstract class Builder {
+        @JsonProperty("healthy") public abstract Builder setHealthy(boolean healthy);
+        @JsonProperty("checkedAt") public abstract Builder setCheckedAt(Instant checkedAt);
+        @JsonProperty("checks") public abstract Builder setChecks(List<HealthCheckResult> checks);
+        public abstract HealthReport build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_HealthReport.Builder();
+    }
+
+    @JsonProperty("healthy") public abstract boolean getHealthy();
+    @JsonProperty("checkedAt") public abstract Instant getCheckedAt();
+    @JsonProperty("checks") public abstract List<HealthCheckResult> getChecks();
+}
@@ -0,0 +1,23 @@
+package edu.mit.puzzle.cube.core.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.google.auto.value.AutoValue;
+
+@AutoValue
+@JsonDeserialize(builder = AutoValue_Hunt.Builder.class)
+public abstract class Hunt {
+    @AutoValue.Builder
+    public static abstract class Builder {
+        @JsonProperty("huntId") public abstract Builder setHuntId(String huntId);
+        @JsonProperty("huntDefinitionClass") public abstract Builder setHuntDefinitionClass(String huntDefinitionClass);
+        public abstract Hunt build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_Hunt.Builder();
+    }
+
+    @JsonProperty("huntId") public abstract String getHuntId();
+    @JsonProperty("huntDefinitionClass") public abstract String getHuntDefinitionClass();
+}
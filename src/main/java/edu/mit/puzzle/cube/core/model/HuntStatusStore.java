@@ -2,16 +2,20 @@ package edu.mit.puzzle.cube.core.model;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.*;
+import edu.mit.puzzle.cube.core.caching.VersionCounters;
 import edu.mit.puzzle.cube.core.db.ConnectionFactory;
 import edu.mit.puzzle.cube.core.db.DatabaseHelper;
 import edu.mit.puzzle.cube.core.events.Event;
 import edu.mit.puzzle.cube.core.events.EventProcessor;
+import edu.mit.puzzle.cube.core.events.TeamPropertyChangeEvent;
 import edu.mit.puzzle.cube.core.events.VisibilityChangeEvent;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.time.*;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -20,11 +24,20 @@ public class HuntStatusStore {
 
     private static Logger LOGGER = LogManager.getLogger(HuntStatusStore.class);
 
+    private static final int PAGE_SIZE = 1000;
+
     private final ConnectionFactory connectionFactory;
     private final Clock clock;
     private final VisibilityStatusSet visibilityStatusSet;
     private final EventProcessor<Event> eventProcessor;
 
+    private final VersionCounters visibilityVersions = new VersionCounters();
+    private final VersionCounters teamPropertyVersions = new VersionCounters();
+
+    private final LongAdder visibilityReads = new LongAdder();
+    private final LongAdder setVisibilityAttempts = new LongAdder();
+    private final LongAdder visibilityTransitions = new LongAdder();
+
     public HuntStatusStore(
         ConnectionFactory connectionFactory,
         VisibilityStatusSet visibilityStatusSet,
@@ -45,11 +58,55 @@ public class HuntStatusStore {
         this.eventProcessor = checkNotNull(eventProcessor);
     }
 
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Versions of the visibilities, bumped by every visibility change once it is
+     * committed.
+     */
+    public VersionCounters getVisibilityVersions() {
+        return visibilityVersions;
+    }
+
+    /**
+     * Versions of the team properties, bumped by every team property change once it is
+     * committed.
+     */
+    public VersionCounters getTeamPropertyVersions() {
+        return teamPropertyVersions;
+    }
+
+    /**
+     * Gets the number of visibility reads (of one visibility, one team's or a listing) since
+     * this store was created.
+     */
+    public long getVisibilityReadCount() {
+        return visibilityReads.sum();
+    }
+
+    /**
+     * Gets the number of setVisibility calls since this store was created, whether or not
+     * they changed anything.
+     */
+    public long getSetVisibilityAttemptCount() {
+        return setVisibilityAttempts.sum();
+    }
+
+    /**
+     * Gets the number of committed visibility changes since this store was created.
+     */
+    public long getVisibilityTransitionCount() {
+        return visibilityTransitions.sum();
+    }
+
     public VisibilityStatusSet getVisibilityStatusSet() {
         return this.visibilityStatusSet;
     }
 
     public String getVisibility(String teamId, String puzzleId) {
+        visibilityReads.increment();
         return getExplicitVisibility(teamId, puzzleId).orElse(visibilityStatusSet.getDefaultVisibilityStatus());
     }
 
@@ -57,6 +114,7 @@ public class HuntStatusStore {
             Optional<String> teamId,
             Optional<String> puzzleId
     ) {
+        visibilityReads.increment();
         String query = "SELECT teamId, puzzleId, status FROM visibilities";
         List<Object> parameters = Lists.newArrayList();
         if (teamId.isPresent() && puzzleId.isPresent()) {
@@ -88,7 +146,60 @@ public class HuntStatusStore {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Passes each explicit visibility matching the optional filters to a consumer, in
+     * (teamId, puzzleId) order. Rows are read a page at a time and no query is left open while
+     * the consumer runs, so a slow consumer (like a response being streamed to a client) holds
+     * neither a database cursor nor the whole result in memory.
+     */
+    public void forEachExplicitVisibility(
+            Optional<String> teamId,
+            Optional<String> puzzleId,
+            Consumer<Visibility> consumer
+    ) {
+        visibilityReads.increment();
+        String lastTeamId = "";
+        String lastPuzzleId = "";
+        while (true) {
+            String query = "SELECT teamId, puzzleId, status FROM visibilities " +
+                    "WHERE (teamId > ? OR (teamId = ? AND puzzleId > ?))";
+            List<Object> parameters = Lists.newArrayList(lastTeamId, lastTeamId, lastPuzzleId);
+            if (teamId.isPresent()) {
+                query += " AND teamId = ?";
+                parameters.add(teamId.get());
+            }
+            if (puzzleId.isPresent()) {
+                query += " AND puzzleId = ?";
+                parameters.add(puzzleId.get());
+            }
+            query += " ORDER BY teamId, puzzleId LIMIT ?";
+            parameters.add(PAGE_SIZE);
+
+            Table<Integer,String,Object> resultTable = DatabaseHelper.query(
+                    connectionFactory,
+                    query,
+                    parameters
+            );
+            List<Visibility> page = resultTable.rowMap().values().stream()
+                    .map(rowMap ->
+                        Visibility.builder()
+                                .setTeamId((String) rowMap.get("teamId"))
+                                .setPuzzleId((String) rowMap.get("puzzleId"))
+                                .setStatus((String) rowMap.get("status"))
+                                .build()
+                    )
+                    .collect(Collectors.toList());
+            page.forEach(consumer);
+            if (page.size() < PAGE_SIZE) {
+                return;
+            }
+            lastTeamId = page.get(page.size() - 1).getTeamId();
+            lastPuzzleId = page.get(page.size() - 1).getPuzzleId();
+        }
+    }
+
     public Map<String,String> getVisibilitiesForTeam(String teamId) {
+        visibilityReads.increment();
         Table<Integer, String, Object> resultTable = DatabaseHelper.query(
                 connectionFactory,
                 "SELECT puzzles.puzzleId AS puzzleId, visibilities.status AS status FROM puzzles " +
@@ -161,21 +272,59 @@ public class HuntStatusStore {
     }
 
     public boolean setTeamProperty(String teamId, String propertyKey, Object propertyValue) {
-        Optional<Integer> generatedId = DatabaseHelper.insert(
-                connectionFactory,
-                "INSERT OR IGNORE INTO team_properties (teamId, propertyKey, propertyValue) VALUES (?,?,?)",
-                Lists.newArrayList(teamId, propertyKey, propertyValue));
-        if (generatedId.isPresent()) {
+        //The change and its change log entry are committed together, so other processes see it.
+        boolean changed = DatabaseHelper.inTransaction(() -> {
+            Optional<Integer> generatedId = DatabaseHelper.insert(
+                    connectionFactory,
+                    "INSERT OR IGNORE INTO team_properties (teamId, propertyKey, propertyValue) VALUES (?,?,?)",
+                    Lists.newArrayList(teamId, propertyKey, propertyValue));
+            boolean updated = generatedId.isPresent();
+            if (!updated) {
+                int updates = DatabaseHelper.update(
+                        connectionFactory,
+                        "UPDATE team_properties SET propertyValue = ? " +
+                                "WHERE teamId = ? AND propertyKey = ?",
+                        Lists.newArrayList(propertyValue, teamId, propertyKey)
+                );
+                updated = updates > 0;
+            }
+            if (!updated) {
+                return false;
+            }
+
+            DatabaseHelper.afterCommit(() -> teamPropertyVersions.bump(teamId, null));
+            DatabaseHelper.insert(
+                    connectionFactory,
+                    "INSERT INTO change_log (changeType, teamId, propertyKey, timestamp) VALUES (?, ?, ?, ?)",
+                    Lists.newArrayList(Change.ChangeType.TEAM_PROPERTY, teamId, propertyKey, clock.instant()));
             return true;
+        });
+
+        if (changed) {
+            eventProcessor.process(TeamPropertyChangeEvent.builder()
+                    .setTeamId(teamId)
+                    .setPropertyKey(propertyKey)
+                    .setPropertyValue(propertyValue)
+                    .build());
         }
+        return changed;
+    }
 
-        int updates = DatabaseHelper.update(
+    /**
+     * Gets the value of one property for every team that has it set.
+     */
+    public Map<String,Object> getTeamPropertyForAllTeams(String propertyKey) {
+        Table<Integer, String, Object> resultTable = DatabaseHelper.query(
                 connectionFactory,
-                "UPDATE team_properties SET propertyValue = ? " +
-                        "WHERE teamId = ? AND propertyKey = ?",
-                Lists.newArrayList(propertyValue, teamId, propertyKey)
+                "SELECT teamId, propertyValue FROM team_properties WHERE propertyKey = ?",
+                Lists.newArrayList(propertyKey)
         );
-        return updates > 0;
+
+        ImmutableMap.Builder<String,Object> mapBuilder = ImmutableMap.builder();
+        for (Map<String,Object> rowMap : resultTable.rowMap().values()) {
+            mapBuilder.put((String) rowMap.get("teamId"), rowMap.get("propertyValue"));
+        }
+        return mapBuilder.build();
     }
 
     private Optional<String> getExplicitVisibility(String teamId, String puzzleId) {
@@ -207,11 +356,14 @@ public class HuntStatusStore {
             String status,
             boolean isExternallyInitiated
     ) {
+        setVisibilityAttempts.increment();
         if (!visibilityStatusSet.isAllowedStatus(status)) {
             return false;
         }
         //Create with default status if necessary first
-        createExplicitDefaultVisibility(teamId, puzzleId);
+        if (createExplicitDefaultVisibility(teamId, puzzleId)) {
+            DatabaseHelper.afterCommit(() -> visibilityVersions.bump(teamId, puzzleId));
+        }
 
         Set<String> allowedCurrentStatuses = visibilityStatusSet.getAllowedAntecedents(status);
         if (allowedCurrentStatuses.isEmpty()) {
@@ -219,28 +371,44 @@ public class HuntStatusStore {
         }
 
         String preparedUpdateSql = "UPDATE visibilities SET status = ? " +
-                "WHERE teamId = ? AND puzzleId = ?" + " AND ";
-        List<Object> preparedParameters = Lists.newArrayList(status, teamId, puzzleId);
-        preparedUpdateSql += "(" +
+                "WHERE teamId = ? AND puzzleId = ?" + " AND " +
+                "(" +
                 Joiner.on(" OR ").join(allowedCurrentStatuses.stream()
                         .map(s -> "status = ?")
                         .collect(Collectors.toList())) +
                 ")";
+        List<Object> preparedParameters = Lists.newArrayList(status, teamId, puzzleId);
         preparedParameters.addAll(allowedCurrentStatuses);
 
-        int updates = DatabaseHelper.update(
-                connectionFactory,
-                preparedUpdateSql,
-                preparedParameters
-        );
-
-        //If we made an update, log the history.
-        if (updates > 0) {
+        //The change and its history are committed together, so the change log never misses one.
+        boolean updated = DatabaseHelper.inTransaction(() -> {
+            int updates = DatabaseHelper.update(
+                    connectionFactory,
+                    preparedUpdateSql,
+                    preparedParameters
+            );
+            if (updates == 0) {
+                return false;
+            }
+
+            //If we made an update, log the history.
+            DatabaseHelper.afterCommit(() -> {
+                visibilityVersions.bump(teamId, puzzleId);
+                visibilityTransitions.increment();
+            });
+            Instant timestamp = clock.instant();
             DatabaseHelper.update(
                     connectionFactory,
                     "INSERT INTO visibility_history (teamId, puzzleId, status, timestamp) VALUES (?, ?, ?, ?)",
-                    Lists.newArrayList(teamId, puzzleId, status, clock.instant()));
+                    Lists.newArrayList(teamId, puzzleId, status, timestamp));
+            DatabaseHelper.insert(
+                    connectionFactory,
+                    "INSERT INTO change_log (changeType, teamId, puzzleId, status, timestamp) VALUES (?, ?, ?, ?, ?)",
+                    Lists.newArrayList(Change.ChangeType.VISIBILITY, teamId, puzzleId, status, timestamp));
+            return true;
+        });
 
+        if (updated) {
             VisibilityChangeEvent changeEvent = VisibilityChangeEvent.builder()
                     .setVisibility(Visibility.builder()
                             .setTeamId(teamId)
@@ -257,6 +425,50 @@ public class HuntStatusStore {
 
     }
 
+    /**
+     * Gets visibility changes in the order they happened, starting after the given change id.
+     * This is a range scan over the change_log index on changeType (whose entries are ordered
+     * by changeId), so its cost depends only on the number of changes returned, not on how many
+     * submission changes are interleaved with them.
+     *
+     * @param afterChangeId Only changes with a greater change id are returned
+     * @param limit The maximum number of changes to return
+     * @return The changes, ordered by change id
+     */
+    public List<Change> getVisibilityChanges(long afterChangeId, int limit) {
+        Table<Integer, String, Object> resultTable = DatabaseHelper.query(
+                connectionFactory,
+                "SELECT changeId, teamId, puzzleId, status, timestamp FROM change_log " +
+                        "WHERE changeId > ? AND changeType = ? ORDER BY changeId ASC LIMIT ?",
+                Lists.newArrayList(afterChangeId, Change.ChangeType.VISIBILITY, limit)
+        );
+
+        return resultTable.rowMap().values().stream()
+                .map(rowMap ->
+                    Change.builder()
+                            .setChangeId(((Number) rowMap.get("changeId")).longValue())
+                            .setChangeType(Change.ChangeType.VISIBILITY)
+                            .setTeamId((String) rowMap.get("teamId"))
+                            .setPuzzleId((String) rowMap.get("puzzleId"))
+                            .setStatus((String) rowMap.get("status"))
+                            .setTimestamp((Instant) rowMap.get("timestamp"))
+                            .build()
+                )
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Gets every change of any team's puzzles to the given status, e.g. every solve.
+     */
+    public Table<Integer,String,Object> getVisibilityHistoryForStatus(String status) {
+        return DatabaseHelper.query(
+                connectionFactory,
+                "SELECT teamId, puzzleId, timestamp FROM visibility_history WHERE " +
+                        "status = ? ORDER BY timestamp ASC",
+                Lists.newArrayList(status)
+        );
+    }
+
     public Table<Integer,String,Object> getVisibilityHistory(String teamId, String puzzleId) {
         return DatabaseHelper.query(
                 connectionFactory,
@@ -0,0 +1,22 @@
+package edu.mit.puzzle.cube.core.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.google.auto.value.AutoValue;
+import java.util.List;
+
+@AutoValue
+@JsonDeserialize(builder = AutoValue_Hunts.Builder.class)
+public abstract class Hunts {
+    @AutoValue.Builder
+    public static abstract class Builder {
+        @JsonProperty("hunts") public abstract Builder setHunts(List<Hunt> hunts);
+        public abstract Hunts build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_Hunts.Builder();
+    }
+
+    @JsonProperty("hunts") public abstract List<Hunt> getHunts();
+}
@@ -0,0 +1,183 @@
+package edu.mit.puzzle.cube.core.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Table;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import edu.mit.puzzle.cube.core.db.ConnectionFactory;
+import edu.mit.puzzle.cube.core.db.DatabaseHelper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An IdempotencyStore remembers the PostResult of requests made with a client-supplied
+ * idempotency key, so that a retried request gets the original result back instead of
+ * being processed again.
+ *
+ * Each key is bound to a hash of the request it was first used with, so reusing a key for a
+ * different request is an error rather than silently returning the other request's result.
+ *
+ * Results are cached in memory (bounded in size) and persisted to the idempotency_keys table
+ * so they survive restarts. Both expire after a fixed time to live. Concurrent requests with
+ * the same key on one instance wait for the first one to finish rather than racing it.
+ */
+public class IdempotencyStore {
+
+    private static Logger LOGGER = LogManager.getLogger(IdempotencyStore.class);
+    private static ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofHours(1);
+    private static final int DEFAULT_MAXIMUM_SIZE = 100000;
+    private static final int INSERTS_BETWEEN_PRUNES = 1000;
+
+    private final ConnectionFactory connectionFactory;
+    private final Clock clock;
+    private final Duration timeToLive;
+    private final Cache<String,StoredResult> cache;
+    private final AtomicInteger insertsSincePrune = new AtomicInteger(0);
+
+    /**
+     * Thrown when an idempotency key is reused with a different request.
+     */
+    public static class KeyReusedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        KeyReusedException(String idempotencyKey) {
+            super("Idempotency key " + idempotencyKey + " was already used with a different request");
+        }
+    }
+
+    private static class StoredResult {
+        private final String requestHash;
+        private final PostResult result;
+
+        StoredResult(String requestHash, PostResult result) {
+            this.requestHash = requestHash;
+            this.result = result;
+        }
+    }
+
+    public IdempotencyStore(ConnectionFactory connectionFactory) {
+        this(connectionFactory, Clock.systemUTC(), DEFAULT_TIME_TO_LIVE, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public IdempotencyStore(
+            ConnectionFactory connectionFactory,
+            Clock clock,
+            Duration timeToLive,
+            int maximumSize
+    ) {
+        this.connectionFactory = checkNotNull(connectionFactory);
+        this.clock = checkNotNull(clock);
+        this.timeToLive = checkNotNull(timeToLive);
+        //Expires by the same clock as the stored results.
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive.toMillis(), TimeUnit.MILLISECONDS)
+                .ticker(new Ticker() {
+                    @Override
+                    public long read() {
+                        return TimeUnit.MILLISECONDS.toNanos(clock.millis());
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Gets the result of a previous request with the given idempotency key, or processes the
+     * request and remembers its result.
+     *
+     * @param idempotencyKey The client-supplied key, which should be scoped to the endpoint
+     * @param requestHash Identifies the request, e.g. a hash of its body
+     * @param request Processes the request. Only called if no result is remembered for the key.
+     * @return The result of the first request made with this key
+     * @throws KeyReusedException if the key was first used with a request with another hash
+     */
+    public PostResult getOrProcess(String idempotencyKey, String requestHash, Supplier<PostResult> request) {
+        StoredResult storedResult;
+        try {
+            storedResult = cache.get(idempotencyKey, () -> {
+                Optional<StoredResult> previousResult = getStoredResult(idempotencyKey);
+                if (previousResult.isPresent()) {
+                    return previousResult.get();
+                }
+                StoredResult result = new StoredResult(requestHash, request.get());
+                storeResult(idempotencyKey, result);
+                //Inside a transaction, the stored result only lasts if the transaction commits.
+                DatabaseHelper.afterRollback(() -> cache.invalidate(idempotencyKey));
+                return result;
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+        if (!storedResult.requestHash.equals(requestHash)) {
+            throw new KeyReusedException(idempotencyKey);
+        }
+        return storedResult.result;
+    }
+
+    private Optional<StoredResult> getStoredResult(String idempotencyKey) {
+        Table<Integer, String, Object> resultTable = DatabaseHelper.query(
+                connectionFactory,
+                "SELECT requestHash, result FROM idempotency_keys WHERE idempotencyKey = ? AND createdMillis >= ?",
+                Lists.newArrayList(idempotencyKey, getExpiryCutoffMillis())
+        );
+        for (Map<String,Object> rowMap : resultTable.rowMap().values()) {
+            try {
+                return Optional.of(new StoredResult(
+                        (String) rowMap.get("requestHash"),
+                        MAPPER.readValue((String) rowMap.get("result"), PostResult.class)));
+            } catch (IOException e) {
+                LOGGER.warn("Ignoring unreadable stored result for idempotency key " + idempotencyKey, e);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private void storeResult(String idempotencyKey, StoredResult result) throws IOException {
+        DatabaseHelper.update(
+                connectionFactory,
+                "INSERT OR REPLACE INTO idempotency_keys (idempotencyKey, requestHash, result, createdMillis) " +
+                        "VALUES (?,?,?,?)",
+                Lists.newArrayList(
+                        idempotencyKey,
+                        result.requestHash,
+                        MAPPER.writeValueAsString(result.result),
+                        clock.millis())
+        );
+        if (insertsSincePrune.incrementAndGet() >= INSERTS_BETWEEN_PRUNES) {
+            insertsSincePrune.set(0);
+            pruneExpiredKeys();
+        }
+    }
+
+    public int pruneExpiredKeys() {
+        return DatabaseHelper.update(
+                connectionFactory,
+                "DELETE FROM idempotency_keys WHERE createdMillis < ?",
+                Lists.newArrayList(getExpiryCutoffMillis())
+        );
+    }
+
+    private long getExpiryCutoffMillis() {
+        return clock.millis() - timeToLive.toMillis();
+    }
+}
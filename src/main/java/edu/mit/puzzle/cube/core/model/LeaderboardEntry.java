@@ -0,0 +1,31 @@
+package edu.mit.puzzle.cube.core.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.google.auto.value.AutoValue;
+import java.time.Instant;
+import javax.annotation.Nullable;
+
+@AutoValue
+@JsonDeserialize(builder = AutoValue_LeaderboardEntry.Builder.class)
+public abstract class LeaderboardEntry {
+    @AutoValue.Builder
+    public static abstract class Builder {
+        @JsonProperty("rank") public abstract Builder setRank(Integer rank);
+        @JsonProperty("teamId") public abstract Builder setTeamId(String teamId);
+        @JsonProperty("score") public abstract Builder setScore(Integer score);
+        @JsonProperty("solveCount") public abstract Builder setSolveCount(Integer solveCount);
+        @Nullable @JsonProperty("lastSolveTime") public abstract Builder setLastSolveTime(Instant lastSolveTime);
+        public abstract LeaderboardEntry build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_LeaderboardEntry.Builder();
+    }
+
+    @JsonProperty("rank") public abstract Integer getRank();
+    @JsonProperty("teamId") public abstract String getTeamId();
+    @JsonProperty("score") public abstract Integer getScore();
+    @JsonProperty("solveCount") public abstract Integer getSolveCount();
+    @Nullable @JsonProperty("lastSolveTime") public abstract Instant getLastSolveTime();
+}
@@ -0,0 +1,26 @@
+package edu.mit.puzzle.cube.core.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.google.auto.value.AutoValue;
+import java.util.List;
+
+@AutoValue
+@JsonDeserialize(builder = AutoValue_LeaderboardPage.Builder.class)
+public abstract class LeaderboardPage {
+    @AutoValue.Builder
+    public static abstract class Builder {
+        @JsonProperty("version") public abstract Builder setVersion(Long version);
+        @JsonProperty("totalTeams") public abstract Builder setTotalTeams(Integer totalTeams);
+        @JsonProperty("entries") public abstract Builder setEntries(List<LeaderboardEntry> entries);
+        public abstract LeaderboardPage build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_LeaderboardPage.Builder();
+    }
+
+    @JsonProperty("version") public abstract Long getVersion();
+    @JsonProperty("totalTeams") public abstract Integer getTotalTeams();
+    @JsonProperty("entries") public abstract List<LeaderboardEntry> getEntries();
+}
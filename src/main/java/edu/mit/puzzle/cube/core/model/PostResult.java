@@ -1,11 +1,13 @@
 package edu.mit.puzzle.cube.core.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.google.auto.value.AutoValue;
 
 import javax.annotation.Nullable;
 
 @AutoValue
+@JsonDeserialize(builder = AutoValue_PostResult.Builder.class)
 public abstract class PostResult {
     @AutoValue.Builder
     public static abstract class Builder {
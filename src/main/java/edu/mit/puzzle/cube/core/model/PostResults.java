@@ -0,0 +1,23 @@
+package edu.mit.puzzle.cube.core.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.google.auto.value.AutoValue;
+
+import java.util.List;
+
+@AutoValue
+@JsonDeserialize(builder = AutoValue_PostResults.Builder.class)
+public abstract class PostResults {
+    @AutoValue.Builder
+    public static abstract class Builder {
+        @JsonProperty("results") public abstract Builder setResults(List<PostResult> results);
+        public abstract PostResults build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_PostResults.Builder();
+    }
+
+    @JsonProperty("results") public abstract List<PostResult> getResults();
+}
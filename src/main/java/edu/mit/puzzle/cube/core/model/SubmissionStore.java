@@ -3,6 +3,7 @@ package edu.mit.puzzle.cube.core.model;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.Table;
+import edu.mit.puzzle.cube.core.caching.VersionCounters;
 import edu.mit.puzzle.cube.core.db.ConnectionFactory;
 import edu.mit.puzzle.cube.core.db.DatabaseHelper;
 import edu.mit.puzzle.cube.core.events.Event;
@@ -14,9 +15,12 @@ import org.apache.logging.log4j.Logger;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -24,11 +28,15 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public class SubmissionStore {
 
     private static Logger LOGGER = LogManager.getLogger(SubmissionStore.class);
+    private static final int PAGE_SIZE = 1000;
     private static DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSX");
 
     private final ConnectionFactory connectionFactory;
     private final Clock clock;
     private final EventProcessor<Event> eventProcessor;
+    private final VersionCounters submissionVersions = new VersionCounters();
+    private final LongAdder submissionsAdded = new LongAdder();
+    private final Map<SubmissionStatus,LongAdder> statusTransitions = new EnumMap<>(SubmissionStatus.class);
 
     public SubmissionStore(
             ConnectionFactory connectionFactory,
@@ -45,19 +53,95 @@ public class SubmissionStore {
         this.connectionFactory = checkNotNull(connectionFactory);
         this.clock = checkNotNull(clock);
         this.eventProcessor = checkNotNull(eventProcessor);
+        for (SubmissionStatus status : SubmissionStatus.values()) {
+            statusTransitions.put(status, new LongAdder());
+        }
     }
 
-    public boolean addSubmission(Submission submission) {
-        return DatabaseHelper.insert(
+    /**
+     * Versions of the submissions, bumped by every submission and status change once it
+     * is committed.
+     */
+    public VersionCounters getSubmissionVersions() {
+        return submissionVersions;
+    }
+
+    /**
+     * Gets the number of submissions committed since this store was created.
+     */
+    public long getSubmissionsAddedCount() {
+        return submissionsAdded.sum();
+    }
+
+    /**
+     * Gets the number of committed status changes since this store was created, keyed by the
+     * status changed to.
+     */
+    public Map<SubmissionStatus,Long> getStatusTransitionCounts() {
+        Map<SubmissionStatus,Long> counts = new EnumMap<>(SubmissionStatus.class);
+        for (Map.Entry<SubmissionStatus,LongAdder> entry : statusTransitions.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the number of submissions currently in each status, including statuses that no
+     * submission is in, e.g. to see how many submissions are waiting to be judged.
+     */
+    public Map<SubmissionStatus,Integer> getSubmissionCountsByStatus() {
+        Table<Integer,String,Object> resultTable = DatabaseHelper.query(
                 connectionFactory,
-                "INSERT INTO submissions (puzzleId, teamId, submission, timestamp) " +
-                        "VALUES (?,?,?,?)",
-                Lists.newArrayList(
-                        submission.getPuzzleId(),
-                        submission.getTeamId(),
-                        submission.getSubmission(),
-                        clock.instant())
-        ).isPresent();
+                "SELECT status, COUNT(*) AS count FROM submissions GROUP BY status",
+                Lists.newArrayList()
+        );
+        Map<SubmissionStatus,Integer> counts = new EnumMap<>(SubmissionStatus.class);
+        for (SubmissionStatus status : SubmissionStatus.values()) {
+            counts.put(status, 0);
+        }
+        for (Map<String,Object> rowMap : resultTable.rowMap().values()) {
+            counts.put(
+                    SubmissionStatus.valueOf((String) rowMap.get("status")),
+                    ((Number) rowMap.get("count")).intValue());
+        }
+        return counts;
+    }
+
+    public boolean addSubmission(Submission submission) {
+        Instant timestamp = clock.instant();
+        //The submission and its change log entry are committed together.
+        Optional<Integer> submissionId = DatabaseHelper.inTransaction(() -> {
+            Optional<Integer> insertedId = DatabaseHelper.insert(
+                    connectionFactory,
+                    "INSERT INTO submissions (puzzleId, teamId, submission, timestamp) " +
+                            "VALUES (?,?,?,?)",
+                    Lists.newArrayList(
+                            submission.getPuzzleId(),
+                            submission.getTeamId(),
+                            submission.getSubmission(),
+                            timestamp)
+            );
+            if (insertedId.isPresent()) {
+                DatabaseHelper.insert(
+                        connectionFactory,
+                        "INSERT INTO change_log (changeType, teamId, puzzleId, status, submissionId, timestamp) " +
+                                "VALUES (?,?,?,?,?,?)",
+                        Lists.newArrayList(
+                                Change.ChangeType.SUBMISSION,
+                                submission.getTeamId(),
+                                submission.getPuzzleId(),
+                                SubmissionStatus.getDefault(),
+                                insertedId.get(),
+                                timestamp)
+                );
+                DatabaseHelper.afterCommit(() -> {
+                    submissionVersions.bump(submission.getTeamId(), submission.getPuzzleId());
+                    submissionsAdded.increment();
+                });
+            }
+            return insertedId;
+        });
+        return submissionId.isPresent();
     }
 
     private static Submission generateSubmissionObject(Map<String,Object> rowMap) {
@@ -86,6 +170,33 @@ public class SubmissionStore {
         return Ordering.natural().onResultOf(Submission::getSubmissionId).immutableSortedCopy(submissions);
     }
 
+    /**
+     * Passes every submission to a consumer, in submissionId order. Rows are read a page at a
+     * time and no query is left open while the consumer runs, so a slow consumer (like a
+     * response being streamed to a client) holds neither a database cursor nor the whole result
+     * in memory.
+     */
+    public void forEachSubmission(Consumer<Submission> consumer) {
+        int lastSubmissionId = 0;
+        while (true) {
+            Table<Integer, String, Object> resultTable = DatabaseHelper.query(
+                    connectionFactory,
+                    "SELECT * FROM submissions WHERE submissionId > ? ORDER BY submissionId LIMIT ?",
+                    Lists.newArrayList(lastSubmissionId, PAGE_SIZE),
+                    "submissionId"
+            );
+            List<Submission> page = resultTable.rowMap().values().stream()
+                    .map(SubmissionStore::generateSubmissionObject)
+                    .sorted(Ordering.natural().onResultOf(Submission::getSubmissionId))
+                    .collect(Collectors.toList());
+            page.forEach(consumer);
+            if (page.size() < PAGE_SIZE) {
+                return;
+            }
+            lastSubmissionId = page.get(page.size() - 1).getSubmissionId();
+        }
+    }
+
     public Optional<Submission> getSubmission(int submissionId) {
         Table<Integer, String, Object> resultTable = DatabaseHelper.query(
                 connectionFactory,
@@ -103,21 +214,77 @@ public class SubmissionStore {
         return Optional.of(generateSubmissionObject(resultTable.row(submissionId)));
     }
 
-    public boolean setSubmissionStatus(int submissionId, SubmissionStatus status) {
-        boolean updated = DatabaseHelper.update(
+    /**
+     * Gets submission creations and status changes in the order they happened, starting after
+     * the given change id. This is a range scan over the change_log index on changeType
+     * (whose entries are ordered by changeId), so its cost depends only on the number of changes
+     * returned, not on how many visibility changes are interleaved with them.
+     *
+     * @param afterChangeId Only changes with a greater change id are returned
+     * @param limit The maximum number of changes to return
+     * @return The changes, ordered by change id
+     */
+    public List<Change> getSubmissionChanges(long afterChangeId, int limit) {
+        Table<Integer, String, Object> resultTable = DatabaseHelper.query(
                 connectionFactory,
-                "UPDATE submissions SET status = ? WHERE submissionId = ? AND status <> ?",
-                Lists.newArrayList(status, submissionId, status)
-        ) > 0;
+                "SELECT changeId, teamId, puzzleId, status, submissionId, timestamp FROM change_log " +
+                        "WHERE changeId > ? AND changeType = ? ORDER BY changeId ASC LIMIT ?",
+                Lists.newArrayList(afterChangeId, Change.ChangeType.SUBMISSION, limit)
+        );
+
+        return resultTable.rowMap().values().stream()
+                .map(rowMap -> Change.builder()
+                        .setChangeId(((Number) rowMap.get("changeId")).longValue())
+                        .setChangeType(Change.ChangeType.SUBMISSION)
+                        .setTeamId((String) rowMap.get("teamId"))
+                        .setPuzzleId((String) rowMap.get("puzzleId"))
+                        .setStatus((String) rowMap.get("status"))
+                        .setSubmissionId((Integer) rowMap.get("submissionId"))
+                        .setTimestamp((Instant) rowMap.get("timestamp"))
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    public boolean setSubmissionStatus(int submissionId, SubmissionStatus status) {
+        //The status change and its change log entry are committed together.
+        Optional<Submission> updatedSubmission = DatabaseHelper.inTransaction(() -> {
+            boolean updated = DatabaseHelper.update(
+                    connectionFactory,
+                    "UPDATE submissions SET status = ? WHERE submissionId = ? AND status <> ?",
+                    Lists.newArrayList(status, submissionId, status)
+            ) > 0;
+
+            if (!updated) {
+                return Optional.<Submission>empty();
+            }
+
+            DatabaseHelper.insert(
+                    connectionFactory,
+                    "INSERT INTO change_log (changeType, teamId, puzzleId, status, submissionId, timestamp) " +
+                            "SELECT ?, teamId, puzzleId, status, submissionId, ? FROM submissions " +
+                            "WHERE submissionId = ?",
+                    Lists.newArrayList(Change.ChangeType.SUBMISSION, clock.instant(), submissionId)
+            );
+            Submission changedSubmission = this.getSubmission(submissionId).get();
+            DatabaseHelper.afterCommit(() -> {
+                submissionVersions.bump(changedSubmission.getTeamId(), changedSubmission.getPuzzleId());
+                statusTransitions.get(status).increment();
+            });
+            return Optional.of(changedSubmission);
+        });
+
+        if (!updatedSubmission.isPresent()) {
+            return false;
+        }
+        Submission submission = updatedSubmission.get();
 
-        if (updated && status.isTerminal()) {
-            Submission submission = this.getSubmission(submissionId).get();
+        if (status.isTerminal()) {
             eventProcessor.process(SubmissionCompleteEvent.builder()
                     .setSubmission(submission)
                     .build());
         }
 
-        return updated;
+        return true;
     }
 
 }
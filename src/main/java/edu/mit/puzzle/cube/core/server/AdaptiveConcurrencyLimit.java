@@ -0,0 +1,98 @@
+package edu.mit.puzzle.cube.core.server;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * An AdaptiveConcurrencyLimit bounds how many requests may be in flight at once, and moves the
+ * bound with the latency it observes (additive increase, multiplicative decrease).
+ *
+ * The baseline is the lowest latency seen in the previous window of samples, so it follows
+ * slow drift (a bigger database, say) but not a sudden pile-up. While requests complete close
+ * to the baseline and the limit is actually being used, it grows by about one per limit's
+ * worth of completions; when a request takes well over the baseline, the limit is cut, at most
+ * once per such latency so that a burst of slow completions counts as one signal.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final int WINDOW_SIZE = 500;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double BACKOFF_RATIO = 0.9;
+    //Latencies this close to the baseline never count as slow, so that a handler that usually
+    //takes 100 microseconds isn't throttled for taking 300.
+    private static final long MIN_SLOW_LATENCY_NANOS = 10_000_000L;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private double limit;
+    private int inFlight = 0;
+    private long baselineNanos = -1;
+    private long windowMinNanos = Long.MAX_VALUE;
+    private int windowSamples = 0;
+    private boolean decreased = false;
+    private long lastDecreaseNanos = 0;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        checkArgument(0 < minLimit && minLimit <= initialLimit && initialLimit <= maxLimit,
+                "Limits must satisfy 0 < min <= initial <= max");
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Starts a request if there is room for it under the limit. Every successful call must be
+     * followed by a call to release.
+     *
+     * @return false if the request should be rejected
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Finishes a request started by tryAcquire, adjusting the limit by how long it took.
+     *
+     * @param latencyNanos How long the request took
+     * @param nowNanos The current System.nanoTime()
+     */
+    public synchronized void release(long latencyNanos, long nowNanos) {
+        int inFlightBefore = inFlight;
+        inFlight--;
+
+        if (baselineNanos < 0) {
+            baselineNanos = latencyNanos;
+        }
+        windowMinNanos = Math.min(windowMinNanos, latencyNanos);
+        if (++windowSamples >= WINDOW_SIZE) {
+            baselineNanos = windowMinNanos;
+            windowMinNanos = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+
+        long slowThresholdNanos = Math.max(
+                (long) (baselineNanos * LATENCY_TOLERANCE),
+                baselineNanos + MIN_SLOW_LATENCY_NANOS);
+        if (latencyNanos > slowThresholdNanos) {
+            if (!decreased || nowNanos - lastDecreaseNanos >= latencyNanos) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                decreased = true;
+                lastDecreaseNanos = nowNanos;
+            }
+        } else if (inFlightBefore * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
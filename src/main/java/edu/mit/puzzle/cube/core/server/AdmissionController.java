@@ -0,0 +1,265 @@
+package edu.mit.puzzle.cube.core.server;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import edu.mit.puzzle.cube.core.metrics.MetricsRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.representation.Representation;
+import org.restlet.routing.Filter;
+import org.restlet.util.WrapperRepresentation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * An AdmissionController sits in front of the application's Router and sheds load rather than
+ * letting requests queue without limit when the server falls behind.
+ *
+ * Every request is classified by route (its method and first path segment, ignoring any
+ * /hunts/{huntId} prefix) and priority. A request is admitted only if both its route's
+ * AdaptiveConcurrencyLimit and the server-wide limit have room for it; lower priorities may
+ * only use part of the server-wide limit, so team polling is shed before checkers are. A
+ * rejected request gets an immediate 503 with a Retry-After header.
+ *
+ * An admitted request counts against the limits until its response entity has been written,
+ * since streamed entities do most of their work then. Event streams are the exception: they
+ * stay open indefinitely, and are capped separately by the EventBroadcaster.
+ */
+public class AdmissionController extends Filter {
+
+    private static Logger LOGGER = LogManager.getLogger(AdmissionController.class);
+
+    public enum Priority {
+        /** Judging submissions, which is what moves the hunt along. */
+        CHECKER(1.0),
+        /** Other changes, like team submissions and admin updates. */
+        NORMAL(0.8),
+        /** Reads, most of which are teams polling for changes. */
+        POLLING(0.5);
+
+        private final double shareOfCapacity;
+
+        Priority(double shareOfCapacity) {
+            this.shareOfCapacity = shareOfCapacity;
+        }
+    }
+
+    private static final int INITIAL_ROUTE_LIMIT = 20;
+    //Beyond this many distinct routes (which only unknown paths can produce), routes share a limit.
+    private static final int MAX_ROUTES = 100;
+    private static final String OTHER_ROUTE = "other";
+
+    /**
+     * An admitted request's place under the limits, which is given up exactly once.
+     */
+    private class Admission {
+        private final AdaptiveConcurrencyLimit routeLimit;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Admission(AdaptiveConcurrencyLimit routeLimit) {
+            this.routeLimit = routeLimit;
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                long now = System.nanoTime();
+                routeLimit.release(now - start, now);
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Releases an Admission once the entity it wraps has been written, or once the connector
+     * releases the entity without writing it.
+     */
+    private static class AdmittedRepresentation extends WrapperRepresentation {
+        private final Admission admission;
+
+        private AdmittedRepresentation(Representation representation, Admission admission) {
+            super(representation);
+            this.admission = admission;
+        }
+
+        @Override
+        public void write(OutputStream outputStream) throws IOException {
+            try {
+                super.write(outputStream);
+            } finally {
+                admission.release();
+            }
+        }
+
+        @Override
+        public void release() {
+            try {
+                super.release();
+            } finally {
+                admission.release();
+            }
+        }
+    }
+
+    private final int maxConcurrentRequests;
+    private final int retryAfterSeconds;
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final ConcurrentMap<String, AdaptiveConcurrencyLimit> routeLimits = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicInteger> rejections = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxConcurrentRequests The most requests that may be handled at once, across routes
+     * @param retryAfterSeconds How long rejected clients are asked to wait before retrying
+     */
+    public AdmissionController(Context context, int maxConcurrentRequests, int retryAfterSeconds) {
+        super(context);
+        checkArgument(maxConcurrentRequests > 0, "maxConcurrentRequests must be positive");
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Exports the limits, in-flight requests and rejections of every route.
+     */
+    public void registerMetrics(MetricsRegistry metricsRegistry) {
+        metricsRegistry.register(
+                "cube_admission_limit",
+                "Concurrency limit of each route",
+                MetricsRegistry.Type.GAUGE,
+                writer -> routeLimits.forEach((route, limit) ->
+                        writer.sample(ImmutableMap.of("route", route), limit.getLimit())));
+        metricsRegistry.register(
+                "cube_admission_in_flight",
+                "Requests being handled, by route",
+                MetricsRegistry.Type.GAUGE,
+                writer -> routeLimits.forEach((route, limit) ->
+                        writer.sample(ImmutableMap.of("route", route), limit.getInFlight())));
+        metricsRegistry.register(
+                "cube_admission_rejections_total",
+                "Requests rejected with a 503, by route",
+                MetricsRegistry.Type.COUNTER,
+                writer -> rejections.forEach((route, count) ->
+                        writer.sample(ImmutableMap.of("route", route), count.get())));
+    }
+
+    @Override
+    protected int doHandle(Request request, Response response) {
+        String path = request.getResourceRef().getPath();
+        if (path.equals("/metrics") || path.startsWith("/health/")) {
+            //Monitoring has to keep working under overload, and scrapes and probes are cheap.
+            return super.doHandle(request, response);
+        }
+
+        String route = resolveRoute(getRouteKey(request.getMethod(), path));
+        Priority priority = getPriority(request.getMethod(), path);
+
+        if (inFlight.incrementAndGet() > maxConcurrentRequests * priority.shareOfCapacity) {
+            inFlight.decrementAndGet();
+            return reject(route, response);
+        }
+        AdaptiveConcurrencyLimit routeLimit = getRouteLimit(route);
+        if (!routeLimit.tryAcquire()) {
+            inFlight.decrementAndGet();
+            return reject(route, response);
+        }
+
+        Admission admission = new Admission(routeLimit);
+        boolean releasedByEntity = false;
+        try {
+            int result = super.doHandle(request, response);
+            if (response.getEntity() != null && !isEventStream(path)) {
+                response.setEntity(new AdmittedRepresentation(response.getEntity(), admission));
+                releasedByEntity = true;
+            }
+            return result;
+        } finally {
+            if (!releasedByEntity) {
+                admission.release();
+            }
+        }
+    }
+
+    private int reject(String route, Response response) {
+        int count = rejections.computeIfAbsent(route, r -> new AtomicInteger()).incrementAndGet();
+        if (count == 1 || count % 1000 == 0) {
+            LOGGER.warn("Rejected " + count + " requests to " + route + " because the server is overloaded");
+        }
+        response.setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE, "The server is overloaded");
+        response.setRetryAfter(new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(retryAfterSeconds)));
+        return STOP;
+    }
+
+    //Unknown paths could otherwise create routes without bound.
+    private String resolveRoute(String route) {
+        if (routeLimits.size() >= MAX_ROUTES && !routeLimits.containsKey(route)) {
+            return OTHER_ROUTE;
+        }
+        return route;
+    }
+
+    private AdaptiveConcurrencyLimit getRouteLimit(String route) {
+        return routeLimits.computeIfAbsent(route, r -> new AdaptiveConcurrencyLimit(
+                Math.min(INITIAL_ROUTE_LIMIT, maxConcurrentRequests), 1, maxConcurrentRequests));
+    }
+
+    /**
+     * Gets the current concurrency limit of the route a request would take.
+     */
+    public int getRouteLimit(Method method, String path) {
+        AdaptiveConcurrencyLimit routeLimit = routeLimits.get(getRouteKey(method, path));
+        return routeLimit == null ? Math.min(INITIAL_ROUTE_LIMIT, maxConcurrentRequests) : routeLimit.getLimit();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    //The path segments that select a resource within a hunt.
+    private static List<String> getRouteSegments(String path) {
+        List<String> segments = Lists.newArrayList(Splitter.on('/').omitEmptyStrings().split(path));
+        if (segments.size() >= 3 && segments.get(0).equals("hunts")) {
+            return segments.subList(2, segments.size());
+        }
+        return segments;
+    }
+
+    static boolean isEventStream(String path) {
+        return getRouteSegments(path).equals(ImmutableList.of("events", "stream"));
+    }
+
+    static String getRouteKey(Method method, String path) {
+        List<String> segments = getRouteSegments(path);
+        if (segments.isEmpty()) {
+            return method.getName() + " /";
+        }
+        return method.getName() + " /" + segments.get(0) + (segments.size() > 1 ? "/*" : "");
+    }
+
+    static Priority getPriority(Method method, String path) {
+        if (Method.GET.equals(method) || Method.HEAD.equals(method)) {
+            return Priority.POLLING;
+        }
+        List<String> segments = getRouteSegments(path);
+        if (Method.POST.equals(method) && segments.size() > 1 && segments.get(0).equals("submissions")) {
+            return Priority.CHECKER;
+        }
+        return Priority.NORMAL;
+    }
+}
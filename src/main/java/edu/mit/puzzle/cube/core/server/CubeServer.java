@@ -0,0 +1,54 @@
+package edu.mit.puzzle.cube.core.server;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.restlet.Application;
+import org.restlet.Component;
+import org.restlet.Server;
+import org.restlet.data.Parameter;
+import org.restlet.data.Protocol;
+import org.restlet.engine.Engine;
+import org.restlet.util.Series;
+
+/**
+ * Builds the Restlet Component that serves a CubeApplication over HTTP, as described by a
+ * ServerConfiguration.
+ */
+public class CubeServer {
+
+    private static Logger LOGGER = LogManager.getLogger(CubeServer.class);
+
+    private CubeServer() {
+    }
+
+    public static Component createComponent(ServerConfiguration configuration, Application application) {
+        if (configuration.getConnector() == ServerConfiguration.Connector.JETTY) {
+            //Restlet uses the first registered helper that supports the protocol, and the
+            //Simple connector is on the classpath too.
+            Engine.getInstance().getRegisteredServers().add(0, new org.restlet.ext.jetty.HttpServerHelper(null));
+        }
+
+        Component component = new Component();
+        Server server = component.getServers().add(Protocol.HTTP, configuration.getPort());
+        if (configuration.getConnector() == ServerConfiguration.Connector.JETTY) {
+            addJettyParameters(configuration, server.getContext().getParameters());
+        }
+        component.getDefaultHost().attach("", application);
+
+        LOGGER.info("Serving HTTP on port " + configuration.getPort() + " with " + configuration);
+        return component;
+    }
+
+    /**
+     * Translates the configuration into the parameters understood by Restlet's Jetty connector.
+     */
+    static void addJettyParameters(ServerConfiguration configuration, Series<Parameter> parameters) {
+        parameters.add("connector.acceptors", Integer.toString(configuration.getAcceptorThreads()));
+        parameters.add("connector.selectors", Integer.toString(configuration.getSelectorThreads()));
+        parameters.add("connector.acceptQueueSize", Integer.toString(configuration.getAcceptQueueSize()));
+        parameters.add("connector.idleTimeout", Integer.toString(configuration.getKeepAliveTimeoutMillis()));
+        parameters.add("threadPool.minThreads", Integer.toString(configuration.getMinWorkerThreads()));
+        parameters.add("threadPool.maxThreads", Integer.toString(configuration.getMaxWorkerThreads()));
+        parameters.add("threadPool.idleTimeout", Integer.toString(configuration.getWorkerIdleTimeoutMillis()));
+    }
+}
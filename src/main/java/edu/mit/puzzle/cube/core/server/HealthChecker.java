@@ -0,0 +1,177 @@
+package edu.mit.puzzle.cube.core.server;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import edu.mit.puzzle.cube.core.model.HealthCheckResult;
+import edu.mit.puzzle.cube.core.model.HealthReport;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A HealthChecker decides whether this server should be receiving traffic, by running a set of
+ * named checks (a trivial database query, say) for a load balancer's readiness probe.
+ *
+ * Checks run in parallel on their own threads, so a wedged dependency shows up as a check that
+ * timed out rather than as a probe that hangs. A check that succeeds but takes longer than the
+ * slow threshold also fails, so a server that is alive but struggling is taken out of rotation.
+ * The report is cached for a short time to live, so however often the server is probed, the
+ * checks run at most once per time to live.
+ */
+public class HealthChecker {
+
+    private static Logger LOGGER = LogManager.getLogger(HealthChecker.class);
+
+    private static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofSeconds(2);
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(1);
+    private static final Duration DEFAULT_SLOW_THRESHOLD = Duration.ofMillis(250);
+
+    @FunctionalInterface
+    public interface Check {
+        /**
+         * @return Empty if healthy, or else why not
+         */
+        Optional<String> run() throws Exception;
+    }
+
+    private static class RegisteredCheck {
+        private final String name;
+        private final Check check;
+        //The previous run of this check, if it is still going, so a wedged check isn't piled onto.
+        private Future<Optional<String>> running;
+
+        private RegisteredCheck(String name, Check check) {
+            this.name = name;
+            this.check = check;
+        }
+    }
+
+    private final Clock clock;
+    private final Duration timeToLive;
+    private final Duration timeout;
+    private final Duration slowThreshold;
+    private final List<RegisteredCheck> checks = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("health-check-%d")
+            .setDaemon(true)
+            .build());
+
+    private HealthReport cachedReport;
+    private Instant cachedReportTime;
+
+    public HealthChecker() {
+        this(Clock.systemUTC(), DEFAULT_TIME_TO_LIVE, DEFAULT_TIMEOUT, DEFAULT_SLOW_THRESHOLD);
+    }
+
+    /**
+     * @param timeToLive How long a report is reused for
+     * @param timeout How long to wait for a check before failing it
+     * @param slowThreshold How long a check may take and still pass
+     */
+    public HealthChecker(Clock clock, Duration timeToLive, Duration timeout, Duration slowThreshold) {
+        this.clock = checkNotNull(clock);
+        this.timeToLive = checkNotNull(timeToLive);
+        this.timeout = checkNotNull(timeout);
+        this.slowThreshold = checkNotNull(slowThreshold);
+    }
+
+    public void addCheck(String name, Check check) {
+        checks.add(new RegisteredCheck(checkNotNull(name), checkNotNull(check)));
+    }
+
+    /**
+     * Gets the result of every check, running them if the cached report has expired.
+     */
+    public synchronized HealthReport getReport() {
+        Instant now = clock.instant();
+        if (cachedReport != null && now.isBefore(cachedReportTime.plus(timeToLive))) {
+            return cachedReport;
+        }
+
+        Map<RegisteredCheck, Long> startNanos = new ConcurrentHashMap<>();
+        for (RegisteredCheck registered : checks) {
+            if (registered.running == null || registered.running.isDone()) {
+                startNanos.put(registered, System.nanoTime());
+                registered.running = executor.submit(registered.check::run);
+            }
+        }
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        ImmutableList.Builder<HealthCheckResult> results = ImmutableList.builder();
+        boolean healthy = true;
+        for (RegisteredCheck registered : checks) {
+            HealthCheckResult result = getResult(registered, startNanos.get(registered), deadline);
+            if (!result.getHealthy()) {
+                LOGGER.warn("Health check " + result.getName() + " failed: " + result.getDetail());
+                healthy = false;
+            }
+            results.add(result);
+        }
+
+        cachedReport = HealthReport.builder()
+                .setHealthy(healthy)
+                .setCheckedAt(now)
+                .setChecks(results.build())
+                .build();
+        cachedReportTime = now;
+        return cachedReport;
+    }
+
+    private HealthCheckResult getResult(RegisteredCheck registered, Long startNanos, long deadline) {
+        HealthCheckResult.Builder result = HealthCheckResult.builder().setName(registered.name);
+        if (startNanos == null) {
+            return result
+                    .setHealthy(false)
+                    .setLatencyMillis(0)
+                    .setDetail("Still running from a previous probe")
+                    .build();
+        }
+        try {
+            Optional<String> failure = registered.running.get(
+                    Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            long elapsed = System.nanoTime() - startNanos;
+            result.setLatencyMillis(toMillis(elapsed));
+            if (failure.isPresent()) {
+                return result.setHealthy(false).setDetail(failure.get()).build();
+            } else if (elapsed > slowThreshold.toNanos()) {
+                return result.setHealthy(false).setDetail("Slower than " + slowThreshold.toMillis() + " ms").build();
+            }
+            return result.setHealthy(true).build();
+        } catch (TimeoutException e) {
+            return result
+                    .setHealthy(false)
+                    .setLatencyMillis(toMillis(System.nanoTime() - startNanos))
+                    .setDetail("Timed out after " + timeout.toMillis() + " ms")
+                    .build();
+        } catch (ExecutionException e) {
+            return result
+                    .setHealthy(false)
+                    .setLatencyMillis(toMillis(System.nanoTime() - startNanos))
+                    .setDetail(String.valueOf(e.getCause()))
+                    .build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return result.setHealthy(false).setLatencyMillis(0).setDetail("Interrupted").build();
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
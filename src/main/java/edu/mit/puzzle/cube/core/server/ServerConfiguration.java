@@ -0,0 +1,180 @@
+package edu.mit.puzzle.cube.core.server;
+
+import com.google.auto.value.AutoValue;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Describes the HTTP server that CubeApplication.main starts.
+ *
+ * Configuration is read from the properties file named by the cube.config system property, or
+ * else from cube.properties on the classpath, and any cube.server.* system properties override
+ * what the file says. Anything not configured keeps the default given by builder().
+ */
+@AutoValue
+public abstract class ServerConfiguration {
+
+    public static final String CONFIG_FILE_PROPERTY = "cube.config";
+    public static final String CONFIG_RESOURCE = "cube.properties";
+
+    private static final String PREFIX = "cube.server.";
+
+    public enum Connector {
+        /** Whichever HTTP connector Restlet finds first. Fine for development, but not tuned. */
+        DEFAULT,
+        /** The Jetty NIO connector, tuned with the settings below. */
+        JETTY
+    }
+
+    @AutoValue.Builder
+    public static abstract class Builder {
+        public abstract Builder setPort(int port);
+        public abstract Builder setConnector(Connector connector);
+        /** Threads accepting new connections; -1 lets Jetty choose from the number of cores. */
+        public abstract Builder setAcceptorThreads(int acceptorThreads);
+        /** Threads selecting ready connections; -1 lets Jetty choose from the number of cores. */
+        public abstract Builder setSelectorThreads(int selectorThreads);
+        /** The worker pool that runs request handlers, including acceptors and selectors. */
+        public abstract Builder setMinWorkerThreads(int minWorkerThreads);
+        public abstract Builder setMaxWorkerThreads(int maxWorkerThreads);
+        /** How long an idle worker above the minimum is kept. */
+        public abstract Builder setWorkerIdleTimeoutMillis(int workerIdleTimeoutMillis);
+        /** The most connections that may wait to be accepted; 0 uses the OS default. */
+        public abstract Builder setAcceptQueueSize(int acceptQueueSize);
+        /** How long an idle (kept-alive) connection stays open. */
+        public abstract Builder setKeepAliveTimeoutMillis(int keepAliveTimeoutMillis);
+        /**
+         * Whether to run the per-hunt timer work on virtual threads, where the JDK has them.
+         * Request handlers always run on the connector's worker pool.
+         */
+        public abstract Builder setVirtualThreads(boolean virtualThreads);
+        /** Whether to shed load with an AdmissionController rather than queue every request. */
+        public abstract Builder setAdmissionControl(boolean admissionControl);
+        /** The most requests the AdmissionController lets be handled at once. */
+        public abstract Builder setMaxConcurrentRequests(int maxConcurrentRequests);
+        /** How long clients turned away by the AdmissionController are asked to wait. */
+        public abstract Builder setRetryAfterSeconds(int retryAfterSeconds);
+        /**
+         * The most event streams that may be open at once, across hunts. Each holds a worker
+         * thread for as long as it is open, so keep this well below maxWorkerThreads.
+         */
+        public abstract Builder setMaxEventStreams(int maxEventStreams);
+        /**
+         * How often each hunt polls its change log for changes made by other processes sharing
+         * its database, which bounds how stale their cached responses can be; 0 turns polling off.
+         */
+        public abstract Builder setChangePollIntervalMillis(int changePollIntervalMillis);
+        public abstract ServerConfiguration build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_ServerConfiguration.Builder()
+                .setPort(8182)
+                .setConnector(Connector.DEFAULT)
+                .setAcceptorThreads(-1)
+                .setSelectorThreads(-1)
+                .setMinWorkerThreads(8)
+                .setMaxWorkerThreads(200)
+                .setWorkerIdleTimeoutMillis(60000)
+                .setAcceptQueueSize(0)
+                .setKeepAliveTimeoutMillis(30000)
+                .setVirtualThreads(false)
+                .setAdmissionControl(true)
+                .setMaxConcurrentRequests(150)
+                .setRetryAfterSeconds(1)
+                .setMaxEventStreams(50)
+                .setChangePollIntervalMillis(1000);
+    }
+
+    public abstract int getPort();
+    public abstract Connector getConnector();
+    public abstract int getAcceptorThreads();
+    public abstract int getSelectorThreads();
+    public abstract int getMinWorkerThreads();
+    public abstract int getMaxWorkerThreads();
+    public abstract int getWorkerIdleTimeoutMillis();
+    public abstract int getAcceptQueueSize();
+    public abstract int getKeepAliveTimeoutMillis();
+    public abstract boolean getVirtualThreads();
+    public abstract boolean getAdmissionControl();
+    public abstract int getMaxConcurrentRequests();
+    public abstract int getRetryAfterSeconds();
+    public abstract int getMaxEventStreams();
+    public abstract int getChangePollIntervalMillis();
+
+    /**
+     * Reads a configuration from cube.server.* properties, e.g. cube.server.maxWorkerThreads.
+     */
+    public static ServerConfiguration fromProperties(Properties properties) {
+        ServerConfiguration defaults = builder().build();
+        return builder()
+                .setPort(getInt(properties, "port", defaults.getPort()))
+                .setConnector(Connector.valueOf(properties.getProperty(
+                        PREFIX + "connector", defaults.getConnector().name()).trim().toUpperCase()))
+                .setAcceptorThreads(getInt(properties, "acceptorThreads", defaults.getAcceptorThreads()))
+                .setSelectorThreads(getInt(properties, "selectorThreads", defaults.getSelectorThreads()))
+                .setMinWorkerThreads(getInt(properties, "minWorkerThreads", defaults.getMinWorkerThreads()))
+                .setMaxWorkerThreads(getInt(properties, "maxWorkerThreads", defaults.getMaxWorkerThreads()))
+                .setWorkerIdleTimeoutMillis(getInt(properties, "workerIdleTimeoutMillis", defaults.getWorkerIdleTimeoutMillis()))
+                .setAcceptQueueSize(getInt(properties, "acceptQueueSize", defaults.getAcceptQueueSize()))
+                .setKeepAliveTimeoutMillis(getInt(properties, "keepAliveTimeoutMillis", defaults.getKeepAliveTimeoutMillis()))
+                .setVirtualThreads(Boolean.parseBoolean(properties.getProperty(
+                        PREFIX + "virtualThreads", Boolean.toString(defaults.getVirtualThreads())).trim()))
+                .setAdmissionControl(Boolean.parseBoolean(properties.getProperty(
+                        PREFIX + "admissionControl", Boolean.toString(defaults.getAdmissionControl())).trim()))
+                .setMaxConcurrentRequests(getInt(properties, "maxConcurrentRequests", defaults.getMaxConcurrentRequests()))
+                .setRetryAfterSeconds(getInt(properties, "retryAfterSeconds", defaults.getRetryAfterSeconds()))
+                .setMaxEventStreams(getInt(properties, "maxEventStreams", defaults.getMaxEventStreams()))
+                .setChangePollIntervalMillis(getInt(properties, "changePollIntervalMillis", defaults.getChangePollIntervalMillis()))
+                .build();
+    }
+
+    /**
+     * Loads the configuration from the configured file or classpath resource, then applies
+     * system property overrides.
+     */
+    public static ServerConfiguration load() throws IOException {
+        return fromProperties(loadProperties());
+    }
+
+    /**
+     * Reads the configured file or classpath resource, with any cube.* system properties
+     * overriding what it says. Other settings that live in the same file load from this.
+     */
+    public static Properties loadProperties() throws IOException {
+        Properties properties = new Properties();
+        String configFile = System.getProperty(CONFIG_FILE_PROPERTY);
+        if (configFile != null) {
+            try (InputStream inputStream = new FileInputStream(configFile)) {
+                properties.load(inputStream);
+            }
+        } else {
+            try (InputStream inputStream = ServerConfiguration.class.getClassLoader().getResourceAsStream(CONFIG_RESOURCE)) {
+                if (inputStream != null) {
+                    properties.load(inputStream);
+                }
+            }
+        }
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("cube.") && !name.equals(CONFIG_FILE_PROPERTY)) {
+                properties.setProperty(name, System.getProperty(name));
+            }
+        }
+        return properties;
+    }
+
+    private static int getInt(Properties properties, String name, int defaultValue) {
+        String value = properties.getProperty(PREFIX + name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(PREFIX + name + " is not a number: " + value);
+        }
+    }
+}
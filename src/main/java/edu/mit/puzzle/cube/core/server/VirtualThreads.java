@@ -0,0 +1,44 @@
+package edu.mit.puzzle.cube.core.server;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates virtual thread executors on JDKs that have them (21 and later). Cube is compiled for
+ * Java 8, so this goes through reflection.
+ */
+public class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isAvailable() {
+        return getFactoryMethod().isPresent();
+    }
+
+    /**
+     * @return An executor that runs each task on a new virtual thread, or empty if this JDK
+     *         doesn't have virtual threads
+     */
+    public static Optional<ExecutorService> newVirtualThreadPerTaskExecutor() {
+        Optional<Method> factoryMethod = getFactoryMethod();
+        if (!factoryMethod.isPresent()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of((ExecutorService) factoryMethod.get().invoke(null));
+        } catch (ReflectiveOperationException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<Method> getFactoryMethod() {
+        try {
+            return Optional.of(Executors.class.getMethod("newVirtualThreadPerTaskExecutor"));
+        } catch (NoSuchMethodException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -1,11 +1,39 @@
 package edu.mit.puzzle.cube.core.serverresources;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import edu.mit.puzzle.cube.core.HuntRegistry;
+import edu.mit.puzzle.cube.core.caching.ResponseCache;
+import edu.mit.puzzle.cube.core.db.DatabaseHelper;
 import edu.mit.puzzle.cube.core.events.*;
+import edu.mit.puzzle.cube.core.leaderboard.Leaderboard;
+import edu.mit.puzzle.cube.core.metrics.MetricsRegistry;
 import edu.mit.puzzle.cube.core.model.HuntStatusStore;
+import edu.mit.puzzle.cube.core.model.IdempotencyStore;
+import edu.mit.puzzle.cube.core.model.PostResult;
+import edu.mit.puzzle.cube.core.model.PostResults;
 import edu.mit.puzzle.cube.core.model.SubmissionStore;
+import org.restlet.data.Dimension;
+import org.restlet.data.Encoding;
+import org.restlet.data.MediaType;
+import org.restlet.data.Preference;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.representation.ByteArrayRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.resource.ResourceException;
 import org.restlet.resource.ServerResource;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
 public abstract class AbstractCubeResource extends ServerResource {
 
     protected static ObjectMapper MAPPER = new ObjectMapper();
@@ -14,10 +42,31 @@ public abstract class AbstractCubeResource extends ServerResource {
     public static String HUNT_STATUS_STORE_KEY = "HUNT_STATUS_STORE";
     public static String EVENT_FACTORY_KEY = "EVENT_FACTORY";
     public static String EVENT_PROCESSOR_KEY = "EVENT_PROCESSOR";
+    public static String EVENT_BROADCASTER_KEY = "EVENT_BROADCASTER";
+    public static String EVENT_SCHEDULER_KEY = "EVENT_SCHEDULER";
+    public static String IDEMPOTENCY_STORE_KEY = "IDEMPOTENCY_STORE";
+    public static String LEADERBOARD_KEY = "LEADERBOARD";
+    public static String HUNT_REGISTRY_KEY = "HUNT_REGISTRY";
+    public static String RESPONSE_CACHE_KEY = "RESPONSE_CACHE";
+    public static String METRICS_REGISTRY_KEY = "METRICS_REGISTRY";
+    public static String LIVENESS_CHECKER_KEY = "LIVENESS_CHECKER";
+    public static String READINESS_CHECKER_KEY = "READINESS_CHECKER";
+
+    private static String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    //Streamed responses up to this size are also kept in the ResponseCache.
+    private static final int MAX_CACHED_STREAM_BYTES = 256 * 1024;
 
     protected SubmissionStore submissionStore;
     protected HuntStatusStore huntStatusStore;
     protected EventProcessor<Event> eventProcessor;
+    protected EventBroadcaster eventBroadcaster;
+    protected EventScheduler eventScheduler;
+    protected IdempotencyStore idempotencyStore;
+    protected Leaderboard leaderboard;
+    protected HuntRegistry huntRegistry;
+    protected ResponseCache responseCache;
+    protected MetricsRegistry metricsRegistry;
 
     public AbstractCubeResource() {
     }
@@ -26,5 +75,224 @@ public abstract class AbstractCubeResource extends ServerResource {
         this.submissionStore = (SubmissionStore) getContext().getAttributes().get(SUBMISSION_STORE_KEY);
         this.huntStatusStore = (HuntStatusStore) getContext().getAttributes().get(HUNT_STATUS_STORE_KEY);
         this.eventProcessor = (EventProcessor<Event>) getContext().getAttributes().get(EVENT_PROCESSOR_KEY);
+        this.eventBroadcaster = (EventBroadcaster) getContext().getAttributes().get(EVENT_BROADCASTER_KEY);
+        this.eventScheduler = (EventScheduler) getContext().getAttributes().get(EVENT_SCHEDULER_KEY);
+        this.idempotencyStore = (IdempotencyStore) getContext().getAttributes().get(IDEMPOTENCY_STORE_KEY);
+        this.leaderboard = (Leaderboard) getContext().getAttributes().get(LEADERBOARD_KEY);
+        this.huntRegistry = (HuntRegistry) getContext().getAttributes().get(HUNT_REGISTRY_KEY);
+        this.responseCache = (ResponseCache) getContext().getAttributes().get(RESPONSE_CACHE_KEY);
+        this.metricsRegistry = (MetricsRegistry) getContext().getAttributes().get(METRICS_REGISTRY_KEY);
+    }
+
+    /**
+     * Handles the request, recording its latency by resource, method and status. A streamed
+     * body is written after this returns, so its latency only covers generating the response.
+     */
+    @Override
+    public Representation handle() {
+        long start = System.nanoTime();
+        try {
+            return super.handle();
+        } finally {
+            if (metricsRegistry != null) {
+                metricsRegistry.histogram(
+                        "cube_http_request_duration_seconds",
+                        "Time to handle an HTTP request, by resource, method and status",
+                        ImmutableMap.of(
+                                "route", getClass().getSimpleName(),
+                                "method", getMethod().getName(),
+                                "status", Integer.toString(getStatus().getCode())))
+                        .record(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Processes a POST at most once per client-supplied Idempotency-Key header. A retry with
+     * the same key and body gets the original result back, and reusing a key with a different
+     * body gets a 422. Requests without the header are always processed.
+     *
+     * @param scope Distinguishes endpoints, so the same key can be used against each of them
+     * @param body The POSTed entity, which the key is bound to
+     * @param request Processes the POST
+     */
+    protected PostResult processIdempotently(String scope, Object body, Supplier<PostResult> request)
+            throws JsonProcessingException {
+        String idempotencyKey = getRequest().getHeaders() == null
+                ? null : getRequest().getHeaders().getFirstValue(IDEMPOTENCY_KEY_HEADER, true);
+        if (idempotencyKey == null || idempotencyStore == null) {
+            return request.get();
+        }
+        String bodyHash = Hashing.sha256().hashBytes(MAPPER.writeValueAsBytes(body)).toString();
+        try {
+            return idempotencyStore.getOrProcess(scope + ":" + idempotencyKey, bodyHash, request);
+        } catch (IdempotencyStore.KeyReusedException e) {
+            throw new ResourceException(Status.CLIENT_ERROR_UNPROCESSABLE_ENTITY, e.getMessage());
+        }
+    }
+
+    /**
+     * Processes a batch of changes in one database transaction, with the events they raise
+     * processed as one cascade once the transaction has committed. If making the changes
+     * throws, none of them are kept and their events are dropped. The cascade runs outside the
+     * transaction, so its handlers don't hold the database while they take their own locks,
+     * and the changes they make are committed as they go: a handler that throws leaves the
+     * batch, and whatever the cascade did before it, in place.
+     *
+     * Other requests to the hunt's database wait while the batch's changes are made.
+     *
+     * @param batch Makes the changes and returns a result for each of them
+     */
+    protected PostResults processBatch(Supplier<List<PostResult>> batch) {
+        Supplier<List<PostResult>> transaction = () -> DatabaseHelper.inTransaction(batch);
+        List<PostResult> results = eventProcessor instanceof CompositeEventProcessor
+                ? ((CompositeEventProcessor) eventProcessor).processDeferred(transaction)
+                : transaction.get();
+        return PostResults.builder().setResults(results).build();
+    }
+
+    /**
+     * @return true if the request has an If-None-Match condition matching the given tag
+     */
+    protected boolean isNotModified(Tag tag) {
+        if (getRequest().getConditions() == null) {
+            return false;
+        }
+        List<Tag> noneMatch = getRequest().getConditions().getNoneMatch();
+        if (noneMatch == null) {
+            return false;
+        }
+        for (Tag candidate : noneMatch) {
+            if (candidate.getName().equals("*") || candidate.equals(tag, false)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Serves a JSON response that is tagged with the version of the data it was built from.
+     * A request whose If-None-Match has that version gets a 304, and otherwise the serialized
+     * body is reused until the version changes, so an unchanged resource costs neither a
+     * database read nor serialization.
+     *
+     * The version must be read before the data that the body is built from.
+     *
+     * @param cacheKey Identifies the response within this hunt, including any parameters
+     * @param version The current version of the data the response is built from
+     * @param body Builds the object to serialize as the response body, or returns null if
+     *             there is no such resource, which results in a 404
+     */
+    protected Representation getVersionedJson(String cacheKey, String version, Supplier<Object> body)
+            throws IOException {
+        Tag tag = new Tag(version, true);
+        if (isNotModified(tag)) {
+            getResponse().setStatus(Status.REDIRECTION_NOT_MODIFIED);
+            return null;
+        }
+
+        Optional<byte[]> cachedBytes = responseCache == null
+                ? Optional.empty()
+                : responseCache.get(cacheKey, version);
+        byte[] bytes;
+        if (cachedBytes.isPresent()) {
+            bytes = cachedBytes.get();
+        } else {
+            Object value = body.get();
+            if (value == null) {
+                getResponse().setStatus(Status.CLIENT_ERROR_NOT_FOUND);
+                return null;
+            }
+            bytes = MAPPER.writeValueAsBytes(value);
+            if (responseCache != null) {
+                responseCache.put(cacheKey, version, bytes);
+            }
+        }
+        Representation representation = new ByteArrayRepresentation(bytes, MediaType.APPLICATION_JSON);
+        representation.setTag(tag);
+        return representation;
+    }
+
+    /**
+     * Like getVersionedJson, but for listings that may be large: the body is generated straight
+     * onto the response stream (gzipped if the client accepts it) rather than built in memory.
+     *
+     * The body is first generated in memory, up to the size of the largest cached response, so
+     * that small bodies are cached and a failure while generating one still results in a 500.
+     * Only a body too large for that is generated again onto the response stream, after the
+     * handler has returned, where a failure can only abort the response.
+     *
+     * @param jsonWriter Writes the body, possibly twice
+     */
+    protected Representation getVersionedJsonStream(
+            String cacheKey,
+            String version,
+            StreamingJsonRepresentation.JsonWriter jsonWriter
+    ) {
+        //The body may or may not be gzipped, so caches must key on Accept-Encoding, including
+        //for a 304. The tag is weak, which allows the two encodings of a version to share it.
+        getResponse().getDimensions().add(Dimension.ENCODING);
+        Tag tag = new Tag(version, true);
+        if (isNotModified(tag)) {
+            getResponse().setStatus(Status.REDIRECTION_NOT_MODIFIED);
+            return null;
+        }
+
+        boolean gzip = acceptsGzip();
+        Optional<byte[]> cachedBytes = responseCache == null
+                ? Optional.empty()
+                : responseCache.get(cacheKey, version);
+        if (!cachedBytes.isPresent()) {
+            try {
+                cachedBytes = StreamingJsonRepresentation.writeToBytes(
+                        MAPPER.getFactory(), jsonWriter, MAX_CACHED_STREAM_BYTES);
+            } catch (IOException e) {
+                throw new ResourceException(Status.SERVER_ERROR_INTERNAL, e);
+            }
+            if (cachedBytes.isPresent() && responseCache != null) {
+                responseCache.put(cacheKey, version, cachedBytes.get());
+            }
+        }
+        Representation representation;
+        if (cachedBytes.isPresent()) {
+            representation = new StreamingJsonRepresentation(cachedBytes.get(), gzip);
+        } else {
+            ResponseCache cache = responseCache;
+            representation = new StreamingJsonRepresentation(
+                    MAPPER.getFactory(),
+                    jsonWriter,
+                    gzip,
+                    cache == null ? null : bytes -> cache.put(cacheKey, version, bytes),
+                    MAX_CACHED_STREAM_BYTES);
+        }
+        representation.setTag(tag);
+        return representation;
+    }
+
+    /**
+     * Adapts a JsonGenerator to the Consumers that stores pass rows to, writing each row as a
+     * JSON value.
+     */
+    protected static <T> Consumer<T> writeEachTo(JsonGenerator generator) {
+        return value -> {
+            try {
+                generator.writeObject(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    private boolean acceptsGzip() {
+        if (getRequest().getClientInfo() == null
+                || getRequest().getClientInfo().getAcceptedEncodings() == null) {
+            return false;
+        }
+        for (Preference<Encoding> preference : getRequest().getClientInfo().getAcceptedEncodings()) {
+            if (Encoding.GZIP.equals(preference.getMetadata()) && preference.getQuality() > 0) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -0,0 +1,72 @@
+package edu.mit.puzzle.cube.core.serverresources;
+
+import com.google.common.collect.Ordering;
+
+import edu.mit.puzzle.cube.core.model.Change;
+import edu.mit.puzzle.cube.core.model.Changes;
+
+import org.restlet.resource.Get;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ChangesResource extends AbstractCubeResource {
+
+    private static final int DEFAULT_LIMIT = 1000;
+    private static final int MAX_LIMIT = 10000;
+
+    private long getSince() {
+        String sinceString = getQueryValue("since");
+        if (sinceString == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(sinceString);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("since is not valid");
+        }
+    }
+
+    private int getLimit() {
+        String limitString = getQueryValue("limit");
+        if (limitString == null) {
+            return DEFAULT_LIMIT;
+        }
+        try {
+            int limit = Integer.parseInt(limitString);
+            if (limit < 1) {
+                throw new IllegalArgumentException("limit must be positive");
+            }
+            return Math.min(limit, MAX_LIMIT);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("limit is not valid");
+        }
+    }
+
+    @Get
+    public Changes handleGet() {
+        long since = getSince();
+        int limit = getLimit();
+
+        //Fetch one extra change so we can tell the client whether there is more to catch up on.
+        List<Change> changes = Stream.concat(
+                huntStatusStore.getVisibilityChanges(since, limit + 1).stream(),
+                submissionStore.getSubmissionChanges(since, limit + 1).stream())
+                .sorted(Ordering.natural().onResultOf(Change::getChangeId))
+                .limit(limit + 1)
+                .collect(Collectors.toList());
+
+        boolean hasMore = changes.size() > limit;
+        if (hasMore) {
+            changes = changes.subList(0, limit);
+        }
+        long lastChangeId = changes.isEmpty() ? since : changes.get(changes.size() - 1).getChangeId();
+
+        return Changes.builder()
+                .setChanges(changes)
+                .setLastChangeId(lastChangeId)
+                .setHasMore(hasMore)
+                .build();
+    }
+}
@@ -0,0 +1,23 @@
+package edu.mit.puzzle.cube.core.serverresources;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import edu.mit.puzzle.cube.core.events.CompositeEventProcessor;
+
+import org.restlet.data.Status;
+import org.restlet.ext.json.JsonRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.resource.Get;
+
+public class EventMetricsResource extends AbstractCubeResource {
+
+    @Get
+    public Representation handleGet() throws JsonProcessingException {
+        if (!(eventProcessor instanceof CompositeEventProcessor)) {
+            getResponse().setStatus(Status.CLIENT_ERROR_NOT_FOUND, "Event metrics are not available");
+            return null;
+        }
+        CompositeEventProcessor compositeEventProcessor = (CompositeEventProcessor) eventProcessor;
+        return new JsonRepresentation(MAPPER.writeValueAsString(compositeEventProcessor.getMetricsSnapshot()));
+    }
+}
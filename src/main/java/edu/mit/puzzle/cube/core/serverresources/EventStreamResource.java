@@ -0,0 +1,107 @@
+package edu.mit.puzzle.cube.core.serverresources;
+
+import edu.mit.puzzle.cube.core.events.EventBroadcaster;
+
+import org.restlet.data.MediaType;
+import org.restlet.data.Status;
+import org.restlet.representation.OutputRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.resource.Get;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams VisibilityChangeEvents and SubmissionCompleteEvents to the client as server-sent
+ * events, optionally filtered to a single team with the teamId query parameter. A client
+ * reconnecting with a Last-Event-ID header (or lastEventId query parameter) resumes after
+ * that event.
+ *
+ * Each open stream holds a server worker thread, so only a limited number may be open at once
+ * (see ServerConfiguration.getMaxEventStreams); beyond that, clients get a 503 and should
+ * reconnect later.
+ */
+public class EventStreamResource extends AbstractCubeResource {
+
+    private static final MediaType TEXT_EVENT_STREAM = new MediaType("text/event-stream");
+    private static final long HEARTBEAT_INTERVAL_SECONDS = 15;
+    private static final long RETRY_AFTER_SECONDS = 15;
+
+    private Optional<Long> getLastEventId() {
+        String lastEventId = getRequest().getHeaders() == null
+                ? null : getRequest().getHeaders().getFirstValue("Last-Event-ID", true);
+        if (lastEventId == null) {
+            lastEventId = getQueryValue("lastEventId");
+        }
+        if (lastEventId == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Long.parseLong(lastEventId));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("lastEventId is not valid");
+        }
+    }
+
+    @Get
+    public Representation handleGet() {
+        Optional<String> teamId = Optional.ofNullable(getQueryValue("teamId"));
+        Optional<EventBroadcaster.Subscription> optionalSubscription =
+                eventBroadcaster.subscribe(teamId, getLastEventId());
+        if (!optionalSubscription.isPresent()) {
+            getResponse().setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE, "Too many event streams are open");
+            getResponse().setRetryAfter(new Date(
+                    System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(RETRY_AFTER_SECONDS)));
+            return null;
+        }
+        EventBroadcaster.Subscription subscription = optionalSubscription.get();
+
+        Representation representation = new OutputRepresentation(TEXT_EVENT_STREAM) {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+                try {
+                    if (subscription.hasMissedEvents()) {
+                        writer.write("event: reset\ndata: {}\n\n");
+                        writer.flush();
+                    }
+                    while (!subscription.isClosed()) {
+                        Optional<EventBroadcaster.BroadcastEvent> event =
+                                subscription.poll(HEARTBEAT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+                        if (event.isPresent()) {
+                            writer.write("id: " + event.get().getId() + "\n");
+                            writer.write("event: " + event.get().getEventType() + "\n");
+                            writer.write("data: " + event.get().getJson() + "\n\n");
+                        } else {
+                            writer.write(": heartbeat\n\n");
+                        }
+                        writer.flush();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    subscription.close();
+                }
+            }
+
+            //The connector may release the entity without ever writing it, e.g. when the
+            //client disconnects first, so the subscription's permit is returned here too.
+            @Override
+            public void release() {
+                try {
+                    super.release();
+                } finally {
+                    subscription.close();
+                }
+            }
+        };
+        representation.setTransient(true);
+        return representation;
+    }
+}
@@ -12,7 +12,9 @@ public class EventsResource extends AbstractCubeResource {
 
     @Post
     public PostResult handlePost(Event event) throws JsonProcessingException {
-        eventProcessor.process(event);
-        return PostResult.builder().setProcessed(true).build();
+        return processIdempotently("events", event, () -> {
+            eventProcessor.process(event);
+            return PostResult.builder().setProcessed(true).build();
+        });
     }
 }
@@ -0,0 +1,38 @@
+package edu.mit.puzzle.cube.core.serverresources;
+
+import edu.mit.puzzle.cube.core.model.HealthReport;
+import edu.mit.puzzle.cube.core.server.HealthChecker;
+
+import org.restlet.data.Status;
+import org.restlet.resource.Get;
+
+/**
+ * Serves the liveness (/health/live) and readiness (/health/ready) probes. A probe answers 200
+ * if every one of its checks passed and 503 if any failed, with the report of each check as the
+ * body either way.
+ */
+public class HealthResource extends AbstractCubeResource {
+
+    @Get
+    public HealthReport handleGet() {
+        String probe = (String) getRequest().getAttributes().get("probe");
+        HealthChecker healthChecker;
+        if ("live".equals(probe)) {
+            healthChecker = (HealthChecker) getContext().getAttributes().get(LIVENESS_CHECKER_KEY);
+        } else if ("ready".equals(probe)) {
+            healthChecker = (HealthChecker) getContext().getAttributes().get(READINESS_CHECKER_KEY);
+        } else {
+            healthChecker = null;
+        }
+        if (healthChecker == null) {
+            getResponse().setStatus(Status.CLIENT_ERROR_NOT_FOUND, "Unknown health probe");
+            return null;
+        }
+
+        HealthReport report = healthChecker.getReport();
+        if (!report.getHealthy()) {
+            getResponse().setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
+        }
+        return report;
+    }
+}
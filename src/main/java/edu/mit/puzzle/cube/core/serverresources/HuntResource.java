@@ -0,0 +1,38 @@
+package edu.mit.puzzle.cube.core.serverresources;
+
+import edu.mit.puzzle.cube.core.HuntInstance;
+import edu.mit.puzzle.cube.core.model.Hunt;
+import edu.mit.puzzle.cube.core.model.PostResult;
+
+import org.restlet.data.Status;
+import org.restlet.resource.Delete;
+import org.restlet.resource.Get;
+
+import java.util.Optional;
+
+public class HuntResource extends AbstractCubeResource {
+
+    private String getHuntId() {
+        String huntId = (String) getRequest().getAttributes().get("huntId");
+        if (huntId == null) {
+            throw new IllegalArgumentException("huntId must be specified");
+        }
+        return huntId;
+    }
+
+    @Get
+    public Hunt handleGet() {
+        Optional<HuntInstance> huntInstance = huntRegistry.get(getHuntId());
+        if (!huntInstance.isPresent()) {
+            getResponse().setStatus(Status.CLIENT_ERROR_NOT_FOUND, "Hunt is not loaded");
+            return null;
+        }
+        return HuntsResource.toHunt(huntInstance.get());
+    }
+
+    @Delete
+    public PostResult handleDelete() {
+        boolean unloaded = huntRegistry.unload(getHuntId());
+        return PostResult.builder().setUpdated(unloaded).build();
+    }
+}
@@ -0,0 +1,45 @@
+package edu.mit.puzzle.cube.core.serverresources;
+
+import edu.mit.puzzle.cube.core.HuntInstance;
+import edu.mit.puzzle.cube.core.db.HuntSnapshot;
+
+import org.restlet.data.MediaType;
+import org.restlet.data.Status;
+import org.restlet.representation.OutputRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.resource.Get;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Optional;
+
+/**
+ * Downloads a HuntSnapshot of a hunt, for bringing up another instance in the same state.
+ */
+public class HuntSnapshotResource extends AbstractCubeResource {
+
+    private String getHuntId() {
+        String huntId = (String) getRequest().getAttributes().get("huntId");
+        if (huntId == null) {
+            throw new IllegalArgumentException("huntId must be specified");
+        }
+        return huntId;
+    }
+
+    @Get
+    public Representation handleGet() {
+        Optional<HuntInstance> huntInstance = huntRegistry.get(getHuntId());
+        if (!huntInstance.isPresent()) {
+            getResponse().setStatus(Status.CLIENT_ERROR_NOT_FOUND, "Hunt is not loaded");
+            return null;
+        }
+        return new OutputRepresentation(MediaType.APPLICATION_OCTET_STREAM) {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                //HuntSnapshot reads from its own copy of the database, so a slow client holds
+                //up nobody else.
+                HuntSnapshot.write(huntInstance.get().getConnectionFactory(), outputStream);
+            }
+        };
+    }
+}
@@ -0,0 +1,69 @@
+package edu.mit.puzzle.cube.core.serverresources;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.mit.puzzle.cube.core.HuntDefinition;
+import edu.mit.puzzle.cube.core.HuntInstance;
+import edu.mit.puzzle.cube.core.HuntRegistry;
+import edu.mit.puzzle.cube.core.model.Hunt;
+import edu.mit.puzzle.cube.core.model.Hunts;
+import edu.mit.puzzle.cube.core.model.PostResult;
+
+import org.restlet.resource.Get;
+import org.restlet.resource.Post;
+
+import java.util.Optional;
+
+public class HuntsResource extends AbstractCubeResource {
+
+    @Get
+    public Hunts handleGet() {
+        ImmutableList.Builder<Hunt> hunts = ImmutableList.builder();
+        for (String huntId : huntRegistry.getHuntIds()) {
+            Optional<HuntInstance> huntInstance = huntRegistry.get(huntId);
+            if (huntInstance.isPresent()) {
+                hunts.add(toHunt(huntInstance.get()));
+            }
+        }
+        return Hunts.builder().setHunts(hunts.build()).build();
+    }
+
+    @Post
+    public PostResult handlePost(Hunt hunt) {
+        if (!HuntRegistry.isValidHuntId(hunt.getHuntId())) {
+            throw new IllegalArgumentException("Invalid hunt id: " + hunt.getHuntId());
+        }
+        if (huntRegistry.get(hunt.getHuntId()).isPresent()) {
+            return PostResult.builder().setCreated(false).build();
+        }
+        Optional<HuntInstance> huntInstance = huntRegistry.loadIfAbsent(
+                hunt.getHuntId(), createHuntDefinition(hunt.getHuntDefinitionClass()));
+        return PostResult.builder().setCreated(huntInstance.isPresent()).build();
+    }
+
+    private static HuntDefinition createHuntDefinition(String className) {
+        Class<?> huntDefinitionClass;
+        try {
+            //Don't run the static initializer of a class that turns out not to be a HuntDefinition.
+            huntDefinitionClass = Class.forName(
+                    className, false, HuntsResource.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unknown hunt definition class " + className);
+        }
+        if (!HuntDefinition.class.isAssignableFrom(huntDefinitionClass)) {
+            throw new IllegalArgumentException(className + " is not a HuntDefinition");
+        }
+        try {
+            return (HuntDefinition) huntDefinitionClass.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Could not instantiate " + className, e);
+        }
+    }
+
+    static Hunt toHunt(HuntInstance huntInstance) {
+        return Hunt.builder()
+                .setHuntId(huntInstance.getHuntId())
+                .setHuntDefinitionClass(huntInstance.getHuntDefinition().getClass().getName())
+                .build();
+    }
+}
@@ -0,0 +1,29 @@
+package edu.mit.puzzle.cube.core.serverresources;
+
+import edu.mit.puzzle.cube.core.model.LeaderboardEntry;
+
+import org.restlet.data.Status;
+import org.restlet.resource.Get;
+
+import java.util.Optional;
+
+public class LeaderboardEntryResource extends AbstractCubeResource {
+
+    private String getTeamId() {
+        String teamId = (String) getRequest().getAttributes().get("teamId");
+        if (teamId == null) {
+            throw new IllegalArgumentException("teamId must be specified");
+        }
+        return teamId;
+    }
+
+    @Get
+    public LeaderboardEntry handleGet() {
+        Optional<LeaderboardEntry> entry = leaderboard.getEntry(getTeamId());
+        if (!entry.isPresent()) {
+            getResponse().setStatus(Status.CLIENT_ERROR_NOT_FOUND, "Team is not on the leaderboard");
+            return null;
+        }
+        return entry.get();
+    }
+}
@@ -0,0 +1,48 @@
+package edu.mit.puzzle.cube.core.serverresources;
+
+import edu.mit.puzzle.cube.core.model.LeaderboardPage;
+
+import org.restlet.resource.Get;
+
+public class LeaderboardResource extends AbstractCubeResource {
+
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;
+
+    private int getOffset() {
+        String offsetString = getQueryValue("offset");
+        if (offsetString == null) {
+            return 0;
+        }
+        try {
+            int offset = Integer.parseInt(offsetString);
+            if (offset < 0) {
+                throw new IllegalArgumentException("offset must not be negative");
+            }
+            return offset;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("offset is not valid");
+        }
+    }
+
+    private int getLimit() {
+        String limitString = getQueryValue("limit");
+        if (limitString == null) {
+            return DEFAULT_LIMIT;
+        }
+        try {
+            int limit = Integer.parseInt(limitString);
+            if (limit < 1) {
+                throw new IllegalArgumentException("limit must be positive");
+            }
+            return Math.min(limit, MAX_LIMIT);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("limit is not valid");
+        }
+    }
+
+    @Get
+    public LeaderboardPage handleGet() {
+        return leaderboard.getPage(getOffset(), getLimit());
+    }
+}
@@ -0,0 +1,25 @@
+package edu.mit.puzzle.cube.core.serverresources;
+
+import org.restlet.data.MediaType;
+import org.restlet.data.Status;
+import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.resource.Get;
+
+/**
+ * Serves every metric in the MetricsRegistry in the Prometheus text exposition format, for
+ * Prometheus (or anything else that understands the format) to scrape.
+ */
+public class MetricsResource extends AbstractCubeResource {
+
+    private static final MediaType PROMETHEUS_TEXT = MediaType.valueOf("text/plain; version=0.0.4");
+
+    @Get
+    public Representation handleGet() {
+        if (metricsRegistry == null) {
+            getResponse().setStatus(Status.CLIENT_ERROR_NOT_FOUND, "Metrics are not available");
+            return null;
+        }
+        return new StringRepresentation(metricsRegistry.scrape(), PROMETHEUS_TEXT);
+    }
+}
@@ -0,0 +1,26 @@
+package edu.mit.puzzle.cube.core.serverresources;
+
+import edu.mit.puzzle.cube.core.model.PostResult;
+
+import org.restlet.resource.Delete;
+
+public class ScheduledEventResource extends AbstractCubeResource {
+
+    private int getId() {
+        String idString = (String) getRequest().getAttributes().get("id");
+        if (idString == null) {
+            throw new IllegalArgumentException("id must be specified");
+        }
+        try {
+            return Integer.parseInt(idString);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("id is not valid");
+        }
+    }
+
+    @Delete
+    public PostResult handleDelete() {
+        boolean cancelled = eventScheduler.cancel(getId());
+        return PostResult.builder().setUpdated(cancelled).build();
+    }
+}
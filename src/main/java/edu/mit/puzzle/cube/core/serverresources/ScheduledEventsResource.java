@@ -0,0 +1,29 @@
+package edu.mit.puzzle.cube.core.serverresources;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import edu.mit.puzzle.cube.core.events.ScheduledEvent;
+import edu.mit.puzzle.cube.core.events.ScheduledEvents;
+import edu.mit.puzzle.cube.core.model.PostResult;
+
+import org.restlet.resource.Get;
+import org.restlet.resource.Post;
+
+public class ScheduledEventsResource extends AbstractCubeResource {
+
+    @Get
+    public ScheduledEvents handleGet() {
+        return ScheduledEvents.builder()
+                .setScheduledEvents(eventScheduler.getPendingEvents())
+                .build();
+    }
+
+    @Post
+    public PostResult handlePost(ScheduledEvent scheduledEvent) throws JsonProcessingException {
+        if (scheduledEvent.getEvent() == null || scheduledEvent.getFireTime() == null) {
+            return PostResult.builder().setCreated(false).build();
+        }
+        eventScheduler.schedule(scheduledEvent.getEvent(), scheduledEvent.getFireTime());
+        return PostResult.builder().setCreated(true).build();
+    }
+}
@@ -0,0 +1,214 @@
+package edu.mit.puzzle.cube.core.serverresources;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import org.restlet.data.Encoding;
+import org.restlet.data.MediaType;
+import org.restlet.representation.OutputRepresentation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A JSON representation that is written straight to the response stream as it is generated,
+ * optionally gzipped, instead of being built up in memory first.
+ *
+ * The body can also be captured as it is written, up to a size limit, so that small responses
+ * can still be cached.
+ *
+ * By the time the body is written, the response status has already been sent, so an error while
+ * writing it can only abort the response: the exception propagates to the connector, which drops
+ * the connection before the body is complete. Use writeToBytes to generate small bodies while an
+ * error can still become an error status.
+ */
+public class StreamingJsonRepresentation extends OutputRepresentation {
+
+    public interface JsonWriter {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    /**
+     * Copies everything written through it into a buffer, until the buffer would grow past
+     * maxBytes, after which it gives up on the copy.
+     */
+    private static class CapturingOutputStream extends FilterOutputStream {
+        private final int maxBytes;
+        private ByteArrayOutputStream capture = new ByteArrayOutputStream();
+
+        private CapturingOutputStream(OutputStream out, int maxBytes) {
+            super(out);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            capture(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            capture(b, off, len);
+        }
+
+        private void capture(byte[] b, int off, int len) {
+            if (capture != null) {
+                if (capture.size() + len > maxBytes) {
+                    capture = null;
+                } else {
+                    capture.write(b, off, len);
+                }
+            }
+        }
+    }
+
+    private static class BodyTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Passes writes through until more than maxBytes have been written in all, and then throws a
+     * BodyTooLargeException.
+     */
+    private static class BoundedOutputStream extends FilterOutputStream {
+        private final int maxBytes;
+        private int size = 0;
+
+        private BoundedOutputStream(OutputStream out, int maxBytes) {
+            super(out);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            size += len;
+            if (size > maxBytes) {
+                throw new BodyTooLargeException();
+            }
+            out.write(b, off, len);
+        }
+    }
+
+    /**
+     * Generates a body in memory, giving up once it grows past maxBytes.
+     *
+     * @return the uncompressed body, or empty if it is longer than maxBytes
+     * @throws IOException if the jsonWriter fails
+     */
+    public static Optional<byte[]> writeToBytes(JsonFactory jsonFactory, JsonWriter jsonWriter, int maxBytes)
+            throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            writeJson(jsonFactory, jsonWriter, new BoundedOutputStream(outputStream, maxBytes));
+        } catch (BodyTooLargeException e) {
+            return Optional.empty();
+        }
+        return Optional.of(outputStream.toByteArray());
+    }
+
+    private static void writeJson(JsonFactory jsonFactory, JsonWriter jsonWriter, OutputStream outputStream)
+            throws IOException {
+        JsonGenerator generator = jsonFactory.createGenerator(outputStream);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        try {
+            jsonWriter.write(generator);
+        } catch (UncheckedIOException e) {
+            //Stores pass rows to plain Consumers, which can't throw IOExceptions themselves.
+            throw e.getCause();
+        }
+        generator.close();
+    }
+
+    private final JsonFactory jsonFactory;
+    private final JsonWriter jsonWriter;
+    private final byte[] body;
+    private final boolean gzip;
+    private final Consumer<byte[]> captureConsumer;
+    private final int maxCaptureBytes;
+
+    /**
+     * @param jsonFactory Creates the JsonGenerator, so it should come from the ObjectMapper
+     *                    used for everything else
+     * @param jsonWriter Writes the body
+     * @param gzip Whether to gzip the body (and say so in the Content-Encoding)
+     * @param captureConsumer If not null, receives the uncompressed body once it has been
+     *                        written in full, provided it is at most maxCaptureBytes long
+     * @param maxCaptureBytes The largest body to capture
+     */
+    public StreamingJsonRepresentation(
+            JsonFactory jsonFactory,
+            JsonWriter jsonWriter,
+            boolean gzip,
+            Consumer<byte[]> captureConsumer,
+            int maxCaptureBytes
+    ) {
+        this(jsonFactory, jsonWriter, null, gzip, captureConsumer, maxCaptureBytes);
+    }
+
+    /**
+     * Writes an already serialized body, e.g. one from a ResponseCache.
+     */
+    public StreamingJsonRepresentation(byte[] body, boolean gzip) {
+        this(null, null, body, gzip, null, 0);
+    }
+
+    private StreamingJsonRepresentation(
+            JsonFactory jsonFactory,
+            JsonWriter jsonWriter,
+            byte[] body,
+            boolean gzip,
+            Consumer<byte[]> captureConsumer,
+            int maxCaptureBytes
+    ) {
+        super(MediaType.APPLICATION_JSON);
+        this.jsonFactory = jsonFactory;
+        this.jsonWriter = jsonWriter;
+        this.body = body;
+        this.gzip = gzip;
+        this.captureConsumer = captureConsumer;
+        this.maxCaptureBytes = maxCaptureBytes;
+        if (gzip) {
+            getEncodings().add(Encoding.GZIP);
+        } else if (body != null) {
+            setSize(body.length);
+        }
+    }
+
+    @Override
+    public void write(OutputStream outputStream) throws IOException {
+        GZIPOutputStream gzipOutputStream = gzip ? new GZIPOutputStream(outputStream) : null;
+        OutputStream bodyOutputStream = gzip ? gzipOutputStream : outputStream;
+        CapturingOutputStream capturingOutputStream = null;
+        if (captureConsumer != null) {
+            capturingOutputStream = new CapturingOutputStream(bodyOutputStream, maxCaptureBytes);
+            bodyOutputStream = capturingOutputStream;
+        }
+
+        if (body != null) {
+            bodyOutputStream.write(body);
+        } else {
+            writeJson(jsonFactory, jsonWriter, bodyOutputStream);
+        }
+        if (gzipOutputStream != null) {
+            gzipOutputStream.finish();
+        }
+        outputStream.flush();
+
+        if (capturingOutputStream != null && capturingOutputStream.capture != null) {
+            captureConsumer.accept(capturingOutputStream.capture.toByteArray());
+        }
+    }
+}
@@ -5,11 +5,11 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import edu.mit.puzzle.cube.core.model.PostResult;
 import edu.mit.puzzle.cube.core.model.Submission;
 
-import org.restlet.data.Status;
+import org.restlet.representation.Representation;
 import org.restlet.resource.Get;
 import org.restlet.resource.Post;
 
-import java.util.Optional;
+import java.io.IOException;
 
 public class SubmissionResource extends AbstractCubeResource {
 
@@ -26,16 +26,13 @@ public class SubmissionResource extends AbstractCubeResource {
     }
 
     @Get
-    public Submission handleGet() throws JsonProcessingException {
+    public Representation handleGet() throws IOException {
         int id = getId();
-        Optional<Submission> submission = submissionStore.getSubmission(id);
-
-        if (submission.isPresent()) {
-            return submission.get();
-        } else {
-            getResponse().setStatus(Status.CLIENT_ERROR_NOT_FOUND, "Submission not found");
-            return null;
-        }
+        //Submissions are looked up by id alone, so only the global version identifies one.
+        return getVersionedJson(
+                "submission/" + id,
+                submissionStore.getSubmissionVersions().getGlobalVersion(),
+                () -> submissionStore.getSubmission(id).orElse(null));
     }
 
     @Post
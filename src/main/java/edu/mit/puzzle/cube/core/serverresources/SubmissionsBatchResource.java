@@ -0,0 +1,49 @@
+package edu.mit.puzzle.cube.core.serverresources;
+
+import edu.mit.puzzle.cube.core.model.PostResult;
+import edu.mit.puzzle.cube.core.model.PostResults;
+import edu.mit.puzzle.cube.core.model.Submission;
+import edu.mit.puzzle.cube.core.model.Submissions;
+
+import org.restlet.resource.Post;
+
+import java.util.stream.Collectors;
+
+/**
+ * Makes many submissions, or submission status updates, in one request. A submission without
+ * a submissionId is created as if it had been POSTed to /submissions, and one with a
+ * submissionId has its status updated as if it had been POSTed to /submissions/{id}. The
+ * results are returned in the same order.
+ */
+public class SubmissionsBatchResource extends AbstractCubeResource {
+
+    @Post
+    public PostResults handlePost(Submissions submissions) {
+        return processBatch(() -> submissions.getSubmissions().stream()
+                .map(submission -> submission.getSubmissionId() == null
+                        ? addSubmission(submission)
+                        : setSubmissionStatus(submission))
+                .collect(Collectors.toList()));
+    }
+
+    private PostResult addSubmission(Submission submission) {
+        String visibilityStatus = huntStatusStore.getVisibility(
+                submission.getTeamId(),
+                submission.getPuzzleId());
+        if (!huntStatusStore.getVisibilityStatusSet().allowsSubmissions(visibilityStatus)) {
+            return PostResult.builder().setCreated(false).build();
+        }
+
+        boolean success = submissionStore.addSubmission(submission);
+        return PostResult.builder().setCreated(success).build();
+    }
+
+    private PostResult setSubmissionStatus(Submission submission) {
+        if (submission.getStatus() == null) {
+            return PostResult.builder().setUpdated(false).build();
+        }
+        boolean changed = submissionStore.setSubmissionStatus(
+                submission.getSubmissionId(), submission.getStatus());
+        return PostResult.builder().setUpdated(changed).build();
+    }
+}
@@ -4,30 +4,40 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import edu.mit.puzzle.cube.core.model.PostResult;
 import edu.mit.puzzle.cube.core.model.Submission;
-import edu.mit.puzzle.cube.core.model.Submissions;
 
+import org.restlet.representation.Representation;
 import org.restlet.resource.Get;
 import org.restlet.resource.Post;
 
 public class SubmissionsResource extends AbstractCubeResource {
 
     @Get
-    public Submissions handleGet() {
-        return Submissions.builder()
-                .setSubmissions(submissionStore.getAllSubmissions())
-                .build();
+    public Representation handleGet() {
+        //Written in the same shape as Submissions, but a row at a time.
+        return getVersionedJsonStream(
+                "submissions",
+                submissionStore.getSubmissionVersions().getGlobalVersion(),
+                generator -> {
+                    generator.writeStartObject();
+                    generator.writeArrayFieldStart("submissions");
+                    submissionStore.forEachSubmission(writeEachTo(generator));
+                    generator.writeEndArray();
+                    generator.writeEndObject();
+                });
     }
 
     @Post
     public PostResult handlePost(Submission submission) throws JsonProcessingException {
-        String visibilityStatus = huntStatusStore.getVisibility(
-                submission.getTeamId(),
-                submission.getPuzzleId());
-        if (!huntStatusStore.getVisibilityStatusSet().allowsSubmissions(visibilityStatus)) {
-            return PostResult.builder().setCreated(false).build();
-        }
+        return processIdempotently("submissions", submission, () -> {
+            String visibilityStatus = huntStatusStore.getVisibility(
+                    submission.getTeamId(),
+                    submission.getPuzzleId());
+            if (!huntStatusStore.getVisibilityStatusSet().allowsSubmissions(visibilityStatus)) {
+                return PostResult.builder().setCreated(false).build();
+            }
 
-        boolean success = submissionStore.addSubmission(submission);
-        return PostResult.builder().setCreated(success).build();
+            boolean success = submissionStore.addSubmission(submission);
+            return PostResult.builder().setCreated(success).build();
+        });
     }
 }
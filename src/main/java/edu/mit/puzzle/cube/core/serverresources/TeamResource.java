@@ -1,8 +1,6 @@
 package edu.mit.puzzle.cube.core.serverresources;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.common.collect.Maps;
-import org.restlet.ext.json.JsonRepresentation;
 import org.restlet.representation.Representation;
 import org.restlet.resource.Get;
 import java.util.Map;
@@ -18,14 +16,15 @@ public class TeamResource extends AbstractCubeResource {
     }
 
     @Get
-    public Representation handleGet() throws JsonProcessingException {
+    public Representation handleGet() {
         String id = getId();
-        Map<String,Object> propertyMap = huntStatusStore.getTeamProperties(id);
+        return getVersionedJsonStream("team/" + id, huntStatusStore.getTeamPropertyVersions().getTeamVersion(id), generator -> {
+            Map<String,Object> propertyMap = huntStatusStore.getTeamProperties(id);
 
-        Map<String,Object> returnMap = Maps.newHashMap();
-        returnMap.put("teamId",id);
-        returnMap.putAll(propertyMap);
-
-        return new JsonRepresentation(MAPPER.writeValueAsString(returnMap));
+            Map<String,Object> returnMap = Maps.newHashMap();
+            returnMap.put("teamId",id);
+            returnMap.putAll(propertyMap);
+            generator.writeObject(returnMap);
+        });
     }
 }
@@ -0,0 +1,35 @@
+package edu.mit.puzzle.cube.core.serverresources;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.restlet.representation.Representation;
+import org.restlet.resource.Get;
+
+import java.io.IOException;
+
+/**
+ * Serves all of a team's puzzle visibilities in one response. The ETag is the team's
+ * visibility version, so a poll with a current If-None-Match gets a 304 without any
+ * database access.
+ */
+public class TeamVisibilitiesResource extends AbstractCubeResource {
+
+    private String getId() {
+        String idString = (String) getRequest().getAttributes().get("id");
+        if (idString == null) {
+            throw new IllegalArgumentException("id must be specified");
+        }
+        return idString;
+    }
+
+    @Get
+    public Representation handleGet() throws IOException {
+        String id = getId();
+        return getVersionedJson(
+                "team/" + id + "/visibilities",
+                huntStatusStore.getVisibilityVersions().getTeamVersion(id),
+                () -> ImmutableMap.of(
+                        "teamId", id,
+                        "visibilities", huntStatusStore.getVisibilitiesForTeam(id)));
+    }
+}
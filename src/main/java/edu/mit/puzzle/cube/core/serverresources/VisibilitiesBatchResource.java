@@ -0,0 +1,35 @@
+package edu.mit.puzzle.cube.core.serverresources;
+
+import edu.mit.puzzle.cube.core.model.PostResult;
+import edu.mit.puzzle.cube.core.model.PostResults;
+import edu.mit.puzzle.cube.core.model.Visibilities;
+import edu.mit.puzzle.cube.core.model.Visibility;
+
+import org.restlet.resource.Post;
+
+import java.util.stream.Collectors;
+
+/**
+ * Applies many visibility updates in one request. Each visibility is handled as if it had been
+ * POSTed to /visibilities/{teamId}/{puzzleId}, and the results are returned in the same order.
+ */
+public class VisibilitiesBatchResource extends AbstractCubeResource {
+
+    @Post
+    public PostResults handlePost(Visibilities visibilities) {
+        return processBatch(() -> visibilities.getVisibilities().stream()
+                .map(this::setVisibility)
+                .collect(Collectors.toList()));
+    }
+
+    private PostResult setVisibility(Visibility visibility) {
+        if (visibility.getStatus() == null
+                || !huntStatusStore.getVisibilityStatusSet().isAllowedStatus(visibility.getStatus())) {
+            return PostResult.builder().setUpdated(false).build();
+        }
+
+        boolean changed = huntStatusStore.setVisibility(
+                visibility.getTeamId(), visibility.getPuzzleId(), visibility.getStatus(), true);
+        return PostResult.builder().setUpdated(changed).build();
+    }
+}
@@ -1,18 +1,37 @@
 package edu.mit.puzzle.cube.core.serverresources;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import edu.mit.puzzle.cube.core.model.Visibilities;
+import edu.mit.puzzle.cube.core.caching.VersionCounters;
+import org.restlet.representation.Representation;
 import org.restlet.resource.Get;
 import java.util.Optional;
 
 public class VisibilitiesResource extends AbstractCubeResource {
 
     @Get
-    public Visibilities handleGet() throws JsonProcessingException {
+    public Representation handleGet() {
         Optional<String> teamId = Optional.ofNullable(getQueryValue("teamId"));
         Optional<String> puzzleId = Optional.ofNullable(getQueryValue("puzzleId"));
-        return Visibilities.builder()
-                .setVisibilities(huntStatusStore.getExplicitVisibilities(teamId, puzzleId))
-                .build();
+
+        VersionCounters versions = huntStatusStore.getVisibilityVersions();
+        String version;
+        if (teamId.isPresent() && puzzleId.isPresent()) {
+            version = versions.getVersion(teamId.get(), puzzleId.get());
+        } else if (teamId.isPresent()) {
+            version = versions.getTeamVersion(teamId.get());
+        } else if (puzzleId.isPresent()) {
+            version = versions.getPuzzleVersion(puzzleId.get());
+        } else {
+            version = versions.getGlobalVersion();
+        }
+
+        String cacheKey = "visibilities?teamId=" + teamId.orElse("") + "&puzzleId=" + puzzleId.orElse("");
+        //Written in the same shape as Visibilities, but a row at a time.
+        return getVersionedJsonStream(cacheKey, version, generator -> {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("visibilities");
+            huntStatusStore.forEachExplicitVisibility(teamId, puzzleId, writeEachTo(generator));
+            generator.writeEndArray();
+            generator.writeEndObject();
+        });
     }
 }
@@ -5,9 +5,12 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import edu.mit.puzzle.cube.core.model.PostResult;
 import edu.mit.puzzle.cube.core.model.Visibility;
 
+import org.restlet.representation.Representation;
 import org.restlet.resource.Get;
 import org.restlet.resource.Post;
 
+import java.io.IOException;
+
 public class VisibilityResource extends AbstractCubeResource {
 
     private String getTeamId() {
@@ -27,14 +30,17 @@ public class VisibilityResource extends AbstractCubeResource {
     }
 
     @Get
-    public Visibility handleGet() throws JsonProcessingException {
+    public Representation handleGet() throws IOException {
         String teamId = getTeamId();
         String puzzleId = getPuzzleId();
-        return Visibility.builder()
-                .setTeamId(teamId)
-                .setPuzzleId(puzzleId)
-                .setStatus(huntStatusStore.getVisibility(teamId, puzzleId))
-                .build();
+        return getVersionedJson(
+                "visibility/" + teamId + "/" + puzzleId,
+                huntStatusStore.getVisibilityVersions().getVersion(teamId, puzzleId),
+                () -> Visibility.builder()
+                        .setTeamId(teamId)
+                        .setPuzzleId(puzzleId)
+                        .setStatus(huntStatusStore.getVisibility(teamId, puzzleId))
+                        .build());
     }
 
     @Post
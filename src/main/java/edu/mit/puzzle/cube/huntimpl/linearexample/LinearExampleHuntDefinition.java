@@ -1,7 +1,6 @@
 package edu.mit.puzzle.cube.huntimpl.linearexample;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
 
 import edu.mit.puzzle.cube.core.HuntDefinition;
 import edu.mit.puzzle.cube.core.events.*;
@@ -10,9 +9,9 @@ import edu.mit.puzzle.cube.core.model.Submission;
 import edu.mit.puzzle.cube.core.model.SubmissionStatus;
 import edu.mit.puzzle.cube.core.model.VisibilityStatusSet;
 import edu.mit.puzzle.cube.modules.model.StandardVisibilityStatusSet;
+import edu.mit.puzzle.cube.modules.unlocks.UnlockGraph;
 
 import java.util.List;
-import java.util.Map;
 
 public class LinearExampleHuntDefinition implements HuntDefinition {
 
@@ -37,13 +36,13 @@ public class LinearExampleHuntDefinition implements HuntDefinition {
         return PUZZLES;
     }
 
-    private static final Map<String,String> DIRECT_UNLOCK_PREREQS;
+    private static final UnlockGraph UNLOCK_GRAPH;
     static {
-        ImmutableMap.Builder<String,String> directPrereqBuilder = ImmutableMap.builder();
+        UnlockGraph.Builder unlockGraphBuilder = UnlockGraph.builder();
         for (int i = 1; i <= 6; ++i) {
-            directPrereqBuilder.put("puzzle" + i, "puzzle" + (i+1));
+            unlockGraphBuilder.unlockWhen("puzzle" + (i+1), "UNLOCKED", "puzzle" + i, "SOLVED");
         }
-        DIRECT_UNLOCK_PREREQS = directPrereqBuilder.build();
+        UNLOCK_GRAPH = unlockGraphBuilder.build();
     }
 
     @Override
@@ -51,7 +50,7 @@ public class LinearExampleHuntDefinition implements HuntDefinition {
             CompositeEventProcessor eventProcessor,
             HuntStatusStore huntStatusStore
     ) {
-        eventProcessor.addEventProcessor(SubmissionCompleteEvent.class, event -> {
+        eventProcessor.addEventProcessor(SubmissionCompleteEvent.class, "solveOnCorrectSubmission", event -> {
             Submission submission = event.getSubmission();
             if (submission.getStatus().equals(SubmissionStatus.CORRECT)) {
                 huntStatusStore.setVisibility(
@@ -63,7 +62,7 @@ public class LinearExampleHuntDefinition implements HuntDefinition {
             }
         });
 
-        eventProcessor.addEventProcessor(FullReleaseEvent.class, event -> {
+        eventProcessor.addEventProcessor(FullReleaseEvent.class, "fullRelease", event -> {
             for (String teamId : huntStatusStore.getTeamIds()) {
                 huntStatusStore.setVisibility(
                         teamId,
@@ -74,7 +73,7 @@ public class LinearExampleHuntDefinition implements HuntDefinition {
             }
         });
 
-        eventProcessor.addEventProcessor(HuntStartEvent.class, event -> {
+        eventProcessor.addEventProcessor(HuntStartEvent.class, "huntStart", event -> {
             boolean changed = huntStatusStore.recordHuntRunStart();
             if (changed) {
                 for (String teamId : huntStatusStore.getTeamIds()) {
@@ -83,17 +82,6 @@ public class LinearExampleHuntDefinition implements HuntDefinition {
             }
         });
 
-        for (Map.Entry<String,String> directPrereqEntry : DIRECT_UNLOCK_PREREQS.entrySet()) {
-            eventProcessor.addEventProcessor(VisibilityChangeEvent.class, event -> {
-                String teamId = event.getVisibility().getTeamId();
-                String puzzleId = event.getVisibility().getPuzzleId();
-                String status = event.getVisibility().getStatus();
-
-                if (status.equals("SOLVED") && puzzleId.equals(directPrereqEntry.getKey())) {
-                    huntStatusStore.setVisibility(teamId, directPrereqEntry.getValue(),
-                            "UNLOCKED", false);
-                }
-            });
-        }
+        UNLOCK_GRAPH.addToEventProcessor(eventProcessor, huntStatusStore);
     }
 }
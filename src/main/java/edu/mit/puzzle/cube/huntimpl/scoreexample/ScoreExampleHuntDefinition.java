@@ -7,23 +7,20 @@ import com.google.common.collect.Lists;
 import edu.mit.puzzle.cube.core.HuntDefinition;
 import edu.mit.puzzle.cube.core.events.CompositeEventProcessor;
 import edu.mit.puzzle.cube.core.events.Event;
-import edu.mit.puzzle.cube.core.events.EventProcessor;
 import edu.mit.puzzle.cube.core.events.FullReleaseEvent;
 import edu.mit.puzzle.cube.core.events.HuntStartEvent;
-import edu.mit.puzzle.cube.core.events.PeriodicTimerEvent;
 import edu.mit.puzzle.cube.core.events.SubmissionCompleteEvent;
-import edu.mit.puzzle.cube.core.events.VisibilityChangeEvent;
 import edu.mit.puzzle.cube.core.model.HuntStatusStore;
 import edu.mit.puzzle.cube.core.model.Submission;
 import edu.mit.puzzle.cube.core.model.SubmissionStatus;
 import edu.mit.puzzle.cube.core.model.VisibilityStatusSet;
 import edu.mit.puzzle.cube.modules.model.StandardVisibilityStatusSet;
+import edu.mit.puzzle.cube.modules.scores.TeamScoreTracker;
 
 import java.time.Duration;
-import java.time.Instant;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.stream.Collectors;
 
 public class ScoreExampleHuntDefinition implements HuntDefinition {
 
@@ -58,12 +55,19 @@ public class ScoreExampleHuntDefinition implements HuntDefinition {
         return Lists.newArrayList(PUZZLE_INFO_MAP.keySet());
     }
 
+    //The stored score's time points are from whenever it was last published, which differs
+    //between teams, but every team has the same time points at any moment.
+    @Override
+    public String getLeaderboardRankPropertyKey() {
+        return TeamScoreTracker.PUZZLE_POINTS_PROPERTY_KEY;
+    }
+
     @Override
     public void addToEventProcessor(
             CompositeEventProcessor eventProcessor,
             HuntStatusStore huntStatusStore
     ) {
-        eventProcessor.addEventProcessor(SubmissionCompleteEvent.class, event -> {
+        eventProcessor.addEventProcessor(SubmissionCompleteEvent.class, "solveOnCorrectSubmission", event -> {
             Submission submission = event.getSubmission();
             if (submission.getStatus().equals(SubmissionStatus.CORRECT)) {
                 huntStatusStore.setVisibility(
@@ -75,7 +79,7 @@ public class ScoreExampleHuntDefinition implements HuntDefinition {
             }
         });
 
-        eventProcessor.addEventProcessor(FullReleaseEvent.class, event -> {
+        eventProcessor.addEventProcessor(FullReleaseEvent.class, "fullRelease", event -> {
             for (String teamId : huntStatusStore.getTeamIds()) {
                 huntStatusStore.setVisibility(
                         teamId,
@@ -86,7 +90,7 @@ public class ScoreExampleHuntDefinition implements HuntDefinition {
             }
         });
 
-        eventProcessor.addEventProcessor(HuntStartEvent.class, event -> {
+        eventProcessor.addEventProcessor(HuntStartEvent.class, "huntStart", event -> {
             boolean changed = huntStatusStore.recordHuntRunStart();
             if (changed) {
                 for (String teamId : huntStatusStore.getTeamIds()) {
@@ -95,60 +99,30 @@ public class ScoreExampleHuntDefinition implements HuntDefinition {
             }
         });
 
-        eventProcessor.addEventProcessor(VisibilityChangeEvent.class, event -> {
-            updateStoredScore(event.getVisibility().getTeamId(), huntStatusStore, eventProcessor);
-        });
-
-        eventProcessor.addEventProcessor(ScoreUpdateEvent.class, event -> {
+        TeamScoreTracker teamScoreTracker = new TeamScoreTracker(
+                huntStatusStore,
+                huntStatusStore.getClock(),
+                PUZZLE_INFO_MAP.entrySet().stream()
+                        .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().pointReward)),
+                Duration.ofMinutes(1), //1 point every minute
+                PUZZLE_INFO_MAP.values().stream()
+                        .map(puzzleInfo -> puzzleInfo.pointPrereq)
+                        .collect(Collectors.toSet()),
+                (teamId, previousScore, score) -> eventProcessor.process(ScoreUpdateEvent.builder()
+                        .setTeamId(teamId)
+                        .setPreviousScore(previousScore)
+                        .setScore(score)
+                        .build()));
+        teamScoreTracker.addToEventProcessor(eventProcessor);
+
+        //Only puzzles whose prerequisite was crossed by this update can need unlocking.
+        eventProcessor.addEventProcessor(ScoreUpdateEvent.class, "unlockOnScoreUpdate", event -> {
             PUZZLE_INFO_MAP.entrySet().stream()
+                    .filter(puzzleEntry -> event.getPreviousScore() < puzzleEntry.getValue().pointPrereq)
                     .filter(puzzleEntry -> event.getScore() >= puzzleEntry.getValue().pointPrereq)
                     .map(Map.Entry::getKey)
                     .forEach(puzzleKey -> huntStatusStore.setVisibility(event.getTeamId(), puzzleKey, "UNLOCKED", false));
         });
-
-        eventProcessor.addEventProcessor(PeriodicTimerEvent.class, event -> {
-            for (String teamId : huntStatusStore.getTeamIds()) {
-                updateStoredScore(teamId, huntStatusStore, eventProcessor);
-            }
-        });
-    }
-
-    private void updateStoredScore(
-            String teamId,
-            HuntStatusStore huntStatusStore,
-            EventProcessor<Event> eventProcessor
-    ) {
-        Optional<Integer> score = calculateTeamScore(teamId, huntStatusStore);
-        if (score.isPresent()) {
-            huntStatusStore.setTeamProperty(teamId, "score", score.get());
-            eventProcessor.process(ScoreUpdateEvent.builder()
-                    .setTeamId(teamId)
-                    .setScore(score.get())
-                    .build());
-        }
-    }
-
-    private Optional<Integer> calculateTeamScore(
-            String teamId,
-            HuntStatusStore huntStatusStore
-    ) {
-        Optional<Instant> start = Optional.ofNullable(
-                (Instant) huntStatusStore.getHuntRunProperties().get("startTimestamp"));
-        if (!start.isPresent() || Instant.now().isBefore(start.get())) {
-            return Optional.empty();
-        }
-
-        int seconds = (int) Duration.between(start.get(), Instant.now()).getSeconds();
-        int timeScore = seconds / 60; //1 point every minute
-
-        Map<String, String> visibilities = huntStatusStore.getVisibilitiesForTeam(teamId);
-        int puzzleScore = visibilities.entrySet().stream()
-                .filter(entry -> entry.getValue().equals("SOLVED"))
-                .map(entry -> entry.getKey())
-                .mapToInt(puzzleKey -> PUZZLE_INFO_MAP.get(puzzleKey).pointReward)
-                .sum();
-
-        return Optional.of(timeScore + puzzleScore);
     }
 
     @AutoValue
@@ -156,6 +130,7 @@ public class ScoreExampleHuntDefinition implements HuntDefinition {
         @AutoValue.Builder
         static abstract class Builder {
             abstract Builder setTeamId(String teamId);
+            abstract Builder setPreviousScore(int previousScore);
             abstract Builder setScore(int score);
             abstract ScoreUpdateEvent build();
         }
@@ -165,6 +140,7 @@ public class ScoreExampleHuntDefinition implements HuntDefinition {
         }
 
         abstract String getTeamId();
+        abstract int getPreviousScore();
         abstract int getScore();
     }
 }
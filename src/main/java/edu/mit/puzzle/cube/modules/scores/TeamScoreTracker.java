@@ -0,0 +1,304 @@
+package edu.mit.puzzle.cube.modules.scores;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import edu.mit.puzzle.cube.core.db.DatabaseHelper;
+import edu.mit.puzzle.cube.core.events.CompositeEventProcessor;
+import edu.mit.puzzle.cube.core.events.PeriodicTimerEvent;
+import edu.mit.puzzle.cube.core.events.PolledChangeEvent;
+import edu.mit.puzzle.cube.core.events.VisibilityChangeEvent;
+import edu.mit.puzzle.cube.core.model.Change;
+import edu.mit.puzzle.cube.core.model.HuntStatusStore;
+import edu.mit.puzzle.cube.core.model.Visibility;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A TeamScoreTracker maintains each team's score, which is one point per elapsed time interval
+ * since the hunt started plus the rewards of the puzzles the team has solved.
+ *
+ * The puzzle points are kept in memory and updated from VisibilityChangeEvents (seeded from
+ * the database the first time a team is seen), and the time points are computed from the
+ * clock, so a timer tick does no database work unless a score needs to be published. A score
+ * is published (stored as the "score" team property and passed to the listener) when the
+ * team solves a puzzle, or when the passage of time carries the score across one of the
+ * thresholds. The first score computed for each team after startup is always published.
+ *
+ * Since the stored scores hold the time points of whenever they were published, they don't
+ * compare fairly between teams. The puzzle points, which do, are stored alongside them as the
+ * "puzzlePoints" team property for ranking teams by.
+ *
+ * Solves made by other processes sharing the database reach the tracker as PolledChangeEvents,
+ * which make it reload the team's solves the next time it is used. Each process's timer still
+ * publishes threshold crossings on its own, so with several processes the listener may be told
+ * of the same crossing more than once.
+ */
+public class TeamScoreTracker {
+
+    public static final String SCORE_PROPERTY_KEY = "score";
+    public static final String PUZZLE_POINTS_PROPERTY_KEY = "puzzlePoints";
+
+    @FunctionalInterface
+    public interface ScoreChangeListener {
+        /**
+         * Called with none of the tracker's locks held. A team's scores are announced one at a
+         * time and in order, but scores published while one is being announced are collapsed
+         * into the latest of them.
+         *
+         * @param previousScore The last score announced for the team, or Integer.MIN_VALUE
+         *                      if none has been announced since startup
+         */
+        void onScoreChange(String teamId, int previousScore, int score);
+    }
+
+    private static class TeamScore {
+        private final Set<String> solvedPuzzles = new HashSet<>();
+        private int puzzlePoints = 0;
+        //Set when solves may have been made that solvedPuzzles doesn't have yet.
+        private boolean stale = false;
+        private int publishedScore = Integer.MIN_VALUE;
+        private int publishedPuzzlePoints = Integer.MIN_VALUE;
+        //Set while a thread is storing and announcing this team's published scores.
+        private boolean publishing = false;
+        //Only used by the publishing thread.
+        private int storedPuzzlePoints = Integer.MIN_VALUE;
+    }
+
+    private final HuntStatusStore huntStatusStore;
+    private final Clock clock;
+    private final ImmutableMap<String,Integer> puzzleRewards;
+    private final long timePointMillis;
+    private final NavigableSet<Integer> thresholds;
+    private final ScoreChangeListener scoreChangeListener;
+    private final ConcurrentMap<String,TeamScore> teamScores = new ConcurrentHashMap<>();
+
+    private volatile Instant startTime = null;
+    private volatile ImmutableSet<String> teamIds = null;
+
+    /**
+     * @param puzzleRewards The points awarded for solving each puzzle
+     * @param timePointInterval One point is awarded per elapsed interval
+     * @param thresholds Scores at which something happens, e.g. a puzzle unlocks
+     */
+    public TeamScoreTracker(
+            HuntStatusStore huntStatusStore,
+            Clock clock,
+            Map<String,Integer> puzzleRewards,
+            Duration timePointInterval,
+            Collection<Integer> thresholds,
+            ScoreChangeListener scoreChangeListener
+    ) {
+        checkArgument(!timePointInterval.isNegative() && !timePointInterval.isZero());
+        this.huntStatusStore = checkNotNull(huntStatusStore);
+        this.clock = checkNotNull(clock);
+        this.puzzleRewards = ImmutableMap.copyOf(puzzleRewards);
+        this.timePointMillis = timePointInterval.toMillis();
+        this.thresholds = ImmutableSortedSet.copyOf(thresholds);
+        this.scoreChangeListener = checkNotNull(scoreChangeListener);
+    }
+
+    public void addToEventProcessor(CompositeEventProcessor eventProcessor) {
+        eventProcessor.addEventProcessor(VisibilityChangeEvent.class, "updateScoreOnVisibilityChange",
+                this::processVisibilityChange);
+        eventProcessor.addEventProcessor(PeriodicTimerEvent.class, "updateScoresOnTimer",
+                event -> processTimerTick());
+        eventProcessor.addEventProcessor(PolledChangeEvent.class, "refreshScoreOnPolledChange",
+                this::processPolledChange);
+    }
+
+    /**
+     * Gets a team's current score, or nothing if the hunt has not started.
+     */
+    public Optional<Integer> getScore(String teamId) {
+        Optional<Integer> timePoints = getTimePoints();
+        if (!timePoints.isPresent()) {
+            return Optional.empty();
+        }
+        TeamScore teamScore = getTeamScore(teamId);
+        synchronized (teamScore) {
+            return Optional.of(timePoints.get() + teamScore.puzzlePoints);
+        }
+    }
+
+    private void processVisibilityChange(VisibilityChangeEvent event) {
+        Visibility visibility = event.getVisibility();
+        Integer reward = puzzleRewards.get(visibility.getPuzzleId());
+        if (reward == null || !visibility.getStatus().equals("SOLVED")) {
+            return;
+        }
+        TeamScore teamScore = getTeamScore(visibility.getTeamId());
+        //The score may now reflect uncommitted changes, so reload it if they are rolled back.
+        DatabaseHelper.afterRollback(() -> teamScores.remove(visibility.getTeamId(), teamScore));
+        //The solve may already be counted if this event caused the team's state to be loaded.
+        synchronized (teamScore) {
+            if (teamScore.solvedPuzzles.add(visibility.getPuzzleId())) {
+                teamScore.puzzlePoints += reward;
+            }
+        }
+        publishScore(visibility.getTeamId(), teamScore, true);
+    }
+
+    private void processPolledChange(PolledChangeEvent event) {
+        Change change = event.getChange();
+        if (change.getChangeType() != Change.ChangeType.VISIBILITY
+                || !"SOLVED".equals(change.getStatus())
+                || !puzzleRewards.containsKey(change.getPuzzleId())) {
+            return;
+        }
+        TeamScore teamScore = teamScores.get(change.getTeamId());
+        if (teamScore != null) {
+            synchronized (teamScore) {
+                teamScore.stale = true;
+            }
+        }
+    }
+
+    private void processTimerTick() {
+        if (!getTimePoints().isPresent()) {
+            return;
+        }
+        if (teamIds == null) {
+            teamIds = ImmutableSet.copyOf(huntStatusStore.getTeamIds());
+        }
+        for (String teamId : teamIds) {
+            publishScore(teamId, getTeamScore(teamId), false);
+        }
+    }
+
+    private void publishScore(String teamId, TeamScore teamScore, boolean scoreChanged) {
+        Optional<Integer> timePoints = getTimePoints();
+        if (!timePoints.isPresent()) {
+            return;
+        }
+        int previousScore;
+        int score;
+        int puzzlePoints;
+        synchronized (teamScore) {
+            score = timePoints.get() + teamScore.puzzlePoints;
+            previousScore = teamScore.publishedScore;
+            if (score == previousScore) {
+                return;
+            }
+            if (!scoreChanged && !crossesThreshold(previousScore, score)) {
+                return;
+            }
+            teamScore.publishedScore = score;
+            teamScore.publishedPuzzlePoints = teamScore.puzzlePoints;
+            puzzlePoints = teamScore.puzzlePoints;
+            //The thread already publishing will pick this score up when it finishes.
+            if (teamScore.publishing) {
+                return;
+            }
+            teamScore.publishing = true;
+        }
+
+        //Stored and announced without holding the monitor, since both can take other locks
+        //(the database's, or a listener's). Only one thread publishes a team's scores at a
+        //time, so they are still stored and announced in order.
+        try {
+            while (true) {
+                if (puzzlePoints != teamScore.storedPuzzlePoints) {
+                    huntStatusStore.setTeamProperty(teamId, PUZZLE_POINTS_PROPERTY_KEY, puzzlePoints);
+                    teamScore.storedPuzzlePoints = puzzlePoints;
+                }
+                huntStatusStore.setTeamProperty(teamId, SCORE_PROPERTY_KEY, score);
+                scoreChangeListener.onScoreChange(teamId, previousScore, score);
+                synchronized (teamScore) {
+                    if (teamScore.publishedScore == score && teamScore.publishedPuzzlePoints == puzzlePoints) {
+                        teamScore.publishing = false;
+                        return;
+                    }
+                    previousScore = score;
+                    score = teamScore.publishedScore;
+                    puzzlePoints = teamScore.publishedPuzzlePoints;
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            synchronized (teamScore) {
+                teamScore.publishing = false;
+            }
+            throw e;
+        }
+    }
+
+    private boolean crossesThreshold(int previousScore, int score) {
+        if (previousScore == Integer.MIN_VALUE) {
+            return true;
+        }
+        Integer nextThreshold = thresholds.higher(previousScore);
+        return nextThreshold != null && nextThreshold <= score;
+    }
+
+    //Loaded outside computeIfAbsent, so that no map lock is held while waiting for the database.
+    //If two threads load a team at once, one of them throws its copy away.
+    private TeamScore getTeamScore(String teamId) {
+        TeamScore teamScore = teamScores.get(teamId);
+        if (teamScore == null) {
+            TeamScore loadedTeamScore = new TeamScore();
+            addSolves(loadedTeamScore, loadSolvedPuzzles(teamId));
+            teamScore = teamScores.putIfAbsent(teamId, loadedTeamScore);
+            return teamScore != null ? teamScore : loadedTeamScore;
+        }
+        boolean stale;
+        synchronized (teamScore) {
+            stale = teamScore.stale;
+            teamScore.stale = false;
+        }
+        //Solves are never undone, so the reloaded ones are added to whatever the team has by
+        //now. The team is marked stale again if more solves are polled meanwhile.
+        if (stale) {
+            Set<String> solvedPuzzles = loadSolvedPuzzles(teamId);
+            synchronized (teamScore) {
+                addSolves(teamScore, solvedPuzzles);
+            }
+        }
+        return teamScore;
+    }
+
+    private Set<String> loadSolvedPuzzles(String teamId) {
+        Set<String> solvedPuzzles = new HashSet<>();
+        for (Map.Entry<String,String> visibility : huntStatusStore.getVisibilitiesForTeam(teamId).entrySet()) {
+            if (puzzleRewards.containsKey(visibility.getKey()) && visibility.getValue().equals("SOLVED")) {
+                solvedPuzzles.add(visibility.getKey());
+            }
+        }
+        return solvedPuzzles;
+    }
+
+    private void addSolves(TeamScore teamScore, Set<String> solvedPuzzles) {
+        for (String puzzleId : solvedPuzzles) {
+            if (teamScore.solvedPuzzles.add(puzzleId)) {
+                teamScore.puzzlePoints += puzzleRewards.get(puzzleId);
+            }
+        }
+    }
+
+    private Optional<Integer> getTimePoints() {
+        if (startTime == null) {
+            Instant startTimestamp = (Instant) huntStatusStore.getHuntRunProperties().get("startTimestamp");
+            if (startTimestamp == null) {
+                return Optional.empty();
+            }
+            startTime = startTimestamp;
+        }
+        long elapsedMillis = clock.millis() - startTime.toEpochMilli();
+        if (elapsedMillis < 0) {
+            return Optional.empty();
+        }
+        return Optional.of((int) (elapsedMillis / timePointMillis));
+    }
+}
@@ -0,0 +1,122 @@
+package edu.mit.puzzle.cube.modules.unlocks;
+
+import com.google.common.collect.ImmutableList;
+import edu.mit.puzzle.cube.core.events.CompositeEventProcessor;
+import edu.mit.puzzle.cube.core.events.PolledChangeEvent;
+import edu.mit.puzzle.cube.core.events.VisibilityChangeEvent;
+import edu.mit.puzzle.cube.core.model.Change;
+import edu.mit.puzzle.cube.core.model.HuntStatusStore;
+
+import java.util.List;
+
+/**
+ * An UnlockGraph declares how solving (or otherwise progressing on) puzzles unlocks other
+ * puzzles, as a list of UnlockRules. A HuntDefinition builds one and adds it to the event
+ * processor instead of registering a VisibilityChangeEvent handler per edge; the rules are
+ * compiled into an UnlockRuleEngine, so each visibility change only touches the rules it can
+ * affect.
+ */
+public class UnlockGraph {
+
+    public static class Builder {
+        private final ImmutableList.Builder<UnlockRule> rules = ImmutableList.builder();
+
+        private Builder() {
+        }
+
+        public Builder addRule(UnlockRule rule) {
+            rules.add(rule);
+            return this;
+        }
+
+        /**
+         * Moves puzzleId to status once prerequisitePuzzleId reaches prerequisiteStatus.
+         */
+        public Builder unlockWhen(
+                String puzzleId,
+                String status,
+                String prerequisitePuzzleId,
+                String prerequisiteStatus
+        ) {
+            return unlockWhenAtLeast(puzzleId, status, 1,
+                    ImmutableList.of(prerequisitePuzzleId), prerequisiteStatus);
+        }
+
+        /**
+         * Moves puzzleId to status once every one of prerequisitePuzzleIds reaches
+         * prerequisiteStatus.
+         */
+        public Builder unlockWhenAll(
+                String puzzleId,
+                String status,
+                List<String> prerequisitePuzzleIds,
+                String prerequisiteStatus
+        ) {
+            return unlockWhenAtLeast(puzzleId, status, prerequisitePuzzleIds.size(),
+                    prerequisitePuzzleIds, prerequisiteStatus);
+        }
+
+        /**
+         * Moves puzzleId to status once threshold of prerequisitePuzzleIds reach
+         * prerequisiteStatus.
+         */
+        public Builder unlockWhenAtLeast(
+                String puzzleId,
+                String status,
+                int threshold,
+                List<String> prerequisitePuzzleIds,
+                String prerequisiteStatus
+        ) {
+            ImmutableList.Builder<UnlockRule.Prerequisite> prerequisites = ImmutableList.builder();
+            for (String prerequisitePuzzleId : prerequisitePuzzleIds) {
+                prerequisites.add(UnlockRule.Prerequisite.create(prerequisitePuzzleId, prerequisiteStatus));
+            }
+            return addRule(UnlockRule.builder()
+                    .setPuzzleId(puzzleId)
+                    .setStatus(status)
+                    .setPrerequisites(prerequisites.build())
+                    .setThreshold(threshold)
+                    .build());
+        }
+
+        public UnlockGraph build() {
+            return new UnlockGraph(rules.build());
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final ImmutableList<UnlockRule> rules;
+
+    private UnlockGraph(ImmutableList<UnlockRule> rules) {
+        this.rules = rules;
+    }
+
+    public List<UnlockRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Compiles the rules and registers a single VisibilityChangeEvent handler that applies them,
+     * along with a PolledChangeEvent handler that has the rules reload the state of teams whose
+     * visibilities another process may have changed.
+     *
+     * @return The compiled rules
+     */
+    public UnlockRuleEngine addToEventProcessor(
+            CompositeEventProcessor eventProcessor,
+            HuntStatusStore huntStatusStore
+    ) {
+        UnlockRuleEngine ruleEngine = new UnlockRuleEngine(rules, huntStatusStore);
+        eventProcessor.addEventProcessor(VisibilityChangeEvent.class, "unlockGraph", ruleEngine);
+        eventProcessor.addEventProcessor(PolledChangeEvent.class, "unlockGraphRefresh", event -> {
+            Change change = event.getChange();
+            if (change.getChangeType() == Change.ChangeType.VISIBILITY) {
+                ruleEngine.invalidateTeamState(change.getTeamId(), change.getPuzzleId());
+            }
+        });
+        return ruleEngine;
+    }
+}
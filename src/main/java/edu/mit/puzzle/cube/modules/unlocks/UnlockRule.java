@@ -0,0 +1,60 @@
+package edu.mit.puzzle.cube.modules.unlocks;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * An UnlockRule moves a puzzle to a status for a team once at least threshold of the rule's
+ * prerequisites are met for that team. A prerequisite is met once its puzzle has reached its
+ * status, or any status reachable from it (so a "VISIBLE" prerequisite is also met by a
+ * puzzle that went straight to "UNLOCKED").
+ *
+ * A threshold equal to the number of prerequisites makes an AND rule, and a threshold of 1
+ * makes an OR rule.
+ */
+@AutoValue
+public abstract class UnlockRule {
+    @AutoValue
+    public static abstract class Prerequisite {
+        public static Prerequisite create(String puzzleId, String status) {
+            return new AutoValue_UnlockRule_Prerequisite(puzzleId, status);
+        }
+
+        public abstract String getPuzzleId();
+        public abstract String getStatus();
+    }
+
+    @AutoValue.Builder
+    public static abstract class Builder {
+        public abstract Builder setPuzzleId(String puzzleId);
+        public abstract Builder setStatus(String status);
+        public abstract Builder setPrerequisites(List<Prerequisite> prerequisites);
+        public abstract Builder setThreshold(int threshold);
+
+        abstract UnlockRule autoBuild();
+
+        public UnlockRule build() {
+            UnlockRule rule = autoBuild();
+            if (rule.getPrerequisites().isEmpty()) {
+                throw new IllegalArgumentException("Unlock rule for " + rule.getPuzzleId() + " has no prerequisites");
+            }
+            if (rule.getThreshold() < 1 || rule.getThreshold() > rule.getPrerequisites().size()) {
+                throw new IllegalArgumentException("Unlock rule for " + rule.getPuzzleId() +
+                        " has threshold " + rule.getThreshold() +
+                        " but " + rule.getPrerequisites().size() + " prerequisites");
+            }
+            return rule;
+        }
+    }
+
+    public static Builder builder() {
+        return new AutoValue_UnlockRule.Builder();
+    }
+
+    public abstract String getPuzzleId();
+    public abstract String getStatus();
+    public abstract ImmutableList<Prerequisite> getPrerequisites();
+    public abstract int getThreshold();
+}
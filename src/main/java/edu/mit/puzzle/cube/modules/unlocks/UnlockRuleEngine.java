@@ -0,0 +1,221 @@
+package edu.mit.puzzle.cube.modules.unlocks;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableTable;
+import com.google.common.collect.Table;
+import edu.mit.puzzle.cube.core.db.DatabaseHelper;
+import edu.mit.puzzle.cube.core.events.EventProcessor;
+import edu.mit.puzzle.cube.core.events.VisibilityChangeEvent;
+import edu.mit.puzzle.cube.core.model.HuntStatusStore;
+import edu.mit.puzzle.cube.core.model.Visibility;
+import edu.mit.puzzle.cube.core.model.VisibilityStatusSet;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The compiled form of an UnlockGraph. Every prerequisite is indexed under each
+ * (puzzleId, status) pair that satisfies it, so processing a visibility change is a single
+ * table lookup followed by work proportional to the number of rules that mention the puzzle.
+ *
+ * Rules with one prerequisite fire directly. For rules with several prerequisites, each team
+ * has a bit set of the prerequisites it has met, seeded from the database the first time the
+ * team touches such a rule, so the rule engine picks up where it left off after a restart.
+ * When another process sharing the database changes a team's visibilities, the team's state
+ * is dropped and reloaded in the same way. A rule may then fire again, which is harmless,
+ * since a visibility that already has the rule's status (or a later one) is left as it is.
+ */
+public class UnlockRuleEngine implements EventProcessor<VisibilityChangeEvent> {
+
+    private static class RuleEdge {
+        private final int ruleIndex;
+        private final int prerequisiteIndex;
+
+        private RuleEdge(int ruleIndex, int prerequisiteIndex) {
+            this.ruleIndex = ruleIndex;
+            this.prerequisiteIndex = prerequisiteIndex;
+        }
+    }
+
+    //Per-team progress on rules with more than one prerequisite. Entries for single
+    //prerequisite rules are null.
+    private static class TeamState {
+        private final BitSet[] metPrerequisites;
+        private final BitSet firedRules = new BitSet();
+
+        private TeamState(int ruleCount) {
+            metPrerequisites = new BitSet[ruleCount];
+        }
+    }
+
+    private final ImmutableList<UnlockRule> rules;
+    private final HuntStatusStore huntStatusStore;
+    private final VisibilityStatusSet visibilityStatusSet;
+    private final ImmutableMap<String, Set<String>> statusesAtOrBeyond;
+    private final ImmutableTable<String, String, ImmutableList<RuleEdge>> index;
+    private final ConcurrentMap<String, TeamState> teamStates = new ConcurrentHashMap<>();
+
+    public UnlockRuleEngine(List<UnlockRule> rules, HuntStatusStore huntStatusStore) {
+        this.rules = ImmutableList.copyOf(rules);
+        this.huntStatusStore = checkNotNull(huntStatusStore);
+        this.visibilityStatusSet = huntStatusStore.getVisibilityStatusSet();
+        ImmutableMap.Builder<String, Set<String>> statusesAtOrBeyondBuilder = ImmutableMap.builder();
+        for (String status : visibilityStatusSet.getAllowedStatuses()) {
+            statusesAtOrBeyondBuilder.put(status, getStatusesAtOrBeyond(status));
+        }
+        this.statusesAtOrBeyond = statusesAtOrBeyondBuilder.build();
+        this.index = compile();
+    }
+
+    private ImmutableTable<String, String, ImmutableList<RuleEdge>> compile() {
+        Table<String, String, ImmutableList.Builder<RuleEdge>> edges = HashBasedTable.create();
+        for (int ruleIndex = 0; ruleIndex < rules.size(); ++ruleIndex) {
+            UnlockRule rule = rules.get(ruleIndex);
+            checkStatus(rule.getStatus());
+            for (int prerequisiteIndex = 0; prerequisiteIndex < rule.getPrerequisites().size(); ++prerequisiteIndex) {
+                UnlockRule.Prerequisite prerequisite = rule.getPrerequisites().get(prerequisiteIndex);
+                checkStatus(prerequisite.getStatus());
+                for (String status : statusesAtOrBeyond.get(prerequisite.getStatus())) {
+                    ImmutableList.Builder<RuleEdge> builder = edges.get(prerequisite.getPuzzleId(), status);
+                    if (builder == null) {
+                        builder = ImmutableList.builder();
+                        edges.put(prerequisite.getPuzzleId(), status, builder);
+                    }
+                    builder.add(new RuleEdge(ruleIndex, prerequisiteIndex));
+                }
+            }
+        }
+
+        ImmutableTable.Builder<String, String, ImmutableList<RuleEdge>> indexBuilder = ImmutableTable.builder();
+        for (Table.Cell<String, String, ImmutableList.Builder<RuleEdge>> cell : edges.cellSet()) {
+            indexBuilder.put(cell.getRowKey(), cell.getColumnKey(), cell.getValue().build());
+        }
+        return indexBuilder.build();
+    }
+
+    private void checkStatus(String status) {
+        if (!visibilityStatusSet.isAllowedStatus(status)) {
+            throw new IllegalArgumentException("Unlock rule uses unknown status " + status);
+        }
+    }
+
+    //A prerequisite on a status is met by that status and by every status reachable from it.
+    private Set<String> getStatusesAtOrBeyond(String status) {
+        Set<String> statuses = new HashSet<>();
+        Deque<String> toVisit = new ArrayDeque<>();
+        toVisit.add(status);
+        while (!toVisit.isEmpty()) {
+            String next = toVisit.poll();
+            if (statuses.add(next)) {
+                toVisit.addAll(visibilityStatusSet.getAllowedSuccessors(next));
+            }
+        }
+        return ImmutableSet.copyOf(statuses);
+    }
+
+    /**
+     * Gets the rules that a puzzle reaching a status can help satisfy.
+     */
+    public List<UnlockRule> getAffectedRules(String puzzleId, String status) {
+        ImmutableList<RuleEdge> edges = index.get(puzzleId, status);
+        if (edges == null) {
+            return ImmutableList.of();
+        }
+        ImmutableList.Builder<UnlockRule> affectedRules = ImmutableList.builder();
+        for (RuleEdge edge : edges) {
+            affectedRules.add(rules.get(edge.ruleIndex));
+        }
+        return affectedRules.build();
+    }
+
+    @Override
+    public void process(VisibilityChangeEvent event) {
+        Visibility visibility = event.getVisibility();
+        ImmutableList<RuleEdge> edges = index.get(visibility.getPuzzleId(), visibility.getStatus());
+        if (edges == null) {
+            return;
+        }
+
+        String teamId = visibility.getTeamId();
+        for (RuleEdge edge : edges) {
+            UnlockRule rule = rules.get(edge.ruleIndex);
+            if (rule.getPrerequisites().size() == 1) {
+                huntStatusStore.setVisibility(teamId, rule.getPuzzleId(), rule.getStatus(), false);
+                continue;
+            }
+
+            TeamState teamState = getTeamState(teamId);
+            //The state may now reflect uncommitted changes, so reload it if they are rolled back.
+            DatabaseHelper.afterRollback(() -> teamStates.remove(teamId, teamState));
+            boolean fire;
+            synchronized (teamState) {
+                BitSet metPrerequisites = teamState.metPrerequisites[edge.ruleIndex];
+                metPrerequisites.set(edge.prerequisiteIndex);
+                fire = !teamState.firedRules.get(edge.ruleIndex)
+                        && metPrerequisites.cardinality() >= rule.getThreshold();
+                if (fire) {
+                    teamState.firedRules.set(edge.ruleIndex);
+                }
+            }
+            if (fire) {
+                huntStatusStore.setVisibility(teamId, rule.getPuzzleId(), rule.getStatus(), false);
+            }
+        }
+    }
+
+    /**
+     * Drops a team's progress on rules with several prerequisites if a change to the given
+     * puzzle's visibility could affect it, so that it is reloaded from the database when next
+     * needed.
+     */
+    public void invalidateTeamState(String teamId, String puzzleId) {
+        if (index.containsRow(puzzleId)) {
+            teamStates.remove(teamId);
+        }
+    }
+
+    //Not computeIfAbsent, which would wait for the database while blocking other teams that
+    //hash to the same bin. A state loaded concurrently by another thread is discarded.
+    private TeamState getTeamState(String teamId) {
+        TeamState teamState = teamStates.get(teamId);
+        if (teamState != null) {
+            return teamState;
+        }
+        TeamState loadedTeamState = loadTeamState(teamId);
+        teamState = teamStates.putIfAbsent(teamId, loadedTeamState);
+        return teamState != null ? teamState : loadedTeamState;
+    }
+
+    private TeamState loadTeamState(String teamId) {
+        Map<String, String> visibilities = huntStatusStore.getVisibilitiesForTeam(teamId);
+        TeamState teamState = new TeamState(rules.size());
+        for (int ruleIndex = 0; ruleIndex < rules.size(); ++ruleIndex) {
+            List<UnlockRule.Prerequisite> prerequisites = rules.get(ruleIndex).getPrerequisites();
+            if (prerequisites.size() == 1) {
+                continue;
+            }
+            BitSet metPrerequisites = new BitSet(prerequisites.size());
+            for (int prerequisiteIndex = 0; prerequisiteIndex < prerequisites.size(); ++prerequisiteIndex) {
+                UnlockRule.Prerequisite prerequisite = prerequisites.get(prerequisiteIndex);
+                String status = visibilities.get(prerequisite.getPuzzleId());
+                if (status != null && statusesAtOrBeyond.get(prerequisite.getStatus()).contains(status)) {
+                    metPrerequisites.set(prerequisiteIndex);
+                }
+            }
+            teamState.metPrerequisites[ruleIndex] = metPrerequisites;
+        }
+        return teamState;
+    }
+}
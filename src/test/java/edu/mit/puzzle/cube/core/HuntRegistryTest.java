@@ -0,0 +1,76 @@
+package edu.mit.puzzle.cube.core;
+
+import com.google.common.collect.ImmutableSet;
+
+import edu.mit.puzzle.cube.core.environments.DevelopmentEnvironment;
+import edu.mit.puzzle.cube.huntimpl.linearexample.LinearExampleHuntDefinition;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HuntRegistryTest {
+
+    private HuntRegistry huntRegistry;
+
+    @Before
+    public void setup() {
+        huntRegistry = new HuntRegistry((huntId, huntDefinition) ->
+                new DevelopmentEnvironment(huntDefinition, "HuntRegistryTest-" + huntId));
+    }
+
+    @After
+    public void teardown() {
+        for (String huntId : huntRegistry.getHuntIds()) {
+            huntRegistry.unload(huntId);
+        }
+    }
+
+    @Test
+    public void testHuntsHaveSeparateState() {
+        HuntInstance first = huntRegistry.load("first", new LinearExampleHuntDefinition());
+        HuntInstance second = huntRegistry.load("second", new LinearExampleHuntDefinition());
+        assertEquals(ImmutableSet.of("first", "second"), huntRegistry.getHuntIds());
+
+        first.getHuntStatusStore().setVisibility("testerteam", "puzzle1", "UNLOCKED", false);
+
+        assertEquals("UNLOCKED", first.getHuntStatusStore().getVisibility("testerteam", "puzzle1"));
+        assertEquals("INVISIBLE", second.getHuntStatusStore().getVisibility("testerteam", "puzzle1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadDuplicateHuntId() {
+        huntRegistry.load("hunt", new LinearExampleHuntDefinition());
+        huntRegistry.load("hunt", new LinearExampleHuntDefinition());
+    }
+
+    @Test
+    public void testLoadIfAbsentKeepsLoadedHunt() {
+        HuntInstance hunt = huntRegistry.load("hunt", new LinearExampleHuntDefinition());
+        assertFalse(huntRegistry.loadIfAbsent("hunt", new LinearExampleHuntDefinition()).isPresent());
+        assertSame(hunt, huntRegistry.get("hunt").get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadInvalidHuntId() {
+        huntRegistry.load("hunt?mode=memory&cache=private", new LinearExampleHuntDefinition());
+    }
+
+    @Test
+    public void testUnloadAndReload() {
+        HuntInstance hunt = huntRegistry.load("hunt", new LinearExampleHuntDefinition());
+        hunt.getHuntStatusStore().setVisibility("testerteam", "puzzle1", "UNLOCKED", false);
+
+        assertTrue(huntRegistry.unload("hunt"));
+        assertFalse(huntRegistry.get("hunt").isPresent());
+        assertFalse(huntRegistry.unload("hunt"));
+
+        HuntInstance reloaded = huntRegistry.load("hunt", new LinearExampleHuntDefinition());
+        assertEquals("INVISIBLE", reloaded.getHuntStatusStore().getVisibility("testerteam", "puzzle1"));
+    }
+}
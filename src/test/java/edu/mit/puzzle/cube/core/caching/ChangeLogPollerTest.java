@@ -0,0 +1,203 @@
+package edu.mit.puzzle.cube.core.caching;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import edu.mit.puzzle.cube.core.AdjustableClock;
+import edu.mit.puzzle.cube.core.db.ConnectionFactory;
+import edu.mit.puzzle.cube.core.db.InMemorySingleUnsharedConnectionFactory;
+import edu.mit.puzzle.cube.core.events.CompositeEventProcessor;
+import edu.mit.puzzle.cube.core.leaderboard.Leaderboard;
+import edu.mit.puzzle.cube.core.model.HuntStatusStore;
+import edu.mit.puzzle.cube.core.model.Submission;
+import edu.mit.puzzle.cube.core.model.SubmissionStore;
+import edu.mit.puzzle.cube.modules.model.StandardVisibilityStatusSet;
+import edu.mit.puzzle.cube.modules.scores.TeamScoreTracker;
+import edu.mit.puzzle.cube.modules.unlocks.UnlockGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class ChangeLogPollerTest {
+
+    private static final Instant START = Instant.parse("2017-01-13T12:00:00.000Z");
+
+    private AdjustableClock clock;
+    private ConnectionFactory connectionFactory;
+    private Node writer;
+    private Node reader;
+
+    //The stores and read models of one process sharing the database.
+    private class Node {
+        final CompositeEventProcessor eventProcessor;
+        final HuntStatusStore huntStatusStore;
+        final SubmissionStore submissionStore;
+        final Leaderboard leaderboard;
+        final ChangeLogPoller changeLogPoller;
+
+        Node() {
+            eventProcessor = new CompositeEventProcessor();
+            long lastChangeId = ChangeLogPoller.getLastChangeId(connectionFactory);
+            huntStatusStore = new HuntStatusStore(
+                    connectionFactory, clock, new StandardVisibilityStatusSet(), eventProcessor);
+            submissionStore = new SubmissionStore(connectionFactory, clock, eventProcessor);
+            leaderboard = new Leaderboard(huntStatusStore, clock);
+            leaderboard.addToEventProcessor(eventProcessor);
+            changeLogPoller = new ChangeLogPoller(
+                    connectionFactory, huntStatusStore, submissionStore, leaderboard, eventProcessor, lastChangeId);
+        }
+    }
+
+    @Before
+    public void setup() throws SQLException {
+        connectionFactory = new InMemorySingleUnsharedConnectionFactory(
+                new StandardVisibilityStatusSet(),
+                Lists.newArrayList("teamA", "teamB"),
+                Lists.newArrayList("puzzle1", "puzzle2", "puzzle3", "puzzle4"));
+        clock = new AdjustableClock(Clock.fixed(START, ZoneId.of("UTC")));
+        writer = new Node();
+        reader = new Node();
+    }
+
+    private void advanceClock(Duration duration) {
+        clock.setWrappedClock(Clock.offset(clock.getWrappedClock(), duration));
+    }
+
+    @Test
+    public void appliesVisibilityChangesFromAnotherProcess() {
+        String version = reader.huntStatusStore.getVisibilityVersions().getVersion("teamB", "puzzle1");
+        writer.huntStatusStore.setVisibility("teamB", "puzzle1", "UNLOCKED", false);
+        writer.huntStatusStore.setVisibility("teamB", "puzzle1", "SOLVED", false);
+        advanceClock(Duration.ofMinutes(1));
+
+        assertEquals(version, reader.huntStatusStore.getVisibilityVersions().getVersion("teamB", "puzzle1"));
+        assertEquals(2, reader.leaderboard.rankOf("teamB"));
+
+        assertEquals(2, reader.changeLogPoller.poll());
+        assertNotEquals(version, reader.huntStatusStore.getVisibilityVersions().getVersion("teamB", "puzzle1"));
+        assertEquals(1, reader.leaderboard.rankOf("teamB"));
+        assertEquals(Integer.valueOf(1), reader.leaderboard.getEntry("teamB").get().getSolveCount());
+        //The solve time is the writer's, not the time of the poll.
+        assertEquals(START, reader.leaderboard.getEntry("teamB").get().getLastSolveTime());
+    }
+
+    @Test
+    public void appliesSubmissionsFromAnotherProcess() {
+        String version = reader.submissionStore.getSubmissionVersions().getTeamVersion("teamA");
+        writer.submissionStore.addSubmission(Submission.builder()
+                .setTeamId("teamA")
+                .setPuzzleId("puzzle2")
+                .setSubmission("GUESS")
+                .build());
+
+        assertEquals(version, reader.submissionStore.getSubmissionVersions().getTeamVersion("teamA"));
+        assertEquals(1, reader.changeLogPoller.poll());
+        assertNotEquals(version, reader.submissionStore.getSubmissionVersions().getTeamVersion("teamA"));
+    }
+
+    @Test
+    public void appliesTeamPropertyChangesFromAnotherProcess() {
+        String version = reader.huntStatusStore.getTeamPropertyVersions().getTeamVersion("teamB");
+        writer.huntStatusStore.setTeamProperty("teamB", "score", 7);
+
+        assertEquals(version, reader.huntStatusStore.getTeamPropertyVersions().getTeamVersion("teamB"));
+        assertEquals(2, reader.leaderboard.rankOf("teamB"));
+
+        assertEquals(1, reader.changeLogPoller.poll());
+        assertNotEquals(version, reader.huntStatusStore.getTeamPropertyVersions().getTeamVersion("teamB"));
+        assertEquals(1, reader.leaderboard.rankOf("teamB"));
+        assertEquals(Integer.valueOf(7), reader.leaderboard.getEntry("teamB").get().getScore());
+    }
+
+    private void solve(Node node, String teamId, String puzzleId) {
+        node.huntStatusStore.setVisibility(teamId, puzzleId, "UNLOCKED", false);
+        node.huntStatusStore.setVisibility(teamId, puzzleId, "SOLVED", false);
+    }
+
+    @Test
+    public void unlockRulesSeeSolvesFromAnotherProcess() {
+        UnlockGraph unlockGraph = UnlockGraph.builder()
+                .unlockWhenAll("puzzle4", "UNLOCKED", ImmutableList.of("puzzle1", "puzzle2", "puzzle3"), "SOLVED")
+                .build();
+        unlockGraph.addToEventProcessor(writer.eventProcessor, writer.huntStatusStore);
+        unlockGraph.addToEventProcessor(reader.eventProcessor, reader.huntStatusStore);
+
+        //Each process loads teamA's progress before the other's solve.
+        solve(reader, "teamA", "puzzle1");
+        solve(writer, "teamA", "puzzle2");
+        reader.changeLogPoller.poll();
+        solve(reader, "teamA", "puzzle3");
+
+        assertEquals("UNLOCKED", reader.huntStatusStore.getVisibility("teamA", "puzzle4"));
+    }
+
+    @Test
+    public void scoresSeeSolvesFromAnotherProcess() {
+        TeamScoreTracker teamScoreTracker = new TeamScoreTracker(
+                reader.huntStatusStore,
+                clock,
+                ImmutableMap.of("puzzle1", 25),
+                Duration.ofMinutes(1),
+                ImmutableList.of(),
+                (teamId, previousScore, score) -> {});
+        teamScoreTracker.addToEventProcessor(reader.eventProcessor);
+        reader.huntStatusStore.recordHuntRunStart();
+        assertEquals(Optional.of(0), teamScoreTracker.getScore("teamA"));
+
+        solve(writer, "teamA", "puzzle1");
+        assertEquals(Optional.of(0), teamScoreTracker.getScore("teamA"));
+        reader.changeLogPoller.poll();
+        assertEquals(Optional.of(25), teamScoreTracker.getScore("teamA"));
+    }
+
+    @Test
+    public void appliesEachChangeOnce() {
+        writer.huntStatusStore.setVisibility("teamA", "puzzle1", "UNLOCKED", false);
+        assertEquals(1, reader.changeLogPoller.poll());
+        assertEquals(0, reader.changeLogPoller.poll());
+
+        writer.huntStatusStore.setVisibility("teamA", "puzzle2", "UNLOCKED", false);
+        assertEquals(1, reader.changeLogPoller.poll());
+        assertEquals(2, reader.changeLogPoller.getChangesAppliedCount());
+        assertEquals(
+                ChangeLogPoller.getLastChangeId(connectionFactory),
+                reader.changeLogPoller.getLastAppliedChangeId());
+    }
+
+    @Test
+    public void reappliedOwnSolvesDoNotChangeTheLeaderboard() {
+        writer.huntStatusStore.setVisibility("teamA", "puzzle1", "UNLOCKED", false);
+        writer.huntStatusStore.setVisibility("teamA", "puzzle1", "SOLVED", false);
+        assertEquals(Integer.valueOf(1), writer.leaderboard.getEntry("teamA").get().getSolveCount());
+
+        assertEquals(2, writer.changeLogPoller.poll());
+        assertEquals(Integer.valueOf(1), writer.leaderboard.getEntry("teamA").get().getSolveCount());
+    }
+
+    @Test
+    public void startsAfterChangesAlreadyLoaded() {
+        writer.huntStatusStore.setVisibility("teamA", "puzzle1", "UNLOCKED", false);
+        writer.huntStatusStore.setVisibility("teamA", "puzzle1", "SOLVED", false);
+        Node late = new Node();
+        assertEquals(Integer.valueOf(1), late.leaderboard.getEntry("teamA").get().getSolveCount());
+        assertEquals(0, late.changeLogPoller.poll());
+    }
+
+    @Test
+    public void lagIsTimeSinceLastPoll() {
+        assertEquals(0, reader.changeLogPoller.getLagSeconds(), 0);
+        advanceClock(Duration.ofSeconds(5));
+        assertEquals(5, reader.changeLogPoller.getLagSeconds(), 0);
+        reader.changeLogPoller.poll();
+        assertEquals(0, reader.changeLogPoller.getLagSeconds(), 0);
+    }
+}
@@ -0,0 +1,52 @@
+package edu.mit.puzzle.cube.core.caching;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ResponseCacheTest {
+
+    @Test
+    public void testBodyIsOnlyReturnedForItsVersion() {
+        VersionCounters versions = new VersionCounters();
+        ResponseCache responseCache = new ResponseCache();
+
+        String version = versions.getTeamVersion("team1");
+        responseCache.put("team/team1", version, new byte[] {1});
+        assertArrayEquals(new byte[] {1}, responseCache.get("team/team1", version).get());
+
+        versions.bump("team2", "puzzle1");
+        assertEquals(version, versions.getTeamVersion("team1"));
+        assertArrayEquals(new byte[] {1}, responseCache.get("team/team1", versions.getTeamVersion("team1")).get());
+
+        versions.bump("team1", null);
+        assertFalse(responseCache.get("team/team1", versions.getTeamVersion("team1")).isPresent());
+    }
+
+    @Test
+    public void testCombinedVersionChangesWithTeamOrPuzzle() {
+        VersionCounters versions = new VersionCounters();
+        String version = versions.getVersion("team1", "puzzle1");
+
+        versions.bump("team2", "puzzle2");
+        assertEquals(version, versions.getVersion("team1", "puzzle1"));
+
+        versions.bump("team2", "puzzle1");
+        String puzzleChangedVersion = versions.getVersion("team1", "puzzle1");
+        assertFalse(version.equals(puzzleChangedVersion));
+
+        versions.bump("team1", null);
+        assertFalse(puzzleChangedVersion.equals(versions.getVersion("team1", "puzzle1")));
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        ResponseCache responseCache = new ResponseCache(2);
+        responseCache.put("a", "1", new byte[0]);
+        responseCache.put("b", "1", new byte[0]);
+        responseCache.put("c", "1", new byte[0]);
+        assertEquals(2, responseCache.size());
+    }
+}
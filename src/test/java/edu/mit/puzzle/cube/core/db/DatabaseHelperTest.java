@@ -2,15 +2,25 @@ package edu.mit.puzzle.cube.core.db;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Table;
+import com.google.common.util.concurrent.Uninterruptibles;
 import edu.mit.puzzle.cube.core.model.SubmissionStatus;
 import edu.mit.puzzle.cube.modules.model.StandardVisibilityStatusSet;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.sql.SQLException;
+import java.time.Instant;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class DatabaseHelperTest {
 
@@ -104,4 +114,130 @@ public class DatabaseHelperTest {
         }
     }
 
+
+    @Test
+    public void testQueryReadsBackInstants() {
+        for (Instant timestamp : Lists.newArrayList(
+                Instant.parse("2017-01-13T12:00:00.123Z"),
+                Instant.parse("2017-01-13T12:00:00Z"),
+                Instant.parse("2017-01-13T12:00:00.123456Z"))) {
+            DatabaseHelper.update(
+                    connectionFactory,
+                    "UPDATE run SET startTimestamp = ?",
+                    Lists.newArrayList(timestamp)
+            );
+            Table<Integer,String,Object> table = DatabaseHelper.query(
+                    connectionFactory,
+                    "SELECT startTimestamp FROM run",
+                    Lists.newArrayList()
+            );
+            assertEquals(timestamp, table.get(0, "startTimestamp"));
+        }
+    }
+
+    private int countSubmissions() {
+        return DatabaseHelper.query(
+                connectionFactory,
+                "SELECT * FROM submissions",
+                Lists.newArrayList()
+        ).rowKeySet().size();
+    }
+
+    @Test
+    public void testInTransactionCommitsThenRunsAfterCommitActions() {
+        AtomicInteger afterCommitRuns = new AtomicInteger(0);
+        AtomicInteger afterRollbackRuns = new AtomicInteger(0);
+        int submissionsInTransaction = DatabaseHelper.inTransaction(() -> {
+            DatabaseHelper.insert(
+                    connectionFactory,
+                    "INSERT INTO submissions (teamId, puzzleId, submission) VALUES (?,?,?)",
+                    Lists.newArrayList(TEST_TEAM_ID, TEST_PUZZLE_ID, "guess")
+            );
+            DatabaseHelper.insertBatch(
+                    connectionFactory,
+                    "INSERT INTO submissions (teamId, puzzleId, submission) VALUES (?,?,?)",
+                    Lists.newArrayList(
+                            Lists.newArrayList(TEST_TEAM_ID, TEST_PUZZLE_ID, "guess"),
+                            Lists.newArrayList(TEST_TEAM_ID, TEST_PUZZLE_ID, "guess"))
+            );
+            DatabaseHelper.afterCommit(afterCommitRuns::incrementAndGet);
+            DatabaseHelper.afterRollback(afterRollbackRuns::incrementAndGet);
+            assertTrue(DatabaseHelper.isInTransaction());
+            assertEquals(0, afterCommitRuns.get());
+            return countSubmissions();
+        });
+
+        assertEquals(3, submissionsInTransaction);
+        assertEquals(3, countSubmissions());
+        assertEquals(1, afterCommitRuns.get());
+        assertEquals(0, afterRollbackRuns.get());
+        assertFalse(DatabaseHelper.isInTransaction());
+
+        DatabaseHelper.afterCommit(afterCommitRuns::incrementAndGet);
+        assertEquals(2, afterCommitRuns.get());
+    }
+
+    @Test
+    public void testInTransactionRollsBackOnException() {
+        AtomicInteger afterCommitRuns = new AtomicInteger(0);
+        AtomicInteger afterRollbackRuns = new AtomicInteger(0);
+        try {
+            DatabaseHelper.inTransaction(() -> {
+                DatabaseHelper.insert(
+                        connectionFactory,
+                        "INSERT INTO submissions (teamId, puzzleId, submission) VALUES (?,?,?)",
+                        Lists.newArrayList(TEST_TEAM_ID, TEST_PUZZLE_ID, "guess")
+                );
+                DatabaseHelper.afterCommit(afterCommitRuns::incrementAndGet);
+                DatabaseHelper.afterRollback(afterRollbackRuns::incrementAndGet);
+                throw new IllegalStateException("abort");
+            });
+            fail("Expected the exception to be rethrown");
+        } catch (IllegalStateException e) {
+            assertEquals("abort", e.getMessage());
+        }
+
+        assertEquals(0, countSubmissions());
+        assertEquals(0, afterCommitRuns.get());
+        assertEquals(1, afterRollbackRuns.get());
+        assertFalse(DatabaseHelper.isInTransaction());
+    }
+
+    @Test
+    public void testReadersWaitForTransaction() throws Exception {
+        //Unlike the unshared test database, a shared-cache database fails conflicting statements
+        //from other connections instead of making them wait.
+        connectionFactory = new InMemoryConnectionFactory(
+                new StandardVisibilityStatusSet(),
+                Lists.newArrayList(TEST_TEAM_ID),
+                Lists.newArrayList(TEST_PUZZLE_ID),
+                "DatabaseHelperTest-readersWait");
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> transaction = executor.submit(() -> DatabaseHelper.inTransaction(() -> {
+                DatabaseHelper.insert(
+                        connectionFactory,
+                        "INSERT INTO submissions (teamId, puzzleId, submission) VALUES (?,?,?)",
+                        Lists.newArrayList(TEST_TEAM_ID, TEST_PUZZLE_ID, "guess")
+                );
+                inserted.countDown();
+                Uninterruptibles.awaitUninterruptibly(commit);
+                return null;
+            }));
+            inserted.await();
+
+            Future<Integer> reader = executor.submit(this::countSubmissions);
+            Thread.sleep(100);
+            assertFalse(reader.isDone());
+
+            commit.countDown();
+            transaction.get();
+            assertEquals(Integer.valueOf(1), reader.get());
+        } finally {
+            commit.countDown();
+            executor.shutdown();
+        }
+    }
 }
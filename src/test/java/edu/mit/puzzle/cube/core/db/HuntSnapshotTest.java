@@ -0,0 +1,184 @@
+package edu.mit.puzzle.cube.core.db;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import edu.mit.puzzle.cube.core.environments.DevelopmentConfiguration;
+import edu.mit.puzzle.cube.core.environments.DevelopmentEnvironment;
+import edu.mit.puzzle.cube.huntimpl.linearexample.LinearExampleHuntDefinition;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HuntSnapshotTest {
+
+    private static final List<String> TABLES = ImmutableList.of(
+            "run", "teams", "team_properties", "puzzles", "visibilities", "visibility_history", "submissions");
+
+    //Each test's in-memory database lives on after it, so each needs its own name.
+    private static final AtomicInteger SOURCES = new AtomicInteger();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ConnectionFactory source;
+
+    @Before
+    public void setup() {
+        source = new DevelopmentEnvironment(
+                new LinearExampleHuntDefinition(),
+                "HuntSnapshotTest-source" + SOURCES.incrementAndGet(),
+                DevelopmentConfiguration.builder()
+                        .setTeams(30)
+                        .setPuzzles(20)
+                        .setSeededTeamRatio(0.5)
+                        .setSeededPuzzles(5)
+                        .setHistoricalSubmissions(2500)
+                        .build())
+                .getConnectionFactory();
+        DatabaseHelper.update(source, "UPDATE run SET startTimestamp = ?",
+                Lists.newArrayList(Instant.parse("2017-01-13T17:00:00.123Z")));
+        DatabaseHelper.insertBatch(source, "INSERT INTO team_properties (teamId, propertyKey, propertyValue) VALUES (?,?,?)",
+                ImmutableList.of(
+                        Lists.<Object>newArrayList("testerteam", "score", 12),
+                        Lists.<Object>newArrayList("testerteam", "motto", "Unicode \u2603 and more"),
+                        Lists.<Object>newArrayList("testerteam2", "score", null)));
+        //Left to the column default, so the timestamp isn't in a format that parses as an Instant.
+        DatabaseHelper.insert(source, "INSERT INTO submissions (teamId, puzzleId, submission) VALUES (?,?,?)",
+                Lists.<Object>newArrayList("testerteam3", "puzzle19", "A FINAL GUESS"));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        long written = HuntSnapshot.write(source, snapshot);
+
+        //Another hunt, whose own teams, puzzles and state should all be replaced.
+        ConnectionFactory target = new DevelopmentEnvironment(
+                new LinearExampleHuntDefinition(), "HuntSnapshotTest-target").getConnectionFactory();
+        DatabaseHelper.insert(target, "INSERT INTO submissions (teamId, puzzleId, submission) VALUES (?,?,?)",
+                Lists.<Object>newArrayList("testerteam70", "puzzle1", "GONE"));
+        long read = HuntSnapshot.read(target, new ByteArrayInputStream(snapshot.toByteArray()));
+
+        assertEquals(written, read);
+        assertEquals(1 + 30 + 3 + 20 + 75 + 75 + 2501, read);
+        assertTablesEqual(source, target);
+    }
+
+    @Test
+    public void testDictionaryEncodingIsCompact() throws IOException {
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        HuntSnapshot.write(source, snapshot);
+        //Each submission row is a marker, id, two dictionary indexes, an answer around 10 bytes
+        //long, a timestamp and a status index, so well under 32 bytes.
+        assertTrue("Snapshot was " + snapshot.size() + " bytes", snapshot.size() < 2501 * 32 + 150 * 24);
+    }
+
+    @Test
+    public void testDevelopmentEnvironmentStartsFromSnapshot() throws IOException {
+        File file = temporaryFolder.newFile("hunt.snapshot");
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            HuntSnapshot.write(source, outputStream);
+        }
+        ConnectionFactory target = new DevelopmentEnvironment(
+                new LinearExampleHuntDefinition(),
+                "HuntSnapshotTest-file",
+                DevelopmentConfiguration.builder().setSnapshot(Optional.of(file.getPath())).build())
+                .getConnectionFactory();
+        assertTablesEqual(source, target);
+    }
+
+    @Test
+    public void testWritersAreNotHeldUpWhileWriting() throws Exception {
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        OutputStream outputStream = new FilterOutputStream(snapshot) {
+            private boolean inserted = false;
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (!inserted) {
+                    inserted = true;
+                    try {
+                        writer.submit(() -> DatabaseHelper.insert(
+                                source,
+                                "INSERT INTO submissions (teamId, puzzleId, submission) VALUES (?,?,?)",
+                                Lists.<Object>newArrayList("testerteam", "puzzle1", "DURING THE SNAPSHOT"))).get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        throw new AssertionError("Insert failed while the snapshot was being written", e);
+                    }
+                }
+                out.write(b, off, len);
+            }
+        };
+        long written = HuntSnapshot.write(source, outputStream);
+        writer.shutdown();
+
+        //The snapshot is of the database as it was before the insert.
+        assertEquals(1 + 30 + 3 + 20 + 75 + 75 + 2501, written);
+        assertEquals(2502, DatabaseHelper.query(source, "SELECT * FROM submissions", ImmutableList.of()).rowKeySet().size());
+    }
+
+    @Test
+    public void testRejectsOtherData() {
+        ConnectionFactory target = new DevelopmentEnvironment(
+                new LinearExampleHuntDefinition(), "HuntSnapshotTest-rejected").getConnectionFactory();
+        try {
+            HuntSnapshot.read(target, new ByteArrayInputStream("SQLite format 3".getBytes()));
+            fail("Read a snapshot that isn't one");
+        } catch (IOException e) {
+            assertEquals("Not a hunt snapshot", e.getMessage());
+        }
+        assertEquals(70, DatabaseHelper.query(target, "SELECT * FROM teams", ImmutableList.of()).rowKeySet().size());
+    }
+
+    @Test
+    public void testTruncatedSnapshotChangesNothing() throws IOException {
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        HuntSnapshot.write(source, snapshot);
+        byte[] truncated = new byte[snapshot.size() / 2];
+        System.arraycopy(snapshot.toByteArray(), 0, truncated, 0, truncated.length);
+
+        ConnectionFactory target = new DevelopmentEnvironment(
+                new LinearExampleHuntDefinition(), "HuntSnapshotTest-truncated").getConnectionFactory();
+        try {
+            HuntSnapshot.read(target, new ByteArrayInputStream(truncated));
+            fail("Read a truncated snapshot");
+        } catch (IOException e) {
+            //Expected
+        }
+        assertEquals(70, DatabaseHelper.query(target, "SELECT * FROM teams", ImmutableList.of()).rowKeySet().size());
+        assertEquals(0, DatabaseHelper.query(target, "SELECT * FROM submissions", ImmutableList.of()).rowKeySet().size());
+    }
+
+    private static void assertTablesEqual(ConnectionFactory expected, ConnectionFactory actual) {
+        for (String table : TABLES) {
+            String query = "SELECT * FROM " + table + " ORDER BY rowid";
+            assertEquals(
+                    table,
+                    DatabaseHelper.query(expected, query, ImmutableList.of()),
+                    DatabaseHelper.query(actual, query, ImmutableList.of()));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package edu.mit.puzzle.cube.core.environments;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import edu.mit.puzzle.cube.core.HuntDefinition;
+import edu.mit.puzzle.cube.core.events.Event;
+import edu.mit.puzzle.cube.core.events.EventProcessor;
+import edu.mit.puzzle.cube.core.model.HuntStatusStore;
+import edu.mit.puzzle.cube.core.model.SubmissionStatus;
+import edu.mit.puzzle.cube.core.model.SubmissionStore;
+import edu.mit.puzzle.cube.huntimpl.linearexample.LinearExampleHuntDefinition;
+
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+public class DevelopmentEnvironmentTest {
+
+    private final HuntDefinition huntDefinition = new LinearExampleHuntDefinition();
+
+    @Test
+    public void testDefaultConfiguration() {
+        DevelopmentEnvironment environment = new DevelopmentEnvironment(huntDefinition, "DevelopmentEnvironmentTest-default");
+        HuntStatusStore huntStatusStore = createHuntStatusStore(environment);
+        assertEquals(70, huntStatusStore.getTeamIds().size());
+        assertEquals(7, huntStatusStore.getVisibilitiesForTeam("testerteam70").size());
+        assertEquals("INVISIBLE", huntStatusStore.getVisibility("testerteam", "puzzle1"));
+    }
+
+    @Test
+    public void testSyntheticPuzzlesFollowDefinedPuzzles() {
+        DevelopmentConfiguration configuration = DevelopmentConfiguration.builder().setPuzzles(10).build();
+        assertEquals(
+                ImmutableList.of("puzzle1", "puzzle2", "puzzle3", "puzzle4", "puzzle5", "puzzle6", "puzzle7",
+                        "puzzle8", "puzzle9", "puzzle10"),
+                configuration.getPuzzleIds(huntDefinition));
+        //Fewer puzzles than the hunt defines leaves the hunt's own.
+        assertEquals(
+                huntDefinition.getPuzzleList(),
+                DevelopmentConfiguration.builder().setPuzzles(3).build().getPuzzleIds(huntDefinition));
+    }
+
+    @Test
+    public void testSeededState() {
+        DevelopmentConfiguration configuration = DevelopmentConfiguration.builder()
+                .setTeams(10)
+                .setPuzzles(20)
+                .setSeededTeamRatio(0.6)
+                .setSeededPuzzles(4)
+                .setHistoricalSubmissions(100)
+                .build();
+        DevelopmentEnvironment environment = new DevelopmentEnvironment(
+                huntDefinition, "DevelopmentEnvironmentTest-seeded", configuration);
+        HuntStatusStore huntStatusStore = createHuntStatusStore(environment);
+
+        assertEquals(ImmutableSet.copyOf(configuration.getTeamIds()), huntStatusStore.getTeamIds());
+        assertEquals(20, huntStatusStore.getVisibilitiesForTeam("testerteam").size());
+        assertEquals("SOLVED", huntStatusStore.getVisibility("testerteam6", "puzzle4"));
+        assertEquals("INVISIBLE", huntStatusStore.getVisibility("testerteam6", "puzzle5"));
+        assertEquals("INVISIBLE", huntStatusStore.getVisibility("testerteam7", "puzzle1"));
+        assertEquals(24, huntStatusStore.getVisibilityHistoryForStatus("SOLVED").rowKeySet().size());
+        assertEquals(24, huntStatusStore.getVisibilityChanges(0, 1000).size());
+
+        SubmissionStore submissionStore = new SubmissionStore(environment.getConnectionFactory(), mock(EventProcessor.class));
+        assertEquals(100, submissionStore.getAllSubmissions().size());
+        assertEquals(Integer.valueOf(100), submissionStore.getSubmissionCountsByStatus().get(SubmissionStatus.INCORRECT));
+        assertEquals(100, submissionStore.getSubmissionChanges(0, 1000).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownSeededStatus() {
+        new DevelopmentEnvironment(huntDefinition, "DevelopmentEnvironmentTest-unknown", DevelopmentConfiguration.builder()
+                .setSeededTeamRatio(1)
+                .setSeededPuzzles(1)
+                .setSeededStatus("FINISHED")
+                .build());
+    }
+
+    @Test
+    public void testFromProperties() {
+        assertEquals(DevelopmentConfiguration.builder().build(), DevelopmentConfiguration.fromProperties(new Properties()));
+
+        Properties properties = new Properties();
+        properties.setProperty("cube.development.teams", "1000");
+        properties.setProperty("cube.development.puzzles", "500");
+        properties.setProperty("cube.development.seededTeamRatio", " 0.6 ");
+        properties.setProperty("cube.development.seededPuzzles", "40");
+        properties.setProperty("cube.development.historicalSubmissions", "50000");
+        DevelopmentConfiguration configuration = DevelopmentConfiguration.fromProperties(properties);
+        assertEquals(1000, configuration.getTeams());
+        assertEquals(500, configuration.getPuzzles());
+        assertEquals(0.6, configuration.getSeededTeamRatio(), 0);
+        assertEquals(40, configuration.getSeededPuzzles());
+        assertEquals("SOLVED", configuration.getSeededStatus());
+        assertEquals(50000, configuration.getHistoricalSubmissions());
+    }
+
+    @SuppressWarnings("unchecked")
+    private HuntStatusStore createHuntStatusStore(DevelopmentEnvironment environment) {
+        return new HuntStatusStore(
+                environment.getConnectionFactory(),
+                huntDefinition.getVisibilityStatusSet(),
+                (EventProcessor<Event>) mock(EventProcessor.class));
+    }
+}
@@ -0,0 +1,261 @@
+package edu.mit.puzzle.cube.core.events;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import edu.mit.puzzle.cube.core.model.Visibility;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompositeEventProcessorTest {
+
+    private CompositeEventProcessor eventProcessor;
+
+    @Before
+    public void setup() {
+        eventProcessor = new CompositeEventProcessor(Duration.ofSeconds(10));
+    }
+
+    private static VisibilityChangeEvent visibilityChange(String puzzleId) {
+        return VisibilityChangeEvent.builder()
+                .setVisibility(Visibility.builder()
+                        .setTeamId("testerteam")
+                        .setPuzzleId(puzzleId)
+                        .setStatus("UNLOCKED")
+                        .build())
+                .build();
+    }
+
+    private EventMetrics getProcessorMetrics(String name) {
+        return Iterables.getOnlyElement(eventProcessor.getEventProcessorMetrics().stream()
+                .filter(metrics -> metrics.getHandlerName().get().equals(name))
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void eachProcessorRunsOncePerEvent() {
+        AtomicInteger first = new AtomicInteger();
+        AtomicInteger second = new AtomicInteger();
+        eventProcessor.addEventProcessor(VisibilityChangeEvent.class, "first", event -> first.incrementAndGet());
+        eventProcessor.addEventProcessor(VisibilityChangeEvent.class, "second", event -> second.incrementAndGet());
+
+        eventProcessor.process(visibilityChange("puzzle1"));
+
+        assertEquals(1, first.get());
+        assertEquals(1, second.get());
+        assertEquals(1, getProcessorMetrics("first").getInvocations());
+        assertEquals(1, getProcessorMetrics("second").getInvocations());
+    }
+
+    @Test
+    public void recordsCascadeFanOut() {
+        eventProcessor.addEventProcessor(HuntStartEvent.class, "start", event -> {
+            eventProcessor.process(visibilityChange("puzzle1"));
+            eventProcessor.process(visibilityChange("puzzle2"));
+        });
+        eventProcessor.addEventProcessor(VisibilityChangeEvent.class, "release", event -> {
+            if (event.getVisibility().getPuzzleId().equals("puzzle1")) {
+                eventProcessor.process(FullReleaseEvent.builder().setPuzzleId("puzzle3").build());
+            }
+        });
+
+        eventProcessor.process(HuntStartEvent.builder().build());
+
+        EventMetrics start = getProcessorMetrics("start");
+        assertEquals(1, start.getInvocations());
+        assertEquals(3, start.getCascadedEvents());
+        EventMetrics release = getProcessorMetrics("release");
+        assertEquals(2, release.getInvocations());
+        assertEquals(1, release.getCascadedEvents());
+        assertEquals(1, release.getMaxCascadedEvents());
+
+        EventMetrics visibilityChanges = eventProcessor.getEventTypeMetrics().stream()
+                .filter(metrics -> metrics.getEventType().equals("VisibilityChangeEvent"))
+                .findFirst().get();
+        assertEquals(2, visibilityChanges.getInvocations());
+    }
+
+    @Test
+    public void recordsExceptionsAndRethrows() {
+        eventProcessor.addEventProcessor(HuntStartEvent.class, "broken", event -> {
+            throw new IllegalStateException("broken");
+        });
+
+        try {
+            eventProcessor.process(HuntStartEvent.builder().build());
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("broken", e.getMessage());
+        }
+
+        EventMetrics broken = getProcessorMetrics("broken");
+        assertEquals(1, broken.getInvocations());
+        assertEquals(1, broken.getExceptions());
+        assertTrue(broken.getLatency().getTotalNanos() > 0);
+    }
+
+    @Test
+    public void defaultNamesIdentifyTheEventType() {
+        eventProcessor.addEventProcessor(HuntStartEvent.class, event -> {});
+        eventProcessor.addEventProcessor(HuntStartEvent.class, event -> {});
+
+        eventProcessor.process(HuntStartEvent.builder().build());
+
+        assertEquals(1, getProcessorMetrics("HuntStartEvent#1").getInvocations());
+        assertEquals(1, getProcessorMetrics("HuntStartEvent#2").getInvocations());
+    }
+
+    @Test
+    public void processDeferredProcessesEventsAfterWorkReturns() {
+        List<String> processed = Lists.newArrayList();
+        eventProcessor.addEventProcessor(VisibilityChangeEvent.class, "record", event ->
+                processed.add(event.getVisibility().getPuzzleId()));
+        eventProcessor.addEventProcessor(HuntStartEvent.class, "start", event ->
+                eventProcessor.process(visibilityChange("puzzle3")));
+
+        String result = eventProcessor.processDeferred(() -> {
+            eventProcessor.process(visibilityChange("puzzle1"));
+            eventProcessor.process(HuntStartEvent.builder().build());
+            eventProcessor.process(visibilityChange("puzzle2"));
+            assertTrue(processed.isEmpty());
+            return "done";
+        });
+
+        assertEquals("done", result);
+        assertEquals(Lists.newArrayList("puzzle1", "puzzle3", "puzzle2"), processed);
+    }
+
+    @Test
+    public void processDeferredDropsEventsIfWorkThrows() {
+        AtomicInteger processed = new AtomicInteger();
+        eventProcessor.addEventProcessor(VisibilityChangeEvent.class, "count", event -> processed.incrementAndGet());
+
+        try {
+            eventProcessor.processDeferred(() -> {
+                eventProcessor.process(visibilityChange("puzzle1"));
+                throw new IllegalStateException("abort");
+            });
+            fail("Expected the exception to be rethrown");
+        } catch (IllegalStateException e) {
+            assertEquals("abort", e.getMessage());
+        }
+        assertEquals(0, processed.get());
+
+        eventProcessor.process(visibilityChange("puzzle2"));
+        assertEquals(1, processed.get());
+    }
+
+    @Test
+    public void recordsCascadeDepth() {
+        eventProcessor.addEventProcessor(HuntStartEvent.class, "start", event ->
+                eventProcessor.process(visibilityChange("puzzle1")));
+        eventProcessor.addEventProcessor(VisibilityChangeEvent.class, "release", event -> {
+            if (event.getVisibility().getPuzzleId().equals("puzzle1")) {
+                eventProcessor.process(FullReleaseEvent.builder().setPuzzleId("puzzle3").build());
+            }
+        });
+
+        eventProcessor.process(HuntStartEvent.builder().build());
+        eventProcessor.process(visibilityChange("puzzle2"));
+
+        long[] depths = eventProcessor.getCascadeDepthCounts();
+        assertEquals(1, depths[0]);
+        assertEquals(0, depths[1]);
+        assertEquals(1, depths[2]);
+        assertEquals(4, eventProcessor.getCascadeDepthTotal());
+    }
+
+    @Test
+    public void processorsForSupertypesRunInRegistrationOrder() {
+        List<String> processed = Lists.newArrayList();
+        eventProcessor.addEventProcessor(VisibilityChangeEvent.class, "first", event -> processed.add("first"));
+        eventProcessor.addEventProcessor(Event.class, "any", event -> processed.add("any"));
+        eventProcessor.addEventProcessor(VisibilityChangeEvent.class, "second", event -> processed.add("second"));
+
+        eventProcessor.process(visibilityChange("puzzle1"));
+        assertEquals(Lists.newArrayList("first", "second", "any"), processed);
+
+        processed.clear();
+        eventProcessor.process(HuntStartEvent.builder().build());
+        assertEquals(Lists.newArrayList("any"), processed);
+
+        //Registering after an event type has been dispatched still reaches it.
+        processed.clear();
+        eventProcessor.addEventProcessor(VisibilityChangeEvent.class, "third", event -> processed.add("third"));
+        eventProcessor.process(visibilityChange("puzzle2"));
+        assertEquals(Lists.newArrayList("first", "second", "third", "any"), processed);
+    }
+
+    @Test
+    public void registersWhileEventsAreProcessedConcurrently() throws Exception {
+        int firingThreads = 4;
+        int eventsPerThread = 5000;
+        int lateProcessors = 50;
+
+        AtomicInteger earlyCount = new AtomicInteger();
+        eventProcessor.addEventProcessor(VisibilityChangeEvent.class, "early", event -> earlyCount.incrementAndGet());
+
+        ExecutorService executor = Executors.newFixedThreadPool(firingThreads + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicLong eventsStarted = new AtomicLong();
+        List<Future<?>> futures = Lists.newArrayList();
+        for (int i = 0; i < firingThreads; ++i) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < eventsPerThread; ++j) {
+                    eventsStarted.incrementAndGet();
+                    eventProcessor.process(visibilityChange("puzzle" + (j % 7)));
+                }
+                return null;
+            }));
+        }
+
+        List<AtomicInteger> lateCounts = Lists.newArrayList();
+        List<Long> startedBeforeRegistration = Lists.newArrayList();
+        Future<?> registration = executor.submit(() -> {
+            start.await();
+            for (int i = 0; i < lateProcessors; ++i) {
+                AtomicInteger count = new AtomicInteger();
+                eventProcessor.addEventProcessor(
+                        VisibilityChangeEvent.class, "late" + i, event -> count.incrementAndGet());
+                lateCounts.add(count);
+                startedBeforeRegistration.add(eventsStarted.get());
+                Thread.sleep(1);
+            }
+            return null;
+        });
+
+        start.countDown();
+        registration.get(30, TimeUnit.SECONDS);
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        int totalEvents = firingThreads * eventsPerThread;
+        assertEquals(totalEvents, earlyCount.get());
+        assertEquals(totalEvents, getProcessorMetrics("early").getInvocations());
+        for (int i = 0; i < lateProcessors; ++i) {
+            int count = lateCounts.get(i).get();
+            //Every event started after the processor was registered must have reached it.
+            assertTrue(count >= totalEvents - startedBeforeRegistration.get(i));
+            assertTrue(count <= totalEvents);
+            assertEquals(count, getProcessorMetrics("late" + i).getInvocations());
+        }
+        assertEquals(lateProcessors + 1, eventProcessor.getEventProcessorMetrics().size());
+    }
+}
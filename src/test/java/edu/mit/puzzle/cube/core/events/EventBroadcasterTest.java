@@ -0,0 +1,146 @@
+package edu.mit.puzzle.cube.core.events;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.mit.puzzle.cube.core.model.Submission;
+import edu.mit.puzzle.cube.core.model.SubmissionStatus;
+import edu.mit.puzzle.cube.core.model.Visibility;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventBroadcasterTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private CompositeEventProcessor eventProcessor;
+    private EventBroadcaster eventBroadcaster;
+
+    @Before
+    public void setup() {
+        eventProcessor = new CompositeEventProcessor();
+        eventBroadcaster = new EventBroadcaster(4, 2);
+        eventBroadcaster.addToEventProcessor(eventProcessor);
+    }
+
+    private void processVisibilityChange(String teamId, String puzzleId) {
+        eventProcessor.process(VisibilityChangeEvent.builder()
+                .setVisibility(Visibility.builder()
+                        .setTeamId(teamId)
+                        .setPuzzleId(puzzleId)
+                        .setStatus("UNLOCKED")
+                        .build())
+                .build());
+    }
+
+    private EventBroadcaster.BroadcastEvent next(EventBroadcaster.Subscription subscription)
+            throws InterruptedException {
+        return subscription.poll(1, TimeUnit.SECONDS).get();
+    }
+
+    @Test
+    public void deliversEventsAsJson() throws InterruptedException, IOException {
+        EventBroadcaster.Subscription subscription = eventBroadcaster.subscribe(Optional.empty(), Optional.empty()).get();
+        processVisibilityChange("testerteam", "puzzle1");
+        eventProcessor.process(SubmissionCompleteEvent.builder()
+                .setSubmission(Submission.builder()
+                        .setSubmissionId(1)
+                        .setTeamId("testerteam")
+                        .setPuzzleId("puzzle1")
+                        .setStatus(SubmissionStatus.CORRECT)
+                        .build())
+                .build());
+
+        EventBroadcaster.BroadcastEvent event = next(subscription);
+        assertEquals(1, event.getId());
+        assertEquals("VisibilityChange", event.getEventType());
+        JsonNode json = MAPPER.readTree(event.getJson());
+        assertEquals("VisibilityChange", json.get("eventType").asText());
+        assertEquals("puzzle1", json.get("visibility").get("puzzleId").asText());
+
+        event = next(subscription);
+        assertEquals(2, event.getId());
+        assertEquals("SubmissionComplete", event.getEventType());
+    }
+
+    @Test
+    public void filtersByTeam() throws InterruptedException {
+        EventBroadcaster.Subscription subscription = eventBroadcaster.subscribe(
+                Optional.of("testerteam2"), Optional.empty()).get();
+        processVisibilityChange("testerteam", "puzzle1");
+        processVisibilityChange("testerteam2", "puzzle1");
+
+        EventBroadcaster.BroadcastEvent event = next(subscription);
+        assertEquals(2, event.getId());
+        assertEquals(Optional.of("testerteam2"), event.getTeamId());
+        assertFalse(subscription.poll(0, TimeUnit.SECONDS).isPresent());
+    }
+
+    @Test
+    public void resumesFromLastEventId() throws InterruptedException {
+        processVisibilityChange("testerteam", "puzzle1");
+        processVisibilityChange("testerteam", "puzzle2");
+        processVisibilityChange("testerteam", "puzzle3");
+
+        EventBroadcaster.Subscription subscription = eventBroadcaster.subscribe(Optional.empty(), Optional.of(2L)).get();
+        assertFalse(subscription.hasMissedEvents());
+        assertEquals(3, next(subscription).getId());
+    }
+
+    @Test
+    public void reportsEventsMissingFromReplayBuffer() {
+        for (int i = 1; i <= 6; ++i) {
+            processVisibilityChange("testerteam", "puzzle" + i);
+        }
+
+        EventBroadcaster.Subscription subscription = eventBroadcaster.subscribe(Optional.empty(), Optional.of(1L)).get();
+        assertTrue(subscription.hasMissedEvents());
+    }
+
+    @Test
+    public void dropsSlowSubscribers() {
+        EventBroadcaster.Subscription subscription = eventBroadcaster.subscribe(Optional.empty(), Optional.empty()).get();
+        assertEquals(1, eventBroadcaster.getSubscriptionCount());
+
+        processVisibilityChange("testerteam", "puzzle1");
+        processVisibilityChange("testerteam", "puzzle2");
+        assertFalse(subscription.isClosed());
+        processVisibilityChange("testerteam", "puzzle3");
+
+        assertTrue(subscription.isClosed());
+        assertEquals(0, eventBroadcaster.getSubscriptionCount());
+    }
+
+    @Test
+    public void reportsEventsMissedAcrossRestart() {
+        processVisibilityChange("testerteam", "puzzle1");
+
+        //The client last saw event 7 from before the restart.
+        EventBroadcaster.Subscription subscription = eventBroadcaster.subscribe(Optional.empty(), Optional.of(7L)).get();
+        assertTrue(subscription.hasMissedEvents());
+    }
+
+    @Test
+    public void limitsOpenSubscriptions() {
+        Semaphore permits = new Semaphore(2);
+        EventBroadcaster limitedBroadcaster = new EventBroadcaster(4, 2, permits);
+        EventBroadcaster otherBroadcaster = new EventBroadcaster(4, 2, permits);
+
+        EventBroadcaster.Subscription subscription = limitedBroadcaster.subscribe(Optional.empty(), Optional.empty()).get();
+        assertTrue(otherBroadcaster.subscribe(Optional.empty(), Optional.empty()).isPresent());
+        assertFalse(limitedBroadcaster.subscribe(Optional.empty(), Optional.empty()).isPresent());
+
+        subscription.close();
+        subscription.close();
+        assertEquals(1, permits.availablePermits());
+        assertTrue(limitedBroadcaster.subscribe(Optional.empty(), Optional.empty()).isPresent());
+    }
+}
@@ -0,0 +1,123 @@
+package edu.mit.puzzle.cube.core.events;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import edu.mit.puzzle.cube.core.AdjustableClock;
+import edu.mit.puzzle.cube.core.db.ConnectionFactory;
+import edu.mit.puzzle.cube.core.db.InMemorySingleUnsharedConnectionFactory;
+import edu.mit.puzzle.cube.modules.model.StandardVisibilityStatusSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventSchedulerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private ConnectionFactory connectionFactory;
+    private AdjustableClock clock;
+    private List<Event> processedEvents;
+    private EventProcessor<Event> eventProcessor;
+    private EventScheduler eventScheduler;
+
+    @Before
+    public void setup() throws SQLException {
+        connectionFactory = new InMemorySingleUnsharedConnectionFactory(
+                new StandardVisibilityStatusSet(),
+                Lists.newArrayList("testerteam"),
+                Lists.newArrayList("puzzle1", "puzzle2"));
+        clock = new AdjustableClock(Clock.fixed(Instant.parse("2017-01-13T12:00:00.000Z"), ZoneId.of("UTC")));
+        processedEvents = Lists.newArrayList();
+        eventProcessor = processedEvents::add;
+        eventScheduler = new EventScheduler(connectionFactory, clock, eventProcessor);
+    }
+
+    private void advanceClock(long minutes) {
+        clock.setWrappedClock(Clock.fixed(clock.instant().plus(minutes, ChronoUnit.MINUTES), ZoneId.of("UTC")));
+    }
+
+    @Test
+    public void processesEventsWhenDueInFireTimeOrder() {
+        Event release = FullReleaseEvent.builder().setPuzzleId("puzzle2").build();
+        Event unlock = SetVisibilityEvent.builder()
+                .setTeamId("testerteam")
+                .setPuzzleId("puzzle1")
+                .setStatus("UNLOCKED")
+                .build();
+        eventScheduler.schedule(release, clock.instant().plus(2, ChronoUnit.HOURS));
+        eventScheduler.schedule(unlock, clock.instant().plus(1, ChronoUnit.HOURS));
+        assertEquals(Optional.of(clock.instant().plus(1, ChronoUnit.HOURS)), eventScheduler.getNextFireTime());
+
+        assertEquals(0, eventScheduler.processDueEvents());
+        assertTrue(processedEvents.isEmpty());
+
+        advanceClock(60);
+        assertEquals(1, eventScheduler.processDueEvents());
+        assertEquals(Lists.newArrayList(unlock), processedEvents);
+
+        advanceClock(120);
+        assertEquals(1, eventScheduler.processDueEvents());
+        assertEquals(Lists.newArrayList(unlock, release), processedEvents);
+        assertFalse(eventScheduler.getNextFireTime().isPresent());
+    }
+
+    @Test
+    public void pendingEventsSurviveRestart() {
+        Event release = FullReleaseEvent.builder().setPuzzleId("puzzle2").build();
+        eventScheduler.schedule(FullReleaseEvent.builder().setPuzzleId("puzzle1").build(),
+                clock.instant().plus(10, ChronoUnit.MINUTES));
+        eventScheduler.schedule(release, clock.instant().plus(30, ChronoUnit.MINUTES));
+        advanceClock(15);
+        assertEquals(1, eventScheduler.processDueEvents());
+        processedEvents.clear();
+
+        EventScheduler restartedScheduler = new EventScheduler(connectionFactory, clock, eventProcessor);
+        assertEquals(1, restartedScheduler.getPendingEvents().size());
+        assertEquals(release, restartedScheduler.getPendingEvents().get(0).getEvent());
+
+        advanceClock(15);
+        assertEquals(1, restartedScheduler.processDueEvents());
+        assertEquals(Lists.newArrayList(release), processedEvents);
+
+        //The original instance still has the event queued, but it has already fired.
+        assertEquals(0, eventScheduler.processDueEvents());
+        assertEquals(1, processedEvents.size());
+    }
+
+    @Test
+    public void cancelledEventsDoNotFire() {
+        ScheduledEvent scheduledEvent = eventScheduler.schedule(
+                FullReleaseEvent.builder().setPuzzleId("puzzle1").build(),
+                clock.instant().plus(10, ChronoUnit.MINUTES));
+        assertTrue(eventScheduler.cancel(scheduledEvent.getScheduledEventId()));
+        assertFalse(eventScheduler.cancel(scheduledEvent.getScheduledEventId()));
+
+        advanceClock(15);
+        assertEquals(0, eventScheduler.processDueEvents());
+        assertTrue(new EventScheduler(connectionFactory, clock, eventProcessor).getPendingEvents().isEmpty());
+    }
+
+    @Test
+    public void scheduledEventJsonRoundTrip() throws IOException {
+        String json = "{\"fireTime\":\"2017-01-13T14:00:00Z\"," +
+                "\"event\":{\"eventType\":\"FullRelease\",\"puzzleId\":\"puzzle1\"}}";
+        ScheduledEvent scheduledEvent = MAPPER.readValue(json, ScheduledEvent.class);
+        assertEquals(Instant.parse("2017-01-13T14:00:00Z"), scheduledEvent.getFireTime());
+        assertEquals(FullReleaseEvent.builder().setPuzzleId("puzzle1").build(), scheduledEvent.getEvent());
+
+        ScheduledEvent roundTripped = MAPPER.readValue(MAPPER.writeValueAsString(scheduledEvent), ScheduledEvent.class);
+        assertEquals(scheduledEvent, roundTripped);
+    }
+}
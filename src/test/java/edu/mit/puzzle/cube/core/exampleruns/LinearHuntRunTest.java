@@ -3,6 +3,7 @@ package edu.mit.puzzle.cube.core.exampleruns;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 
 import edu.mit.puzzle.cube.core.HuntDefinition;
 import edu.mit.puzzle.cube.core.db.ConnectionFactory;
@@ -14,8 +15,11 @@ import edu.mit.puzzle.cube.core.model.SubmissionStore;
 import edu.mit.puzzle.cube.core.serverresources.AbstractCubeResource;
 import edu.mit.puzzle.cube.core.serverresources.EventsResource;
 import edu.mit.puzzle.cube.core.serverresources.SubmissionResource;
+import edu.mit.puzzle.cube.core.serverresources.SubmissionsBatchResource;
 import edu.mit.puzzle.cube.core.serverresources.SubmissionsResource;
 import edu.mit.puzzle.cube.core.serverresources.TeamResource;
+import edu.mit.puzzle.cube.core.serverresources.TeamVisibilitiesResource;
+import edu.mit.puzzle.cube.core.serverresources.VisibilitiesBatchResource;
 import edu.mit.puzzle.cube.core.serverresources.VisibilitiesResource;
 import edu.mit.puzzle.cube.core.serverresources.VisibilityResource;
 import edu.mit.puzzle.cube.huntimpl.linearexample.LinearExampleHuntDefinition;
@@ -27,6 +31,7 @@ import org.restlet.Context;
 import org.restlet.Request;
 import org.restlet.Response;
 import org.restlet.data.Method;
+import org.restlet.data.Tag;
 import org.restlet.ext.json.JsonRepresentation;
 import org.restlet.representation.Representation;
 import org.restlet.routing.Router;
@@ -81,11 +86,14 @@ public class LinearHuntRunTest {
 
         router = new Router(context);
         router.attach("/submissions", SubmissionsResource.class);
+        router.attach("/submissions/batch", SubmissionsBatchResource.class);
         router.attach("/submissions/{id}", SubmissionResource.class);
         router.attach("/visibilities", VisibilitiesResource.class);
+        router.attach("/visibilities/batch", VisibilitiesBatchResource.class);
         router.attach("/visibilities/{teamId}/{puzzleId}", VisibilityResource.class);
         router.attach("/events", EventsResource.class);
         router.attach("/teams/{id}", TeamResource.class);
+        router.attach("/teams/{id}/visibilities", TeamVisibilitiesResource.class);
     }
 
     private JsonNode getAllSubmissions() throws IOException {
@@ -164,6 +172,16 @@ public class LinearHuntRunTest {
         return responseJson;
     }
 
+    private JsonNode postBatch(String path, String json) throws IOException {
+        Representation representation = new JsonRepresentation(json);
+        Request request = new Request(Method.POST, path, representation);
+        Response response = router.handle(request);
+        assertEquals(200, response.getStatus().getCode());
+        JsonNode responseJson = MAPPER.readTree(response.getEntityAsText());
+        assertTrue(responseJson.get("results").isArray());
+        return responseJson.get("results");
+    }
+
     @Test
     public void testSubmittingAndUnlock() throws IOException {
         JsonNode json = getAllSubmissions();
@@ -203,4 +221,61 @@ public class LinearHuntRunTest {
         assertEquals("UNLOCKED", json.get("status").asText());
     }
 
+    @Test
+    public void testTeamVisibilitiesConditionalGet() throws IOException {
+        Response response = router.handle(new Request(Method.GET, "/teams/testerteam/visibilities"));
+        assertEquals(200, response.getStatus().getCode());
+        JsonNode json = MAPPER.readTree(response.getEntityAsText());
+        assertEquals("INVISIBLE", json.get("visibilities").get("puzzle1").asText());
+        Tag tag = response.getEntity().getTag();
+
+        Request request = new Request(Method.GET, "/teams/testerteam/visibilities");
+        request.getConditions().setNoneMatch(Lists.newArrayList(tag));
+        response = router.handle(request);
+        assertEquals(304, response.getStatus().getCode());
+
+        postHuntStart();
+
+        request = new Request(Method.GET, "/teams/testerteam/visibilities");
+        request.getConditions().setNoneMatch(Lists.newArrayList(tag));
+        response = router.handle(request);
+        assertEquals(200, response.getStatus().getCode());
+        json = MAPPER.readTree(response.getEntityAsText());
+        assertEquals("UNLOCKED", json.get("visibilities").get("puzzle1").asText());
+    }
+
+    @Test
+    public void testBatchSubmissionsAndVisibilities() throws IOException {
+        postHuntStart();
+
+        JsonNode results = postBatch("/submissions/batch", "{\"submissions\":["
+                + "{\"teamId\":\"testerteam\",\"puzzleId\":\"puzzle1\",\"submission\":\"guess1\"},"
+                + "{\"teamId\":\"testerteam\",\"puzzleId\":\"puzzle2\",\"submission\":\"guess2\"},"
+                + "{\"teamId\":\"testerteam\",\"puzzleId\":\"puzzle1\",\"submission\":\"guess3\"}]}");
+        assertEquals(3, results.size());
+        assertEquals(true, results.get(0).get("created").asBoolean());
+        //puzzle2 isn't unlocked yet
+        assertEquals(false, results.get(1).get("created").asBoolean());
+        assertEquals(true, results.get(2).get("created").asBoolean());
+        assertEquals(2, getAllSubmissions().get("submissions").size());
+
+        results = postBatch("/submissions/batch", "{\"submissions\":["
+                + "{\"submissionId\":1,\"status\":\"INCORRECT\"},"
+                + "{\"submissionId\":2,\"status\":\"CORRECT\"}]}");
+        assertEquals(2, results.size());
+        assertEquals(true, results.get(0).get("updated").asBoolean());
+        assertEquals(true, results.get(1).get("updated").asBoolean());
+        assertEquals("SOLVED", getVisibility("testerteam", "puzzle1").get("status").asText());
+        assertEquals("UNLOCKED", getVisibility("testerteam", "puzzle2").get("status").asText());
+
+        results = postBatch("/visibilities/batch", "{\"visibilities\":["
+                + "{\"teamId\":\"testerteam\",\"puzzleId\":\"puzzle4\",\"status\":\"UNLOCKED\"},"
+                + "{\"teamId\":\"testerteam\",\"puzzleId\":\"puzzle5\",\"status\":\"NOT_A_STATUS\"}]}");
+        assertEquals(2, results.size());
+        assertEquals(true, results.get(0).get("updated").asBoolean());
+        assertEquals(false, results.get(1).get("updated").asBoolean());
+        assertEquals("UNLOCKED", getVisibility("testerteam", "puzzle4").get("status").asText());
+        assertEquals("INVISIBLE", getVisibility("testerteam", "puzzle5").get("status").asText());
+    }
+
 }
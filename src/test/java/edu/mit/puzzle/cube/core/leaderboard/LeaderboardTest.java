@@ -0,0 +1,166 @@
+package edu.mit.puzzle.cube.core.leaderboard;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import edu.mit.puzzle.cube.core.AdjustableClock;
+import edu.mit.puzzle.cube.core.db.ConnectionFactory;
+import edu.mit.puzzle.cube.core.db.DatabaseHelper;
+import edu.mit.puzzle.cube.core.db.InMemorySingleUnsharedConnectionFactory;
+import edu.mit.puzzle.cube.core.events.CompositeEventProcessor;
+import edu.mit.puzzle.cube.core.model.HuntStatusStore;
+import edu.mit.puzzle.cube.core.model.LeaderboardEntry;
+import edu.mit.puzzle.cube.core.model.LeaderboardPage;
+import edu.mit.puzzle.cube.modules.model.StandardVisibilityStatusSet;
+import edu.mit.puzzle.cube.modules.scores.TeamScoreTracker;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class LeaderboardTest {
+
+    private AdjustableClock clock;
+    private CompositeEventProcessor eventProcessor;
+    private HuntStatusStore huntStatusStore;
+
+    @Before
+    public void setup() throws SQLException {
+        StandardVisibilityStatusSet visibilityStatusSet = new StandardVisibilityStatusSet();
+        ConnectionFactory connectionFactory = new InMemorySingleUnsharedConnectionFactory(
+                visibilityStatusSet,
+                Lists.newArrayList("teamA", "teamB", "teamC"),
+                Lists.newArrayList("puzzle1", "puzzle2"));
+        clock = new AdjustableClock(Clock.fixed(Instant.parse("2017-01-13T12:00:00.000Z"), ZoneId.of("UTC")));
+        eventProcessor = new CompositeEventProcessor();
+        huntStatusStore = new HuntStatusStore(connectionFactory, clock, visibilityStatusSet, eventProcessor);
+    }
+
+    private Leaderboard createLeaderboard() {
+        Leaderboard leaderboard = new Leaderboard(huntStatusStore, clock);
+        leaderboard.addToEventProcessor(eventProcessor);
+        return leaderboard;
+    }
+
+    private void solve(String teamId, String puzzleId) {
+        huntStatusStore.setVisibility(teamId, puzzleId, "UNLOCKED", false);
+        huntStatusStore.setVisibility(teamId, puzzleId, "SOLVED", false);
+        clock.setWrappedClock(Clock.offset(clock.getWrappedClock(), Duration.ofMinutes(1)));
+    }
+
+    private static List<String> teamIds(List<LeaderboardEntry> entries) {
+        return entries.stream().map(LeaderboardEntry::getTeamId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void rolledBackSolvesAreNotCounted() {
+        Leaderboard leaderboard = createLeaderboard();
+        try {
+            DatabaseHelper.inTransaction(() -> {
+                solve("teamB", "puzzle1");
+                huntStatusStore.setTeamProperty("teamC", "score", 10);
+                throw new IllegalStateException("abort");
+            });
+            fail("Expected the exception to be rethrown");
+        } catch (IllegalStateException e) {
+            //Expected
+        }
+        assertEquals(Lists.newArrayList("teamA", "teamB", "teamC"), teamIds(leaderboard.top(10)));
+        assertEquals(Integer.valueOf(0), leaderboard.getEntry("teamB").get().getSolveCount());
+    }
+
+    @Test
+    public void ordersByScoreThenSolvesThenSolveTime() {
+        Leaderboard leaderboard = createLeaderboard();
+        assertEquals(Lists.newArrayList("teamA", "teamB", "teamC"), teamIds(leaderboard.top(10)));
+
+        solve("teamC", "puzzle1");
+        solve("teamB", "puzzle1");
+        assertEquals(Lists.newArrayList("teamC", "teamB", "teamA"), teamIds(leaderboard.top(10)));
+
+        huntStatusStore.setTeamProperty("teamA", "score", 10);
+        assertEquals(1, leaderboard.rankOf("teamA"));
+        assertEquals(3, leaderboard.rankOf("teamB"));
+
+        LeaderboardEntry entry = leaderboard.getEntry("teamC").get();
+        assertEquals(Integer.valueOf(2), entry.getRank());
+        assertEquals(Integer.valueOf(1), entry.getSolveCount());
+        assertEquals(Instant.parse("2017-01-13T12:00:00.000Z"), entry.getLastSolveTime());
+
+        assertEquals(Lists.newArrayList("teamC", "teamB"), teamIds(leaderboard.range(1, 5)));
+        assertEquals(Integer.valueOf(2), leaderboard.range(1, 5).get(0).getRank());
+    }
+
+    @Test
+    public void ranksByPuzzlePointsRatherThanScoresStoredAtDifferentTimes() {
+        TeamScoreTracker teamScoreTracker = new TeamScoreTracker(
+                huntStatusStore,
+                clock,
+                ImmutableMap.of("puzzle1", 25, "puzzle2", 25),
+                Duration.ofMinutes(1),
+                ImmutableList.of(),
+                (teamId, previousScore, score) -> {});
+        teamScoreTracker.addToEventProcessor(eventProcessor);
+        Leaderboard leaderboard = new Leaderboard(
+                huntStatusStore,
+                clock,
+                Leaderboard.DEFAULT_SCORE_PROPERTY_KEY,
+                TeamScoreTracker.PUZZLE_POINTS_PROPERTY_KEY,
+                Leaderboard.DEFAULT_SOLVED_STATUS);
+        leaderboard.addToEventProcessor(eventProcessor);
+        huntStatusStore.recordHuntRunStart();
+
+        //Both teams have 25 puzzle points and the same time points, but teamB's stored score
+        //includes 9 more minutes of time points than teamA's.
+        solve("teamA", "puzzle1");
+        clock.setWrappedClock(Clock.offset(clock.getWrappedClock(), Duration.ofMinutes(8)));
+        solve("teamB", "puzzle1");
+        assertEquals(Integer.valueOf(25), leaderboard.getEntry("teamA").get().getScore());
+        assertEquals(Integer.valueOf(34), leaderboard.getEntry("teamB").get().getScore());
+
+        //So they are ranked by who solved first.
+        assertEquals(Lists.newArrayList("teamA", "teamB", "teamC"), teamIds(leaderboard.top(10)));
+        Leaderboard reloadedLeaderboard = new Leaderboard(
+                huntStatusStore,
+                clock,
+                Leaderboard.DEFAULT_SCORE_PROPERTY_KEY,
+                TeamScoreTracker.PUZZLE_POINTS_PROPERTY_KEY,
+                Leaderboard.DEFAULT_SOLVED_STATUS);
+        assertEquals(Lists.newArrayList("teamA", "teamB", "teamC"), teamIds(reloadedLeaderboard.top(10)));
+    }
+
+    @Test
+    public void loadsExistingStandings() {
+        huntStatusStore.setTeamProperty("teamB", "score", 5);
+        solve("teamC", "puzzle1");
+        solve("teamC", "puzzle2");
+
+        Leaderboard leaderboard = createLeaderboard();
+        assertEquals(Lists.newArrayList("teamB", "teamC", "teamA"), teamIds(leaderboard.top(3)));
+        assertEquals(Integer.valueOf(2), leaderboard.getEntry("teamC").get().getSolveCount());
+    }
+
+    @Test
+    public void pagesAreReusedUntilTheLeaderboardChanges() {
+        Leaderboard leaderboard = createLeaderboard();
+        LeaderboardPage page = leaderboard.getPage(0, 2);
+        assertEquals(Integer.valueOf(3), page.getTotalTeams());
+        assertEquals(2, page.getEntries().size());
+        assertSame(page, leaderboard.getPage(0, 2));
+
+        huntStatusStore.setTeamProperty("teamC", "score", 1);
+        LeaderboardPage updatedPage = leaderboard.getPage(0, 2);
+        assertEquals(page.getVersion() + 1, (long) updatedPage.getVersion());
+        assertEquals("teamC", updatedPage.getEntries().get(0).getTeamId());
+    }
+}
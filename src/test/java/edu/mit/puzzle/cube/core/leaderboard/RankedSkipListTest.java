@@ -0,0 +1,66 @@
+package edu.mit.puzzle.cube.core.leaderboard;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RankedSkipListTest {
+
+    @Test
+    public void ranksAndRanges() {
+        RankedSkipList<Integer> list = new RankedSkipList<>(Ordering.natural(), new Random(1));
+        for (int value : ImmutableList.of(50, 10, 40, 20, 30)) {
+            list.add(value);
+        }
+
+        assertEquals(5, list.size());
+        assertEquals(1, list.rankOf(10));
+        assertEquals(5, list.rankOf(50));
+        assertEquals(0, list.rankOf(35));
+        assertEquals(Integer.valueOf(30), list.get(3));
+        assertEquals(ImmutableList.of(20, 30), list.range(1, 2));
+        assertEquals(ImmutableList.of(40, 50), list.range(3, 10));
+        assertEquals(ImmutableList.of(), list.range(5, 10));
+
+        assertTrue(list.remove(30));
+        assertFalse(list.remove(30));
+        assertEquals(4, list.rankOf(50));
+        assertEquals(ImmutableList.of(10, 20, 40, 50), list.range(0, 10));
+    }
+
+    @Test
+    public void matchesSortedListUnderRandomUpdates() {
+        Random random = new Random(42);
+        RankedSkipList<Integer> list = new RankedSkipList<>(Ordering.natural(), random);
+        List<Integer> expected = Lists.newArrayList();
+
+        for (int i = 0; i < 5000; ++i) {
+            int value = random.nextInt(2000);
+            if (expected.contains(value)) {
+                assertTrue(list.remove(value));
+                expected.remove(Integer.valueOf(value));
+            } else {
+                list.add(value);
+                expected.add(value);
+            }
+        }
+        Collections.sort(expected);
+
+        assertEquals(expected.size(), list.size());
+        assertEquals(expected, list.range(0, expected.size()));
+        for (int rank = 1; rank <= expected.size(); rank += 37) {
+            int value = expected.get(rank - 1);
+            assertEquals(rank, list.rankOf(value));
+            assertEquals(Integer.valueOf(value), list.get(rank));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package edu.mit.puzzle.cube.core.metrics;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsRegistryTest {
+
+    private MetricsRegistry metricsRegistry;
+
+    @Before
+    public void setup() {
+        metricsRegistry = new MetricsRegistry();
+    }
+
+    @Test
+    public void countersAreCreatedOncePerLabelSet() {
+        metricsRegistry.counter("requests_total", "Requests", ImmutableMap.of("route", "a")).add(2);
+        metricsRegistry.counter("requests_total", "Requests", ImmutableMap.of("route", "a")).increment();
+        metricsRegistry.counter("requests_total", "Requests", ImmutableMap.of("route", "b")).increment();
+
+        assertSame(
+                metricsRegistry.counter("requests_total", "Requests", ImmutableMap.of("route", "a")),
+                metricsRegistry.counter("requests_total", "Requests", ImmutableMap.of("route", "a")));
+        assertEquals(
+                "# HELP requests_total Requests\n" +
+                "# TYPE requests_total counter\n" +
+                "requests_total{route=\"a\"} 3\n" +
+                "requests_total{route=\"b\"} 1\n",
+                metricsRegistry.scrape());
+    }
+
+    @Test
+    public void collectorsShareAFamilyUntilClosed() {
+        MetricsRegistry.Registration first = metricsRegistry.register(
+                "queue_depth", "Queue depth", MetricsRegistry.Type.GAUGE,
+                writer -> writer.sample(ImmutableMap.of("hunt", "one"), 5));
+        metricsRegistry.register(
+                "queue_depth", "Queue depth", MetricsRegistry.Type.GAUGE,
+                writer -> writer.sample(ImmutableMap.of("hunt", "two\"quoted\""), 1.5));
+
+        assertEquals(
+                "# HELP queue_depth Queue depth\n" +
+                "# TYPE queue_depth gauge\n" +
+                "queue_depth{hunt=\"one\"} 5\n" +
+                "queue_depth{hunt=\"two\\\"quoted\\\"\"} 1.5\n",
+                metricsRegistry.scrape());
+
+        first.close();
+        assertFalse(metricsRegistry.scrape().contains("hunt=\"one\""));
+    }
+
+    @Test
+    public void histogramsAreCumulativeAndInSeconds() {
+        LatencyHistogram histogram = metricsRegistry.histogram(
+                "latency_seconds", "Latency", ImmutableMap.of("route", "a"));
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(1));
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(3));
+
+        String scrape = metricsRegistry.scrape();
+        assertTrue(scrape.contains("# TYPE latency_seconds histogram\n"));
+        assertTrue(scrape.contains("latency_seconds_bucket{route=\"a\",le=\"1.0E-6\"} 1\n"));
+        assertTrue(scrape.contains("latency_seconds_bucket{route=\"a\",le=\"2.0E-6\"} 1\n"));
+        assertTrue(scrape.contains("latency_seconds_bucket{route=\"a\",le=\"4.0E-6\"} 2\n"));
+        assertTrue(scrape.contains("latency_seconds_bucket{route=\"a\",le=\"+Inf\"} 2\n"));
+        assertTrue(scrape.contains("latency_seconds_sum{route=\"a\"} 4.0E-6\n"));
+        assertTrue(scrape.contains("latency_seconds_count{route=\"a\"} 2\n"));
+    }
+
+    @Test
+    public void failingCollectorsAreSkipped() {
+        metricsRegistry.register("broken", "Broken", MetricsRegistry.Type.GAUGE, writer -> {
+            writer.sample(ImmutableMap.of(), 1);
+            throw new IllegalStateException("broken");
+        });
+        metricsRegistry.register("working", "Working", MetricsRegistry.Type.GAUGE,
+                writer -> writer.sample(ImmutableMap.of(), 2));
+
+        assertEquals(
+                "# HELP working Working\n" +
+                "# TYPE working gauge\n" +
+                "working 2\n",
+                metricsRegistry.scrape());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsConflictingTypes() {
+        metricsRegistry.counter("things", "Things", ImmutableMap.of());
+        metricsRegistry.register("things", "Things", MetricsRegistry.Type.GAUGE, writer -> {});
+    }
+}
@@ -3,6 +3,7 @@ package edu.mit.puzzle.cube.core.model;
 import com.google.common.collect.*;
 import edu.mit.puzzle.cube.core.AdjustableClock;
 import edu.mit.puzzle.cube.core.db.ConnectionFactory;
+import edu.mit.puzzle.cube.core.db.DatabaseHelper;
 import edu.mit.puzzle.cube.core.db.InMemorySingleUnsharedConnectionFactory;
 import edu.mit.puzzle.cube.core.events.Event;
 import edu.mit.puzzle.cube.core.events.EventProcessor;
@@ -15,11 +16,14 @@ import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
 
@@ -166,4 +170,92 @@ public class HuntStatusStoreTest {
         assertEquals(1, properties.size());
         assertEquals("SOME_VALUE", properties.get("GENERIC_PROPERTY"));
     }
+
+    @Test
+    public void getVisibilityChanges() {
+        huntStatusStore.setVisibility(TEST_TEAM_ID, TEST_PUZZLE_ID, "UNLOCKED", false);
+        huntStatusStore.setVisibility(TEST_TEAM_ID, TEST_PUZZLE_ID, "UNLOCKED", false);
+        huntStatusStore.setVisibility(TEST_TEAM_ID, TEST_PUZZLE_ID_2, "VISIBLE", false);
+        huntStatusStore.setVisibility(TEST_TEAM_ID, TEST_PUZZLE_ID, "SOLVED", false);
+
+        List<Change> changes = huntStatusStore.getVisibilityChanges(0, 10);
+        assertEquals(3, changes.size());
+        assertEquals(TEST_PUZZLE_ID, changes.get(0).getPuzzleId());
+        assertEquals("UNLOCKED", changes.get(0).getStatus());
+        assertEquals(TEST_PUZZLE_ID_2, changes.get(1).getPuzzleId());
+        assertEquals("VISIBLE", changes.get(1).getStatus());
+        assertEquals(TEST_PUZZLE_ID, changes.get(2).getPuzzleId());
+        assertEquals("SOLVED", changes.get(2).getStatus());
+        assertTrue(changes.get(0).getChangeId() < changes.get(1).getChangeId());
+        assertTrue(changes.get(1).getChangeId() < changes.get(2).getChangeId());
+
+        List<Change> laterChanges = huntStatusStore.getVisibilityChanges(changes.get(1).getChangeId(), 10);
+        assertEquals(1, laterChanges.size());
+        assertEquals(changes.get(2), laterChanges.get(0));
+
+        assertEquals(2, huntStatusStore.getVisibilityChanges(0, 2).size());
+    }
+
+    @Test
+    public void visibilityChangeIsKeptOnlyWithItsChangeLogEntry() {
+        DatabaseHelper.update(connectionFactory, "DROP TABLE change_log", ImmutableList.of());
+        try {
+            huntStatusStore.setVisibility(TEST_TEAM_ID, TEST_PUZZLE_ID, "UNLOCKED", false);
+            fail("Set a visibility without logging the change");
+        } catch (RuntimeException e) {
+            //Expected
+        }
+        assertEquals(visibilityStatusSet.getDefaultVisibilityStatus(), huntStatusStore.getVisibility(TEST_TEAM_ID, TEST_PUZZLE_ID));
+        assertEquals(0, huntStatusStore.getVisibilityHistory(TEST_TEAM_ID, TEST_PUZZLE_ID).rowKeySet().size());
+        verify(eventProcessor, never()).process(any(Event.class));
+    }
+
+    @Test
+    public void visibilityVersionChangesOnlyWithVisibilities() {
+        String initialVersion = huntStatusStore.getVisibilityVersions().getTeamVersion(TEST_TEAM_ID);
+        assertEquals(initialVersion, huntStatusStore.getVisibilityVersions().getTeamVersion(TEST_TEAM_ID));
+
+        String initialPropertyVersion = huntStatusStore.getTeamPropertyVersions().getTeamVersion(TEST_TEAM_ID);
+        huntStatusStore.setTeamProperty(TEST_TEAM_ID, "GENERIC_PROPERTY", "SOME_VALUE");
+        assertEquals(initialVersion, huntStatusStore.getVisibilityVersions().getTeamVersion(TEST_TEAM_ID));
+        assertFalse(initialPropertyVersion.equals(huntStatusStore.getTeamPropertyVersions().getTeamVersion(TEST_TEAM_ID)));
+
+        huntStatusStore.setVisibility(TEST_TEAM_ID, TEST_PUZZLE_ID, "UNLOCKED", false);
+        String unlockedVersion = huntStatusStore.getVisibilityVersions().getTeamVersion(TEST_TEAM_ID);
+        assertFalse(initialVersion.equals(unlockedVersion));
+
+        //A rejected or no-op change leaves the version alone.
+        huntStatusStore.setVisibility(TEST_TEAM_ID, TEST_PUZZLE_ID, "UNLOCKED", false);
+        assertEquals(unlockedVersion, huntStatusStore.getVisibilityVersions().getTeamVersion(TEST_TEAM_ID));
+    }
+
+    @Test
+    public void forEachExplicitVisibility() {
+        huntStatusStore.setVisibility(TEST_TEAM_ID, TEST_PUZZLE_ID_2, "UNLOCKED", false);
+        huntStatusStore.setVisibility(TEST_TEAM_ID, TEST_PUZZLE_ID, "UNLOCKED", false);
+
+        List<Visibility> visibilities = Lists.newArrayList();
+        huntStatusStore.forEachExplicitVisibility(Optional.of(TEST_TEAM_ID), Optional.empty(), visibilities::add);
+        assertEquals(2, visibilities.size());
+        assertEquals(TEST_PUZZLE_ID, visibilities.get(0).getPuzzleId());
+        assertEquals(TEST_PUZZLE_ID_2, visibilities.get(1).getPuzzleId());
+
+        visibilities.clear();
+        huntStatusStore.forEachExplicitVisibility(Optional.empty(), Optional.of(TEST_PUZZLE_ID_2), visibilities::add);
+        assertEquals(1, visibilities.size());
+        assertEquals("UNLOCKED", visibilities.get(0).getStatus());
+    }
+
+    @Test
+    public void visibilityCounts() {
+        huntStatusStore.getVisibility(TEST_TEAM_ID, TEST_PUZZLE_ID);
+        huntStatusStore.getVisibilitiesForTeam(TEST_TEAM_ID);
+        huntStatusStore.setVisibility(TEST_TEAM_ID, TEST_PUZZLE_ID, "UNLOCKED", false);
+        huntStatusStore.setVisibility(TEST_TEAM_ID, TEST_PUZZLE_ID, "UNLOCKED", false);
+        huntStatusStore.setVisibility(TEST_TEAM_ID, TEST_PUZZLE_ID_2, "SOLVED", false);
+
+        assertEquals(2, huntStatusStore.getVisibilityReadCount());
+        assertEquals(3, huntStatusStore.getSetVisibilityAttemptCount());
+        assertEquals(1, huntStatusStore.getVisibilityTransitionCount());
+    }
 }
@@ -0,0 +1,127 @@
+package edu.mit.puzzle.cube.core.model;
+
+import com.google.common.collect.Lists;
+import edu.mit.puzzle.cube.core.AdjustableClock;
+import edu.mit.puzzle.cube.core.db.ConnectionFactory;
+import edu.mit.puzzle.cube.core.db.InMemorySingleUnsharedConnectionFactory;
+import edu.mit.puzzle.cube.modules.model.StandardVisibilityStatusSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class IdempotencyStoreTest {
+
+    private ConnectionFactory connectionFactory;
+    private AdjustableClock clock;
+    private IdempotencyStore idempotencyStore;
+    private AtomicInteger processCount;
+
+    @Before
+    public void setup() throws SQLException {
+        connectionFactory = new InMemorySingleUnsharedConnectionFactory(
+                new StandardVisibilityStatusSet(),
+                Lists.newArrayList("testerteam"),
+                Lists.newArrayList("a_test_puzzle"));
+        clock = new AdjustableClock(Clock.fixed(Instant.now(), ZoneId.of("UTC")));
+        idempotencyStore = new IdempotencyStore(connectionFactory, clock, Duration.ofMinutes(10), 100);
+        processCount = new AtomicInteger(0);
+    }
+
+    private PostResult process() {
+        processCount.incrementAndGet();
+        return PostResult.builder().setCreated(processCount.get() == 1).build();
+    }
+
+    @Test
+    public void repeatedKeyReturnsOriginalResult() {
+        PostResult first = idempotencyStore.getOrProcess("submissions:abc", "hash1", this::process);
+        PostResult second = idempotencyStore.getOrProcess("submissions:abc", "hash1", this::process);
+
+        assertEquals(1, processCount.get());
+        assertEquals(true, first.getCreated());
+        assertEquals(first, second);
+
+        idempotencyStore.getOrProcess("submissions:def", "hash1", this::process);
+        assertEquals(2, processCount.get());
+    }
+
+    @Test
+    public void storedResultSurvivesRestart() {
+        PostResult first = idempotencyStore.getOrProcess("submissions:abc", "hash1", this::process);
+
+        IdempotencyStore restartedStore = new IdempotencyStore(connectionFactory, clock, Duration.ofMinutes(10), 100);
+        PostResult second = restartedStore.getOrProcess("submissions:abc", "hash1", this::process);
+
+        assertEquals(1, processCount.get());
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void keysExpire() {
+        idempotencyStore.getOrProcess("submissions:abc", "hash1", this::process);
+        clock.setWrappedClock(Clock.fixed(clock.instant().plus(11, ChronoUnit.MINUTES), ZoneId.of("UTC")));
+
+        IdempotencyStore restartedStore = new IdempotencyStore(connectionFactory, clock, Duration.ofMinutes(10), 100);
+        PostResult second = restartedStore.getOrProcess("submissions:abc", "hash1", this::process);
+        assertEquals(2, processCount.get());
+        assertEquals(false, second.getCreated());
+
+        clock.setWrappedClock(Clock.fixed(clock.instant().plus(11, ChronoUnit.MINUTES), ZoneId.of("UTC")));
+        assertEquals(1, restartedStore.pruneExpiredKeys());
+    }
+
+    @Test
+    public void failedRequestsAreNotRemembered() {
+        try {
+            idempotencyStore.getOrProcess("events:abc", "hash1", () -> {
+                throw new IllegalStateException("failed");
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("failed", e.getMessage());
+        }
+
+        idempotencyStore.getOrProcess("events:abc", "hash1", this::process);
+        assertEquals(1, processCount.get());
+    }
+
+    @Test
+    public void keyReusedForAnotherRequestIsRejected() {
+        idempotencyStore.getOrProcess("submissions:abc", "hash1", this::process);
+        try {
+            idempotencyStore.getOrProcess("submissions:abc", "hash2", this::process);
+            fail();
+        } catch (IdempotencyStore.KeyReusedException e) {
+            //Expected
+        }
+
+        IdempotencyStore restartedStore = new IdempotencyStore(connectionFactory, clock, Duration.ofMinutes(10), 100);
+        try {
+            restartedStore.getOrProcess("submissions:abc", "hash2", this::process);
+            fail();
+        } catch (IdempotencyStore.KeyReusedException e) {
+            //Expected
+        }
+        assertEquals(1, processCount.get());
+    }
+
+    @Test
+    public void cachedResultsExpireByTheStoreClock() {
+        idempotencyStore.getOrProcess("submissions:abc", "hash1", this::process);
+        clock.setWrappedClock(Clock.fixed(clock.instant().plus(11, ChronoUnit.MINUTES), ZoneId.of("UTC")));
+
+        //The same store, so the result would come from its cache if that expired by another clock.
+        idempotencyStore.getOrProcess("submissions:abc", "hash2", this::process);
+        assertEquals(2, processCount.get());
+    }
+}
@@ -16,8 +16,10 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
 
@@ -123,4 +125,100 @@ public class SubmissionStoreTest {
         verify(eventProcessor, times(1)).process(any(Event.class));
     }
 
+    @Test
+    public void testGetSubmissionChanges() {
+        submissionStore.addSubmission(Submission.builder()
+                .setTeamId(TEST_TEAM_ID)
+                .setPuzzleId(TEST_PUZZLE_ID)
+                .setSubmission("guess1")
+                .build());
+        submissionStore.setSubmissionStatus(1, SubmissionStatus.ASSIGNED);
+        submissionStore.setSubmissionStatus(1, SubmissionStatus.ASSIGNED);
+        submissionStore.setSubmissionStatus(1, SubmissionStatus.INCORRECT);
+
+        List<Change> changes = submissionStore.getSubmissionChanges(0, 10);
+        assertEquals(3, changes.size());
+        assertEquals(SubmissionStatus.SUBMITTED.toString(), changes.get(0).getStatus());
+        assertEquals(SubmissionStatus.ASSIGNED.toString(), changes.get(1).getStatus());
+        assertEquals(SubmissionStatus.INCORRECT.toString(), changes.get(2).getStatus());
+        for (Change change : changes) {
+            assertEquals(Change.ChangeType.SUBMISSION, change.getChangeType());
+            assertEquals(1, change.getSubmissionId().intValue());
+            assertEquals(TEST_TEAM_ID, change.getTeamId());
+            assertEquals(TEST_PUZZLE_ID, change.getPuzzleId());
+        }
+
+        List<Change> laterChanges = submissionStore.getSubmissionChanges(changes.get(0).getChangeId(), 1);
+        assertEquals(1, laterChanges.size());
+        assertEquals(changes.get(1), laterChanges.get(0));
+    }
+
+    @Test
+    public void testSubmissionVersions() {
+        String globalVersion = submissionStore.getSubmissionVersions().getGlobalVersion();
+        String teamVersion = submissionStore.getSubmissionVersions().getTeamVersion(TEST_TEAM_ID);
+        String otherTeamVersion = submissionStore.getSubmissionVersions().getTeamVersion("otherteam");
+
+        submissionStore.addSubmission(Submission.builder()
+                .setTeamId(TEST_TEAM_ID)
+                .setPuzzleId(TEST_PUZZLE_ID)
+                .setSubmission("guess1")
+                .build());
+        assertFalse(globalVersion.equals(submissionStore.getSubmissionVersions().getGlobalVersion()));
+        assertFalse(teamVersion.equals(submissionStore.getSubmissionVersions().getTeamVersion(TEST_TEAM_ID)));
+        assertEquals(otherTeamVersion, submissionStore.getSubmissionVersions().getTeamVersion("otherteam"));
+
+        globalVersion = submissionStore.getSubmissionVersions().getGlobalVersion();
+        submissionStore.setSubmissionStatus(1, SubmissionStatus.CORRECT);
+        assertFalse(globalVersion.equals(submissionStore.getSubmissionVersions().getGlobalVersion()));
+
+        globalVersion = submissionStore.getSubmissionVersions().getGlobalVersion();
+        submissionStore.setSubmissionStatus(1, SubmissionStatus.CORRECT);
+        assertEquals(globalVersion, submissionStore.getSubmissionVersions().getGlobalVersion());
+    }
+
+    @Test
+    public void testForEachSubmission() {
+        for (int i = 0; i < 3; ++i) {
+            submissionStore.addSubmission(Submission.builder()
+                    .setTeamId(TEST_TEAM_ID)
+                    .setPuzzleId(TEST_PUZZLE_ID)
+                    .setSubmission("guess" + i)
+                    .build());
+        }
+
+        List<Submission> submissions = Lists.newArrayList();
+        submissionStore.forEachSubmission(submissions::add);
+        assertEquals(submissionStore.getAllSubmissions(), submissions);
+    }
+
+
+    @Test
+    public void testSubmissionCounts() {
+        for (int i = 0; i < 3; ++i) {
+            submissionStore.addSubmission(Submission.builder()
+                    .setTeamId(TEST_TEAM_ID)
+                    .setPuzzleId(TEST_PUZZLE_ID)
+                    .setSubmission("guess" + i)
+                    .build());
+        }
+        submissionStore.setSubmissionStatus(1, SubmissionStatus.ASSIGNED);
+        submissionStore.setSubmissionStatus(1, SubmissionStatus.CORRECT);
+        submissionStore.setSubmissionStatus(2, SubmissionStatus.INCORRECT);
+        //Not a change, so not counted
+        submissionStore.setSubmissionStatus(2, SubmissionStatus.INCORRECT);
+
+        assertEquals(3, submissionStore.getSubmissionsAddedCount());
+        Map<SubmissionStatus,Long> transitions = submissionStore.getStatusTransitionCounts();
+        assertEquals(0L, transitions.get(SubmissionStatus.SUBMITTED).longValue());
+        assertEquals(1L, transitions.get(SubmissionStatus.ASSIGNED).longValue());
+        assertEquals(1L, transitions.get(SubmissionStatus.CORRECT).longValue());
+        assertEquals(1L, transitions.get(SubmissionStatus.INCORRECT).longValue());
+
+        Map<SubmissionStatus,Integer> countsByStatus = submissionStore.getSubmissionCountsByStatus();
+        assertEquals(1, countsByStatus.get(SubmissionStatus.SUBMITTED).intValue());
+        assertEquals(0, countsByStatus.get(SubmissionStatus.ASSIGNED).intValue());
+        assertEquals(1, countsByStatus.get(SubmissionStatus.CORRECT).intValue());
+        assertEquals(1, countsByStatus.get(SubmissionStatus.INCORRECT).intValue());
+    }
 }
@@ -0,0 +1,80 @@
+package edu.mit.puzzle.cube.core.server;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveConcurrencyLimitTest {
+
+    private static final long FAST_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    public void rejectsBeyondTheLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10);
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertEquals(2, limit.getInFlight());
+
+        limit.release(FAST_NANOS, 0);
+        assertEquals(1, limit.getInFlight());
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    public void growsWhileFastAndBusy() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 6);
+        long now = 0;
+        for (int i = 0; i < 100; ++i) {
+            while (limit.tryAcquire()) {
+            }
+            while (limit.getInFlight() > 0) {
+                now += FAST_NANOS;
+                limit.release(FAST_NANOS, now);
+            }
+        }
+        assertEquals(6, limit.getLimit());
+    }
+
+    @Test
+    public void doesNotGrowWhileIdle() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 10);
+        long now = 0;
+        for (int i = 0; i < 100; ++i) {
+            assertTrue(limit.tryAcquire());
+            now += FAST_NANOS;
+            limit.release(FAST_NANOS, now);
+        }
+        assertEquals(4, limit.getLimit());
+    }
+
+    @Test
+    public void shrinksOncePerSlowLatency() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 1, 20);
+        assertTrue(limit.tryAcquire());
+        limit.release(FAST_NANOS, 0);
+
+        //A burst of slow completions at once is one signal.
+        for (int i = 0; i < 5; ++i) {
+            assertTrue(limit.tryAcquire());
+        }
+        for (int i = 0; i < 5; ++i) {
+            limit.release(SLOW_NANOS, SLOW_NANOS);
+        }
+        assertEquals(18, limit.getLimit());
+
+        //Sustained slowness keeps cutting the limit, down to the minimum.
+        long now = SLOW_NANOS;
+        for (int i = 0; i < 100; ++i) {
+            assertTrue(limit.tryAcquire());
+            now += SLOW_NANOS;
+            limit.release(SLOW_NANOS, now);
+        }
+        assertEquals(1, limit.getLimit());
+    }
+}
@@ -0,0 +1,122 @@
+package edu.mit.puzzle.cube.core.server;
+
+import edu.mit.puzzle.cube.core.AdjustableClock;
+import edu.mit.puzzle.cube.core.model.HealthCheckResult;
+import edu.mit.puzzle.cube.core.model.HealthReport;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HealthCheckerTest {
+
+    private AdjustableClock clock;
+    private HealthChecker healthChecker;
+
+    @Before
+    public void setUp() {
+        clock = new AdjustableClock(Clock.fixed(Instant.parse("2016-01-15T12:00:00Z"), ZoneId.of("UTC")));
+        healthChecker = new HealthChecker(
+                clock, Duration.ofSeconds(2), Duration.ofMillis(200), Duration.ofMillis(100));
+    }
+
+    private static HealthCheckResult getCheck(HealthReport report, String name) {
+        return report.getChecks().stream()
+                .filter(check -> check.getName().equals(name))
+                .findFirst()
+                .get();
+    }
+
+    @Test
+    public void testHealthy() {
+        healthChecker.addCheck("a", Optional::empty);
+        healthChecker.addCheck("b", Optional::empty);
+        HealthReport report = healthChecker.getReport();
+        assertTrue(report.getHealthy());
+        assertEquals(2, report.getChecks().size());
+        assertTrue(getCheck(report, "a").getHealthy());
+        assertEquals(clock.instant(), report.getCheckedAt());
+    }
+
+    @Test
+    public void testFailingAndThrowingChecks() {
+        healthChecker.addCheck("ok", Optional::empty);
+        healthChecker.addCheck("failing", () -> Optional.of("broken"));
+        healthChecker.addCheck("throwing", () -> {
+            throw new IllegalStateException("no database");
+        });
+        HealthReport report = healthChecker.getReport();
+        assertFalse(report.getHealthy());
+        assertTrue(getCheck(report, "ok").getHealthy());
+        assertEquals("broken", getCheck(report, "failing").getDetail());
+        assertFalse(getCheck(report, "throwing").getHealthy());
+        assertTrue(getCheck(report, "throwing").getDetail().contains("no database"));
+    }
+
+    @Test
+    public void testSlowCheckFails() {
+        healthChecker.addCheck("slow", () -> {
+            Thread.sleep(150);
+            return Optional.empty();
+        });
+        HealthCheckResult result = getCheck(healthChecker.getReport(), "slow");
+        assertFalse(result.getHealthy());
+        assertTrue(result.getLatencyMillis() >= 150);
+    }
+
+    @Test
+    public void testTimedOutCheckIsNotRestarted() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger(0);
+        healthChecker.addCheck("wedged", () -> {
+            runs.incrementAndGet();
+            release.await();
+            return Optional.empty();
+        });
+
+        HealthCheckResult result = getCheck(healthChecker.getReport(), "wedged");
+        assertFalse(result.getHealthy());
+        assertTrue(result.getDetail().startsWith("Timed out"));
+
+        clock.adjustClock(c -> Clock.offset(c, Duration.ofSeconds(3)));
+        result = getCheck(healthChecker.getReport(), "wedged");
+        assertFalse(result.getHealthy());
+        assertEquals(1, runs.get());
+
+        release.countDown();
+        Thread.sleep(50);
+        clock.adjustClock(c -> Clock.offset(c, Duration.ofSeconds(3)));
+        assertTrue(healthChecker.getReport().getHealthy());
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    public void testReportIsCached() {
+        AtomicInteger runs = new AtomicInteger(0);
+        healthChecker.addCheck("counted", () -> {
+            runs.incrementAndGet();
+            return Optional.empty();
+        });
+
+        HealthReport report = healthChecker.getReport();
+        clock.adjustClock(c -> Clock.offset(c, Duration.ofSeconds(1)));
+        assertSame(report, healthChecker.getReport());
+        assertEquals(1, runs.get());
+
+        clock.adjustClock(c -> Clock.offset(c, Duration.ofSeconds(1)));
+        healthChecker.getReport();
+        assertEquals(2, runs.get());
+    }
+}
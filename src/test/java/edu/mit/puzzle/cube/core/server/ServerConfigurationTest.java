@@ -0,0 +1,66 @@
+package edu.mit.puzzle.cube.core.server;
+
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ServerConfigurationTest {
+
+    @Test
+    public void testEmptyPropertiesGiveDefaults() {
+        assertEquals(ServerConfiguration.builder().build(), ServerConfiguration.fromProperties(new Properties()));
+    }
+
+    @Test
+    public void testFromProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("cube.server.port", "9000");
+        properties.setProperty("cube.server.connector", "jetty");
+        properties.setProperty("cube.server.selectorThreads", "4");
+        properties.setProperty("cube.server.maxWorkerThreads", " 400 ");
+        properties.setProperty("cube.server.keepAliveTimeoutMillis", "5000");
+        properties.setProperty("cube.server.virtualThreads", "true");
+        properties.setProperty("cube.server.changePollIntervalMillis", "0");
+        properties.setProperty("cube.server.maxEventStreams", "20");
+
+        ServerConfiguration configuration = ServerConfiguration.fromProperties(properties);
+        assertEquals(9000, configuration.getPort());
+        assertEquals(ServerConfiguration.Connector.JETTY, configuration.getConnector());
+        assertEquals(4, configuration.getSelectorThreads());
+        assertEquals(400, configuration.getMaxWorkerThreads());
+        assertEquals(5000, configuration.getKeepAliveTimeoutMillis());
+        assertTrue(configuration.getVirtualThreads());
+        assertEquals(0, configuration.getChangePollIntervalMillis());
+        assertEquals(20, configuration.getMaxEventStreams());
+        assertEquals(ServerConfiguration.builder().build().getMinWorkerThreads(), configuration.getMinWorkerThreads());
+    }
+
+    @Test
+    public void testAdmissionControlProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("cube.server.admissionControl", "false");
+        properties.setProperty("cube.server.maxConcurrentRequests", "64");
+        properties.setProperty("cube.server.retryAfterSeconds", "5");
+
+        ServerConfiguration configuration = ServerConfiguration.fromProperties(properties);
+        assertFalse(configuration.getAdmissionControl());
+        assertEquals(64, configuration.getMaxConcurrentRequests());
+        assertEquals(5, configuration.getRetryAfterSeconds());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidNumber() {
+        Properties properties = new Properties();
+        properties.setProperty("cube.server.maxWorkerThreads", "many");
+        ServerConfiguration.fromProperties(properties);
+    }
+
+    @Test
+    public void testVirtualThreadsMatchJdk() {
+        assertEquals(VirtualThreads.isAvailable(), VirtualThreads.newVirtualThreadPerTaskExecutor().isPresent());
+    }
+}
@@ -0,0 +1,94 @@
+package edu.mit.puzzle.cube.core.serverresources;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class StreamingJsonRepresentationTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static void writeNumbers(JsonGenerator generator, int count) throws IOException {
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("numbers");
+        for (int i = 0; i < count; ++i) {
+            generator.writeNumber(i);
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    @Test
+    public void testPlainBodyIsCaptured() throws IOException {
+        AtomicReference<byte[]> captured = new AtomicReference<>();
+        StreamingJsonRepresentation representation = new StreamingJsonRepresentation(
+                MAPPER.getFactory(), generator -> writeNumbers(generator, 3), false, captured::set, 1024);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        representation.write(outputStream);
+
+        JsonNode json = MAPPER.readTree(outputStream.toByteArray());
+        assertEquals(3, json.get("numbers").size());
+        assertArrayEquals(outputStream.toByteArray(), captured.get());
+    }
+
+    @Test
+    public void testGzippedBodyCapturesUncompressedBytes() throws IOException {
+        AtomicReference<byte[]> captured = new AtomicReference<>();
+        StreamingJsonRepresentation representation = new StreamingJsonRepresentation(
+                MAPPER.getFactory(), generator -> writeNumbers(generator, 100), true, captured::set, 1024);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        representation.write(outputStream);
+
+        byte[] body = ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(outputStream.toByteArray())));
+        assertEquals(100, MAPPER.readTree(body).get("numbers").size());
+        assertArrayEquals(body, captured.get());
+    }
+
+    @Test
+    public void testLargeBodyIsNotCaptured() throws IOException {
+        AtomicReference<byte[]> captured = new AtomicReference<>();
+        StreamingJsonRepresentation representation = new StreamingJsonRepresentation(
+                MAPPER.getFactory(), generator -> writeNumbers(generator, 10000), false, captured::set, 1024);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        representation.write(outputStream);
+
+        assertEquals(10000, MAPPER.readTree(outputStream.toByteArray()).get("numbers").size());
+        assertNull(captured.get());
+    }
+
+    @Test
+    public void testWriteToBytesGivesUpOnLargeBody() throws IOException {
+        Optional<byte[]> small = StreamingJsonRepresentation.writeToBytes(
+                MAPPER.getFactory(), generator -> writeNumbers(generator, 3), 1024);
+        assertEquals(3, MAPPER.readTree(small.get()).get("numbers").size());
+
+        assertFalse(StreamingJsonRepresentation.writeToBytes(
+                MAPPER.getFactory(), generator -> writeNumbers(generator, 10000), 1024).isPresent());
+    }
+
+    @Test
+    public void testCachedBody() throws IOException {
+        byte[] body = "{\"numbers\":[]}".getBytes("UTF-8");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new StreamingJsonRepresentation(body, false).write(outputStream);
+        assertArrayEquals(body, outputStream.toByteArray());
+    }
+}
@@ -0,0 +1,59 @@
+package edu.mit.puzzle.cube.core.simulation;
+
+import edu.mit.puzzle.cube.core.db.ConnectionFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Wraps a ConnectionFactory and counts the connections it hands out and the statements
+ * prepared on them.
+ */
+public class CountingConnectionFactory implements ConnectionFactory {
+
+    private final ConnectionFactory connectionFactory;
+    private final LongAdder connections = new LongAdder();
+    private final LongAdder statements = new LongAdder();
+
+    public CountingConnectionFactory(ConnectionFactory connectionFactory) {
+        this.connectionFactory = checkNotNull(connectionFactory);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection connection = connectionFactory.getConnection();
+        connections.increment();
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "createStatement":
+                        case "prepareStatement":
+                        case "prepareCall":
+                            statements.increment();
+                            break;
+                        default:
+                            break;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    public long getConnectionCount() {
+        return connections.sum();
+    }
+
+    public long getStatementCount() {
+        return statements.sum();
+    }
+}
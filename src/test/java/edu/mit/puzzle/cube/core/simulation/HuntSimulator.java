@@ -0,0 +1,268 @@
+package edu.mit.puzzle.cube.core.simulation;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import edu.mit.puzzle.cube.core.AdjustableClock;
+import edu.mit.puzzle.cube.core.HuntDefinition;
+import edu.mit.puzzle.cube.core.db.InMemorySingleUnsharedConnectionFactory;
+import edu.mit.puzzle.cube.core.events.CompositeEventProcessor;
+import edu.mit.puzzle.cube.core.events.EventMetrics;
+import edu.mit.puzzle.cube.core.events.HuntStartEvent;
+import edu.mit.puzzle.cube.core.events.PeriodicTimerEvent;
+import edu.mit.puzzle.cube.core.events.VisibilityChangeEvent;
+import edu.mit.puzzle.cube.core.metrics.LatencyHistogram;
+import edu.mit.puzzle.cube.core.model.HuntStatusStore;
+import edu.mit.puzzle.cube.core.model.Submission;
+import edu.mit.puzzle.cube.core.model.SubmissionStatus;
+import edu.mit.puzzle.cube.core.model.SubmissionStore;
+import edu.mit.puzzle.cube.core.model.Visibility;
+import edu.mit.puzzle.cube.huntimpl.linearexample.LinearExampleHuntDefinition;
+import edu.mit.puzzle.cube.huntimpl.scoreexample.ScoreExampleHuntDefinition;
+
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Runs a HuntDefinition against simulated teams, through the same SubmissionStore,
+ * HuntStatusStore and CompositeEventProcessor wiring that CubeApplication uses, backed by a
+ * private in-memory database.
+ *
+ * Each team starts working on a puzzle when it becomes available for submissions, spends a
+ * random (log-normal) time on it, and then answers, sometimes wrongly and sometimes preceded by
+ * a burst of wrong guesses. Every submission is judged immediately. Hunt time is an
+ * AdjustableClock that jumps from one action to the next, optionally paced against real time.
+ *
+ * Run main() for a capacity-planning report, e.g. "HuntSimulator score 500".
+ */
+public class HuntSimulator {
+
+    private enum ActionType {
+        TIMER,
+        ATTEMPT
+    }
+
+    private static class Action {
+        private final Instant time;
+        private final long sequence;
+        private final ActionType type;
+        private final String teamId;
+        private final String puzzleId;
+
+        private Action(Instant time, long sequence, ActionType type, String teamId, String puzzleId) {
+            this.time = time;
+            this.sequence = sequence;
+            this.type = type;
+            this.teamId = teamId;
+            this.puzzleId = puzzleId;
+        }
+    }
+
+    private static final Instant HUNT_START = Instant.parse("2017-01-13T12:00:00.000Z");
+    private static final int HEAP_SAMPLE_INTERVAL = 1000;
+
+    private final HuntDefinition huntDefinition;
+    private final SimulationConfig config;
+    private final Random random;
+    private final AdjustableClock clock = new AdjustableClock(Clock.fixed(HUNT_START, ZoneId.of("UTC")));
+    private final PriorityQueue<Action> actions = new PriorityQueue<>(
+            Comparator.comparing((Action action) -> action.time).thenComparingLong(action -> action.sequence));
+    private final Map<String, Set<String>> startedPuzzles = Maps.newHashMap();
+    private final Map<String, Set<String>> solvedPuzzles = Maps.newHashMap();
+    private final LatencyHistogram submissionLatency = new LatencyHistogram();
+
+    private CountingConnectionFactory connectionFactory;
+    private CompositeEventProcessor eventProcessor;
+    private SubmissionStore submissionStore;
+    private HuntStatusStore huntStatusStore;
+
+    private long actionSequence = 0;
+    private int submissionCount = 0;
+    private long correctSubmissions = 0;
+    private long peakHeapBytes = 0;
+
+    public HuntSimulator(HuntDefinition huntDefinition, SimulationConfig config) {
+        this.huntDefinition = checkNotNull(huntDefinition);
+        this.config = checkNotNull(config);
+        this.random = new Random(config.getSeed());
+    }
+
+    public SimulationReport run() throws SQLException, InterruptedException {
+        List<String> teamIds = getTeamIds();
+        List<String> puzzleIds = huntDefinition.getPuzzleList();
+        connectionFactory = new CountingConnectionFactory(new InMemorySingleUnsharedConnectionFactory(
+                huntDefinition.getVisibilityStatusSet(), teamIds, puzzleIds));
+        eventProcessor = new CompositeEventProcessor(Duration.ofDays(1));
+        submissionStore = new SubmissionStore(connectionFactory, clock, eventProcessor);
+        huntStatusStore = new HuntStatusStore(
+                connectionFactory, clock, huntDefinition.getVisibilityStatusSet(), eventProcessor);
+        huntDefinition.addToEventProcessor(eventProcessor, huntStatusStore);
+        eventProcessor.addEventProcessor(VisibilityChangeEvent.class, "simulatedTeams", this::startSolving);
+        for (String teamId : teamIds) {
+            startedPuzzles.put(teamId, Sets.newHashSet());
+            solvedPuzzles.put(teamId, Sets.newHashSet());
+        }
+
+        System.gc();
+        sampleHeap();
+        long wallStart = System.nanoTime();
+        Instant huntEnd = HUNT_START.plus(config.getMaxHuntDuration());
+
+        eventProcessor.process(HuntStartEvent.builder().build());
+        schedule(HUNT_START, ActionType.TIMER, null, null);
+        int finishedTeams = 0;
+        long actionsRun = 0;
+        while (!actions.isEmpty() && finishedTeams < teamIds.size()) {
+            Action action = actions.poll();
+            if (action.time.isAfter(huntEnd)) {
+                break;
+            }
+            advanceTo(action.time);
+            switch (action.type) {
+                case TIMER:
+                    eventProcessor.process(PeriodicTimerEvent.builder().build());
+                    schedule(action.time.plus(config.getTimerInterval()), ActionType.TIMER, null, null);
+                    break;
+                case ATTEMPT:
+                    if (attempt(action.teamId, action.puzzleId)
+                            && solvedPuzzles.get(action.teamId).size() == puzzleIds.size()) {
+                        finishedTeams++;
+                    }
+                    break;
+            }
+            if (++actionsRun % HEAP_SAMPLE_INTERVAL == 0) {
+                sampleHeap();
+            }
+        }
+        sampleHeap();
+
+        long eventsProcessed = 0;
+        for (EventMetrics metrics : eventProcessor.getEventTypeMetrics()) {
+            eventsProcessed += metrics.getInvocations();
+        }
+        return SimulationReport.builder()
+                .setTeamCount(teamIds.size())
+                .setTeamsFinished(finishedTeams)
+                .setSubmissions(submissionCount)
+                .setCorrectSubmissions(correctSubmissions)
+                .setEventsProcessed(eventsProcessed)
+                .setHuntDuration(Duration.between(HUNT_START, clock.instant()))
+                .setWallTime(Duration.ofNanos(System.nanoTime() - wallStart))
+                .setSubmissionLatencyP50Millis(toMillis(submissionLatency.getPercentileNanos(50)))
+                .setSubmissionLatencyP90Millis(toMillis(submissionLatency.getPercentileNanos(90)))
+                .setSubmissionLatencyP99Millis(toMillis(submissionLatency.getPercentileNanos(99)))
+                .setSubmissionLatencyMaxMillis(toMillis(submissionLatency.getMaxNanos()))
+                .setDatabaseConnections(connectionFactory.getConnectionCount())
+                .setDatabaseStatements(connectionFactory.getStatementCount())
+                .setPeakHeapBytes(peakHeapBytes)
+                .build();
+    }
+
+    private List<String> getTeamIds() {
+        ImmutableList.Builder<String> teamIds = ImmutableList.builder();
+        for (int i = 1; i <= config.getTeamCount(); ++i) {
+            teamIds.add("team" + i);
+        }
+        return teamIds.build();
+    }
+
+    private void schedule(Instant time, ActionType type, String teamId, String puzzleId) {
+        actions.add(new Action(time, actionSequence++, type, teamId, puzzleId));
+    }
+
+    private void advanceTo(Instant time) throws InterruptedException {
+        if (config.getRealTimeSpeedup() > 0) {
+            long huntMillis = Duration.between(clock.instant(), time).toMillis();
+            long sleepMillis = (long) (huntMillis / config.getRealTimeSpeedup());
+            if (sleepMillis > 0) {
+                Thread.sleep(sleepMillis);
+            }
+        }
+        clock.setWrappedClock(Clock.fixed(time, ZoneId.of("UTC")));
+    }
+
+    private void startSolving(VisibilityChangeEvent event) {
+        Visibility visibility = event.getVisibility();
+        if (!huntDefinition.getVisibilityStatusSet().allowsSubmissions(visibility.getStatus())) {
+            return;
+        }
+        Set<String> started = startedPuzzles.get(visibility.getTeamId());
+        if (started != null && started.add(visibility.getPuzzleId())) {
+            schedule(clock.instant().plus(sampleSolveTime()), ActionType.ATTEMPT,
+                    visibility.getTeamId(), visibility.getPuzzleId());
+        }
+    }
+
+    private Duration sampleSolveTime() {
+        double factor = Math.exp(config.getSolveTimeSpread() * random.nextGaussian());
+        return Duration.ofMillis((long) (config.getMedianSolveTime().toMillis() * factor));
+    }
+
+    /**
+     * @return true if the attempt solved the puzzle
+     */
+    private boolean attempt(String teamId, String puzzleId) {
+        if (random.nextDouble() < config.getBurstProbability()) {
+            for (int i = 0; i < config.getBurstSize(); ++i) {
+                submit(teamId, puzzleId, false);
+            }
+        }
+        if (random.nextDouble() < config.getWrongAnswerRate()) {
+            submit(teamId, puzzleId, false);
+            schedule(clock.instant().plus(config.getRetryDelay()), ActionType.ATTEMPT, teamId, puzzleId);
+            return false;
+        }
+        submit(teamId, puzzleId, true);
+        return solvedPuzzles.get(teamId).add(puzzleId);
+    }
+
+    private void submit(String teamId, String puzzleId, boolean correct) {
+        long start = System.nanoTime();
+        submissionStore.addSubmission(Submission.builder()
+                .setTeamId(teamId)
+                .setPuzzleId(puzzleId)
+                .setSubmission(correct ? "RIGHT" : "WRONG" + submissionCount)
+                .build());
+        //The submissions table is private to this simulation and never has rows deleted, so
+        //submission ids are handed out sequentially from 1.
+        int submissionId = ++submissionCount;
+        submissionStore.setSubmissionStatus(
+                submissionId, correct ? SubmissionStatus.CORRECT : SubmissionStatus.INCORRECT);
+        submissionLatency.record(System.nanoTime() - start);
+        if (correct) {
+            correctSubmissions++;
+        }
+    }
+
+    private void sampleHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        peakHeapBytes = Math.max(peakHeapBytes, runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public static void main(String[] args) throws Exception {
+        HuntDefinition huntDefinition = args.length > 0 && args[0].equals("score")
+                ? new ScoreExampleHuntDefinition()
+                : new LinearExampleHuntDefinition();
+        int teamCount = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        SimulationConfig config = SimulationConfig.builder()
+                .setTeamCount(teamCount)
+                .build();
+        System.out.println(new HuntSimulator(huntDefinition, config).run().format());
+    }
+}
@@ -0,0 +1,59 @@
+package edu.mit.puzzle.cube.core.simulation;
+
+import edu.mit.puzzle.cube.huntimpl.linearexample.LinearExampleHuntDefinition;
+import edu.mit.puzzle.cube.huntimpl.scoreexample.ScoreExampleHuntDefinition;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HuntSimulatorTest {
+
+    @Test
+    public void linearHuntRunsToCompletion() throws Exception {
+        SimulationConfig config = SimulationConfig.builder()
+                .setTeamCount(5)
+                .setSeed(1)
+                .build();
+        SimulationReport report = new HuntSimulator(new LinearExampleHuntDefinition(), config).run();
+
+        assertEquals(5, report.getTeamsFinished());
+        assertEquals(5 * 7, report.getCorrectSubmissions());
+        assertTrue(report.getSubmissions() > report.getCorrectSubmissions());
+        assertTrue(report.getDatabaseStatements() > report.getSubmissions());
+        assertTrue(report.getEventsProcessed() > report.getSubmissions());
+        assertTrue(report.getSubmissionLatencyMaxMillis() > 0);
+        assertTrue(report.getPeakHeapBytes() > 0);
+    }
+
+    @Test
+    public void scoreHuntRunsToCompletion() throws Exception {
+        SimulationConfig config = SimulationConfig.builder()
+                .setTeamCount(3)
+                .setWrongAnswerRate(0)
+                .setBurstProbability(0)
+                .setTimerInterval(Duration.ofMinutes(1))
+                .setSeed(2)
+                .build();
+        SimulationReport report = new HuntSimulator(new ScoreExampleHuntDefinition(), config).run();
+
+        assertEquals(3, report.getTeamsFinished());
+        assertEquals(3 * 7, report.getSubmissions());
+    }
+
+    @Test
+    public void stopsAtMaxHuntDuration() throws Exception {
+        SimulationConfig config = SimulationConfig.builder()
+                .setTeamCount(2)
+                .setWrongAnswerRate(1)
+                .setMaxHuntDuration(Duration.ofHours(2))
+                .build();
+        SimulationReport report = new HuntSimulator(new LinearExampleHuntDefinition(), config).run();
+
+        assertEquals(0, report.getTeamsFinished());
+        assertEquals(0, report.getCorrectSubmissions());
+        assertTrue(report.getHuntDuration().compareTo(Duration.ofHours(2)) <= 0);
+    }
+}
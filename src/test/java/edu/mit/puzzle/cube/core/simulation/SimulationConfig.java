@@ -0,0 +1,65 @@
+package edu.mit.puzzle.cube.core.simulation;
+
+import com.google.auto.value.AutoValue;
+
+import java.time.Duration;
+
+/**
+ * Describes the simulated teams of a HuntSimulator run.
+ */
+@AutoValue
+public abstract class SimulationConfig {
+    @AutoValue.Builder
+    public static abstract class Builder {
+        public abstract Builder setTeamCount(int teamCount);
+        /** The median time a team spends on a puzzle before its first answer. */
+        public abstract Builder setMedianSolveTime(Duration medianSolveTime);
+        /** The standard deviation of the log of solve times; 0 makes every solve take the median. */
+        public abstract Builder setSolveTimeSpread(double solveTimeSpread);
+        /** The probability that an answer attempt is wrong. */
+        public abstract Builder setWrongAnswerRate(double wrongAnswerRate);
+        /** How long a team waits after a wrong answer before answering again. */
+        public abstract Builder setRetryDelay(Duration retryDelay);
+        /** The probability that an answer attempt is preceded by a burst of wrong guesses. */
+        public abstract Builder setBurstProbability(double burstProbability);
+        public abstract Builder setBurstSize(int burstSize);
+        /** How often a PeriodicTimerEvent is processed. */
+        public abstract Builder setTimerInterval(Duration timerInterval);
+        /** The simulation stops at this much hunt time even if teams are still solving. */
+        public abstract Builder setMaxHuntDuration(Duration maxHuntDuration);
+        /**
+         * If 0, hunt time advances as fast as the simulation runs. Otherwise the simulation
+         * sleeps so that hunt time passes this many times faster than real time.
+         */
+        public abstract Builder setRealTimeSpeedup(double realTimeSpeedup);
+        public abstract Builder setSeed(long seed);
+        public abstract SimulationConfig build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_SimulationConfig.Builder()
+                .setTeamCount(10)
+                .setMedianSolveTime(Duration.ofMinutes(45))
+                .setSolveTimeSpread(0.5)
+                .setWrongAnswerRate(0.3)
+                .setRetryDelay(Duration.ofMinutes(5))
+                .setBurstProbability(0.05)
+                .setBurstSize(5)
+                .setTimerInterval(Duration.ofSeconds(10))
+                .setMaxHuntDuration(Duration.ofDays(3))
+                .setRealTimeSpeedup(0)
+                .setSeed(0);
+    }
+
+    public abstract int getTeamCount();
+    public abstract Duration getMedianSolveTime();
+    public abstract double getSolveTimeSpread();
+    public abstract double getWrongAnswerRate();
+    public abstract Duration getRetryDelay();
+    public abstract double getBurstProbability();
+    public abstract int getBurstSize();
+    public abstract Duration getTimerInterval();
+    public abstract Duration getMaxHuntDuration();
+    public abstract double getRealTimeSpeedup();
+    public abstract long getSeed();
+}
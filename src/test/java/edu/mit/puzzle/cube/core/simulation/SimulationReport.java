@@ -0,0 +1,77 @@
+package edu.mit.puzzle.cube.core.simulation;
+
+import com.google.auto.value.AutoValue;
+
+import java.time.Duration;
+
+/**
+ * What happened during a HuntSimulator run. Latencies are of whole submissions: adding the
+ * submission, judging it, and every event that cascaded from that.
+ */
+@AutoValue
+public abstract class SimulationReport {
+    @AutoValue.Builder
+    public static abstract class Builder {
+        public abstract Builder setTeamCount(int teamCount);
+        public abstract Builder setTeamsFinished(int teamsFinished);
+        public abstract Builder setSubmissions(long submissions);
+        public abstract Builder setCorrectSubmissions(long correctSubmissions);
+        public abstract Builder setEventsProcessed(long eventsProcessed);
+        public abstract Builder setHuntDuration(Duration huntDuration);
+        public abstract Builder setWallTime(Duration wallTime);
+        public abstract Builder setSubmissionLatencyP50Millis(double submissionLatencyP50Millis);
+        public abstract Builder setSubmissionLatencyP90Millis(double submissionLatencyP90Millis);
+        public abstract Builder setSubmissionLatencyP99Millis(double submissionLatencyP99Millis);
+        public abstract Builder setSubmissionLatencyMaxMillis(double submissionLatencyMaxMillis);
+        public abstract Builder setDatabaseConnections(long databaseConnections);
+        public abstract Builder setDatabaseStatements(long databaseStatements);
+        public abstract Builder setPeakHeapBytes(long peakHeapBytes);
+        public abstract SimulationReport build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_SimulationReport.Builder();
+    }
+
+    public abstract int getTeamCount();
+    public abstract int getTeamsFinished();
+    public abstract long getSubmissions();
+    public abstract long getCorrectSubmissions();
+    public abstract long getEventsProcessed();
+    public abstract Duration getHuntDuration();
+    public abstract Duration getWallTime();
+    public abstract double getSubmissionLatencyP50Millis();
+    public abstract double getSubmissionLatencyP90Millis();
+    public abstract double getSubmissionLatencyP99Millis();
+    public abstract double getSubmissionLatencyMaxMillis();
+    public abstract long getDatabaseConnections();
+    public abstract long getDatabaseStatements();
+    public abstract long getPeakHeapBytes();
+
+    public double getSubmissionsPerSecond() {
+        return getSubmissions() * 1000.0 / Math.max(1, getWallTime().toMillis());
+    }
+
+    public double getStatementsPerSubmission() {
+        return getDatabaseStatements() / (double) Math.max(1, getSubmissions());
+    }
+
+    public String format() {
+        return String.format(
+                "teams: %d (%d finished)%n" +
+                "hunt time: %s, wall time: %d ms%n" +
+                "submissions: %d (%d correct), %.1f/s%n" +
+                "events processed: %d%n" +
+                "submission latency ms: p50 %.2f, p90 %.2f, p99 %.2f, max %.2f%n" +
+                "db: %d connections, %d statements (%.1f per submission)%n" +
+                "peak heap: %.1f MB",
+                getTeamCount(), getTeamsFinished(),
+                getHuntDuration(), getWallTime().toMillis(),
+                getSubmissions(), getCorrectSubmissions(), getSubmissionsPerSecond(),
+                getEventsProcessed(),
+                getSubmissionLatencyP50Millis(), getSubmissionLatencyP90Millis(),
+                getSubmissionLatencyP99Millis(), getSubmissionLatencyMaxMillis(),
+                getDatabaseConnections(), getDatabaseStatements(), getStatementsPerSubmission(),
+                getPeakHeapBytes() / (1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,156 @@
+package edu.mit.puzzle.cube.modules.scores;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import edu.mit.puzzle.cube.core.AdjustableClock;
+import edu.mit.puzzle.cube.core.db.ConnectionFactory;
+import edu.mit.puzzle.cube.core.db.InMemorySingleUnsharedConnectionFactory;
+import edu.mit.puzzle.cube.core.events.CompositeEventProcessor;
+import edu.mit.puzzle.cube.core.events.PeriodicTimerEvent;
+import edu.mit.puzzle.cube.core.model.HuntStatusStore;
+import edu.mit.puzzle.cube.modules.model.StandardVisibilityStatusSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+
+public class TeamScoreTrackerTest {
+
+    private static final String TEAM_ID = "testerteam";
+
+    private AdjustableClock clock;
+    private CompositeEventProcessor eventProcessor;
+    private HuntStatusStore huntStatusStore;
+    private TeamScoreTracker teamScoreTracker;
+    private List<String> scoreChanges;
+
+    @Before
+    public void setup() throws SQLException {
+        StandardVisibilityStatusSet visibilityStatusSet = new StandardVisibilityStatusSet();
+        ConnectionFactory connectionFactory = new InMemorySingleUnsharedConnectionFactory(
+                visibilityStatusSet,
+                Lists.newArrayList(TEAM_ID),
+                Lists.newArrayList("puzzle1", "puzzle2"));
+        clock = new AdjustableClock(Clock.fixed(Instant.parse("2017-01-13T12:00:00.000Z"), ZoneId.of("UTC")));
+        eventProcessor = new CompositeEventProcessor();
+        huntStatusStore = new HuntStatusStore(connectionFactory, clock, visibilityStatusSet, eventProcessor);
+        scoreChanges = Lists.newArrayList();
+        teamScoreTracker = new TeamScoreTracker(
+                huntStatusStore,
+                clock,
+                ImmutableMap.of("puzzle1", 25, "puzzle2", 25),
+                Duration.ofMinutes(1),
+                ImmutableList.of(0, 20, 40),
+                (teamId, previousScore, score) -> scoreChanges.add(previousScore + "->" + score));
+        teamScoreTracker.addToEventProcessor(eventProcessor);
+    }
+
+    private void advanceMinutes(int minutes) {
+        clock.setWrappedClock(Clock.offset(clock.getWrappedClock(), Duration.ofMinutes(minutes)));
+    }
+
+    private void tick() {
+        eventProcessor.process(PeriodicTimerEvent.builder().build());
+    }
+
+    private Object storedScore() {
+        return huntStatusStore.getTeamProperties(TEAM_ID).get(TeamScoreTracker.SCORE_PROPERTY_KEY);
+    }
+
+    @Test
+    public void noScoreBeforeHuntStart() {
+        tick();
+        assertEquals(Optional.empty(), teamScoreTracker.getScore(TEAM_ID));
+        assertEquals(ImmutableList.of(), scoreChanges);
+    }
+
+    @Test
+    public void publishesOnlyWhenThresholdsAreCrossed() {
+        huntStatusStore.recordHuntRunStart();
+        tick();
+        assertEquals(ImmutableList.of(Integer.MIN_VALUE + "->0"), scoreChanges);
+
+        advanceMinutes(19);
+        tick();
+        assertEquals(Optional.of(19), teamScoreTracker.getScore(TEAM_ID));
+        assertEquals(1, scoreChanges.size());
+
+        advanceMinutes(1);
+        tick();
+        assertEquals(ImmutableList.of(Integer.MIN_VALUE + "->0", "0->20"), scoreChanges);
+        assertEquals("20", String.valueOf(storedScore()));
+
+        advanceMinutes(100);
+        tick();
+        tick();
+        assertEquals(3, scoreChanges.size());
+        assertEquals("20->120", scoreChanges.get(2));
+    }
+
+    @Test
+    public void solvesArePublishedImmediately() {
+        huntStatusStore.recordHuntRunStart();
+        advanceMinutes(5);
+        huntStatusStore.setVisibility(TEAM_ID, "puzzle1", "UNLOCKED", false);
+        huntStatusStore.setVisibility(TEAM_ID, "puzzle1", "SOLVED", false);
+
+        assertEquals(ImmutableList.of(Integer.MIN_VALUE + "->30"), scoreChanges);
+        assertEquals(Optional.of(30), teamScoreTracker.getScore(TEAM_ID));
+        assertEquals("30", String.valueOf(storedScore()));
+    }
+
+    @Test
+    public void seedsSolvedPuzzlesFromDatabase() {
+        huntStatusStore.recordHuntRunStart();
+        huntStatusStore.setVisibility(TEAM_ID, "puzzle2", "UNLOCKED", false);
+        huntStatusStore.setVisibility(TEAM_ID, "puzzle2", "SOLVED", false);
+
+        TeamScoreTracker restartedTracker = new TeamScoreTracker(
+                huntStatusStore,
+                clock,
+                ImmutableMap.of("puzzle1", 25, "puzzle2", 25),
+                Duration.ofMinutes(1),
+                ImmutableList.of(),
+                (teamId, previousScore, score) -> {});
+        advanceMinutes(2);
+        assertEquals(Optional.of(27), restartedTracker.getScore(TEAM_ID));
+    }
+
+    @Test
+    public void listenerRunsWithoutHoldingTheTeamsScore() {
+        AtomicReference<TeamScoreTracker> tracker = new AtomicReference<>();
+        List<Optional<Integer>> scoresSeenByListener = Lists.newArrayList();
+        tracker.set(new TeamScoreTracker(
+                huntStatusStore,
+                clock,
+                ImmutableMap.of("puzzle1", 25, "puzzle2", 25),
+                Duration.ofMinutes(1),
+                ImmutableList.of(),
+                (teamId, previousScore, score) -> {
+                    //Times out if the announcing thread still holds the team's score.
+                    try {
+                        scoresSeenByListener.add(CompletableFuture
+                                .supplyAsync(() -> tracker.get().getScore(teamId))
+                                .get(10, TimeUnit.SECONDS));
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }));
+        tracker.get().addToEventProcessor(eventProcessor);
+        huntStatusStore.recordHuntRunStart();
+        tick();
+        assertEquals(ImmutableList.of(Optional.of(0)), scoresSeenByListener);
+    }
+}
@@ -0,0 +1,117 @@
+package edu.mit.puzzle.cube.modules.unlocks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import edu.mit.puzzle.cube.core.db.ConnectionFactory;
+import edu.mit.puzzle.cube.core.db.InMemorySingleUnsharedConnectionFactory;
+import edu.mit.puzzle.cube.core.events.CompositeEventProcessor;
+import edu.mit.puzzle.cube.core.model.HuntStatusStore;
+import edu.mit.puzzle.cube.modules.model.StandardVisibilityStatusSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.Assert.assertEquals;
+
+public class UnlockGraphTest {
+
+    private static final String TEAM_ID = "testerteam";
+
+    private ConnectionFactory connectionFactory;
+    private CompositeEventProcessor eventProcessor;
+    private HuntStatusStore huntStatusStore;
+
+    @Before
+    public void setup() throws SQLException {
+        StandardVisibilityStatusSet visibilityStatusSet = new StandardVisibilityStatusSet();
+        connectionFactory = new InMemorySingleUnsharedConnectionFactory(
+                visibilityStatusSet,
+                Lists.newArrayList(TEAM_ID),
+                Lists.newArrayList("a", "b", "c", "d", "meta"));
+        eventProcessor = new CompositeEventProcessor();
+        huntStatusStore = new HuntStatusStore(connectionFactory, visibilityStatusSet, eventProcessor);
+    }
+
+    private UnlockRuleEngine addGraph(UnlockGraph unlockGraph) {
+        return unlockGraph.addToEventProcessor(eventProcessor, huntStatusStore);
+    }
+
+    private String status(String puzzleId) {
+        return huntStatusStore.getVisibility(TEAM_ID, puzzleId);
+    }
+
+    @Test
+    public void directRulesCascade() {
+        addGraph(UnlockGraph.builder()
+                .unlockWhen("b", "UNLOCKED", "a", "SOLVED")
+                .unlockWhen("c", "VISIBLE", "b", "UNLOCKED")
+                .build());
+
+        huntStatusStore.setVisibility(TEAM_ID, "a", "UNLOCKED", false);
+        assertEquals("INVISIBLE", status("b"));
+
+        huntStatusStore.setVisibility(TEAM_ID, "a", "SOLVED", false);
+        assertEquals("UNLOCKED", status("b"));
+        assertEquals("VISIBLE", status("c"));
+    }
+
+    @Test
+    public void prerequisitesAreMetByLaterStatuses() {
+        addGraph(UnlockGraph.builder()
+                .unlockWhen("b", "UNLOCKED", "a", "VISIBLE")
+                .build());
+
+        huntStatusStore.setVisibility(TEAM_ID, "a", "UNLOCKED", false);
+        assertEquals("UNLOCKED", status("b"));
+    }
+
+    @Test
+    public void allRuleWaitsForEveryPrerequisite() {
+        addGraph(UnlockGraph.builder()
+                .unlockWhenAll("meta", "UNLOCKED", ImmutableList.of("a", "b", "c"), "SOLVED")
+                .build());
+
+        for (String puzzleId : ImmutableList.of("a", "b", "c")) {
+            assertEquals("INVISIBLE", status("meta"));
+            huntStatusStore.setVisibility(TEAM_ID, puzzleId, "UNLOCKED", false);
+            huntStatusStore.setVisibility(TEAM_ID, puzzleId, "SOLVED", false);
+        }
+        assertEquals("UNLOCKED", status("meta"));
+    }
+
+    @Test
+    public void thresholdRuleSeedsProgressFromDatabase() {
+        huntStatusStore.setVisibility(TEAM_ID, "a", "UNLOCKED", false);
+        huntStatusStore.setVisibility(TEAM_ID, "b", "UNLOCKED", false);
+
+        //Registered after some progress was made, as after a restart.
+        addGraph(UnlockGraph.builder()
+                .unlockWhenAtLeast("meta", "VISIBLE", 3, ImmutableList.of("a", "b", "c", "d"), "UNLOCKED")
+                .build());
+
+        huntStatusStore.setVisibility(TEAM_ID, "c", "VISIBLE", false);
+        assertEquals("INVISIBLE", status("meta"));
+        huntStatusStore.setVisibility(TEAM_ID, "c", "UNLOCKED", false);
+        assertEquals("VISIBLE", status("meta"));
+    }
+
+    @Test
+    public void indexOnlyContainsAffectedRules() {
+        UnlockRuleEngine ruleEngine = addGraph(UnlockGraph.builder()
+                .unlockWhen("b", "UNLOCKED", "a", "SOLVED")
+                .unlockWhenAll("meta", "UNLOCKED", ImmutableList.of("a", "c"), "UNLOCKED")
+                .build());
+
+        assertEquals(0, ruleEngine.getAffectedRules("a", "VISIBLE").size());
+        assertEquals(1, ruleEngine.getAffectedRules("a", "UNLOCKED").size());
+        assertEquals(2, ruleEngine.getAffectedRules("a", "SOLVED").size());
+        assertEquals(0, ruleEngine.getAffectedRules("d", "SOLVED").size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsThresholdAbovePrerequisiteCount() {
+        UnlockGraph.builder()
+                .unlockWhenAtLeast("meta", "UNLOCKED", 3, ImmutableList.of("a", "b"), "SOLVED");
+    }
+}